@@ -0,0 +1,62 @@
+/*
+    SABINE predicts binding specificities of transcription factors.
+    Copyright (C) 2009 ZBIT, University of Tübingen, Johannes Eichner
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package benchmark;
+
+
+/*
+ *
+ * a benchmark of one kernel with one parameter (e.g. a superclass), which is executed
+ * repeatedly by the BenchmarkRunner
+ *
+ * setup() prepares the input data once (not measured), run() performs one operation and
+ * returns its result, which is consumed by the runner, so that the JIT compiler cannot
+ * eliminate the work
+ *
+ */
+public abstract class Benchmark {
+
+	String name;
+	String param;
+
+
+	public Benchmark(String name, String param) {
+		this.name = name;
+		this.param = param;
+	}
+
+
+	public String getName() {
+		return name;
+	}
+
+	public String getParam() {
+		return param;
+	}
+
+
+	public void setup() throws Exception {
+	}
+
+
+	public abstract Object run() throws Exception;
+
+
+	public void tearDown() throws Exception {
+	}
+}
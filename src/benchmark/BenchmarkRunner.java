@@ -0,0 +1,260 @@
+/*
+    SABINE predicts binding specificities of transcription factors.
+    Copyright (C) 2009 ZBIT, University of Tübingen, Johannes Eichner
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.StringTokenizer;
+
+
+/*
+ *
+ * executes benchmarks in warmup and measurement iterations of a fixed duration (at least
+ * one operation per iteration) and reports the throughput (mean and standard deviation of
+ * the operations per second of the measurement iterations), the mean time and the bytes
+ * allocated per operation
+ *
+ * allocations are measured for the benchmark thread only (HotSpot JVMs, otherwise -1);
+ * the results can be written to a tab-separated file and compared to the results of a
+ * previous run
+ *
+ */
+public class BenchmarkRunner {
+
+	public int warmupIterations = 3;
+
+	public int measurementIterations = 5;
+
+	public long iterationMillis = 1000;
+
+	public boolean silent = false;
+
+	ArrayList<String[]> results = new ArrayList<String[]>();
+
+	// consumes the results of the operations
+	public static volatile int sink;
+
+
+	public void run(Benchmark benchmark) {
+
+		try {
+			if (! silent) System.out.println("\n" + benchmark.getName() + " (" + benchmark.getParam() + ")");
+
+			benchmark.setup();
+
+			for (int i=0; i<warmupIterations; i++) {
+
+				double[] iteration = runIteration(benchmark);
+				if (! silent) System.out.println("  Warmup " + (i+1) + "      : " + format(iteration[0]) + " ops/s");
+			}
+
+			double[] ops_per_sec = new double[measurementIterations];
+			long ops = 0;
+			long nanos = 0;
+			long bytes = 0;
+
+			for (int i=0; i<measurementIterations; i++) {
+
+				double[] iteration = runIteration(benchmark);
+
+				ops_per_sec[i] = iteration[0];
+				ops += (long) iteration[1];
+				nanos += (long) iteration[2];
+				bytes = (iteration[3] < 0 || bytes < 0) ? -1 : bytes + (long) iteration[3];
+
+				if (! silent) System.out.println("  Iteration " + (i+1) + "   : " + format(iteration[0]) + " ops/s");
+			}
+			benchmark.tearDown();
+
+			double mean = 0;
+			for (double value: ops_per_sec) {
+				mean += value / ops_per_sec.length;
+			}
+			double error = 0;
+			for (double value: ops_per_sec) {
+				error += (value - mean) * (value - mean);
+			}
+			error = (ops_per_sec.length > 1) ? Math.sqrt(error / (ops_per_sec.length - 1)) : 0;
+
+			String[] result = new String[] {benchmark.getName(), benchmark.getParam(), format(mean), format(error),
+											String.format(Locale.US, "%.6f", nanos / 1e6 / Math.max(1, ops)), (bytes < 0) ? "-1" : "" + (bytes / Math.max(1, ops))};
+			results.add(result);
+
+			if (! silent) System.out.println("  Result        : " + result[2] + " +- " + result[3] + " ops/s, " + result[4] + " ms/op, " + result[5] + " B/op");
+		}
+		catch(Exception e) {
+			System.out.println(e.getMessage());
+			System.out.println("Exception occurred while running benchmark " + benchmark.getName() + " (" + benchmark.getParam() + ").");
+		}
+	}
+
+
+	/*
+	 * returns { ops/s, ops, nanoseconds, allocated bytes }
+	 */
+	private double[] runIteration(Benchmark benchmark) throws Exception {
+
+		long thread_id = Thread.currentThread().getId();
+		long start_bytes = getAllocatedBytes(thread_id);
+
+		long ops = 0;
+		long start = System.nanoTime();
+		long end = start + iterationMillis * 1000000L;
+		long now;
+
+		do {
+			Object res = benchmark.run();
+			sink ^= (res == null) ? 0 : System.identityHashCode(res);
+			ops++;
+		}
+		while ((now = System.nanoTime()) < end);
+
+		long end_bytes = getAllocatedBytes(thread_id);
+
+		return new double[] {ops / ((now - start) / 1e9), ops, now - start, (start_bytes < 0) ? -1 : end_bytes - start_bytes};
+	}
+
+
+	private static long getAllocatedBytes(long thread_id) {
+
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+
+			com.sun.management.ThreadMXBean hotspot_bean = (com.sun.management.ThreadMXBean) bean;
+
+			if (hotspot_bean.isThreadAllocatedMemorySupported() && hotspot_bean.isThreadAllocatedMemoryEnabled()) {
+				return hotspot_bean.getThreadAllocatedBytes(thread_id);
+			}
+		}
+		return -1;
+	}
+
+
+	/*
+	 *
+	 * report
+	 *
+	 */
+
+	public void printResults() {
+
+		System.out.println(String.format(Locale.US, "\n%-55s %-12s %14s %12s %12s %12s", "Benchmark", "Param", "ops/s", "error", "ms/op", "B/op"));
+
+		for (String[] result: results) {
+			System.out.println(String.format(Locale.US, "%-55s %-12s %14s %12s %12s %12s", (Object[]) result));
+		}
+	}
+
+
+	/*
+	 * writes the results (lines: benchmark, param, ops/s, error, ms/op, B/op)
+	 */
+	public void writeResults(String outfile) {
+
+		try {
+			BufferedWriter bw = new BufferedWriter(new FileWriter(new File(outfile)));
+
+			bw.write("#benchmark\tparam\tops_per_s\terror\tms_per_op\tbytes_per_op\n");
+
+			for (String[] result: results) {
+
+				for (int i=0; i<result.length; i++) {
+					bw.write(result[i] + ((i < result.length-1) ? "\t" : "\n"));
+				}
+			}
+			bw.flush();
+			bw.close();
+		}
+		catch(IOException ioe) {
+			System.out.println(ioe.getMessage());
+			System.out.println("IOException occurred while writing benchmark results to " + outfile + ".");
+		}
+	}
+
+
+	/*
+	 * prints the change of the throughput relative to the results of a previous run
+	 * (significant: the difference exceeds the sum of both errors)
+	 */
+	public void compareResults(String baselinefile) {
+
+		HashMap<String, String[]> baseline = new HashMap<String, String[]>();
+
+		try {
+			BufferedReader br = new BufferedReader(new FileReader(new File(baselinefile)));
+
+			String line;
+			while ((line = br.readLine()) != null) {
+
+				if (line.startsWith("#")) continue;
+
+				StringTokenizer strtok = new StringTokenizer(line, "\t");
+				if (strtok.countTokens() != 6) continue;
+
+				String[] result = new String[6];
+				for (int i=0; i<result.length; i++) {
+					result[i] = strtok.nextToken();
+				}
+				baseline.put(result[0] + "\t" + result[1], result);
+			}
+			br.close();
+		}
+		catch(IOException ioe) {
+			System.out.println(ioe.getMessage());
+			System.out.println("IOException occurred while reading benchmark results from " + baselinefile + ".");
+			return;
+		}
+
+		System.out.println(String.format(Locale.US, "\n%-55s %-12s %14s %14s %10s %12s", "Benchmark", "Param", "baseline ops/s", "ops/s", "change", "B/op change"));
+
+		for (String[] result: results) {
+
+			String[] base = baseline.get(result[0] + "\t" + result[1]);
+
+			if (base == null) continue;
+
+			double base_ops = Double.parseDouble(base[2]);
+			double curr_ops = Double.parseDouble(result[2]);
+			boolean significant = Math.abs(curr_ops - base_ops) > Double.parseDouble(base[3]) + Double.parseDouble(result[3]);
+
+			long base_bytes = Long.parseLong(base[5]);
+			long curr_bytes = Long.parseLong(result[5]);
+
+			System.out.println(String.format(Locale.US, "%-55s %-12s %14s %14s %9.1f%%%s %12s", result[0], result[1], base[2], result[2],
+											 100 * (curr_ops - base_ops) / base_ops, significant ? "*" : " ",
+											 (base_bytes < 0 || curr_bytes < 0) ? "n/a" : "" + (curr_bytes - base_bytes)));
+		}
+		System.out.println("\n  * difference exceeds the sum of the errors");
+	}
+
+
+	private static String format(double value) {
+		return String.format(Locale.US, "%.3f", value);
+	}
+}
@@ -0,0 +1,231 @@
+/*
+    SABINE predicts binding specificities of transcription factors.
+    Copyright (C) 2009 ZBIT, University of Tübingen, Johannes Eichner
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Random;
+import java.util.StringTokenizer;
+
+import main.FBPPredictor;
+import main.PredictionEngine;
+import main.PredictionException;
+import main.SABINE_Main;
+import core.TrainingSet;
+
+
+/*
+ *
+ * measures the recall of the cascade mode (stage one: fast model of the superclass) on the
+ * public training sets: TFs of the training set are predicted with the full model, where the
+ * TF itself is left out of the candidates, and the ranks of their best matches among the
+ * candidates of stage one are collected (a cascade of size k recalls the best matches of
+ * rank <= k)
+ *
+ * the TFs are chosen by a fixed seed, so the recall of two runs is comparable (the calibration
+ * has to be executed in the SABINE directory)
+ *
+ */
+public class CascadeCalibration {
+
+	public static final long seed = 4711;
+
+	// number of TFs per superclass, which are predicted
+	public static int numTFs = 20;
+
+	// cascade sizes, for which the recall is reported
+	public static final int[] sizes = new int[] {1, 2, 3, 5, 8, 10, 15, 20, 25, 30, 40, 50};
+
+	String train_dir = FBPPredictor.public_trainingset;
+	String model_dir = FBPPredictor.defaultModelDir;
+	String base_dir = System.getProperty("java.io.tmpdir") + "/sabine_calibration/";
+
+	PredictionEngine engine = null;
+
+
+	/*
+	 * predicts the sampled TFs of the superclass and returns the ranks of their best matches
+	 * among the candidates of stage one
+	 */
+	public ArrayList<Integer> getRanks(String class_id) {
+
+		TrainingSet trainingset = engine.getTrainingSet(class_id);
+
+		ArrayList<Integer> order = new ArrayList<Integer>();
+
+		for (int i=0; i<trainingset.size(); i++) {
+			order.add(i);
+		}
+		Collections.shuffle(order, new Random(seed));
+
+		// discard the ranks of previous runs
+		FBPPredictor.getCascadeRanks();
+
+		int predicted = 0;
+
+		for (int i=0; i<order.size() && predicted < numTFs; i++) {
+
+			String inputfile = base_dir + "infile.tmp";
+
+			try {
+				if (! writeInputFile(trainingset, order.get(i), inputfile)) continue;
+
+				FBPPredictor.main(new String[] {inputfile,
+						"-b", base_dir,
+						"-t", train_dir,
+						"-c", model_dir,
+						"-v", "n",
+						"-i", "true",
+						"-loo", "true",
+						"-cascade_check", "1"}, engine);
+				predicted++;
+			}
+			catch(IOException ioe) {
+				System.out.println(ioe.getMessage());
+				System.out.println("IOException occurred while writing input file for " + trainingset.getNames().get(order.get(i)) + ".");
+			}
+			catch(PredictionException pe) {
+				System.out.println(pe.getMessage());
+				System.out.println("PredictionException occurred while predicting " + trainingset.getNames().get(order.get(i)) + ".");
+			}
+		}
+		return FBPPredictor.getCascadeRanks();
+	}
+
+
+	/*
+	 * writes the TF of the training set in the input format of SABINE (the domains are given
+	 * as positions in S1), returns false, if the domains are located on different sequences
+	 */
+	private boolean writeInputFile(TrainingSet trainingset, int index, String outfile) throws IOException {
+
+		ArrayList<String> domains = trainingset.getDomains().get(index);
+
+		String sequence = null;
+		StringBuffer features = new StringBuffer();
+
+		for (String domain: domains) {
+
+			StringTokenizer strtok = new StringTokenizer(domain);
+			strtok.nextToken();
+
+			String seq = strtok.nextToken().equals("1") ? trainingset.getSequences1().get(index) : trainingset.getSequences2().get(index);
+			int start = Integer.parseInt(strtok.nextToken());
+			int end = Integer.parseInt(strtok.nextToken());
+
+			if (sequence != null && ! sequence.equals(seq)) return false;
+			sequence = seq;
+
+			features.append("FT  PF00000    " + (start + 1) + "\t" + end + "\n");
+		}
+		if (sequence == null || sequence.equals("NO SEQUENCE.")) return false;
+
+		BufferedWriter bw = new BufferedWriter(new FileWriter(new File(outfile)));
+
+		bw.write("NA  " + trainingset.getNames().get(index) + "\nXX  \n");
+		bw.write("SP  " + trainingset.getSpecies().get(index) + "\nXX  \n");
+		bw.write("CL  " + trainingset.getClassID().substring(5) + ".0.0.0.0.\nXX  \n");
+
+		for (int i=0; i<sequence.length(); i+=60) {
+			bw.write("S1  " + sequence.substring(i, Math.min(i + 60, sequence.length())) + "\n");
+		}
+		bw.write("XX  \n" + features.toString() + "XX\n//\nXX\n");
+
+		bw.flush();
+		bw.close();
+
+		return true;
+	}
+
+
+	public static void usage() {
+
+		System.out.println("  Usage   : sabine --calibrate-cascade [OPTIONS]\n");
+		System.out.println("  OPTIONS : -c <class_ids>            (comma-separated superclasses)            default = class0,class1,class4");
+		System.out.println("            -n <num_tfs>              (number of predicted TFs per superclass)  default = " + numTFs);
+		System.out.println("            -b <base_dir>             (directory that contains temporary files)\n");
+		System.exit(0);
+	}
+
+
+	public static void main(String[] args) {
+
+		CascadeCalibration calibration = new CascadeCalibration();
+
+		String[] class_ids = SABINEBenchmarks.defaultClasses;
+
+		if (args.length % 2 != 0) {
+			usage();
+		}
+
+		for (int i=0; i<args.length-1; i+=2) {
+
+			if(args[i].equals("-c")) { class_ids 				= args[i+1].split(","); 		continue; }
+			if(args[i].equals("-n")) { numTFs 					= Integer.parseInt(args[i+1]); 	continue; }
+			if(args[i].equals("-b")) { calibration.base_dir 	= args[i+1]; 					continue; }
+
+			System.out.println("\n  Invalid argument: " + args[i]);
+			usage();
+		}
+
+		if (! calibration.base_dir.endsWith("/")) {
+			calibration.base_dir += "/";
+		}
+		SABINE_Main.createTempDirectories(calibration.base_dir);
+
+		calibration.engine = new PredictionEngine(calibration.train_dir, calibration.model_dir);
+
+		ArrayList<Integer> all_ranks = new ArrayList<Integer>();
+
+		for (String class_id: class_ids) {
+
+			ArrayList<Integer> ranks = calibration.getRanks(class_id);
+			all_ranks.addAll(ranks);
+
+			printRecall(class_id, ranks);
+		}
+		printRecall("all", all_ranks);
+
+		int min_size = all_ranks.isEmpty() ? 0 : Collections.max(all_ranks);
+
+		System.out.println("\n  Smallest cascade size, which recalls all best matches: " + min_size + "\n");
+	}
+
+
+	private static void printRecall(String param, ArrayList<Integer> ranks) {
+
+		StringBuffer line = new StringBuffer(String.format(Locale.US, "  %-8s %4d best matches  ", param, ranks.size()));
+
+		for (int size: sizes) {
+
+			int recalled = 0;
+
+			for (int rank: ranks) {
+				if (rank <= size) recalled++;
+			}
+			line.append(String.format(Locale.US, "  k=%d: %.1f%%", size, ranks.isEmpty() ? 0 : 100.0 * recalled / ranks.size()));
+		}
+		System.out.println(line.toString());
+	}
+}
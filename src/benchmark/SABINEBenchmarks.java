@@ -0,0 +1,472 @@
+/*
+    SABINE predicts binding specificities of transcription factors.
+    Copyright (C) 2009 ZBIT, University of Tübingen, Johannes Eichner
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.StringTokenizer;
+
+import libsvmcore.svm;
+import libsvmcore.svm_dense_model;
+import libsvmcore.svm_model;
+import libsvmcore.svm_node;
+import main.FBPPredictor;
+import main.PredictionEngine;
+import main.SABINE_Main;
+import core.PairwiseScoreMatrix;
+import core.SVMPairwiseFeatureCalculator;
+import core.SequenceAligner;
+import core.SpeciesFeatureCalculator;
+import core.TrainingSet;
+import help.LibSVMFeatureScaler;
+
+
+/*
+ *
+ * benchmarks of the hot kernels of SABINE on the public training sets and models
+ * (parameter: superclass) and of a complete prediction (parameter: input file)
+ *
+ * the operations cycle through a fixed list of inputs of the training set, so the numbers
+ * of two runs are comparable; the kernels have to be executed in the SABINE directory
+ * (relative paths of the training sets, models and external programs)
+ *
+ */
+public class SABINEBenchmarks {
+
+	// superclasses with public models
+	public static final String[] defaultClasses = new String[] {"class0", "class1", "class4"};
+
+	public static final String defaultInputFile = "input/test.tf";
+
+	// maximum number of pairs of sequences, which are aligned in turn
+	public static int maxPairs = 64;
+
+	String train_dir = FBPPredictor.public_trainingset;
+	String model_dir = FBPPredictor.defaultModelDir;
+	String base_dir = System.getProperty("java.io.tmpdir") + "/sabine_benchmark/";
+
+	PredictionEngine engine = null;
+
+
+	public ArrayList<Benchmark> getBenchmarks(String[] class_ids, String inputfile) {
+
+		engine = new PredictionEngine(train_dir, model_dir);
+
+		ArrayList<Benchmark> res = new ArrayList<Benchmark>();
+
+		for (String class_id: class_ids) {
+			res.add(new AlignmentBenchmark("SequenceAligner.getSMBasedSimilarity", class_id));
+			res.add(new AlignmentBenchmark("SequenceAligner.getSequenceSimilarity", class_id));
+			res.add(new AlignmentBenchmark("SequenceAligner.getSMBasedIdentity", class_id));
+			res.add(new AlignmentBenchmark("SequenceAligner.getSMBasedSecondaryStructureSimilarity", class_id));
+		}
+		for (String class_id: class_ids) {
+			res.add(new SVMBenchmark("svm.svm_predict", class_id));
+			res.add(new SVMBenchmark("svm_dense_model.predict", class_id));
+		}
+		for (String class_id: class_ids) {
+			res.add(new ScalingBenchmark(class_id));
+		}
+		for (String class_id: class_ids) {
+			res.add(new SVMPairwiseBenchmark(class_id));
+		}
+		for (String class_id: class_ids) {
+			res.add(new SpeciesBenchmark(class_id));
+		}
+		res.add(new PredictionBenchmark(inputfile, false));
+		res.add(new PredictionBenchmark(inputfile, true));
+
+		return res;
+	}
+
+
+	/*
+	 * fixed pairs (i, j) of the n entries of a training set
+	 */
+	private static int[][] getPairs(int n) {
+
+		int num_pairs = Math.min(maxPairs, n);
+		int[][] res = new int[num_pairs][];
+
+		for (int p=0; p<num_pairs; p++) {
+			res[p] = new int[] {p * n / num_pairs, (p * n / num_pairs + n / 2 + p) % n};
+		}
+		return res;
+	}
+
+
+	/*
+	 * aligns pairs of domains (secondary structure: pairs of secondary structures) of a training set
+	 */
+	class AlignmentBenchmark extends Benchmark {
+
+		SequenceAligner aligner;
+		ArrayList<String> sequences;
+		int[][] pairs;
+		int next = 0;
+
+		public AlignmentBenchmark(String name, String class_id) {
+			super(name, class_id);
+		}
+
+		public void setup() throws Exception {
+
+			TrainingSet trainingset = engine.getTrainingSet(param);
+
+			if (name.contains("SecondaryStructure")) {
+				aligner = new SequenceAligner("DNA", FBPPredictor.matrix_dir + "SS-matrix.dat", "NW");
+
+				sequences = new ArrayList<String>();
+				for (String secstruct: trainingset.getSecondaryStructures1()) {
+					sequences.add(secstruct.replace("E", "A").replace("H", "T"));
+				}
+			}
+			else {
+				aligner = new SequenceAligner(FBPPredictor.matrix_dir + "BLOSUM_62.dat", "NW");
+				sequences = trainingset.getDomainSequences();
+			}
+			pairs = getPairs(sequences.size());
+		}
+
+		public Object run() {
+
+			int[] pair = pairs[next];
+			next = (next + 1) % pairs.length;
+
+			String seq1 = sequences.get(pair[0]);
+			String seq2 = sequences.get(pair[1]);
+
+			if (name.endsWith("getSMBasedSimilarity")) 	return aligner.getSMBasedSimilarity(seq1, seq2);
+			if (name.endsWith("getSequenceSimilarity")) return aligner.getSequenceSimilarity(seq1, seq2);
+			if (name.endsWith("getSMBasedIdentity")) 	return aligner.getSMBasedIdentity(seq1, seq2, 3.0);
+
+			return aligner.getSMBasedSecondaryStructureSimilarity(seq1, seq2);
+		}
+	}
+
+
+	/*
+	 * predicts the label of one (scaled) feature vector of the training set with the model of the superclass
+	 */
+	class SVMBenchmark extends Benchmark {
+
+		svm_model model;
+		svm_dense_model dense_model;
+		svm_node[][] nodes;
+		double[][][] vectors;
+		int next = 0;
+
+		public SVMBenchmark(String name, String class_id) {
+			super(name, class_id);
+		}
+
+		public void setup() throws Exception {
+
+			TrainingSet trainingset = engine.getTrainingSet(param);
+			double[][] scaling_params = trainingset.getScalingParameters();
+
+			double[][] features = readFeatureVectors(train_dir + "feature_scaling_orientation_" + param + ".out", scaling_params[0].length);
+			double[][] scaled_features = new LibSVMFeatureScaler().scaleFeatureMatrix(scaling_params[0], scaling_params[1], features);
+
+			model = engine.getModel(param);
+			dense_model = svm_dense_model.isSupported(model) ? new svm_dense_model(model) : null;
+
+			int num_vectors = Math.min(1000, scaled_features.length);
+
+			nodes = new svm_node[num_vectors][];
+			vectors = new double[num_vectors][][];
+
+			for (int i=0; i<num_vectors; i++) {
+
+				nodes[i] = new svm_node[scaled_features[i].length];
+
+				for (int j=0; j<scaled_features[i].length; j++) {
+					nodes[i][j] = new svm_node();
+					nodes[i][j].index = j+1;
+					nodes[i][j].value = scaled_features[i][j];
+				}
+				vectors[i] = new double[][] {scaled_features[i]};
+			}
+
+			if (name.startsWith("svm_dense_model") && dense_model == null) {
+				throw new IllegalArgumentException("Model of " + param + " is not supported by svm_dense_model.");
+			}
+		}
+
+		public Object run() {
+
+			int i = next;
+			next = (next + 1) % nodes.length;
+
+			if (name.startsWith("svm_dense_model")) {
+				return dense_model.predict(vectors[i]);
+			}
+			return svm.svm_predict(model, nodes[i]);
+		}
+	}
+
+
+	/*
+	 * scales the feature file of the training set of the superclass
+	 */
+	class ScalingBenchmark extends Benchmark {
+
+		double[][] scaling_params;
+		LibSVMFeatureScaler scaler = new LibSVMFeatureScaler();
+		String infile, outfile;
+
+		public ScalingBenchmark(String class_id) {
+			super("LibSVMFeatureScaler.scaleFeatureFile", class_id);
+		}
+
+		public void setup() throws Exception {
+
+			scaling_params = engine.getTrainingSet(param).getScalingParameters();
+
+			infile = train_dir + "feature_scaling_orientation_" + param + ".out";
+			outfile = base_dir + "libsvmfiles/scaled_" + param + ".out";
+		}
+
+		public Object run() {
+
+			scaler.scaleFeatureFile(scaling_params[0], scaling_params[1], infile, outfile);
+			return outfile;
+		}
+
+		public void tearDown() {
+			new File(outfile).delete();
+		}
+	}
+
+
+	/*
+	 * SVM pairwise scores of one TF of the training set (BLOSUM_62 scores vs. all TFs) with the relevant TFs
+	 */
+	class SVMPairwiseBenchmark extends Benchmark {
+
+		SVMPairwiseFeatureCalculator calculator = new SVMPairwiseFeatureCalculator();
+		PairwiseScoreMatrix trainscores;
+		double[][] testscores;
+		boolean[][] irrelevantPairs;
+		int next = 0;
+
+		public SVMPairwiseBenchmark(String class_id) {
+			super("SVMPairwiseFeatureCalculator.calculateSVMPairwiseScores", class_id);
+		}
+
+		public void setup() throws Exception {
+
+			trainscores = engine.getTrainingSet(param).getBlosumScores();
+
+			int n = trainscores.size();
+			int num_queries = Math.min(maxPairs, n);
+
+			testscores = new double[num_queries][n];
+			irrelevantPairs = new boolean[num_queries][n];
+
+			for (int q=0; q<num_queries; q++) {
+				for (int i=0; i<n; i++) {
+					testscores[q][i] = trainscores.get(q * n / num_queries, i);
+					irrelevantPairs[q][i] = testscores[q][i] < 0.3;
+				}
+			}
+		}
+
+		public Object run() {
+
+			int q = next;
+			next = (next + 1) % testscores.length;
+
+			return calculator.calculateSVMPairwiseScores(testscores[q], irrelevantPairs[q], trainscores);
+		}
+	}
+
+
+	/*
+	 * phylogenetic distances of the species of one TF to the species of all TFs of the training set
+	 */
+	class SpeciesBenchmark extends Benchmark {
+
+		SpeciesFeatureCalculator calculator = new SpeciesFeatureCalculator();
+		ArrayList<String> species;
+		int next = 0;
+
+		public SpeciesBenchmark(String class_id) {
+			super("SpeciesFeatureCalculator.getDistance", class_id);
+		}
+
+		public void setup() throws Exception {
+
+			engine.initDistanceMatrix(calculator);
+			species = engine.getTrainingSet(param).getSpecies();
+		}
+
+		public Object run() {
+
+			String query = species.get(next);
+			next = (next + 1) % species.size();
+
+			double[] res = new double[species.size()];
+
+			for (int i=0; i<res.length; i++) {
+				res[i] = calculator.getDistance(query, species.get(i));
+			}
+			return res;
+		}
+	}
+
+
+	/*
+	 * complete prediction of the first TF of the input file with resident training data
+	 * (including external programs and, unless in memory, temporary files)
+	 */
+	class PredictionBenchmark extends Benchmark {
+
+		String inputfile;
+		boolean in_memory;
+		String[] arguments;
+
+		public PredictionBenchmark(String inputfile, boolean in_memory) {
+			super("FBPPredictor.calculateFBP" + (in_memory ? " (in memory)" : ""), new File(inputfile).getName());
+			this.inputfile = inputfile;
+			this.in_memory = in_memory;
+		}
+
+		public void setup() throws Exception {
+
+			if (! new File(inputfile).exists()) {
+				throw new IOException("Input file " + inputfile + " not found.");
+			}
+			arguments = new String[] {inputfile, "-v", "n", "-b", base_dir, "-t", train_dir, "-c", model_dir, "-i", "" + in_memory};
+		}
+
+		public Object run() {
+
+			FBPPredictor.main(arguments, engine);
+			return arguments;
+		}
+	}
+
+
+	/*
+	 * reads the feature vectors of a LibSVM-formatted file (lines: <label> 1:<value> 2:<value> ...)
+	 */
+	private static double[][] readFeatureVectors(String infile, int num_features) throws IOException {
+
+		ArrayList<double[]> res = new ArrayList<double[]>();
+
+		BufferedReader br = new BufferedReader(new FileReader(new File(infile)));
+
+		String line;
+		while ((line = br.readLine()) != null) {
+
+			StringTokenizer strtok = new StringTokenizer(line);
+			if (! strtok.hasMoreTokens()) continue;
+
+			strtok.nextToken();		// label
+
+			double[] features = new double[num_features];
+
+			while (strtok.hasMoreTokens()) {
+
+				String[] split = strtok.nextToken().split(":");
+				int index = Integer.parseInt(split[0]) - 1;
+
+				if (index < num_features) features[index] = Double.parseDouble(split[1]);
+			}
+			res.add(features);
+		}
+		br.close();
+
+		return res.toArray(new double[res.size()][]);
+	}
+
+
+	public static void usage() {
+
+		System.out.println("  Usage   : sabine --benchmark [OPTIONS]\n");
+		System.out.println("  OPTIONS : -c <class_ids>            (comma-separated superclasses)            default = class0,class1,class4");
+		System.out.println("            -n <name_filter>          (run benchmarks containing this string)");
+		System.out.println("            -input <input_file>       (input file of the prediction benchmark)  default = " + defaultInputFile);
+		System.out.println("            -w <warmup_iterations>    (iterations before measurement)           default = 3");
+		System.out.println("            -i <iterations>           (measured iterations)                     default = 5");
+		System.out.println("            -d <iteration_millis>     (duration of an iteration)                default = 1000");
+		System.out.println("            -b <base_dir>             (directory that contains temporary files)");
+		System.out.println("            -f <result_file>          (save results as tab-separated file)");
+		System.out.println("            -r <baseline_file>        (compare results with a previous run)\n");
+		System.exit(0);
+	}
+
+
+	public static void main(String[] args) {
+
+		SABINEBenchmarks suite = new SABINEBenchmarks();
+		BenchmarkRunner runner = new BenchmarkRunner();
+
+		String[] class_ids = defaultClasses;
+		String name_filter = null;
+		String inputfile = defaultInputFile;
+		String result_file = null;
+		String baseline_file = null;
+
+		if (args.length % 2 != 0) {
+			usage();
+		}
+
+		for (int i=0; i<args.length-1; i+=2) {
+
+			if(args[i].equals("-c")) { class_ids 					= args[i+1].split(","); 			continue; }
+			if(args[i].equals("-n")) { name_filter 					= args[i+1]; 						continue; }
+			if(args[i].equals("-input")) { inputfile				= args[i+1]; 						continue; }
+			if(args[i].equals("-w")) { runner.warmupIterations 		= Integer.parseInt(args[i+1]); 		continue; }
+			if(args[i].equals("-i")) { runner.measurementIterations	= Integer.parseInt(args[i+1]); 		continue; }
+			if(args[i].equals("-d")) { runner.iterationMillis 		= Long.parseLong(args[i+1]); 		continue; }
+			if(args[i].equals("-b")) { suite.base_dir 				= args[i+1]; 						continue; }
+			if(args[i].equals("-f")) { result_file 					= args[i+1]; 						continue; }
+			if(args[i].equals("-r")) { baseline_file 				= args[i+1]; 						continue; }
+
+			System.out.println("\n  Invalid argument: " + args[i]);
+			usage();
+		}
+
+		if (! suite.base_dir.endsWith("/")) {
+			suite.base_dir += "/";
+		}
+		SABINE_Main.createTempDirectories(suite.base_dir);
+
+		for (Benchmark benchmark: suite.getBenchmarks(class_ids, inputfile)) {
+
+			if (name_filter != null && ! benchmark.getName().contains(name_filter)) continue;
+
+			runner.run(benchmark);
+		}
+
+		runner.printResults();
+
+		if (result_file != null) {
+			runner.writeResults(result_file);
+		}
+		if (baseline_file != null) {
+			runner.compareResults(baseline_file);
+		}
+	}
+}
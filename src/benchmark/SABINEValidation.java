@@ -0,0 +1,416 @@
+/*
+    SABINE predicts binding specificities of transcription factors.
+    Copyright (C) 2009 ZBIT, University of Tübingen, Johannes Eichner
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Random;
+
+import main.FBPPredictor;
+import main.PredictionEngine;
+import main.SABINE_Main;
+import optimization.MoStaOptimizer;
+import optimization.MoStaScoreCache;
+import core.KmerIndex;
+import core.PFMLibrary;
+import core.PairSet;
+import core.SequenceAligner;
+
+
+/*
+ *
+ * equivalence checks of the optimized kernels of SABINE with the implementations they
+ * replaced (reference), on fixed inputs of the public training sets (parameter: superclass)
+ *
+ * the inputs are chosen by fixed seeds, so the checks are reproducible; each check reports
+ * the number of compared results, the number of mismatches and the maximum difference of
+ * the numeric results (the checks have to be executed in the SABINE directory)
+ *
+ */
+public class SABINEValidation {
+
+	public static final long seed = 4711;
+
+	// number of random pairs of PFMs, which are compared
+	public static int numPFMPairs = 400;
+
+	// number of mutated training sequences, which are used as queries, and their fraction of substitutions
+	public static int numQueries = 20;
+	public static double mutationRate = 0.1;
+
+	// number of random pairs of a protein sequence and a domain, which are aligned locally
+	public static int numAlignments = 100;
+
+	String train_dir = FBPPredictor.public_trainingset;
+	String model_dir = FBPPredictor.defaultModelDir;
+	String base_dir = System.getProperty("java.io.tmpdir") + "/sabine_validation/";
+
+	PredictionEngine engine = null;
+
+
+	public ArrayList<Check> getChecks(String[] class_ids) {
+
+		engine = new PredictionEngine(train_dir, model_dir);
+
+		ArrayList<Check> res = new ArrayList<Check>();
+
+		for (String class_id: class_ids) {
+			res.add(new PairSetCheck(class_id));
+		}
+		for (String class_id: class_ids) {
+			res.add(new MoStaCheck(class_id));
+		}
+		for (String class_id: class_ids) {
+			res.add(new KmerIndexCheck(class_id));
+		}
+		for (String class_id: class_ids) {
+			res.add(new LocalAlignmentCheck(class_id));
+		}
+		return res;
+	}
+
+
+	/*
+	 * a comparison of an optimized kernel with its reference on the inputs of one superclass
+	 */
+	abstract class Check {
+
+		String name;
+		String param;
+
+		int comparisons = 0;
+		int mismatches = 0;
+		double max_diff = 0;
+
+		public Check(String name, String param) {
+			this.name = name;
+			this.param = param;
+		}
+
+		public abstract void run() throws Exception;
+
+		void compare(boolean equal) {
+
+			comparisons++;
+			if (! equal) mismatches++;
+		}
+
+		void compare(double expected, double actual, double tolerance) {
+
+			double diff = Math.abs(expected - actual);
+
+			if (Double.isNaN(diff)) {
+				diff = (Double.compare(expected, actual) == 0) ? 0 : Double.POSITIVE_INFINITY;
+			}
+			max_diff = Math.max(max_diff, diff);
+
+			compare(diff <= tolerance);
+		}
+
+		public boolean passed() {
+			return comparisons > 0 && mismatches == 0;
+		}
+	}
+
+
+	/*
+	 * PairSet vs. the list of "i_j" strings it replaced in the model training: random removals
+	 * from all pairs of the TFs of the training set, then membership, size and iteration order
+	 */
+	class PairSetCheck extends Check {
+
+		public PairSetCheck(String class_id) {
+			super("PairSet vs. list of pairs", class_id);
+		}
+
+		public void run() {
+
+			int n = engine.getTrainingSet(param).size();
+
+			PairSet pairs = PairSet.allPairs(n);
+			LinkedHashSet<String> reference = new LinkedHashSet<String>();
+
+			for (int i=0; i<n-1; i++) {
+				for (int j=i+1; j<n; j++) {
+					reference.add(i + "_" + j);
+				}
+			}
+
+			Random random = new Random(seed);
+
+			for (int r=0; r<reference.size()/2; r++) {
+
+				int i = random.nextInt(n);
+				int j = random.nextInt(n);
+
+				if (i >= j) continue;
+
+				pairs.remove(i, j);
+				reference.remove(i + "_" + j);
+			}
+
+			pairs = pairs.copy();
+
+			compare(pairs.size() == reference.size());
+
+			for (int i=0; i<n; i++) {
+				for (int j=0; j<n; j++) {
+					compare(pairs.contains(i, j) == reference.contains(i + "_" + j));
+				}
+			}
+
+			Iterator<String> expected = reference.iterator();
+
+			for (int[] pair: pairs) {
+				compare(expected.hasNext() && expected.next().equals(pair[0] + "_" + pair[1]));
+			}
+			compare(! expected.hasNext());
+		}
+	}
+
+
+	/*
+	 * MoSta scores of the in-process MoStaSimilarity vs. the external program sstat (default
+	 * parameters) for random pairs of FBPs of the training set (no tolerance, sstat precision)
+	 */
+	class MoStaCheck extends Check {
+
+		public MoStaCheck(String class_id) {
+			super("MoStaSimilarity vs. sstat", class_id);
+		}
+
+		public void run() {
+
+			ArrayList<double[][]> fbps = PFMLibrary.getLibrary(train_dir + "FBPs_" + param + ".out").getAllMatrices();
+
+			Random random = new Random(seed);
+
+			int[][] pairs = new int[numPFMPairs][];
+			for (int p=0; p<pairs.length; p++) {
+				pairs[p] = new int[] {random.nextInt(fbps.size()), random.nextInt(fbps.size())};
+			}
+
+			MoStaOptimizer optimizer = new MoStaOptimizer();
+			optimizer.basedir = base_dir;
+
+			// the scores are memoized, so each implementation starts with an empty cache
+			MoStaScoreCache.clear();
+
+			double[] scores = new double[pairs.length];
+			for (int p=0; p<pairs.length; p++) {
+				scores[p] = optimizer.compareMatrices(fbps.get(pairs[p][0]), fbps.get(pairs[p][1]), null);
+			}
+
+			MoStaScoreCache.clear();
+			optimizer.externalMoSta = true;
+
+			for (int p=0; p<pairs.length; p++) {
+				compare(optimizer.compareMatrices(fbps.get(pairs[p][0]), fbps.get(pairs[p][1]), null), scores[p], 0);
+			}
+			MoStaScoreCache.clear();
+		}
+	}
+
+
+	/*
+	 * KmerIndex vs. the exhaustive homology search of the superclass prediction: the shared k-mers
+	 * of mutated training sequences with all sequences of the training set (vs. the intersections of
+	 * their k-mer sets) and the best alignment score of the shortlisted sequences (vs. all sequences)
+	 */
+	class KmerIndexCheck extends Check {
+
+		public KmerIndexCheck(String class_id) {
+			super("KmerIndex vs. exhaustive search", class_id);
+		}
+
+		public void run() throws Exception {
+
+			KmerIndex index = engine.getTrainingSet(param).getSequenceIndex();
+			String[] sequences = index.getSequences();
+
+			SequenceAligner aligner = new SequenceAligner(FBPPredictor.matrix_dir + "BLOSUM_62.dat", "NW");
+
+			Random random = new Random(seed);
+
+			for (int q=0; q<numQueries; q++) {
+
+				String query = mutate(sequences[random.nextInt(sequences.length)], random);
+
+				int[] shared = index.countSharedKmers(query);
+				HashSet<Integer> query_kmers = getKmerSet(query, index.getK());
+
+				for (int i=0; i<sequences.length; i++) {
+
+					HashSet<Integer> kmers = getKmerSet(sequences[i], index.getK());
+					kmers.retainAll(query_kmers);
+
+					compare(shared[i] == kmers.size());
+				}
+
+				double max_score = Double.NEGATIVE_INFINITY;
+				for (String seq: sequences) {
+					max_score = Math.max(max_score, aligner.getSMBasedSimilarity(query, seq));
+				}
+
+				double max_candidate_score = Double.NEGATIVE_INFINITY;
+				for (int i: index.getCandidates(query, FBPPredictor.superclass_candidates)) {
+					max_candidate_score = Math.max(max_candidate_score, aligner.getSMBasedSimilarity(query, sequences[i]));
+				}
+				compare(max_score, max_candidate_score, 0);
+			}
+		}
+	}
+
+
+	/*
+	 * AlignmentScorer.getLocalAlignment() (full band) vs. the Smith-Waterman alignment of BioJava, which
+	 * localizes the domains of a query: normalized score, start and end of the matching region of random
+	 * pairs of a protein sequence and a domain of the training set
+	 */
+	class LocalAlignmentCheck extends Check {
+
+		public LocalAlignmentCheck(String class_id) {
+			super("AlignmentScorer vs. BioJava SmithWaterman", class_id);
+		}
+
+		public void run() throws Exception {
+
+			ArrayList<String> sequences = new ArrayList<String>(engine.getTrainingSet(param).getSequences1());
+			sequences.removeAll(Collections.singleton("NO SEQUENCE."));
+
+			ArrayList<String> domains = engine.getTrainingSet(param).getDomainSequences();
+
+			SequenceAligner aligner = new SequenceAligner(FBPPredictor.matrix_dir + "BLOSUM_62.dat", "SW");
+
+			Random random = new Random(seed);
+
+			for (int a=0; a<numAlignments; a++) {
+
+				String seq = sequences.get(random.nextInt(sequences.size()));
+				String domain = domains.get(random.nextInt(domains.size()));
+
+				String[] expected = aligner.getMatchingRegionAndScore(seq, domain);
+
+				int[] region = new int[2];
+				double score = aligner.getMatchingRegionAndScore(seq, domain, -seq.length(), domain.length(), region);
+
+				compare(Double.parseDouble(expected[0]), score, 0);
+				compare(Integer.parseInt(expected[1]) == region[0]);
+				compare(Integer.parseInt(expected[2]) == region[1]);
+			}
+		}
+	}
+
+
+	/*
+	 * substitutes the given fraction of the residues of a protein sequence by random amino acids
+	 */
+	private static String mutate(String seq, Random random) {
+
+		String alphabet = "ACDEFGHIKLMNPQRSTVWY";
+
+		char[] res = seq.toCharArray();
+
+		for (int i=0; i<res.length; i++) {
+			if (random.nextDouble() < mutationRate) {
+				res[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+			}
+		}
+		return new String(res);
+	}
+
+
+	private static HashSet<Integer> getKmerSet(String seq, int k) {
+
+		HashSet<Integer> res = new HashSet<Integer>();
+
+		for (int kmer: KmerIndex.encode(seq, k)) {
+			if (kmer >= 0) res.add(kmer);
+		}
+		return res;
+	}
+
+
+	public static void usage() {
+
+		System.out.println("  Usage   : sabine --validate [OPTIONS]\n");
+		System.out.println("  OPTIONS : -c <class_ids>            (comma-separated superclasses)            default = class0,class1,class4");
+		System.out.println("            -n <name_filter>          (run checks containing this string)");
+		System.out.println("            -b <base_dir>             (directory that contains temporary files)\n");
+		System.exit(0);
+	}
+
+
+	public static void main(String[] args) {
+
+		SABINEValidation suite = new SABINEValidation();
+
+		String[] class_ids = SABINEBenchmarks.defaultClasses;
+		String name_filter = null;
+
+		if (args.length % 2 != 0) {
+			usage();
+		}
+
+		for (int i=0; i<args.length-1; i+=2) {
+
+			if(args[i].equals("-c")) { class_ids 		= args[i+1].split(","); 	continue; }
+			if(args[i].equals("-n")) { name_filter 		= args[i+1]; 				continue; }
+			if(args[i].equals("-b")) { suite.base_dir 	= args[i+1]; 				continue; }
+
+			System.out.println("\n  Invalid argument: " + args[i]);
+			usage();
+		}
+
+		if (! suite.base_dir.endsWith("/")) {
+			suite.base_dir += "/";
+		}
+		SABINE_Main.createTempDirectories(suite.base_dir);
+
+		int failed = 0;
+
+		for (Check check: suite.getChecks(class_ids)) {
+
+			if (name_filter != null && ! check.name.contains(name_filter)) continue;
+
+			try {
+				check.run();
+			}
+			catch(Exception e) {
+				System.out.println(e.getMessage());
+				System.out.println("Exception occurred while running " + check.name + " (" + check.param + ").");
+			}
+
+			System.out.println(String.format(Locale.US, "  %-45s %-8s %7d comparisons %5d mismatches   max. difference %-10.3g %s",
+					check.name, check.param, check.comparisons, check.mismatches, check.max_diff, check.passed() ? "OK" : "FAILED"));
+
+			if (! check.passed()) failed++;
+		}
+
+		System.out.println("\n  " + ((failed == 0) ? "All checks passed." : failed + " check(s) failed.") + "\n");
+
+		if (failed > 0) {
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,417 @@
+/*
+    SABINE predicts binding specificities of transcription factors.
+    Copyright (C) 2009 ZBIT, University of Tübingen, Johannes Eichner
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.biojava.bio.alignment.SubstitutionMatrix;
+import org.biojava.bio.seq.io.SymbolTokenization;
+import org.biojava.bio.symbol.FiniteAlphabet;
+import org.biojava.bio.symbol.Symbol;
+
+
+/*
+ *
+ * score-only variant of the affine gap alignments of BioJava (NeedlemanWunsch, SmithWaterman),
+ * which works on byte-encoded residues and reuses its DP rows
+ *
+ * the returned scores are identical to the value printed after "Score:" in the alignment string of BioJava
+ * (NW: negated costs of the optimal global alignment, SW: score of the best local alignment)
+ *
+ */
+public class AlignmentScorer {
+
+	public static final String NW = "NW";
+	public static final String SW = "SW";
+
+	String type = null;
+
+	// gap and mismatch costs as passed to the constructors of BioJava
+	double match, replace, insert, delete, gapExt;
+
+	// residue code of each character (-1 = not supported by the substitution matrix)
+	byte[] codes = new byte[128];
+
+	int[][] scores = null;
+
+	// DP rows, reused for all alignments
+	double[] prev_score = new double[0];
+	double[] curr_score = new double[0];
+	double[] prev_gap = new double[0];
+	double[] curr_gap = new double[0];
+
+
+	public AlignmentScorer(FiniteAlphabet alphabet, SubstitutionMatrix matrix, String type, double match, double replace, double insert, double delete, double gapExt) {
+
+		this.type = type;
+		this.match = match;
+		this.replace = replace;
+		this.insert = insert;
+		this.delete = delete;
+		this.gapExt = gapExt;
+
+		for (int c=0; c<codes.length; c++) {
+			codes[c] = -1;
+		}
+
+		/*
+		 * look up all symbols of the substitution matrix (and all characters, which are parsed to them)
+		 */
+
+		ArrayList<Symbol> symbols = new ArrayList<Symbol>();
+		HashMap<Symbol, Integer> symbol_codes = new HashMap<Symbol, Integer>();
+
+		try {
+			SymbolTokenization tokenizer = alphabet.getTokenization("token");
+
+			for (char c=33; c<codes.length; c++) {
+
+				Symbol symbol = null;
+				try {
+					symbol = tokenizer.parseToken("" + c);
+					matrix.getValueAt(symbol, symbol);
+				}
+				catch (Exception e) {
+					continue;				// unknown character or not contained in matrix
+				}
+
+				if (! symbol_codes.containsKey(symbol)) {
+					if (symbols.size() == Byte.MAX_VALUE) break;
+					symbol_codes.put(symbol, symbols.size());
+					symbols.add(symbol);
+				}
+				codes[c] = (byte) symbol_codes.get(symbol).intValue();
+			}
+
+			scores = new int[symbols.size()][symbols.size()];
+
+			for (int i=0; i<symbols.size(); i++) {
+				for (int j=0; j<symbols.size(); j++) {
+					scores[i][j] = matrix.getValueAt(symbols.get(i), symbols.get(j));
+				}
+			}
+		}
+		catch (Exception e) {
+			scores = null;					// score-only alignment not applicable for this matrix
+		}
+	}
+
+
+	/*
+	 * returns false, if the alignments have to be computed by BioJava
+	 */
+	public boolean isApplicable() {
+
+		// only the affine gap model of BioJava is reproduced
+		return scores != null && (gapExt != delete || gapExt != insert);
+	}
+
+
+	/*
+	 * encodes a sequence, returns null if it contains a character which is not supported
+	 */
+	public byte[] encode(String seq) {
+
+		byte[] res = new byte[seq.length()];
+
+		for (int i=0; i<res.length; i++) {
+
+			char c = seq.charAt(i);
+
+			if (c >= codes.length || codes[c] < 0) {
+				return null;
+			}
+			res[i] = codes[c];
+		}
+		return res;
+	}
+
+
+	public double getScore(byte[] seq1, byte[] seq2) {
+
+		// BioJava prints the costs multiplied by -1
+		if (type.equals(SW)) {
+			return -1.0 * getLocalCosts(seq1, seq2);
+		}
+		return -1.0 * getGlobalCosts(seq1, seq2);
+	}
+
+
+	private void initRows(int length) {
+
+		if (prev_score.length < length) {
+			prev_score = new double[length];
+			curr_score = new double[length];
+			prev_gap   = new double[length];
+			curr_gap   = new double[length];
+		}
+	}
+
+
+	/*
+	 * affine gap Needleman-Wunsch (costs are minimized)
+	 */
+	private double getGlobalCosts(byte[] seq1, byte[] seq2) {
+
+		int n = seq1.length;
+		int m = seq2.length;
+
+		initRows(m+1);
+
+		double[] prevC = prev_score;
+		double[] currC = curr_score;
+		double[] prevF = prev_gap;
+		double[] currF = curr_gap;
+
+		prevC[0] = 0;
+		for (int j=1; j<=m; j++) {
+			prevC[j] = insert + j * gapExt;
+			prevF[j] = Double.POSITIVE_INFINITY;
+		}
+
+		for (int i=1; i<=n; i++) {
+
+			double E = Double.POSITIVE_INFINITY;
+			currC[0] = delete + i * gapExt;
+
+			int[] row = scores[seq1[i-1]];
+
+			for (int j=1; j<=m; j++) {
+
+				E = Math.min(E, currC[j-1] + insert) + gapExt;
+				currF[j] = Math.min(prevF[j], prevC[j] + delete) + gapExt;
+				currC[j] = min(E, currF[j], prevC[j-1] - row[seq2[j-1]]);
+			}
+
+			double[] tmp = prevC; prevC = currC; currC = tmp;
+			tmp = prevF; prevF = currF; currF = tmp;
+		}
+		return prevC[m];
+	}
+
+
+	/*
+	 * affine gap Smith-Waterman (scores are maximized, the costs are the negated maximal score)
+	 */
+	private double getLocalCosts(byte[] seq1, byte[] seq2) {
+
+		int n = seq1.length;
+		int m = seq2.length;
+
+		initRows(m+1);
+
+		// BioJava stores the negated costs
+		double ins = -insert;
+		double del = -delete;
+		double ext = -gapExt;
+
+		double[] prevS = prev_score;
+		double[] currS = curr_score;
+		double[] prevF = prev_gap;
+		double[] currF = curr_gap;
+
+		for (int j=0; j<=m; j++) {
+			prevS[j] = 0;
+			prevF[j] = Double.NEGATIVE_INFINITY;
+		}
+
+		double max_score = 0;
+
+		for (int i=1; i<=n; i++) {
+
+			double E = Double.NEGATIVE_INFINITY;
+			currS[0] = 0;
+
+			int[] row = scores[seq1[i-1]];
+
+			for (int j=1; j<=m; j++) {
+
+				E = Math.max(E, currS[j-1] + ins) + ext;
+				currF[j] = Math.max(prevF[j], prevS[j] + del) + ext;
+				currS[j] = max(0, E, currF[j], prevS[j-1] + row[seq2[j-1]]);
+
+				if (currS[j] > max_score) {
+					max_score = currS[j];
+				}
+			}
+
+			double[] tmp = prevS; prevS = currS; currS = tmp;
+			tmp = prevF; prevF = currF; currF = tmp;
+		}
+		return -max_score;
+	}
+
+
+	/*
+	 * affine gap Smith-Waterman restricted to the band of diagonals min_diag <= j - i <= max_diag
+	 * (i: position in seq1, j: position in seq2, both starting at 1), returns the score of the best
+	 * local alignment and its start and end position in seq1 (region[0], region[1])
+	 *
+	 * the maximal cell and the traceback are chosen like in SmithWaterman of BioJava, so the full
+	 * band (-seq1.length, seq2.length) yields the same score and region as parsed from the alignment
+	 * string of BioJava
+	 */
+	public double getLocalAlignment(byte[] seq1, byte[] seq2, int min_diag, int max_diag, int[] region) {
+
+		int n = seq1.length;
+		int m = seq2.length;
+
+		min_diag = Math.max(min_diag, -n);
+		max_diag = Math.min(max_diag, m);
+
+		region[0] = region[1] = 0;
+
+		if (min_diag > max_diag) {
+			return 0;
+		}
+
+		// BioJava stores the negated costs
+		double ins = -insert;
+		double del = -delete;
+		double ext = -gapExt;
+
+		int width = max_diag - min_diag + 1;
+
+		// cell (i, j) is stored at [i][j - i - min_diag]
+		double[][] S = new double[n+1][width];
+		double[][] E = new double[n+1][width];
+		double[][] F = new double[n+1][width];
+
+		for (int i=0; i<=n; i++) {
+			Arrays.fill(S[i], Double.NEGATIVE_INFINITY);
+			Arrays.fill(E[i], Double.NEGATIVE_INFINITY);
+			Arrays.fill(F[i], Double.NEGATIVE_INFINITY);
+		}
+
+		// first row and column (as far as they are part of the band)
+		for (int j=Math.max(0, min_diag); j<=max_diag; j++) {
+			S[0][j - min_diag] = 0;
+			E[0][j - min_diag] = (j == 0) ? Double.NEGATIVE_INFINITY : 0;
+		}
+		for (int i=Math.max(1, -max_diag); i<=Math.min(n, -min_diag); i++) {
+			S[i][-i - min_diag] = 0;
+			F[i][-i - min_diag] = 0;
+		}
+
+		double max_score = 0;
+		int max_i = 0;
+		int max_j = 0;
+
+		for (int i=1; i<=n; i++) {
+
+			int[] row = scores[seq1[i-1]];
+
+			int first = Math.max(1, i + min_diag);
+			int last  = Math.min(m, i + max_diag);
+
+			for (int j=first; j<=last; j++) {
+
+				int k = j - i - min_diag;
+
+				double left_S = (k > 0) ? S[i][k-1] : Double.NEGATIVE_INFINITY;
+				double left_E = (k > 0) ? E[i][k-1] : Double.NEGATIVE_INFINITY;
+				double up_S   = (k+1 < width) ? S[i-1][k+1] : Double.NEGATIVE_INFINITY;
+				double up_F   = (k+1 < width) ? F[i-1][k+1] : Double.NEGATIVE_INFINITY;
+
+				E[i][k] = Math.max(left_E, left_S + ins) + ext;
+				F[i][k] = Math.max(up_F, up_S + del) + ext;
+				S[i][k] = max(0, E[i][k], F[i][k], S[i-1][k] + row[seq2[j-1]]);
+
+				if (S[i][k] > max_score) {
+					max_score = S[i][k];
+					max_i = i;
+					max_j = j;
+				}
+			}
+		}
+
+		/*
+		 * traceback (same order of the cases as in BioJava)
+		 */
+
+		boolean[] gap_extend = {false, false};
+
+		int i = max_i;
+		int j = max_j;
+		int start = 0;
+		int length = 0;		// number of columns of the alignment
+
+		while (i > 0) {
+			do {
+				int k = j - i - min_diag;
+
+				if (k < 0 || k >= width || S[i][k] == Double.NEGATIVE_INFINITY) {
+					// left the band (only possible at its border)
+					start = i;
+					i = j = 0;
+				}
+				else if (S[i][k] == 0) {
+					start = i;
+					i = j = 0;
+				}
+				else if (S[i][k] == S[i-1][k] + scores[seq1[i-1]][seq2[j-1]] && !gap_extend[0] && !gap_extend[1]) {
+					i--;
+					j--;
+					length++;
+				}
+				else if (S[i][k] == E[i][k] || gap_extend[0]) {
+					gap_extend[0] = (k == 0) || (E[i][k] != S[i][k-1] + ins + ext);
+					j--;
+					length++;
+				}
+				else {
+					gap_extend[1] = (k+1 == width) || (F[i][k] != S[i-1][k+1] + del + ext);
+					i--;
+					length++;
+				}
+			} while (j > 0);
+		}
+
+		region[0] = start + 1;
+		region[1] = max_i;
+
+		// the alignment string of BioJava omits the last column (always a match), if it is the only one in its line
+		if (length > 1 && length % 60 == 1) {
+			region[1]--;
+		}
+
+		return max_score;
+	}
+
+
+	// same tie-breaking as NeedlemanWunsch.min()
+	private static double min(double a, double b, double c) {
+
+		if (a < b && a < c) return a;
+		if (b < c) return b;
+		return c;
+	}
+
+
+	// same tie-breaking as SmithWaterman.max()
+	private static double max(double a, double b, double c, double d) {
+
+		if (a > b && a > c && a > d) return a;
+		if (b > c && b > d) return b;
+		if (c > d) return c;
+		return d;
+	}
+}
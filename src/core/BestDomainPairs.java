@@ -0,0 +1,97 @@
+/*
+    SABINE predicts binding specificities of transcription factors.
+    Copyright (C) 2009 ZBIT, University of Tübingen, Johannes Eichner
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.StringTokenizer;
+
+
+/*
+ *
+ * index of the SM-Score-maximizing domain pair of each compared pair of TFs
+ * (query vs. training tf j: key "j", training tf i vs. training tf j: key "i_j"),
+ * which is shared by all features that are based on the best matching domains
+ * (BLOSUM_62, secstr_blo62, env_25_BLOSUM_62, env_50_BLOSUM_62)
+ *
+ * each entry {k, l} refers to the k-th domain of the first and the l-th domain of the second tf
+ *
+ */
+public class BestDomainPairs {
+
+	String matrix = null;
+
+	// domain sequences of the query (null for pairs of training tfs)
+	ArrayList<String> query_domains = null;
+
+	ArrayList<String> candidate_names = null;
+
+	HashMap<String, int[]> pairs = new HashMap<String, int[]>();
+
+
+	public BestDomainPairs(String matrix, ArrayList<String> query_domains, ArrayList<String> candidate_names) {
+
+		this.matrix = matrix;
+		this.query_domains = firstTokens(query_domains);
+		this.candidate_names = new ArrayList<String>(candidate_names);
+	}
+
+
+	/*
+	 * checks whether the index refers to the given substitution matrix, query domains and training tfs
+	 */
+	public boolean matches(String matrix, ArrayList<String> query_domains, ArrayList<String> candidate_names) {
+
+		if ((this.matrix == null) ? matrix != null : ! this.matrix.equals(matrix)) {
+			return false;
+		}
+		if (! this.candidate_names.equals(candidate_names)) {
+			return false;
+		}
+		if (this.query_domains == null || query_domains == null) {
+			return this.query_domains == query_domains;
+		}
+		return this.query_domains.equals(firstTokens(query_domains));
+	}
+
+
+	public synchronized int[] get(String key) {
+		return pairs.get(key);
+	}
+
+
+	public synchronized void put(String key, int k, int l) {
+		pairs.put(key, new int[] {k, l});
+	}
+
+
+	private static ArrayList<String> firstTokens(ArrayList<String> domains) {
+
+		if (domains == null) {
+			return null;
+		}
+
+		ArrayList<String> res = new ArrayList<String>();
+
+		for (String domain: domains) {
+			res.add(new StringTokenizer(domain).nextToken());
+		}
+		return res;
+	}
+}
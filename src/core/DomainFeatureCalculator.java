@@ -42,10 +42,15 @@ public class DomainFeatureCalculator {
 	public boolean predicted_domains = false;
 	public String basedir = null;
 	
+	// number of threads used to compare the domains of all pairs of training tfs
+	public int num_threads = 1;
+	
 	ArrayList<ArrayList<String>> other_domains = null;
 	
 	ArrayList<String> other_names = null;
 	
+	BestDomainPairs best_pairs = null;
+	
 	/**
 	 * 
 	 */
@@ -157,8 +162,89 @@ public class DomainFeatureCalculator {
 	}
 	
 	
+	/*
+	 * 
+	 * initializes global variables "other_names" and "other_domains" from an already parsed training set
+	 * 
+	 */
+	
+	public void parseRelevantDomains(boolean[] irrelevantPairs, TrainingSet trainingset) {
+		
+		other_domains = new ArrayList<ArrayList<String>>();
+		
+		other_names = new ArrayList<String>();
+		
+		for(int i=0; i<trainingset.size(); i++) {
+			
+			if(irrelevantPairs[i]) continue;
+			
+			other_names.add(trainingset.getNames().get(i));
+			
+			ArrayList<String> domaingroup = new ArrayList<String>();
+			
+			for(String domain: trainingset.getDomains().get(i)) {
+				
+				domaingroup.add(new StringTokenizer(domain).nextToken());
+				
+			}
+			
+			other_domains.add(domaingroup);
+		}
+	}
+	
+	
+	public ArrayList<String> get_other_names() {
+		return other_names;
+	}
+	
+	/*
+	 * 
+	 * best domain pairs of the last multi-feature computation, which included "SMBasedSimilarity" (or null)
+	 * 
+	 */
+	
+	public BestDomainPairs getBestDomainPairs() {
+		return best_pairs;
+	}
+	
+	
 	public void calculateDomainFeatureFile(String tfname, ArrayList<String> domains1, String featuretype, String[] params, String matrix, String outfile) {
 		
+		double[] scores = calculateDomainFeatures(domains1, featuretype, params, matrix);
+		
+		BufferedWriter bw = null;
+		
+		try {
+			
+			bw = new BufferedWriter(new FileWriter(new File(outfile)));
+			
+			for(int j=0; j<scores.length; j++) {
+				
+				bw.write(tfname + " vs. " + other_names.get(j) + " :\t" + scores[j] + "\n");
+				
+			}
+			
+			bw.flush();
+			bw.close();
+		
+		}
+		catch(IOException ioe) {
+			System.out.println(ioe.getMessage());
+			System.out.println("IOException occurred while comparing domains.");
+		}
+		
+	}
+	
+	
+	/*
+	 * 
+	 * returns the best domain score of the input tf vs. each relevant tf of the training set
+	 * (in the order of "other_names")
+	 * 
+	 */
+	
+	public double[] calculateDomainFeatures(ArrayList<String> domains1, String featuretype, String[] params, String matrix) {
+		
 	  if (progress!=null) {
 	    progress.DisplayBar();
 	  }
@@ -196,13 +282,10 @@ public class DomainFeatureCalculator {
 			
 		}
 		
-		BufferedWriter bw = null;
+		double[] scores = new double[other_domains.size()];
 		
 		try {			
 			
-			bw = new BufferedWriter(new FileWriter(new File(outfile)));
-			
-			
 			if(matrix != null) {
 				
 				aligner = new SequenceAligner(matrix, "NW");
@@ -246,12 +329,8 @@ public class DomainFeatureCalculator {
 						if(score > maxScore) maxScore = score;
 					}
 				}
-				bw.write(tfname + " vs. " + other_names.get(j) + " :\t" + maxScore + "\n");
+				scores[j] = maxScore;
 			}
-				
-			
-			bw.flush();
-			bw.close();
 		
 		}
 		catch(IOException ioe) {
@@ -263,10 +342,24 @@ public class DomainFeatureCalculator {
 			System.out.println("BioException occurred while comparing domains.");
 		}
 		
+		return scores;
 	}
 	
-	public void calculateAllDomainFeatures(String featuretype, String[] params, String matrix, String outfile, ArrayList<String> relevant_pairs) {
+	/*
+	 * 
+	 * multi-feature version of calculateDomainFeatures() for the substitution matrix based features
+	 * ("SequenceIdentity", "SMBasedIdentity", "SMBasedSimilarity"): each pair of domains is aligned only
+	 * once and all features are derived from this alignment, returns scores[feature][tf]
+	 * 
+	 */
+	
+	public double[][] calculateDomainFeatures(ArrayList<String> domains1, String[] featuretypes, String[][] params, String matrix) {
 		
+		if (progress!=null) {
+			for(int f=0; f<featuretypes.length; f++) {
+				progress.DisplayBar();
+			}
+		}
 		
 		if(other_names == null) {	
 			System.out.println("Fatal Error. Unable to calculate domain features. Global variable \"other_names\" was not initialized. Aborting.");
@@ -278,14 +371,32 @@ public class DomainFeatureCalculator {
 			System.exit(0);
 		}
 		
-		BufferedWriter bw = null;
 		
+		ArrayList<String> domains = new ArrayList<String>();
 		
-		try {
+		for(int i=0; i<domains1.size(); i++) {
 			
+			domains.add(new StringTokenizer(domains1.get(i)).nextToken());
 			
-			bw = new BufferedWriter(new FileWriter(new File(outfile)));
+		}
+		
+		ArrayList<String> all_domains = new ArrayList<String>();
+		if (predicted_domains) {
+			for(int i=0; i<domains.size(); i++) {
+				all_domains.add(domains.get(i));
+			}
+		}
+		
+		
+		for(int i=0; i<domains1.size(); i++) {
+			
+			domains.add(new StringTokenizer(domains1.get(i)).nextToken());
 			
+		}
+		
+		double[][] scores = new double[featuretypes.length][other_domains.size()];
+		
+		try {			
 			
 			if(matrix != null) {
 				
@@ -293,50 +404,191 @@ public class DomainFeatureCalculator {
 			
 			}
 			
+			double[] thresholds = getThresholds(featuretypes, params);
 			
-			double maxScore = 0.0;
-			double score = 0.0;	
+			double[] maxScores = new double[featuretypes.length];
+			double[] score = null;	
+			
+			// the SM-Score-maximizing domain pairs are recorded for the sequence features
+			int similarity = getSimilarityFeature(featuretypes);
+			int[] maxPair = new int[2];
+			
+			best_pairs = (similarity < 0) ? null : new BestDomainPairs(matrix, domains1, other_names);
 			
 			
 		/*
 		 * 
-		 * compare domains of all pairs of TFs in training set
+		 * compare domains of input tf vs. all relevant domains of training set
 		 * 
 		 */ 
 				
 			if(!silent) System.out.println("Comparing query" );
-			
-			for(int i=0; i<other_domains.size()-1; i++) { 
 				
-				for(int j=i+1; j<other_domains.size(); j++) {
-					
-					if (! relevant_pairs.contains(i + "_" + j)) continue;
+			for(int j=0; j<other_domains.size(); j++) {
 					
-					if(!silent) System.out.println("  with " + other_names.get(j) + ".");
+				if(!silent) System.out.println("  with " + other_names.get(j) + ".");
+				
+				for(int f=0; f<featuretypes.length; f++) {
+					maxScores[f] = Double.NEGATIVE_INFINITY; 
+				}
+				maxPair[0] = maxPair[1] = 0;
 				
-					maxScore = Double.NEGATIVE_INFINITY; 
+				if (predicted_domains) {
+					domains = new ArrayList<String>();
+					domains.add(all_domains.get(j));
+				}
 					
-					for(int k=0; k<other_domains.get(i).size(); k++) {
-						
-						for(int l=0; l<other_domains.get(j).size(); l++) {
-						
-							if (featuretype.equals("SequenceIdentity"))  	score = aligner.getSequenceSimilarity (other_domains.get(i).get(k), other_domains.get(j).get(l) );
-							if (featuretype.equals("SMBasedIdentity"))   	score = aligner.getSMBasedIdentity    (other_domains.get(i).get(k), other_domains.get(j).get(l), Double.parseDouble(params[0]) );
-							if (featuretype.equals("SMBasedSimilarity")) 	score = aligner.getSMBasedSimilarity  (other_domains.get(i).get(k), other_domains.get(j).get(l) );
-							if (featuretype.equals("LocalAlignmentKernel"))	score = aligner.getNormalizedLAKernel (other_domains.get(i).get(k), other_domains.get(j).get(l), params[0]);
-							if (featuretype.equals("MismatchKernel"))		score = aligner.getNormalizedMMKernel (other_domains.get(i).get(k), other_domains.get(j).get(l), Integer.parseInt(params[0]), Integer.parseInt(params[1]), basedir );
+				for(int k=0; k<domains.size(); k++) {
 						
+					for(int l=0; l<other_domains.get(j).size(); l++) {
 						
-						if(score > maxScore) maxScore = score;
+						score = getAlignmentScores(domains.get(k), other_domains.get(j).get(l), featuretypes, thresholds, aligner);
 						
+						if(similarity >= 0 && score[similarity] > maxScores[similarity]) {
+							maxPair[0] = k;
+							maxPair[1] = l;
+						}
 						
+						for(int f=0; f<featuretypes.length; f++) {
+							if(score[f] > maxScores[f]) maxScores[f] = score[f];
 						}
 					}
-					
-					bw.write(other_names.get(i) + " vs. " + other_names.get(j) + " :\t" + maxScore + "\n");
+				}
 				
+				for(int f=0; f<featuretypes.length; f++) {
+					scores[f][j] = maxScores[f];
 				}
+				
+				if(similarity >= 0) best_pairs.put(String.valueOf(j), maxPair[0], maxPair[1]);
+			}
+		
+		}
+		catch(IOException ioe) {
+			System.out.println(ioe.getMessage());
+			System.out.println("IOException occurred while comparing domains.");
+		}
+		catch(BioException bioe) {
+			System.out.println(bioe.getMessage());
+			System.out.println("BioException occurred while comparing domains.");
+		}
+		
+		return scores;
+	}
+	
+	
+	private int getSimilarityFeature(String[] featuretypes) {
+		
+		for(int f=0; f<featuretypes.length; f++) {
+			if (featuretypes[f].equals("SMBasedSimilarity")) return f;
+		}
+		return -1;
+	}
+	
+	
+	/*
+	 * 
+	 * thresholds of the "SMBasedIdentity" features (NaN for all other features)
+	 * 
+	 */
+	
+	private double[] getThresholds(String[] featuretypes, String[][] params) {
+		
+		double[] thresholds = new double[featuretypes.length];
+		
+		for(int f=0; f<featuretypes.length; f++) {
+			
+			if (featuretypes[f].equals("SMBasedIdentity")) 	thresholds[f] = Double.parseDouble(params[f][0]);
+			else 											thresholds[f] = Double.NaN;
+		}
+		return thresholds;
+	}
+	
+	
+	/*
+	 * 
+	 * scores of two domains for each of the given substitution matrix based features
+	 * 
+	 */
+	
+	private double[] getAlignmentScores(String domain1, String domain2, String[] featuretypes, double[] thresholds, SequenceAligner aligner) {
+		
+		double[] res = new double[featuretypes.length];
+		double[] identities = null;
+		
+		for(int f=0; f<featuretypes.length; f++) {
+			
+			if (featuretypes[f].equals("SMBasedSimilarity")) {
+				res[f] = aligner.getSMBasedSimilarity(domain1, domain2);
 			}
+			else if (featuretypes[f].equals("SequenceIdentity") || featuretypes[f].equals("SMBasedIdentity")) {
+				
+				// one alignment for all identity based features
+				if (identities == null) identities = aligner.getIdentityScores(domain1, domain2, thresholds);
+				
+				if (featuretypes[f].equals("SequenceIdentity"))	res[f] = identities[0];
+				else											res[f] = identities[f+1];
+			}
+			else {
+				System.out.println("Fatal Error. Feature type \"" + featuretypes[f] + "\" can not be derived from an alignment. Aborting.");
+				System.exit(0);
+			}
+		}
+		return res;
+	}
+	
+	
+	public void calculateAllDomainFeatures(final String featuretype, final String[] params, final String matrix, String outfile, PairSet relevant_pairs) {
+		
+		
+		if(other_names == null) {	
+			System.out.println("Fatal Error. Unable to calculate domain features. Global variable \"other_names\" was not initialized. Aborting.");
+			System.exit(0);
+		}
+		
+		if(other_domains == null) {	
+			System.out.println("Fatal Error. Unable to calculate domain features. Global variable \"other_domains\" was not initialized. Aborting.");
+			System.exit(0);
+		}
+		
+		BufferedWriter bw = null;
+		
+		
+		try {
+			
+			
+			bw = new BufferedWriter(new FileWriter(new File(outfile)));
+			
+			
+			if(matrix != null) {
+				
+				aligner = new SequenceAligner(matrix, "NW");
+			
+			}
+			
+			
+		/*
+		 * 
+		 * compare domains of all pairs of TFs in training set (each thread uses its own aligner)
+		 * 
+		 */ 
+				
+			if(!silent) System.out.println("Comparing query" );
+			
+			PairwiseFeatureEngine engine = new PairwiseFeatureEngine(num_threads);
+			
+			engine.calculateScores(relevant_pairs, new PairwiseFeatureEngine.PairScorerFactory() {
+				
+				public PairwiseFeatureEngine.PairScorer createScorer() throws IOException, BioException {
+					
+					final SequenceAligner curr_aligner = (matrix != null) ? new SequenceAligner(matrix, "NW") : aligner;
+					
+					return new PairwiseFeatureEngine.PairScorer() {
+						public double[] getScores(int i, int j) {
+							return new double[] {calculateMaxScore(other_domains.get(i), other_domains.get(j), featuretype, params, curr_aligner)};
+						}
+					};
+				}
+			}, new ScoreFileWriter(new BufferedWriter[] {bw}));
 			
 			bw.flush();
 			bw.close();
@@ -354,6 +606,185 @@ public class DomainFeatureCalculator {
 	}
 	
 	
+	/*
+	 * 
+	 * returns the best score of all pairs of domains of two training tfs
+	 * 
+	 */
+	
+	private double calculateMaxScore(ArrayList<String> domains1, ArrayList<String> domains2, String featuretype, String[] params, SequenceAligner aligner) {
+		
+		double maxScore = Double.NEGATIVE_INFINITY; 
+		double score = 0.0;	
+		
+		for(int k=0; k<domains1.size(); k++) {
+			
+			for(int l=0; l<domains2.size(); l++) {
+			
+				if (featuretype.equals("SequenceIdentity"))  	score = aligner.getSequenceSimilarity (domains1.get(k), domains2.get(l) );
+				if (featuretype.equals("SMBasedIdentity"))   	score = aligner.getSMBasedIdentity    (domains1.get(k), domains2.get(l), Double.parseDouble(params[0]) );
+				if (featuretype.equals("SMBasedSimilarity")) 	score = aligner.getSMBasedSimilarity  (domains1.get(k), domains2.get(l) );
+				if (featuretype.equals("LocalAlignmentKernel"))	score = aligner.getNormalizedLAKernel (domains1.get(k), domains2.get(l), params[0]);
+				if (featuretype.equals("MismatchKernel"))		score = aligner.getNormalizedMMKernel (domains1.get(k), domains2.get(l), Integer.parseInt(params[0]), Integer.parseInt(params[1]), basedir );
+				
+				if(score > maxScore) maxScore = score;
+			}
+		}
+		return maxScore;
+	}
+	
+	
+	/*
+	 * 
+	 * writes the scores of each pair of training tfs to the feature files (one file per feature)
+	 * 
+	 */
+	
+	class ScoreFileWriter implements PairwiseFeatureEngine.PairScoreWriter {
+		
+		BufferedWriter[] bw;
+		
+		ScoreFileWriter(BufferedWriter[] bw) {
+			this.bw = bw;
+		}
+		
+		public void write(int i, int j, double[] scores) throws IOException {
+			
+			if(!silent) System.out.println("  with " + other_names.get(j) + ".");
+			
+			for(int f=0; f<bw.length; f++) {
+				bw[f].write(other_names.get(i) + " vs. " + other_names.get(j) + " :\t" + scores[f] + "\n");
+			}
+		}
+	}
+	
+	
+	/*
+	 * 
+	 * multi-feature version of calculateAllDomainFeatures() (see above), 
+	 * writes the scores of featuretypes[f] to outfiles[f]
+	 * 
+	 */
+	
+	public void calculateAllDomainFeatures(final String[] featuretypes, String[][] params, final String matrix, String[] outfiles, PairSet relevant_pairs) {
+		
+		
+		if(other_names == null) {	
+			System.out.println("Fatal Error. Unable to calculate domain features. Global variable \"other_names\" was not initialized. Aborting.");
+			System.exit(0);
+		}
+		
+		if(other_domains == null) {	
+			System.out.println("Fatal Error. Unable to calculate domain features. Global variable \"other_domains\" was not initialized. Aborting.");
+			System.exit(0);
+		}
+		
+		BufferedWriter[] bw = new BufferedWriter[featuretypes.length];
+		
+		
+		try {
+			
+			for(int f=0; f<featuretypes.length; f++) {
+				bw[f] = new BufferedWriter(new FileWriter(new File(outfiles[f])));
+			}
+			
+			
+			if(matrix != null) {
+				
+				aligner = new SequenceAligner(matrix, "NW");
+			
+			}
+			
+			final double[] thresholds = getThresholds(featuretypes, params);
+			
+			// the SM-Score-maximizing domain pairs are recorded for the sequence features
+			final int similarity = getSimilarityFeature(featuretypes);
+			
+			best_pairs = (similarity < 0) ? null : new BestDomainPairs(matrix, null, other_names);
+			
+			
+		/*
+		 * 
+		 * compare domains of all pairs of TFs in training set (each thread uses its own aligner)
+		 * 
+		 */ 
+				
+			if(!silent) System.out.println("Comparing query" );
+			
+			PairwiseFeatureEngine engine = new PairwiseFeatureEngine(num_threads);
+			
+			engine.calculateScores(relevant_pairs, new PairwiseFeatureEngine.PairScorerFactory() {
+				
+				public PairwiseFeatureEngine.PairScorer createScorer() throws IOException, BioException {
+					
+					final SequenceAligner curr_aligner = (matrix != null) ? new SequenceAligner(matrix, "NW") : aligner;
+					
+					return new PairwiseFeatureEngine.PairScorer() {
+						public double[] getScores(int i, int j) {
+							return calculateMaxScores(i, j, featuretypes, thresholds, similarity, curr_aligner);
+						}
+					};
+				}
+			}, new ScoreFileWriter(bw));
+			
+			for(int f=0; f<featuretypes.length; f++) {
+				bw[f].flush();
+				bw[f].close();
+			}
+		
+		}
+		catch(IOException ioe) {
+			System.out.println(ioe.getMessage());
+			System.out.println("IOException occurred while comparing domains.");
+		}
+		catch(BioException bioe) {
+			System.out.println(bioe.getMessage());
+			System.out.println("BioException occurred while comparing domains.");
+		}
+		
+	}
+	
+	
+	/*
+	 * 
+	 * returns the best scores of all pairs of domains of the training tfs i and j 
+	 * and records the SM-Score-maximizing domain pair
+	 * 
+	 */
+	
+	private double[] calculateMaxScores(int i, int j, String[] featuretypes, double[] thresholds, int similarity, SequenceAligner aligner) {
+		
+		double[] maxScores = new double[featuretypes.length];
+		double[] score = null;
+		int[] maxPair = new int[2];
+		
+		for(int f=0; f<featuretypes.length; f++) {
+			maxScores[f] = Double.NEGATIVE_INFINITY; 
+		}
+		
+		for(int k=0; k<other_domains.get(i).size(); k++) {
+			
+			for(int l=0; l<other_domains.get(j).size(); l++) {
+			
+				score = getAlignmentScores(other_domains.get(i).get(k), other_domains.get(j).get(l), featuretypes, thresholds, aligner);
+				
+				if(similarity >= 0 && score[similarity] > maxScores[similarity]) {
+					maxPair[0] = k;
+					maxPair[1] = l;
+				}
+				
+				for(int f=0; f<featuretypes.length; f++) {
+					if(score[f] > maxScores[f]) maxScores[f] = score[f];
+				}
+			}
+		}
+		
+		if(similarity >= 0) best_pairs.put(i + "_" + j, maxPair[0], maxPair[1]);
+		
+		return maxScores;
+	}
+	
+	
 	public int getTrainingSetSize(String class_id, String train_dir) {
         
 		String line = null;
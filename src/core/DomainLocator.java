@@ -0,0 +1,178 @@
+/*
+    SABINE predicts binding specificities of transcription factors.
+    Copyright (C) 2009 ZBIT, University of Tübingen, Johannes Eichner
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package core;
+
+import java.util.Arrays;
+
+
+/*
+ *
+ * localizes the DNA-binding domain of a protein sequence (query) by local alignments with the
+ * domains of a training set
+ *
+ * the k-mers shared by the query and the indexed domains are used as seeds: for each domain,
+ * the window of diagonals (domain position - query position) containing the most seeds is
+ * determined and the Smith-Waterman alignment is only computed in a band around this window
+ *
+ */
+public class DomainLocator {
+
+	/*
+	 * the seeds of a domain are searched in a window of max(maxSeedSpread, relativeSpread * domain length)
+	 * diagonals and the band is extended by max(bandWidth, relativeBandWidth * domain length) diagonals
+	 * on both sides (alignments with long domains accumulate more gaps)
+	 */
+	public static int maxSeedSpread = 32;
+	public static double relativeSpread = 0.5;
+
+	public static int bandWidth = 16;
+	public static double relativeBandWidth = 0.25;
+
+	// minimal number of seeds of a domain, which is aligned
+	public static int minSeeds = 2;
+
+	String query = null;
+
+	KmerIndex domain_index = null;
+
+	SequenceAligner aligner = null;
+
+	// band of diagonals of each indexed domain (min_diags[d] > max_diags[d]: no seeds)
+	int[] min_diags;
+	int[] max_diags;
+
+
+	/*
+	 * the aligner has to compute Smith-Waterman alignments with BLOSUM_62 (see FBPPredictor)
+	 */
+	public DomainLocator(String query, KmerIndex domain_index, SequenceAligner aligner) {
+
+		this.query = query;
+		this.domain_index = domain_index;
+		this.aligner = aligner;
+
+		findSeeds();
+	}
+
+
+	private void findSeeds() {
+
+		int num_domains = domain_index.size();
+
+		int[] kmers = KmerIndex.encode(query, domain_index.getK());
+
+		/*
+		 * collect the diagonals of all shared k-mers for each domain
+		 */
+
+		int[] num_seeds = new int[num_domains];
+
+		for (int kmer: kmers) {
+
+			int[] occurrences = (kmer < 0) ? null : domain_index.getOccurrences(kmer);
+
+			if (occurrences == null) continue;
+
+			for (int i=0; i<occurrences.length; i+=2) {
+				num_seeds[occurrences[i]]++;
+			}
+		}
+
+		int[][] diagonals = new int[num_domains][];
+
+		for (int d=0; d<num_domains; d++) {
+			diagonals[d] = new int[num_seeds[d]];
+			num_seeds[d] = 0;
+		}
+
+		for (int pos=0; pos<kmers.length; pos++) {
+
+			int[] occurrences = (kmers[pos] < 0) ? null : domain_index.getOccurrences(kmers[pos]);
+
+			if (occurrences == null) continue;
+
+			for (int i=0; i<occurrences.length; i+=2) {
+
+				int d = occurrences[i];
+				diagonals[d][num_seeds[d]++] = occurrences[i+1] - pos;
+			}
+		}
+
+		/*
+		 * find the window of diagonals with the most seeds for each domain
+		 */
+
+		min_diags = new int[num_domains];
+		max_diags = new int[num_domains];
+
+		for (int d=0; d<num_domains; d++) {
+
+			int[] curr_diags = diagonals[d];
+			Arrays.sort(curr_diags);
+
+			int length = domain_index.getSequences()[d].length();
+			int spread = Math.max(maxSeedSpread, (int) (relativeSpread * length));
+			int width = Math.max(bandWidth, (int) (relativeBandWidth * length));
+
+			int best_count = 0;
+			int first = 0;
+
+			min_diags[d] = 1;
+			max_diags[d] = 0;
+
+			for (int last=0; last<curr_diags.length; last++) {
+
+				while (curr_diags[last] - curr_diags[first] > spread) {
+					first++;
+				}
+
+				if (last - first + 1 > best_count) {
+					best_count = last - first + 1;
+
+					if (best_count >= minSeeds) {
+						min_diags[d] = curr_diags[first] - width;
+						max_diags[d] = curr_diags[last] + width;
+					}
+				}
+			}
+		}
+	}
+
+
+	/*
+	 * returns the normalized Smith-Waterman score of the query and the given domain and stores the
+	 * matching region of the query in region (see SequenceAligner.getMatchingRegionAndScore())
+	 *
+	 * exhaustive = false: only the band around the seeds is aligned (NEGATIVE_INFINITY: no seeds)
+	 * exhaustive = true or domain not indexed: the full alignment is computed
+	 */
+	public double getMatchingRegionAndScore(String domain, int[] region, boolean exhaustive) {
+
+		int d = domain_index.indexOf(domain);
+
+		if (exhaustive || d < 0) {
+			return aligner.getMatchingRegionAndScore(query, domain, -query.length(), domain.length(), region);
+		}
+
+		if (min_diags[d] > max_diags[d]) {
+			return Double.NEGATIVE_INFINITY;
+		}
+		return aligner.getMatchingRegionAndScore(query, domain, min_diags[d], max_diags[d], region);
+	}
+}
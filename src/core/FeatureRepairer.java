@@ -143,6 +143,31 @@ public class FeatureRepairer {
 		
 	}
 	
+	/*
+	 * 
+	 * repairs a feature matrix (rows = tf pairs, columns = features) in place
+	 * 
+	 */
+	public void repairFeatureMatrix(double[][] features) {
+		
+		boolean repaired = false;
+		
+		for(int i=0; i<features.length; i++) {
+			
+			for(int j=0; j<features[i].length; j++) {
+				
+				if(features[i][j] == Double.POSITIVE_INFINITY) { features[i][j] =  100.0; repaired = true; }
+				if(features[i][j] == Double.NEGATIVE_INFINITY) { features[i][j] = -100.0; repaired = true; }
+				if(Double.isNaN(features[i][j])) 			   { features[i][j] = 	0.0; repaired = true; }
+				
+			}
+		}
+		
+		if(repaired && !silent) System.out.println("  Repaired numerical instabilities in feature matrix.");
+		
+	}
+	
+	
 	public static void main(String[] args) {
 		
 		String test_dir = "/rahome/eichner/sabine_project/SABINE_instances/basedir1/relevantpairs";
@@ -89,5 +89,24 @@ public class IrrelevantPairIdentifier {
 		
 	}
 	
+	
+	/*
+	 * 
+	 * in-memory variant: "scores" contains the BLOSUM-scores of the query vs. all tfs of the training set 
+	 * 
+	 */
+	public boolean[] identifyIrrelevantPairs(double[] scores, double relevance_threshold) {
+		
+		boolean[] irrelevantPairs = new boolean[scores.length];
+		
+		for(int i=0; i<scores.length; i++) {
+			
+			irrelevantPairs[i] = scores[i] < relevance_threshold;
+			
+		}
+		
+		return irrelevantPairs;
+		
+	}
+	
 }
-
@@ -0,0 +1,258 @@
+/*
+    SABINE predicts binding specificities of transcription factors.
+    Copyright (C) 2009 ZBIT, University of Tübingen, Johannes Eichner
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+
+
+/*
+ *
+ * inverted index of the k-mers of a set of protein sequences (k-mer -> occurrences in the
+ * sequences), which is used to shortlist the sequences sharing the most k-mers with a query
+ * before the expensive alignments are computed
+ *
+ * k-mers are encoded as integers (5 bits per residue, so k <= 6); k-mers containing other
+ * characters than letters are skipped
+ *
+ */
+public class KmerIndex {
+
+	public static final int defaultK = 3;
+
+	int k;
+
+	String[] sequences;
+
+	// k-mer -> occurrences (sequence index, position) in the order of the sequences and positions
+	HashMap<Integer, int[]> postings = new HashMap<Integer, int[]>();
+
+	// number of distinct k-mers of each sequence
+	int[] num_kmers;
+
+	// sequence -> index (first occurrence)
+	HashMap<String, Integer> sequence_ids = new HashMap<String, Integer>();
+
+
+	public KmerIndex(String[] sequences, int k) {
+
+		if (k < 1 || k > 6) {
+			throw new IllegalArgumentException("Invalid k-mer length: " + k);
+		}
+		this.k = k;
+		this.sequences = sequences;
+
+		this.num_kmers = new int[sequences.length];
+
+		HashMap<Integer, ArrayList<Integer>> occurrences = new HashMap<Integer, ArrayList<Integer>>();
+
+		for (int s=0; s<sequences.length; s++) {
+
+			if (! sequence_ids.containsKey(sequences[s])) {
+				sequence_ids.put(sequences[s], s);
+			}
+
+			int[] kmers = encode(sequences[s], k);
+
+			num_kmers[s] = countDistinctKmers(kmers);
+
+			for (int pos=0; pos<kmers.length; pos++) {
+
+				if (kmers[pos] < 0) continue;
+
+				ArrayList<Integer> curr_occurrences = occurrences.get(kmers[pos]);
+
+				if (curr_occurrences == null) {
+					curr_occurrences = new ArrayList<Integer>();
+					occurrences.put(kmers[pos], curr_occurrences);
+				}
+				curr_occurrences.add(s);
+				curr_occurrences.add(pos);
+			}
+		}
+
+		for (Integer kmer: occurrences.keySet()) {
+
+			ArrayList<Integer> curr_occurrences = occurrences.get(kmer);
+			int[] res = new int[curr_occurrences.size()];
+
+			for (int i=0; i<res.length; i++) {
+				res[i] = curr_occurrences.get(i);
+			}
+			postings.put(kmer, res);
+		}
+	}
+
+
+	public int getK() {
+		return k;
+	}
+
+	/*
+	 * indexed sequences (must not be modified)
+	 */
+	public String[] getSequences() {
+		return sequences;
+	}
+
+	public int size() {
+		return sequences.length;
+	}
+
+	/*
+	 * index of the given sequence (-1: not indexed)
+	 */
+	public int indexOf(String seq) {
+
+		Integer res = sequence_ids.get(seq);
+
+		return (res == null) ? -1 : res;
+	}
+
+
+	/*
+	 * occurrences of the given k-mer as pairs (sequence index, position), or null
+	 */
+	int[] getOccurrences(int kmer) {
+		return postings.get(kmer);
+	}
+
+
+	/*
+	 * returns the number of distinct k-mers of the query, which occur in each indexed sequence
+	 */
+	public int[] countSharedKmers(String query) {
+
+		int[] res = new int[sequences.length];
+
+		HashSet<Integer> query_kmers = new HashSet<Integer>();
+
+		for (int kmer: encode(query, k)) {
+
+			if (kmer < 0 || !query_kmers.add(kmer)) continue;
+
+			int[] occurrences = postings.get(kmer);
+
+			if (occurrences == null) continue;
+
+			for (int i=0; i<occurrences.length; i+=2) {
+
+				// count each sequence once per k-mer
+				if (i == 0 || occurrences[i] != occurrences[i-2]) {
+					res[occurrences[i]]++;
+				}
+			}
+		}
+		return res;
+	}
+
+
+	/*
+	 * returns the indices of the (at most) num sequences with the highest k-mer similarity to the query
+	 * (Dice coefficient of the sets of k-mers, which like the normalized alignment score does not favor
+	 * long sequences; ties are resolved by the index) in ascending order
+	 */
+	public int[] getCandidates(String query, int num) {
+
+		if (num >= sequences.length) {
+
+			int[] res = new int[sequences.length];
+
+			for (int i=0; i<res.length; i++) {
+				res[i] = i;
+			}
+			return res;
+		}
+
+		int[] shared = countSharedKmers(query);
+		int num_query_kmers = countDistinctKmers(encode(query, k));
+
+		final double[] similarities = new double[sequences.length];
+
+		for (int i=0; i<sequences.length; i++) {
+			similarities[i] = 2.0 * shared[i] / Math.max(1, num_query_kmers + num_kmers[i]);
+		}
+
+		Integer[] order = new Integer[sequences.length];
+
+		for (int i=0; i<order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return (similarities[a] != similarities[b]) ? Double.compare(similarities[b], similarities[a]) : a - b;
+			}
+		});
+
+		int[] res = new int[Math.max(0, num)];
+
+		for (int i=0; i<res.length; i++) {
+			res[i] = order[i];
+		}
+		Arrays.sort(res);
+
+		return res;
+	}
+
+
+	private static int countDistinctKmers(int[] kmers) {
+
+		HashSet<Integer> res = new HashSet<Integer>();
+
+		for (int kmer: kmers) {
+			if (kmer >= 0) res.add(kmer);
+		}
+		return res.size();
+	}
+
+
+	/*
+	 * codes of the k-mers starting at each position of the sequence (-1: invalid k-mer)
+	 */
+	public static int[] encode(String seq, int k) {
+
+		int[] res = new int[Math.max(0, seq.length() - k + 1)];
+
+		int kmer = 0;
+		int valid = 0;		// number of valid characters at the end of the current k-mer
+		int mask = (1 << (5 * k)) - 1;
+
+		for (int i=0; i<seq.length(); i++) {
+
+			char c = Character.toUpperCase(seq.charAt(i));
+
+			if (c >= 'A' && c <= 'Z') {
+				kmer = ((kmer << 5) | (c - 'A' + 1)) & mask;
+				valid++;
+			}
+			else {
+				kmer = 0;
+				valid = 0;
+			}
+
+			if (i >= k-1) {
+				res[i-k+1] = (valid >= k) ? kmer : -1;
+			}
+		}
+		return res;
+	}
+}
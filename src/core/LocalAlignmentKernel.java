@@ -0,0 +1,214 @@
+/*
+    SABINE predicts binding specificities of transcription factors.
+    Copyright (C) 2009 ZBIT, University of Tübingen, Johannes Eichner
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package core;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.StringTokenizer;
+
+
+/*
+ *
+ * Java port of the local alignment kernel of Saigo et al. (lib/LAKernel/LAkernel.c),
+ * which replaces one call of LAkernel_direct per sequence pair
+ *
+ * as in the compiled binary, the log-sum of the kernel is replaced by the maximum and all
+ * DP values are integers scaled by 1000, so the returned scores are identical to the
+ * (5-digit) output of LAkernel_direct
+ *
+ */
+public class LocalAlignmentKernel {
+
+	private static final int LOG0 = -100000000;
+	private static final double INTSCALE = 1000.0;
+
+	private static final String aaList = "ARNDCQEGHILKMFPSTWYV";
+	private static final int NAA = 20;
+
+	// one kernel per parameter file
+	private static HashMap<String, LocalAlignmentKernel> kernels = new HashMap<String, LocalAlignmentKernel>();
+
+	// scaled lower triangle of the substitution matrix
+	double[] params = new double[NAA*(NAA+1)/2];
+
+	// scaled gap penalties
+	int opening, extension;
+
+	// index of each amino acid (-1 = skipped)
+	int[] aaIndex = new int[256];
+
+
+	/*
+	 * returns the kernel of the given parameter file (read on first access)
+	 */
+	public static synchronized LocalAlignmentKernel getKernel(String paramfile) throws IOException {
+
+		LocalAlignmentKernel kernel = kernels.get(paramfile);
+
+		if (kernel == null) {
+			kernel = new LocalAlignmentKernel(paramfile);
+			kernels.put(paramfile, kernel);
+		}
+		return kernel;
+	}
+
+
+	public LocalAlignmentKernel(String paramfile) throws IOException {
+
+		ArrayList<Double> values = new ArrayList<Double>();
+
+		BufferedReader br = new BufferedReader(new FileReader(new File(paramfile)));
+
+		String line;
+		while ((line = br.readLine()) != null) {
+
+			StringTokenizer strtok = new StringTokenizer(line);
+			while (strtok.hasMoreTokens()) {
+				values.add(Double.parseDouble(strtok.nextToken()));
+			}
+		}
+		br.close();
+
+		if (values.size() < params.length + 3) {
+			throw new IOException("Invalid parameter file for local alignment kernel: " + paramfile);
+		}
+
+		double beta = values.get(params.length);
+		double gopn = values.get(params.length + 1);
+		double gext = values.get(params.length + 2);
+
+		for (int i=0; i<params.length; i++) {
+			params[i] = values.get(i) * (beta * INTSCALE);
+		}
+		opening = (int) (gopn * beta * INTSCALE);
+		extension = (int) (gext * beta * INTSCALE);
+
+		for (int c=0; c<aaIndex.length; c++) {
+			aaIndex[c] = -1;
+		}
+		for (int i=0; i<NAA; i++) {
+			aaIndex[aaList.charAt(i)] = i;
+			aaIndex[Character.toLowerCase(aaList.charAt(i))] = i;
+		}
+	}
+
+
+	/*
+	 * converts a sequence into amino acid indices (characters which are no amino acids are skipped)
+	 */
+	private int[] encode(String seq) {
+
+		int[] res = new int[seq.length()];
+		int len = 0;
+
+		for (int i=0; i<seq.length(); i++) {
+
+			char c = seq.charAt(i);
+
+			if (c < aaIndex.length && aaIndex[c] >= 0) {
+				res[len++] = aaIndex[c];
+			}
+		}
+
+		int[] encoded = new int[len];
+		System.arraycopy(res, 0, encoded, 0, len);
+
+		return encoded;
+	}
+
+
+	private static int index(int i, int j) {
+		return (i > j) ? j + (i*(i+1))/2 : i + (j*(j+1))/2;
+	}
+
+
+	private static int max(int x, int y) {
+		return (x > y) ? x : y;
+	}
+
+
+	public double getScore(String seq1, String seq2) {
+
+		int[] aaX = encode(seq1);
+		int[] aaY = encode(seq2);
+
+		int nX = aaX.length;
+		int nY = aaY.length;
+		int cl = nY+1;
+
+		int[] logM  = new int[2*cl];
+		int[] logX  = new int[2*cl];
+		int[] logY  = new int[2*cl];
+		int[] logX2 = new int[2*cl];
+		int[] logY2 = new int[2*cl];
+
+		for (int j=0; j<cl; j++) {
+			logM[j] = logX[j] = logY[j] = logX2[j] = logY2[j] = LOG0;
+		}
+
+		int cur = 1;
+		int old = 0;
+
+		for (int i=1; i<=nX; i++) {
+
+			int curpos = cur*cl;
+			logM[curpos] = logX[curpos] = logY[curpos] = logX2[curpos] = logY2[curpos] = LOG0;
+
+			for (int j=1; j<=nY; j++) {
+
+				curpos = cur*cl + j;
+
+				// states which emit X only
+				int frompos = old*cl + j;
+
+				logX[curpos] = max(- opening + logM[frompos], - extension + logX[frompos]);
+				logX2[curpos] = max(logM[frompos], logX2[frompos]);
+
+				// states which emit Y only
+				frompos = cur*cl + j-1;
+
+				int aux = max(- opening + logM[frompos], - extension + logY[frompos]);
+				logY[curpos] = max(aux, - opening + logX[frompos]);
+
+				aux = max(logM[frompos], logY2[frompos]);
+				logY2[curpos] = max(aux, logX2[frompos]);
+
+				// states which emit X and Y
+				frompos = old*cl + j-1;
+
+				aux = max(logX[frompos], logY[frompos]);
+				int aux2 = max(0, logM[frompos]);
+				logM[curpos] = (int) (max(aux, aux2) + params[index(aaX[i-1], aaY[j-1])]);
+			}
+
+			cur = 1-cur;
+			old = 1-old;
+		}
+
+		int curpos = old*cl + nY;
+		int aux = max(logX2[curpos], logY2[curpos]);
+		int aux2 = max(0, logM[curpos]);
+
+		return max(aux, aux2) / INTSCALE;
+	}
+}
@@ -0,0 +1,259 @@
+/*
+    SABINE predicts binding specificities of transcription factors.
+    Copyright (C) 2009 ZBIT, University of Tübingen, Johannes Eichner
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/*
+ *
+ * (k,m)-mismatch string kernel of Leslie et al., which replaces the string-kernel
+ * binary in lib/MismatchKernel/
+ *
+ * each sequence is mapped to a sparse vector, which counts for each k-mer over the
+ * alphabet of string-kernel (lib/MismatchKernel/data/Amino.txt) the k-mers of the
+ * sequence with at most m mismatches; the kernel is the dot product of two vectors
+ *
+ * vectors of training domains are kept for all further predictions, vectors
+ * of other sequences only for a few subsequent calls; the vectors are computed
+ * outside of any lock, so concurrent callers do not wait for each other
+ *
+ */
+public class MismatchKernel {
+
+	// input symbols of string-kernel
+	private static final String alphabet = "ABCDEFGHIKLMNPQRSTVWXYZ";
+
+	private static final int maxCachedQueries = 64;
+
+	// one kernel per (k,m)
+	private static HashMap<String, MismatchKernel> kernels = new HashMap<String, MismatchKernel>();
+
+	int k, m;
+
+	int[] codes = new int[128];
+
+	ConcurrentHashMap<String, KmerVector> training_vectors = new ConcurrentHashMap<String, KmerVector>();
+
+	LinkedHashMap<String, KmerVector> query_vectors = new LinkedHashMap<String, KmerVector>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<String, KmerVector> eldest) {
+			return size() > maxCachedQueries;
+		}
+	};
+
+
+	/*
+	 * sparse vector (sorted k-mer indices and counts) and its dot product with itself
+	 */
+	static class KmerVector {
+
+		long[] kmers;
+		int[] counts;
+		double self_kernel;
+	}
+
+
+	public static synchronized MismatchKernel getKernel(int k, int m) {
+
+		MismatchKernel kernel = kernels.get(k + "_" + m);
+
+		if (kernel == null) {
+			kernel = new MismatchKernel(k, m);
+			kernels.put(k + "_" + m, kernel);
+		}
+		return kernel;
+	}
+
+
+	public MismatchKernel(int k, int m) {
+
+		this.k = k;
+		this.m = m;
+
+		for (int c=0; c<codes.length; c++) {
+			codes[c] = -1;
+		}
+		for (int i=0; i<alphabet.length(); i++) {
+			codes[alphabet.charAt(i)] = i;
+		}
+	}
+
+
+	/*
+	 * returns the normalized kernel k(x,y) / sqrt(k(x,x) * k(y,y))
+	 */
+	public double getNormalizedKernel(String seq1, String seq2) {
+
+		KmerVector vec1 = getVector(seq1);
+		KmerVector vec2 = getVector(seq2);
+
+		return dot(vec1, vec2) / Math.sqrt(vec1.self_kernel * vec2.self_kernel);
+	}
+
+
+	public double getScore(String seq1, String seq2) {
+
+		return dot(getVector(seq1), getVector(seq2));
+	}
+
+
+	/*
+	 * computes and caches the vectors of the given training domains in advance
+	 */
+	public void precompute(Iterable<String> seqs) {
+
+		for (String seq: seqs) {
+			getVector(seq);
+		}
+	}
+
+
+	private KmerVector getVector(String seq) {
+
+		KmerVector vec = training_vectors.get(seq);
+
+		if (vec != null) {
+			return vec;
+		}
+
+		synchronized (query_vectors) {
+			vec = query_vectors.get(seq);
+		}
+
+		if (vec != null) {
+			return vec;
+		}
+
+		// two threads may compute the same vector, the first one is kept
+		vec = createVector(seq);
+
+		if (SelfScoreCache.isTrainingDomain(seq)) {
+			KmerVector prev = training_vectors.putIfAbsent(seq, vec);
+
+			if (prev != null) {
+				vec = prev;
+			}
+		}
+		else {
+			synchronized (query_vectors) {
+				query_vectors.put(seq, vec);
+			}
+		}
+		return vec;
+	}
+
+
+	private KmerVector createVector(String seq) {
+
+		HashMap<Long, Integer> counts = new HashMap<Long, Integer>();
+
+		int[] kmer = new int[k];
+
+		for (int start=0; start+k<=seq.length(); start++) {
+
+			boolean valid = true;
+
+			for (int i=0; i<k; i++) {
+
+				char c = seq.charAt(start+i);
+
+				if (c >= codes.length || codes[c] < 0) {
+					valid = false;			// k-mers with unsupported characters are skipped
+					break;
+				}
+				kmer[i] = codes[c];
+			}
+
+			if (valid) {
+				addNeighborhood(kmer, 0, 0, 0, counts);
+			}
+		}
+
+		KmerVector vec = new KmerVector();
+
+		vec.kmers = new long[counts.size()];
+		vec.counts = new int[counts.size()];
+
+		int pos = 0;
+		for (Long index: counts.keySet()) {
+			vec.kmers[pos++] = index;
+		}
+		Arrays.sort(vec.kmers);
+
+		for (int i=0; i<vec.kmers.length; i++) {
+			vec.counts[i] = counts.get(vec.kmers[i]);
+		}
+		vec.self_kernel = dot(vec, vec);
+
+		return vec;
+	}
+
+
+	/*
+	 * counts all k-mers, which differ from the given k-mer in at most m positions
+	 */
+	private void addNeighborhood(int[] kmer, int pos, long prefix, int mismatches, HashMap<Long, Integer> counts) {
+
+		if (pos == k) {
+			Integer count = counts.get(prefix);
+			counts.put(prefix, (count == null) ? 1 : count + 1);
+			return;
+		}
+
+		for (int symbol=0; symbol<alphabet.length(); symbol++) {
+
+			if (symbol == kmer[pos]) {
+				addNeighborhood(kmer, pos+1, prefix * alphabet.length() + symbol, mismatches, counts);
+			}
+			else if (mismatches < m) {
+				addNeighborhood(kmer, pos+1, prefix * alphabet.length() + symbol, mismatches+1, counts);
+			}
+		}
+	}
+
+
+	private static double dot(KmerVector vec1, KmerVector vec2) {
+
+		long res = 0;
+
+		int i = 0;
+		int j = 0;
+
+		while (i < vec1.kmers.length && j < vec2.kmers.length) {
+
+			if (vec1.kmers[i] < vec2.kmers[j]) {
+				i++;
+			}
+			else if (vec1.kmers[i] > vec2.kmers[j]) {
+				j++;
+			}
+			else {
+				res += (long) vec1.counts[i++] * vec2.counts[j++];
+			}
+		}
+		return res;
+	}
+}
@@ -0,0 +1,341 @@
+/*
+    SABINE predicts binding specificities of transcription factors.
+    Copyright (C) 2009 ZBIT, University of Tübingen, Johannes Eichner
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.StringTokenizer;
+
+import main.PredictionException;
+import optimization.MoStaSimilarity;
+
+
+/*
+ *
+ * library of the PFMs of a file (e.g. "FBPs_<class>.out", lines: "DE\t<name>", matrix rows
+ * in STAMP format "<pos> <A> <C> <G> <T> ...", "XX"), which is read once and can then be
+ * shared by all predictions, the label files and the evaluation
+ *
+ * each PFM is kept as parsed rows (unchanged lines of the file) and in numeric form
+ * (double[length][4], columns A, C, G, T), and can be looked up by the name of its factor
+ *
+ * optionally, the library is stored in a binary snapshot ("<file>.bin"), which is used
+ * instead of the text file as long as it is not older than the text file
+ *
+ */
+public class PFMLibrary {
+
+	public static final String binarySuffix = ".bin";
+
+	private static final int magic = 0x5342504c;		// "SBPL"
+
+	// path of the file -> library
+	private static HashMap<String, PFMLibrary> libraries = new HashMap<String, PFMLibrary>();
+
+	String pfmfile = null;
+
+	long last_modified = 0;
+
+	ArrayList<String> names = new ArrayList<String>();
+
+	ArrayList<ArrayList<String>> rows = new ArrayList<ArrayList<String>>();
+
+	ArrayList<double[][]> matrices = new ArrayList<double[][]>();
+
+	HashMap<String, Integer> name_index = new HashMap<String, Integer>();
+
+
+	private PFMLibrary(String pfmfile) {
+		this.pfmfile = pfmfile;
+	}
+
+
+	/*
+	 * returns the library of the given file, which is read again, if the file has changed
+	 */
+	public static synchronized PFMLibrary getLibrary(String pfmfile) {
+
+		String key = new File(pfmfile).getAbsolutePath();
+
+		PFMLibrary res = libraries.get(key);
+
+		if (res != null && res.last_modified == new File(pfmfile).lastModified()) {
+			return res;
+		}
+		res = load(pfmfile);
+		libraries.put(key, res);
+
+		return res;
+	}
+
+
+	/*
+	 * reads the binary snapshot of the given file (if it is up to date) or the file itself,
+	 * a damaged snapshot is discarded and the file is read instead
+	 */
+	public static PFMLibrary load(String pfmfile) {
+
+		File textfile = new File(pfmfile);
+		File binfile = new File(pfmfile + binarySuffix);
+
+		PFMLibrary res = new PFMLibrary(pfmfile);
+		res.last_modified = textfile.lastModified();
+
+		if (binfile.exists() && (!textfile.exists() || binfile.lastModified() >= textfile.lastModified())) {
+			try {
+				res.readSnapshot(binfile.getPath());
+				return res;
+			}
+			catch(IOException ioe) {
+				System.out.println(ioe.getMessage());
+				System.out.println("IOException occurred while reading PFMs from " + binfile.getPath() + ". Reading " + pfmfile + " instead.");
+			}
+			res = new PFMLibrary(pfmfile);
+			res.last_modified = textfile.lastModified();
+		}
+
+		try {
+			res.parseTextFile(pfmfile);
+		}
+		catch(IOException ioe) {
+			System.out.println(ioe.getMessage());
+			System.out.println("IOException occurred while reading PFMs from " + pfmfile + ".");
+
+			// no partial library, which is read again on the next access
+			res = new PFMLibrary(pfmfile);
+			res.last_modified = -1;
+		}
+		return res;
+	}
+
+
+	public int size() {
+		return names.size();
+	}
+
+	public boolean contains(String name) {
+		return name_index.containsKey(name);
+	}
+
+	public int indexOf(String name) {
+
+		Integer res = name_index.get(name);
+
+		return (res == null) ? -1 : res;
+	}
+
+
+	/*
+	 * names of the factors in the order of the file (must not be modified)
+	 */
+	public ArrayList<String> getNames() {
+		return names;
+	}
+
+	/*
+	 * rows of all PFMs in the order of the file (must not be modified)
+	 */
+	public ArrayList<ArrayList<String>> getAllRows() {
+		return rows;
+	}
+
+	/*
+	 * numeric PFMs in the order of the file (must not be modified)
+	 */
+	public ArrayList<double[][]> getAllMatrices() {
+		return matrices;
+	}
+
+	/*
+	 * returns a copy of the rows of the PFM of the given factor (or null)
+	 */
+	public ArrayList<String> getRows(String name) {
+
+		Integer idx = name_index.get(name);
+
+		return (idx == null) ? null : new ArrayList<String>(rows.get(idx));
+	}
+
+	/*
+	 * returns the numeric PFM of the given factor (or null, must not be modified)
+	 */
+	public double[][] getMatrix(String name) {
+
+		Integer idx = name_index.get(name);
+
+		return (idx == null) ? null : matrices.get(idx);
+	}
+
+
+	private void add(String name, ArrayList<String> pfm_rows, double[][] matrix) {
+
+		// the first PFM of a factor is used for lookups (as in a linear scan of the file)
+		if (! name_index.containsKey(name)) {
+			name_index.put(name, names.size());
+		}
+		names.add(name);
+		rows.add(pfm_rows);
+		matrices.add(matrix);
+	}
+
+
+	private void parseTextFile(String pfmfile) throws IOException {
+
+		BufferedReader br = new BufferedReader(new FileReader(new File(pfmfile)));
+
+		String line = null;
+
+		while((line = br.readLine()) != null) {
+
+			if (! line.startsWith("DE\t")) {
+				br.close();
+				throw new PredictionException("Parse Error. Error occured while parsing FBPs. \nLine: " + line
+											  + "\nexpected to start with DE.");
+			}
+
+			StringTokenizer strtok = new StringTokenizer(line);
+
+			strtok.nextToken();							// DE
+			String name = strtok.nextToken();			// name
+
+			ArrayList<String> pfm_rows = new ArrayList<String>();
+
+			while(! (line = br.readLine()).startsWith("XX")) {
+				pfm_rows.add(line);
+			}
+			add(name, pfm_rows, MoStaSimilarity.parseMatrix(pfm_rows));
+		}
+		br.close();
+	}
+
+
+	/*
+	 * binary format (big-endian):
+	 *   int magic, int n, n x (UTF name, int length, length x (UTF row, 4 doubles))
+	 */
+	public void writeSnapshot(String binfile) throws IOException {
+
+		// write to a temporary file first, so that concurrent readers never see a partial file
+		File tmpfile = new File(binfile + ".tmp" + System.nanoTime());
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpfile)));
+
+		out.writeInt(magic);
+		out.writeInt(names.size());
+
+		for (int i=0; i<names.size(); i++) {
+
+			out.writeUTF(names.get(i));
+			out.writeInt(rows.get(i).size());
+
+			for (int k=0; k<rows.get(i).size(); k++) {
+
+				out.writeUTF(rows.get(i).get(k));
+
+				for (int j=0; j<4; j++) {
+					out.writeDouble(matrices.get(i)[k][j]);
+				}
+			}
+		}
+		out.flush();
+		out.close();
+
+		if (! tmpfile.renameTo(new File(binfile))) {
+			tmpfile.delete();
+			throw new IOException("Could not create " + binfile + ".");
+		}
+	}
+
+
+	/*
+	 * writes the binary snapshot "<file>.bin" of the given file
+	 */
+	public static void createSnapshot(String pfmfile) throws IOException {
+		getLibrary(pfmfile).writeSnapshot(pfmfile + binarySuffix);
+	}
+
+
+	private void readSnapshot(String binfile) throws IOException {
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(binfile)));
+
+		try {
+			if (in.readInt() != magic) {
+				throw new IOException("Invalid PFM snapshot: " + binfile);
+			}
+			int n = in.readInt();
+
+			for (int i=0; i<n; i++) {
+
+				String name = in.readUTF();
+
+				int length = in.readInt();
+
+				ArrayList<String> pfm_rows = new ArrayList<String>();
+				double[][] matrix = new double[length][4];
+
+				for (int k=0; k<length; k++) {
+
+					pfm_rows.add(in.readUTF());
+
+					for (int j=0; j<4; j++) {
+						matrix[k][j] = in.readDouble();
+					}
+				}
+				add(name, pfm_rows, matrix);
+			}
+		}
+		finally {
+			in.close();
+		}
+	}
+
+
+	/*
+	 * writes the binary snapshots of the given PFM files
+	 */
+	public static void main(String[] args) {
+
+		if (args.length == 0) {
+			System.out.println("Usage: java core.PFMLibrary <PFM file> [<PFM file> ...]");
+			System.exit(0);
+		}
+
+		for (String infile: args) {
+			try {
+				createSnapshot(infile);
+				System.out.println("Created " + infile + binarySuffix + ".");
+			}
+			catch (IOException ioe) {
+				System.out.println(ioe.getMessage());
+				System.out.println("IOException occurred while converting " + infile + ".");
+			}
+		}
+	}
+}
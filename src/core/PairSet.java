@@ -0,0 +1,143 @@
+/*
+    SABINE predicts binding specificities of transcription factors.
+    Copyright (C) 2009 ZBIT, University of Tübingen, Johannes Eichner
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package core;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+
+/*
+ *
+ * set of pairs (i,j) with i < j of the n TFs of a training set, stored as a bitset
+ * over the upper triangle of the n x n pair matrix
+ *
+ * membership tests take constant time, iteration yields the pairs in the order of the
+ * nested loops "for i, for j>i", i.e. in the order of the lines of all pair feature files
+ *
+ */
+public class PairSet implements Iterable<int[]> {
+
+	int n;
+
+	BitSet bits;
+
+
+	public PairSet(int n) {
+
+		this.n = n;
+		this.bits = new BitSet(numberOfPairs(n));
+	}
+
+
+	/*
+	 * returns the set of all pairs of n TFs
+	 */
+	public static PairSet allPairs(int n) {
+
+		PairSet res = new PairSet(n);
+		res.bits.set(0, numberOfPairs(n));
+
+		return res;
+	}
+
+
+	public PairSet copy() {
+
+		PairSet res = new PairSet(n);
+		res.bits.or(bits);
+
+		return res;
+	}
+
+
+	private static int numberOfPairs(int n) {
+		return (int) ((long) n * (n-1) / 2);
+	}
+
+
+	private int index(int i, int j) {
+		return (int) ((long) i * (2*n - i - 1) / 2) + (j - i - 1);
+	}
+
+
+	public int getNumberOfTFs() {
+		return n;
+	}
+
+	public int size() {
+		return bits.cardinality();
+	}
+
+	public boolean contains(int i, int j) {
+
+		if (i >= j || j >= n || i < 0) {
+			return false;
+		}
+		return bits.get(index(i, j));
+	}
+
+	public void add(int i, int j) {
+		bits.set(index(i, j));
+	}
+
+	public void remove(int i, int j) {
+		bits.clear(index(i, j));
+	}
+
+
+	/*
+	 * iterates over all pairs {i, j} in ascending order
+	 */
+	public Iterator<int[]> iterator() {
+
+		return new Iterator<int[]>() {
+
+			int next = bits.nextSetBit(0);
+
+			int row = 0;
+			int row_end = n - 1;		// index of the first pair of the next row
+
+			public boolean hasNext() {
+				return next >= 0;
+			}
+
+			public int[] next() {
+
+				if (next < 0) {
+					throw new NoSuchElementException();
+				}
+
+				while (next >= row_end) {
+					row++;
+					row_end += n - row - 1;
+				}
+				int[] res = new int[] {row, row + 1 + next - (row_end - (n - row - 1))};
+
+				next = bits.nextSetBit(next + 1);
+
+				return res;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
@@ -0,0 +1,190 @@
+/*
+    SABINE predicts binding specificities of transcription factors.
+    Copyright (C) 2009 ZBIT, University of Tübingen, Johannes Eichner
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.biojava.bio.BioException;
+
+
+/*
+ *
+ * computes the feature scores of all relevant pairs of training TFs in parallel
+ *
+ * the pairs are split into blocks of consecutive pairs, which are scored by a pool of
+ * worker threads; each worker uses its own PairScorer (e.g. with its own aligners), so
+ * scorers need not be thread-safe
+ *
+ * the scores are passed to the PairScoreWriter in the order of the pairs (by the calling
+ * thread), so the feature files are identical for any number of threads
+ *
+ */
+public class PairwiseFeatureEngine {
+
+	// number of pairs, which are scored by one task
+	public static final int blockSize = 32;
+
+	// number of blocks per thread, which are scored ahead of the writer
+	private static final int blocksPerThread = 4;
+
+
+	/*
+	 * scores single pairs of TFs (used by one thread only)
+	 */
+	public interface PairScorer {
+		double[] getScores(int i, int j) throws IOException, BioException;
+	}
+
+	public interface PairScorerFactory {
+		PairScorer createScorer() throws IOException, BioException;
+	}
+
+	public interface PairScoreWriter {
+		void write(int i, int j, double[] scores) throws IOException;
+	}
+
+
+	int num_threads = 1;
+
+
+	public PairwiseFeatureEngine(int num_threads) {
+		this.num_threads = Math.max(1, num_threads);
+	}
+
+
+	/*
+	 * scores all pairs of the given set and writes the scores in the order of the pairs
+	 */
+	public void calculateScores(PairSet pairs, final PairScorerFactory factory, PairScoreWriter writer) throws IOException, BioException {
+
+		Iterator<int[]> pair_iter = pairs.iterator();
+
+		// the first block is scored by the calling thread, which also initializes
+		// lazily created shared data (e.g. alphabets of BioJava) before the workers start
+		PairScorer scorer = factory.createScorer();
+
+		int[][] block = nextBlock(pair_iter);
+
+		if (block == null) {
+			return;
+		}
+		writeBlock(block, scoreBlock(block, scorer), writer);
+
+		if (num_threads == 1) {
+
+			while ((block = nextBlock(pair_iter)) != null) {
+				writeBlock(block, scoreBlock(block, scorer), writer);
+			}
+			return;
+		}
+
+		// one scorer per worker thread
+		final ThreadLocal<PairScorer> scorers = new ThreadLocal<PairScorer>();
+
+		ExecutorService pool = Executors.newFixedThreadPool(num_threads);
+
+		LinkedList<int[][]> blocks = new LinkedList<int[][]>();
+		LinkedList<Future<double[][]>> results = new LinkedList<Future<double[][]>>();
+
+		try {
+			while (true) {
+
+				// keep a bounded number of blocks ahead of the writer
+				while (results.size() < blocksPerThread * num_threads && (block = nextBlock(pair_iter)) != null) {
+
+					final int[][] curr_block = block;
+
+					blocks.add(curr_block);
+					results.add(pool.submit(new Callable<double[][]>() {
+
+						public double[][] call() throws Exception {
+
+							PairScorer scorer = scorers.get();
+
+							if (scorer == null) {
+								scorer = factory.createScorer();
+								scorers.set(scorer);
+							}
+							return scoreBlock(curr_block, scorer);
+						}
+					}));
+				}
+
+				if (results.isEmpty()) {
+					break;
+				}
+				writeBlock(blocks.removeFirst(), results.removeFirst().get(), writer);
+			}
+		}
+		catch (InterruptedException ie) {
+			throw new IOException("Interrupted while computing pair features.");
+		}
+		catch (ExecutionException ee) {
+
+			if (ee.getCause() instanceof IOException) 	throw (IOException) ee.getCause();
+			if (ee.getCause() instanceof BioException) 	throw (BioException) ee.getCause();
+
+			throw new RuntimeException(ee.getCause());
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+
+
+	/*
+	 * returns the next (at most) blockSize pairs (or null)
+	 */
+	private static int[][] nextBlock(Iterator<int[]> pair_iter) {
+
+		ArrayList<int[]> res = new ArrayList<int[]>();
+
+		while (res.size() < blockSize && pair_iter.hasNext()) {
+			res.add(pair_iter.next());
+		}
+		return res.isEmpty() ? null : res.toArray(new int[res.size()][]);
+	}
+
+
+	private static double[][] scoreBlock(int[][] block, PairScorer scorer) throws IOException, BioException {
+
+		double[][] res = new double[block.length][];
+
+		for (int p=0; p<block.length; p++) {
+			res[p] = scorer.getScores(block[p][0], block[p][1]);
+		}
+		return res;
+	}
+
+
+	private static void writeBlock(int[][] block, double[][] scores, PairScoreWriter writer) throws IOException {
+
+		for (int p=0; p<block.length; p++) {
+			writer.write(block[p][0], block[p][1], scores[p]);
+		}
+	}
+}
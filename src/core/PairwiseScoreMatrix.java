@@ -0,0 +1,274 @@
+/*
+    SABINE predicts binding specificities of transcription factors.
+    Copyright (C) 2009 ZBIT, University of Tübingen, Johannes Eichner
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package core;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.StringTokenizer;
+
+
+/*
+ *
+ * n x n matrix of precalculated scores of all pairs of training tfs
+ * (e.g. "trainingset_<class>.blo62", lines: "TF i vs. TF j : score")
+ *
+ * the text file is converted once into a binary file ("<file>.bin"), which is
+ * memory-mapped read-only, so that all predictions (and JVMs) share one copy
+ *
+ * binary format (little-endian):
+ *   int magic, int n, n x (int length, UTF-8 name), padding to 8 bytes, n x n doubles (row-major)
+ *
+ */
+public class PairwiseScoreMatrix {
+
+	public static final String binarySuffix = ".bin";
+
+	private static final int magic = 0x53425053;		// "SPBS"
+
+	ArrayList<String> names = null;
+
+	HashMap<String, Integer> name_index = new HashMap<String, Integer>();
+
+	DoubleBuffer scores = null;
+
+	int size = 0;
+
+
+	private PairwiseScoreMatrix(ArrayList<String> names, DoubleBuffer scores) {
+
+		this.names = names;
+		this.scores = scores;
+		this.size = names.size();
+
+		for (int i=0; i<names.size(); i++) {
+			name_index.put(names.get(i), i);
+		}
+	}
+
+
+	/*
+	 * maps the binary version of the given text file (which is created, if it is missing or outdated)
+	 */
+	public static PairwiseScoreMatrix load(String trainscoresfile) throws IOException {
+
+		File textfile = new File(trainscoresfile);
+		File binfile = new File(trainscoresfile + binarySuffix);
+
+		if (binfile.exists() && (!textfile.exists() || binfile.lastModified() >= textfile.lastModified())) {
+			return map(binfile.getPath());
+		}
+
+		ArrayList<String> names = new ArrayList<String>();
+		double[] values = parseTextFile(trainscoresfile, names);
+
+		try {
+			writeBinaryFile(binfile.getPath(), names, values);
+			return map(binfile.getPath());
+		}
+		catch (IOException ioe) {
+			// training directory is not writable, keep the parsed scores on the heap
+			return new PairwiseScoreMatrix(names, DoubleBuffer.wrap(values));
+		}
+	}
+
+
+	/*
+	 * converts a text file into the binary format
+	 */
+	public static void convert(String trainscoresfile, String binfile) throws IOException {
+
+		ArrayList<String> names = new ArrayList<String>();
+		double[] values = parseTextFile(trainscoresfile, names);
+
+		writeBinaryFile(binfile, names, values);
+	}
+
+
+	public static PairwiseScoreMatrix map(String binfile) throws IOException {
+
+		RandomAccessFile raf = new RandomAccessFile(binfile, "r");
+		FileChannel channel = raf.getChannel();
+
+		ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+		// the mapping remains valid after closing the file
+		channel.close();
+		raf.close();
+
+		if (buffer.getInt() != magic) {
+			throw new IOException("Invalid binary score matrix: " + binfile);
+		}
+		int n = buffer.getInt();
+
+		ArrayList<String> names = new ArrayList<String>();
+
+		for (int i=0; i<n; i++) {
+			byte[] name = new byte[buffer.getInt()];
+			buffer.get(name);
+			names.add(new String(name, "UTF-8"));
+		}
+		buffer.position((buffer.position() + 7) & ~7);
+
+		if (buffer.remaining() < 8L * n * n) {
+			throw new IOException("Truncated binary score matrix: " + binfile);
+		}
+		return new PairwiseScoreMatrix(names, buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer());
+	}
+
+
+	private static double[] parseTextFile(String trainscoresfile, ArrayList<String> names) throws IOException {
+
+		ArrayList<Double> values = new ArrayList<Double>();
+
+		BufferedReader br = new BufferedReader(new FileReader(new File(trainscoresfile)));
+
+		String first_name = null;
+
+		String line;
+		while ((line = br.readLine()) != null) {
+
+			StringTokenizer strtok = new StringTokenizer(line);
+			if (! strtok.hasMoreTokens()) continue;
+
+			String name1 = strtok.nextToken();			// training tf i
+			strtok.nextToken();							// vs.
+			String name2 = strtok.nextToken();			// training tf j
+			strtok.nextToken();							// :
+
+			if (first_name == null) {
+				first_name = name1;
+			}
+			if (name1.equals(first_name)) {
+				names.add(name2);
+			}
+			values.add(Double.parseDouble(strtok.nextToken()));
+		}
+		br.close();
+
+		if (values.size() != names.size() * names.size()) {
+			throw new IOException("Invalid number of scores in " + trainscoresfile + ".");
+		}
+
+		double[] res = new double[values.size()];
+		for (int i=0; i<res.length; i++) {
+			res[i] = values.get(i);
+		}
+		return res;
+	}
+
+
+	private static void writeBinaryFile(String binfile, ArrayList<String> names, double[] values) throws IOException {
+
+		int header_size = 8;
+		for (String name: names) {
+			header_size += 4 + name.getBytes("UTF-8").length;
+		}
+		header_size = (header_size + 7) & ~7;
+
+		ByteBuffer buffer = ByteBuffer.allocate(header_size + 8 * values.length);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+		buffer.putInt(magic);
+		buffer.putInt(names.size());
+
+		for (String name: names) {
+			byte[] bytes = name.getBytes("UTF-8");
+			buffer.putInt(bytes.length);
+			buffer.put(bytes);
+		}
+		buffer.position(header_size);
+
+		for (double value: values) {
+			buffer.putDouble(value);
+		}
+
+		// write to a temporary file first, so that concurrent readers never see a partial file
+		File tmpfile = new File(binfile + ".tmp" + System.nanoTime());
+
+		FileOutputStream out = new FileOutputStream(tmpfile);
+		try {
+			out.write(buffer.array());
+		}
+		finally {
+			out.close();
+		}
+
+		if (! tmpfile.renameTo(new File(binfile))) {
+			tmpfile.delete();
+			throw new IOException("Could not create " + binfile + ".");
+		}
+	}
+
+
+	public int size() {
+		return size;
+	}
+
+	public ArrayList<String> getNames() {
+		return names;
+	}
+
+	/*
+	 * returns the index of the given training tf (-1, if not contained)
+	 */
+	public int indexOf(String name) {
+
+		Integer index = name_index.get(name);
+
+		return (index == null) ? -1 : index;
+	}
+
+	public double get(int i, int j) {
+		return scores.get(i * size + j);
+	}
+
+
+	/*
+	 * converts the given text files into the binary format
+	 */
+	public static void main(String[] args) {
+
+		if (args.length == 0) {
+			System.out.println("Usage: java core.PairwiseScoreMatrix <score file> [<score file> ...]");
+			System.exit(0);
+		}
+
+		for (String infile: args) {
+			try {
+				convert(infile, infile + binarySuffix);
+				System.out.println("Created " + infile + binarySuffix + ".");
+			}
+			catch (IOException ioe) {
+				System.out.println(ioe.getMessage());
+				System.out.println("IOException occurred while converting " + infile + ".");
+			}
+		}
+	}
+}
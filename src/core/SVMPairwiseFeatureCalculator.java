@@ -72,36 +72,9 @@ public class SVMPairwiseFeatureCalculator {
 			br.close();
 			
 			
-			double[][] trainscores = new double[testscores.size()][testscores.size()];
-			
-			
-
 		// read scores of the training tfs	
-				
-			br = new BufferedReader(new FileReader(new File(trainscoresfile)));
-				
-
-				
-			for(int i=0; i<trainscores.length; i++) {
-					
-					
-				for(int j=0; j<trainscores.length; j++) {
-					
-					strtok = new StringTokenizer(br.readLine());
-						
-					strtok.nextToken();							// training tf i
-					strtok.nextToken(); 						// vs.
-					strtok.nextToken(); 						// training tf j
-					strtok.nextToken();							// :
-						
-					trainscores[i][j] = Double.parseDouble(strtok.nextToken());
-					
-				}
-					
-			}
-					
-
-			br.close();
+			
+			PairwiseScoreMatrix trainscores = PairwiseScoreMatrix.load(trainscoresfile);
 				
 			
 		// calculate dot products only for relevant pairs 
@@ -130,7 +103,7 @@ public class SVMPairwiseFeatureCalculator {
 				
 				for(int i=0; i<tfnames.size(); i++) {
 					
-					dot_product += Double.parseDouble(testscores.get(i)) * trainscores[index][i];
+					dot_product += Double.parseDouble(testscores.get(i)) * trainscores.get(index, i);
 					
 				}
 				
@@ -154,81 +127,85 @@ public class SVMPairwiseFeatureCalculator {
 		
 	}
 	
-public void calculateAllSVMPairwiseScores(String trainscoresfile, String outfile, ArrayList<String> relevant_pairs) {
-		
-		BufferedReader br = null;
-		BufferedWriter bw = null;
+	/*
+	 * 
+	 * in-memory variant of calculateSVMPairwiseScores(): "testscores" contains the scores of the test tf vs. 
+	 * all tfs of the training set, the dot products are returned for all relevant tfs 
+	 * 
+	 */
+	public double[] calculateSVMPairwiseScores(double[] testscores, boolean[] irrelevantPairs, String trainscoresfile) {
 		
-		ArrayList<String> tfnames = new ArrayList<String>();
+		PairwiseScoreMatrix trainscores = null;
 		
 		try {
 			
+		// read scores of the training tfs	
 			
-		// read names of the training tf	
+			trainscores = PairwiseScoreMatrix.load(trainscoresfile);
 			
-			br = new BufferedReader(new FileReader(new File(trainscoresfile)));
+		}
+		catch(IOException ioe) {
+			System.out.println(ioe.getMessage());
+			System.out.println("IOException occurred while precalculating SVMPairwise Helpfiles.");
+		}
+		
+		return calculateSVMPairwiseScores(testscores, irrelevantPairs, trainscores);
+		
+	}
+	
+	
+	public double[] calculateSVMPairwiseScores(double[] testscores, boolean[] irrelevantPairs, PairwiseScoreMatrix trainscores) {
+		
+		int numRelevantPairs = 0;
+		
+		for(int i=0; i<irrelevantPairs.length; i++) {
+			if (!irrelevantPairs[i]) numRelevantPairs++;
+		}
+		
+		double[] scores = new double[numRelevantPairs];
+		
+		
+	// calculate dot products only for relevant pairs 
+		
+		int index = 0;
+		
+		double dot_product = 0.0;
+		
+		for(int j=0; j<irrelevantPairs.length; j++) {
 			
-			String line = null;
+			if (irrelevantPairs[j]) continue;
 			
-			StringTokenizer strtok = null;
+			dot_product = 0.0;
 			
-			boolean first = true;
-			String first_name = "";
-			
-			while((line = br.readLine()) != null) {
-				
-				strtok = new StringTokenizer(line);
-														   
-				if (first) {								// first training tf
-					first_name = strtok.nextToken();
-					first = false;
-				}
-				else if (! strtok.nextToken().equals(first_name)) break;
-				
-				strtok.nextToken(); 						// vs.
-				
-				tfnames.add(strtok.nextToken()); 			// second training tf
-				
-				strtok.nextToken();							// :
+			for(int i=0; i<testscores.length; i++) {
 				
-				strtok.nextToken();							// score
+				dot_product += testscores[i] * trainscores.get(j, i);
 				
 			}
-				
-
-			br.close();
 			
+			scores[index++] = dot_product;
 			
-			double[][] trainscores = new double[tfnames.size()][tfnames.size()];
+		}
+		
+		return scores;
+		
+	}
+	
+	
+public void calculateAllSVMPairwiseScores(String trainscoresfile, String outfile, PairSet relevant_pairs) {
+		
+		BufferedWriter bw = null;
+		
+		ArrayList<String> tfnames = new ArrayList<String>();
+		
+		try {
 			
 			
-
-		// read scores of the training tfs	
-				
-			br = new BufferedReader(new FileReader(new File(trainscoresfile)));
-				
-
-				
-			for(int i=0; i<trainscores.length; i++) {
-					
-					
-				for(int j=0; j<trainscores.length; j++) {
-					
-					strtok = new StringTokenizer(br.readLine());
-						
-					strtok.nextToken();							// training tf i
-					strtok.nextToken(); 						// vs.
-					strtok.nextToken(); 						// training tf j
-					strtok.nextToken();							// :
-						
-					trainscores[i][j] = Double.parseDouble(strtok.nextToken());
-					
-				}
-					
-			}
-					
-
-			br.close();
+		// read names and scores of the training tfs	
+			
+			PairwiseScoreMatrix trainscores = PairwiseScoreMatrix.load(trainscoresfile);
+			
+			tfnames.addAll(trainscores.getNames());
 				
 			
 		// calculate dot products for all pairs of TFs 
@@ -241,13 +218,13 @@ public void calculateAllSVMPairwiseScores(String trainscoresfile, String outfile
 				
 				for(int j=i+1; j<tfnames.size(); j++) {
 					
-					if (! relevant_pairs.contains(i + "_" + j)) continue;
+					if (! relevant_pairs.contains(i, j)) continue;
 					
 					dot_product = 0.0;
 					
 					for(int k=0; k<tfnames.size(); k++) {
 					
-						dot_product += trainscores[i][k] * trainscores[j][k];
+						dot_product += trainscores.get(i, k) * trainscores.get(j, k);
 					}
 					
 					bw.write(tfnames.get(i) + " vs. " + tfnames.get(j) + " : " + dot_product + "\n");
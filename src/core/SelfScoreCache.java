@@ -0,0 +1,168 @@
+/*
+    SABINE predicts binding specificities of transcription factors.
+    Copyright (C) 2009 ZBIT, University of Tübingen, Johannes Eichner
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package core;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.StringTokenizer;
+
+
+/*
+ *
+ * memoized self-alignment scores of the domain sequences of the training sets
+ * (one table per substitution matrix and alignment type), which are needed to
+ * normalize each alignment score of a query domain against a training domain
+ *
+ * only registered training domains are stored, so the cache does not grow with
+ * the number of predicted TFs; the scores are persisted in "trainingset_<class>.selfscores"
+ * (lines: <matrix id> <domain sequence> <score>)
+ *
+ */
+public class SelfScoreCache {
+
+	public static final String fileSuffix = ".selfscores";
+
+	// matrix id -> (domain sequence -> self score)
+	private static HashMap<String, HashMap<String, Double>> scores = new HashMap<String, HashMap<String, Double>>();
+
+	private static HashSet<String> domains = new HashSet<String>();
+
+
+	/*
+	 * marks the given domain sequences as training domains, whose self scores are kept
+	 */
+	public static synchronized void registerDomains(Collection<ArrayList<String>> domain_lists) {
+
+		for (ArrayList<String> curr_domains: domain_lists) {
+			for (String domain: curr_domains) {
+				domains.add(new StringTokenizer(domain).nextToken());
+			}
+		}
+	}
+
+
+	public static synchronized boolean isTrainingDomain(String seq) {
+		return domains.contains(seq);
+	}
+
+
+	public static synchronized Double getSelfScore(String matrix_id, String seq) {
+
+		HashMap<String, Double> matrix_scores = scores.get(matrix_id);
+
+		if (matrix_scores == null) {
+			return null;
+		}
+		return matrix_scores.get(seq);
+	}
+
+
+	public static synchronized void putSelfScore(String matrix_id, String seq, double score) {
+
+		if (! domains.contains(seq)) {
+			return;
+		}
+
+		HashMap<String, Double> matrix_scores = scores.get(matrix_id);
+
+		if (matrix_scores == null) {
+			matrix_scores = new HashMap<String, Double>();
+			scores.put(matrix_id, matrix_scores);
+		}
+		matrix_scores.put(seq, score);
+	}
+
+
+	/*
+	 * reads persisted self scores (the contained domains are registered as training domains)
+	 */
+	public static synchronized void load(String infile) {
+
+		if (! new File(infile).exists()) {
+			return;
+		}
+
+		try {
+			BufferedReader br = new BufferedReader(new FileReader(new File(infile)));
+
+			String line;
+			while ((line = br.readLine()) != null) {
+
+				StringTokenizer strtok = new StringTokenizer(line);
+				if (strtok.countTokens() != 3) continue;
+
+				String matrix_id = strtok.nextToken();
+				String seq = strtok.nextToken();
+				double score = Double.parseDouble(strtok.nextToken());
+
+				domains.add(seq);
+				putSelfScore(matrix_id, seq, score);
+			}
+			br.close();
+		}
+		catch(IOException ioe) {
+			System.out.println(ioe.getMessage());
+			System.out.println("IOException occurred while reading self scores from " + infile + ".");
+		}
+	}
+
+
+	/*
+	 * writes the self scores of the given domains, which have been computed so far
+	 */
+	public static synchronized void save(String outfile, Collection<ArrayList<String>> domain_lists) {
+
+		HashSet<String> seqs = new HashSet<String>();
+
+		for (ArrayList<String> curr_domains: domain_lists) {
+			for (String domain: curr_domains) {
+				seqs.add(new StringTokenizer(domain).nextToken());
+			}
+		}
+
+		try {
+			BufferedWriter bw = new BufferedWriter(new FileWriter(new File(outfile)));
+
+			for (String matrix_id: scores.keySet()) {
+
+				HashMap<String, Double> matrix_scores = scores.get(matrix_id);
+
+				for (String seq: matrix_scores.keySet()) {
+					if (seqs.contains(seq)) {
+						bw.write(matrix_id + "\t" + seq + "\t" + matrix_scores.get(seq) + "\n");
+					}
+				}
+			}
+			bw.flush();
+			bw.close();
+		}
+		catch(IOException ioe) {
+			System.out.println(ioe.getMessage());
+			System.out.println("IOException occurred while writing self scores to " + outfile + ".");
+		}
+	}
+}
@@ -18,12 +18,8 @@
 
 package core;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.StringTokenizer;
@@ -69,6 +65,16 @@ public class SequenceAligner {
 
   StringTokenizer strtok = null;
 
+  /*
+   *  score-only alignments (used instead of parsing the alignment string of BioJava)
+   */
+  AlignmentScorer scorer = null;
+
+  /*
+   *  identifies substitution matrix and alignment type in the SelfScoreCache (null = no caching)
+   */
+  String selfscore_id = null;
+
 
   /*
    *
@@ -92,6 +98,7 @@ public class SequenceAligner {
         matrix 	// SubstitutionMatrix
           );
 
+      scorer = new AlignmentScorer(alphabet, matrix, AlignmentScorer.NW, 0, 3, 11, 11, 1);
     }
     else {
       alignment = new SmithWaterman(
@@ -102,7 +109,10 @@ public class SequenceAligner {
         1,      // gapExtend
         matrix  // SubstitutionMatrix
           );
+
+      scorer = new AlignmentScorer(alphabet, matrix, AlignmentScorer.SW, -1, 3, 11, 11, 1);
     }
+    selfscore_id = new File(matrixfile).getName() + "_" + type;
   }
 
 
@@ -122,6 +132,9 @@ public class SequenceAligner {
       matrix 		// SubstitutionMatrix
         );
 
+    scorer = new AlignmentScorer(alphabet, matrix, AlignmentScorer.NW, 0, 3, ins, del, gap_ext);
+
+    selfscore_id = new File(matrixfile).getName() + "_NW_" + ins + "_" + del + "_" + gap_ext;
 
 
   }
@@ -144,6 +157,7 @@ public class SequenceAligner {
         matrix 					// SubstitutionMatrix
           );
 
+      scorer = new AlignmentScorer(alphabet, matrix, AlignmentScorer.NW, -1, 1, 11, 11, 1);
     }
     else {
       alignment = new SmithWaterman(
@@ -154,6 +168,8 @@ public class SequenceAligner {
         1,      // gapExtend
         matrix  // SubstitutionMatrix
           );
+
+      scorer = new AlignmentScorer(alphabet, matrix, AlignmentScorer.SW, 0, 1, 11, 11, 1);
     }
 
   }
@@ -185,6 +201,7 @@ public class SequenceAligner {
         matrix 	// SubstitutionMatrix
           );
 
+      scorer = new AlignmentScorer(alphabet, matrix, AlignmentScorer.NW, 0, 0, 10, 10, 1);
     }
 
     if(type.equals("NW_UNGAPPED")) {
@@ -208,6 +225,8 @@ public class SequenceAligner {
         1,      // gapExtend
         matrix  // SubstitutionMatrix
           );
+
+      scorer = new AlignmentScorer(alphabet, matrix, AlignmentScorer.SW, 0, 0, 10, 10, 1);
     }
   }
 
@@ -325,6 +344,133 @@ public class SequenceAligner {
   }
 
 
+  /*
+   *
+   * aligns two sequences once and derives the sequence identity (see getSequenceSimilarity()) and
+   * the SM-based identities for all given thresholds (see getSMBasedIdentity()) from this alignment,
+   * returns { identity, identity(thresholds[0]), identity(thresholds[1]), ... }
+   *
+   */
+
+  public double[] getIdentityScores(String seq1, String seq2, double[] thresholds) {
+
+    double[] res = new double[thresholds.length + 1];
+
+    try {
+
+      Sequence query  = ProteinTools.createProteinSequence(seq1, "query");
+      Sequence target = ProteinTools.createProteinSequence(seq2, "target");
+
+      alignment.pairwiseAlignment(query, target);
+
+
+      StringTokenizer strtok  = new StringTokenizer(alignment.getAlignmentString(), "\n");
+      StringTokenizer strtok2 = null;
+
+      String line = null;
+
+      String upperseq = null;
+      String lowerseq = null;
+      String dashes   = null;
+
+
+      // goto start of alignment
+      for(int i=0; i<6; i++) {
+        line = strtok.nextToken();
+      }
+
+      if(!line.startsWith("Query:")) {
+        System.out.println("Error while parsing alignment string. Aborting.");
+        System.exit(0);
+      }
+
+      int count_all   = 0;
+      int count_ident = 0;
+
+      int[] count_match = new int[thresholds.length];
+
+
+      while(line.startsWith("Query:")) {
+
+        strtok2 = new StringTokenizer(line.replace("Query:", ""));
+        strtok2.nextToken();
+
+        upperseq = strtok2.nextToken();
+
+
+        line = strtok.nextToken(); // goto next line
+
+
+        dashes = line.substring(line.length()- upperseq.length() - 1,line.length()-1); // trim whitespaces before |'s
+
+
+        dashes = dashes.substring(0,upperseq.length()); // trim whitespace after |'s
+
+
+        line = strtok.nextToken(); // goto next line
+
+        strtok2 = new StringTokenizer(line.replace("Target:", ""));
+        strtok2.nextToken();
+
+        lowerseq = strtok2.nextToken();
+
+        for(int i=0; i<dashes.length(); i++) {
+
+          count_all++;
+
+          boolean identical = (dashes.charAt(i) == '|');
+
+          if (identical) {
+            count_ident++;
+          }
+
+          if((upperseq.charAt(i) == '~') || (lowerseq.charAt(i) == '~') || (upperseq.charAt(i) == '-') || (lowerseq.charAt(i) == '-')) {
+            continue;  // gap
+          }
+
+          int value = identical ? 0 : matrix.getValueAt(getProteinSymbol(upperseq.charAt(i)), getProteinSymbol(lowerseq.charAt(i)));
+
+          for(int t=0; t<thresholds.length; t++) {
+            if(identical || value >= thresholds[t]) {
+              count_match[t]++;
+            }
+          }
+        }
+
+
+        if(strtok.hasMoreTokens())
+        {
+          line = strtok.nextToken(); // goto next line
+        }
+        if(strtok.hasMoreTokens())
+        {
+          line = strtok.nextToken(); // goto next line
+        }
+
+      }
+
+      res[0] = (double) count_ident / (double) count_all;
+
+      for(int t=0; t<thresholds.length; t++) {
+        res[t+1] = (double) count_match[t] / (double) count_all;
+      }
+
+    }
+    catch(BioException be) {
+      System.out.println(be.getMessage());
+      System.out.println("BioException occurred while comparing sequences.");
+    }
+    catch (Exception e) {
+      System.out.println(e.getMessage());
+      e.printStackTrace();
+      System.out.println("Exception occurred while comparing sequences.");
+      System.exit(0);
+    }
+
+    return res;
+  }
+
+
   /*
    *
    * calculates a sequence identity which ignores mismatches whose SM-Scores are above a given threshold
@@ -478,6 +624,55 @@ public class SequenceAligner {
   }
 
 
+  /*
+   *
+   * encodes both sequences for the score-only alignment,
+   * returns null if the alignments have to be computed by BioJava
+   *
+   */
+
+  private byte[][] encodeSequences(String seq1, String seq2) {
+
+    if (scorer == null || !scorer.isApplicable() || seq1.length() == 0 || seq2.length() == 0) {
+      return null;
+    }
+
+    byte[] encoded1 = scorer.encode(seq1);
+    byte[] encoded2 = scorer.encode(seq2);
+
+    if (encoded1 == null || encoded2 == null) {
+      return null;
+    }
+    return new byte[][] {encoded1, encoded2};
+  }
+
+
+  /*
+   *
+   * returns the score of the alignment of a sequence with itself
+   * (looked up in the SelfScoreCache, if the sequence is a training domain)
+   *
+   */
+
+  private double getSelfScore(String seq, byte[] encoded) {
+
+    Double score = null;
+
+    if (selfscore_id != null) {
+      score = SelfScoreCache.getSelfScore(selfscore_id, seq);
+    }
+
+    if (score == null) {
+      score = scorer.getScore(encoded, encoded);
+
+      if (selfscore_id != null) {
+        SelfScoreCache.putSelfScore(selfscore_id, seq, score);
+      }
+    }
+    return score;
+  }
+
+
   /*
    *
    * calculates the substitution matrix based sequence similarity of two sequences
@@ -486,6 +681,19 @@ public class SequenceAligner {
 
   public double getSMBasedSimilarity(String seq1, String seq2) {
 
+    byte[][] encoded = encodeSequences(seq1, seq2);
+
+    if (encoded != null) {
+
+      double similarity = scorer.getScore(encoded[0], encoded[1]);
+
+      double self_score1 = getSelfScore(seq1, encoded[0]);
+      double self_score2 = getSelfScore(seq2, encoded[1]);
+
+      // divide sequence similarity by atrithmetic mean of self scores
+      return (2 * similarity) / (self_score1 + self_score2);
+    }
+
 
     double similarity = 0.0;
 
@@ -646,37 +854,46 @@ public class SequenceAligner {
        *
        */
 
+      byte[][] encoded = encodeSequences(seq1, seq2);
 
-      // compare seq1 vs. itself
+      if (encoded != null) {
 
-      query  = ProteinTools.createProteinSequence(seq1, "query");
-      target = ProteinTools.createProteinSequence(seq1, "target");
+        self_score1 = getSelfScore(seq1, encoded[0]);
+        self_score2 = getSelfScore(seq2, encoded[1]);
+      }
+      else {
 
-      alignment.pairwiseAlignment(query, target);
+        // compare seq1 vs. itself
 
-      strtok1 = new StringTokenizer(alignment.getAlignmentString());
+        query  = ProteinTools.createProteinSequence(seq1, "query");
+        target = ProteinTools.createProteinSequence(seq1, "target");
 
-      while(!strtok1.nextToken().equals("Score:")) {
-        ;
-      }
+        alignment.pairwiseAlignment(query, target);
 
-      self_score1 = Double.parseDouble(strtok1.nextToken());
+        strtok1 = new StringTokenizer(alignment.getAlignmentString());
 
+        while(!strtok1.nextToken().equals("Score:")) {
+          ;
+        }
 
-      // compare seq2 vs. itself
+        self_score1 = Double.parseDouble(strtok1.nextToken());
 
-      query  = ProteinTools.createProteinSequence(seq2, "query");
-      target = ProteinTools.createProteinSequence(seq2, "target");
 
-      alignment.pairwiseAlignment(query, target);
+        // compare seq2 vs. itself
 
-      strtok1 = new StringTokenizer(alignment.getAlignmentString());
+        query  = ProteinTools.createProteinSequence(seq2, "query");
+        target = ProteinTools.createProteinSequence(seq2, "target");
 
-      while(!strtok1.nextToken().equals("Score:")) {
-        ;
-      }
+        alignment.pairwiseAlignment(query, target);
 
-      self_score2 = Double.parseDouble(strtok1.nextToken());
+        strtok1 = new StringTokenizer(alignment.getAlignmentString());
+
+        while(!strtok1.nextToken().equals("Score:")) {
+          ;
+        }
+
+        self_score2 = Double.parseDouble(strtok1.nextToken());
+      }
 
 
       // divide sequence similarity by atrithmetic mean of self scores
@@ -706,6 +923,37 @@ public class SequenceAligner {
   }
 
 
+  /*
+   *  returns the alignment score of getMatchingRegionAndScore() and stores the matching region of the query
+   *  in region (start and end position), only the diagonals min_diag <= j - i <= max_diag (i: position in seq1,
+   *  j: position in seq2) are aligned (full band: -seq1.length() ... seq2.length())
+   */
+
+  public double getMatchingRegionAndScore(String seq1, String seq2, int min_diag, int max_diag, int[] region) {
+
+    byte[][] encoded = encodeSequences(seq1, seq2);
+
+    if (encoded == null) {
+
+      // alignment has to be computed by BioJava
+      String[] res = getMatchingRegionAndScore(seq1, seq2);
+
+      region[0] = Integer.parseInt(res[1]);
+      region[1] = Integer.parseInt(res[2]);
+
+      return Double.parseDouble(res[0]);
+    }
+
+    double similarity = scorer.getLocalAlignment(encoded[0], encoded[1], min_diag, max_diag, region);
+
+    double self_score1 = getSelfScore(seq1, encoded[0]);
+    double self_score2 = getSelfScore(seq2, encoded[1]);
+
+    // divide sequence similarity by atrithmetic mean of self scores
+    return (2 * similarity) / (self_score1 + self_score2);
+  }
+
+
   /*
    *
    * calculates the substitution matrix based sequence similarity of two sequences
@@ -714,6 +962,19 @@ public class SequenceAligner {
 
   public double getSMBasedSecondaryStructureSimilarity(String seq1, String seq2) {
 
+    byte[][] encoded = encodeSequences(seq1, seq2);
+
+    if (encoded != null) {
+
+      double similarity = scorer.getScore(encoded[0], encoded[1]);
+
+      double self_score1 = scorer.getScore(encoded[0], encoded[0]);
+      double self_score2 = scorer.getScore(encoded[1], encoded[1]);
+
+      // divide sequence similarity by geometric mean of self scores
+      return similarity / Math.sqrt(self_score1 * self_score2);
+    }
+
 
     double similarity = 0.0;
 
@@ -849,204 +1110,61 @@ public class SequenceAligner {
       matrix = "blosum62.dat";
     }
 
-    String cmdString = "./" + FBPPredictor.LAkernelDir + "LAkernel_direct " + seq1 + " " + seq2 + " ./" + FBPPredictor.LAkernelDir + matrix;
     double res = 0d;
 
     try {
 
-      Process proc = Runtime.getRuntime().exec(cmdString);
-
-      proc.getOutputStream().flush();
-      proc.getOutputStream().close();
-
-      proc.waitFor();
-
-      /*
-       *
-       * extract result
-       *
-       */
-
-      BufferedReader input = new BufferedReader(new InputStreamReader(proc.getInputStream()));
-
-      String line = input.readLine();
-
-      res = Double.parseDouble(line);
-
-      input.close();
-
-      proc.destroy();
+      res = LocalAlignmentKernel.getKernel(FBPPredictor.LAkernelDir + matrix).getScore(seq1, seq2);
 
     }
     catch(IOException ioe) {
       System.out.println(ioe.getMessage());
       System.out.println("IOException occurred while calculating LAkernel.");
     }
-    catch (InterruptedException e) {
-      System.out.println(e.getMessage());
-      System.out.println("InterruptedException while calculating LAkernel.");
-    }
 
     return res;
 
   }
 
-  public double getNormalizedLAKernel(String seq1, String seq2, String matrix) {
-
-
-    return getLAKernelScore(seq1, seq2, matrix) / Math.sqrt(getLAKernelScore(seq1, seq1, matrix) * getLAKernelScore(seq2, seq2, matrix));
-
-
-  }
-
-
-  public double getNormalizedMMKernel(String seq1, String seq2, int k, int m, String basedir) {
-
-
-    BufferedWriter bw = null;
-
-    String basedir_MMkernel = basedir + "mismatchkernel/";
-
-    String mmExecFile = basedir_MMkernel + "/launchMMKernel";
-
-    double res = 0.0;
-
-    try {
-
-      // write input file for kernel
-
-      bw = new BufferedWriter(new FileWriter(new File(basedir_MMkernel + "input.txt")));
 
-      bw.write(">seq1\n");
-
-
-      // write first sequence
-
-      int len = seq1.length();
-
-      String seq = "";
-
-      for(int i=0; i < ((len / 70) + 1); i++) {
-
-        for(int j= i * 70; j < Math.min( (i+1) * 70, len ) ; j++) {
-
-          seq += seq1.charAt(j) + " ";
-
-        }
-
-        if((len % 70) > 0) {
-          seq = seq.substring(0,seq.length()-1) + "\n";
-        }
-      }
-
-      bw.write(seq);
-
-
-      bw.write(">seq2\n");
-
-
-      // write second sequence
-
-      len = seq2.length();
-
-      seq = "";
-
-      for(int i=0; i < ((len / 70) + 1); i++) {
-
-        for(int j= i * 70; j < Math.min( (i+1) * 70, len ) ; j++) {
-
-          seq += seq2.charAt(j) + " ";
-
-        }
-
-        if((len % 70) > 0) {
-          seq = seq.substring(0,seq.length()-1) + "\n";
-        }
-      }
-
-      bw.write(seq);
-
-      bw.flush();
-      bw.close();
-
-      File exec_file = new File(mmExecFile);
-
-      bw = new BufferedWriter(new FileWriter(exec_file));
-
-      String rel_dir = " ../../../";    // ./lib/MismatchKernel/src/
-      if (basedir.startsWith("/") || basedir.startsWith("~")) {
-        rel_dir = " ";
-      }
-
-      bw.write("cd ./" + FBPPredictor.MMkernelDir + "src/\n");
-      bw.write("./string-kernel -K -L " + k + " -D " + m + rel_dir + basedir_MMkernel + "input.txt\n");
-
-      bw.flush();
-      bw.close();
-
-      exec_file.setExecutable(true);
-
-
-      // launch kernel
-
-      Process proc = Runtime.getRuntime().exec(mmExecFile);
-
-      proc.getOutputStream().flush();
-      proc.getOutputStream().close();
+  /*
+   *
+   * kernel of a sequence with itself (looked up in the SelfScoreCache, if the sequence is a training domain)
+   *
+   */
 
-      proc.waitFor();
+  private double getLAKernelSelfScore(String seq, String matrix) {
 
-      /*
-       *
-       * extract result
-       *
-       */
+    String kernel_id = "LAkernel_" + (matrix == null ? "blosum62.dat" : matrix);
 
-      BufferedReader input = new BufferedReader(new InputStreamReader(proc.getInputStream()));
+    Double score = SelfScoreCache.getSelfScore(kernel_id, seq);
 
-      input.readLine();
+    if (score == null) {
+      score = getLAKernelScore(seq, seq, matrix);
+      SelfScoreCache.putSelfScore(kernel_id, seq, score);
+    }
+    return score;
+  }
 
-      StringTokenizer strtok = new StringTokenizer(input.readLine());
 
-      strtok.nextToken();
+  public double getNormalizedLAKernel(String seq1, String seq2, String matrix) {
 
-      double res11 = Double.parseDouble(strtok.nextToken());
-      double res12 = Double.parseDouble(strtok.nextToken());
 
-      strtok = new StringTokenizer(input.readLine());
+    return getLAKernelScore(seq1, seq2, matrix) / Math.sqrt(getLAKernelSelfScore(seq1, matrix) * getLAKernelSelfScore(seq2, matrix));
 
-      strtok.nextToken();
-      double res21 = Double.parseDouble(strtok.nextToken());
-      double res22 = Double.parseDouble(strtok.nextToken());
 
-      if(res12 != res21) {
-        System.out.println("Error occurred while calculating kernel value. k(x,y) is not symmetric!");
-        System.out.println("k(x,y) = " + res12);
-        System.out.println("k(y,x) = " + res21);
-        System.out.println("Aborting.");
-        System.exit(0);
-      }
+  }
 
-      res = res12 / Math.sqrt(res11 * res22);
 
-      input.close();
+  public double getNormalizedMMKernel(String seq1, String seq2, int k, int m, String basedir) {
 
-      proc.destroy();
 
-    }
-    catch(IOException ioe) {
-      System.out.println(ioe.getMessage());
-      System.out.println("IOException occurred while calculating MMKernel.");
-    }
-    catch (InterruptedException e) {
-      System.out.println(e.getMessage());
-      System.out.println("InterruptedException while calculating MMKernel.");
-    }
+    return MismatchKernel.getKernel(k, m).getNormalizedKernel(seq1, seq2);
 
-    return res;
 
   }
 
+
   public static void main(String[] args) throws IOException, BioException {
 
     SequenceAligner aligner = new SequenceAligner(FBPPredictor.matrix_dir + "BLOSUM_62.dat", "SW");
@@ -48,6 +48,9 @@ public class SequenceFeatureCalculator {
 	public boolean predicted_domains = false;
 	public String basedir = "internal/";
 	
+	// number of threads used to compare all pairs of training tfs
+	public int num_threads = 1;
+	
 	ArrayList<ArrayList<String>> other_domains = null;
 	
 	ArrayList<String> other_sequences1 = null;
@@ -58,6 +61,8 @@ public class SequenceFeatureCalculator {
 	
 	ArrayList<String> other_names = null;
 	
+	BestDomainPairs best_pairs = null;
+	
 	public ArrayList<ArrayList<String>> get_other_domains() {
 		return other_domains;
 	}
@@ -230,6 +235,54 @@ public class SequenceFeatureCalculator {
 	
 	
 	
+	/*
+	 * 
+	 * initializes global variables "other_names", "other_domains" and "other_sequences" from an already parsed training set
+	 * 
+	 */
+	
+	public void parseRelevantDomainsAndSequences(boolean[] irrelevantPairs, TrainingSet trainingset) {
+		
+		other_domains 	= new ArrayList<ArrayList<String>>();
+		
+		other_sequences1 = new ArrayList<String>();
+		other_sequences2 = new ArrayList<String>();
+		
+		other_names 	= new ArrayList<String>();
+		
+		for(int i=0; i<trainingset.size(); i++) {
+			
+			if(irrelevantPairs[i]) continue;
+			
+			other_names.add(trainingset.getNames().get(i));
+			other_domains.add(trainingset.getDomains().get(i));
+			other_sequences1.add(trainingset.getSequences1().get(i));
+			other_sequences2.add(trainingset.getSequences2().get(i));
+		}
+	}
+	
+	
+	/*
+	 * 
+	 * initializes global variables "other_secstructs" from an already parsed training set
+	 * 
+	 */
+	
+	public void parseRelevantSecondaryStructures(boolean[] irrelevantPairs, TrainingSet trainingset) {
+		
+		other_secstructs1 = new ArrayList<String>();
+		other_secstructs2 = new ArrayList<String>();
+		
+		for(int i=0; i<trainingset.size(); i++) {
+			
+			if(irrelevantPairs[i]) continue;
+			
+			other_secstructs1.add(trainingset.getSecondaryStructures1().get(i));
+			other_secstructs2.add(trainingset.getSecondaryStructures2().get(i));
+		}
+	}
+	
+	
 	/*
 	 * 
 	 * initializes global variables "other_names" and "other_domains"
@@ -377,8 +430,96 @@ public class SequenceFeatureCalculator {
 	}
 	
 	
+	/*
+	 * 
+	 * reuses the best domain pairs, which have been determined by another calculator
+	 * (e.g. DomainFeatureCalculator while computing the BLOSUM_62 feature)
+	 * 
+	 */
+	
+	public void setBestDomainPairs(BestDomainPairs best_pairs) {
+		if (best_pairs != null) this.best_pairs = best_pairs;
+	}
+	
+	
+	/*
+	 * 
+	 * returns the SM-Score-maximizing pair of domains (determined once per pair of TFs)
+	 * 
+	 */
+	
+	private int[] getBestDomainPair(String key, ArrayList<String> domains1, ArrayList<String> domains2, SequenceAligner aligner) {
+		
+		int[] maxPair = best_pairs.get(key);
+		
+		if(maxPair != null) {
+			return maxPair;
+		}
+		
+		maxPair = new int[] {0,0};
+		
+		double maxScore = Double.NEGATIVE_INFINITY;
+		double score = 0.0;
+		
+		for(int k=0; k<domains1.size(); k++) {
+			
+			for(int l=0; l<domains2.size(); l++) {
+				
+				score = aligner.getSMBasedSimilarity  (new StringTokenizer(domains1.get(k)).nextToken(), new StringTokenizer(domains2.get(l)).nextToken());
+				
+				if(score > maxScore)  {
+					
+					maxScore = score;
+					
+					maxPair[0] = k;
+					maxPair[1] = l;
+				}
+			}
+		}
+		
+		best_pairs.put(key, maxPair[0], maxPair[1]);
+		
+		return maxPair;
+	}
+	
+	
 	public void calculateSequenceFeatureFile(String tfname, ArrayList<String> domains, String sequence1, String sequence2, String featuretype, String[] params, String matrix, String outfile) {
 		
+		double[] scores = calculateSequenceFeatures(domains, sequence1, sequence2, featuretype, params, matrix);
+		
+		BufferedWriter bw = null;
+		
+		try {
+			
+			bw = new BufferedWriter(new FileWriter(new File(outfile)));
+			
+			for(int j=0; j<scores.length; j++) {
+				
+				bw.write(tfname + " vs. " + other_names.get(j) + " :\t" + scores[j] + "\n");
+				
+			}
+			
+			bw.flush();
+			bw.close();
+			
+		}
+		catch(IOException ioe) {
+			System.out.println(ioe.getMessage());
+			System.out.println("IOException occurred while comparing sequences.");
+		}
+		
+	}
+	
+	
+	/*
+	 * 
+	 * returns the sequence feature of the input tf vs. each relevant tf of the training set
+	 * (in the order of "other_names")
+	 * 
+	 */
+	
+	public double[] calculateSequenceFeatures(ArrayList<String> domains, String sequence1, String sequence2, String featuretype, String[] params, String matrix) {
+		
 		
 		if(other_names == null) {	
 			System.out.println("Fatal Error. Unable to calculate domain features. Global variable \"other_names\" was not initialized. Aborting.");
@@ -401,7 +542,7 @@ public class SequenceFeatureCalculator {
 		}
 		
 		
-		BufferedWriter bw = null;		
+		double[] scores = new double[other_domains.size()];
 		
 		helper.basedir = basedir;
 		
@@ -412,8 +553,6 @@ public class SequenceFeatureCalculator {
 			String secstruct2 = null;
 			
 			
-			bw = new BufferedWriter(new FileWriter(new File(outfile)));
-			
 			if(matrix != null) {
 				
 				aligner = new SequenceAligner(matrix, "NW");
@@ -427,11 +566,13 @@ public class SequenceFeatureCalculator {
 			}
 			
 			
-			double maxScore = 0.0;
-			double score = 0.0;	
-
+			// the best domain pairs are shared by all features, which are based on this matrix
 			
-			int[] maxPair = new int[] {0,0} ;
+			if(best_pairs == null || ! best_pairs.matches(matrix, domains, other_names)) {
+				
+				best_pairs = new BestDomainPairs(matrix, domains, other_names);
+				
+			}
 			
 			StringTokenizer strtok = null;
 			
@@ -458,8 +599,6 @@ public class SequenceFeatureCalculator {
 					
 				if(!silent) System.out.println("  with " + other_names.get(j) + ".");
 						
-				maxScore = Double.NEGATIVE_INFINITY; 
-						
 				if (predicted_domains) {
 					domains = new ArrayList<String>();
 					domains.add(all_domains.get(j));
@@ -467,26 +606,7 @@ public class SequenceFeatureCalculator {
 						
 			// determine score-maximizing domain pair	
 						
-					for(int k=0; k<domains.size(); k++) {
-							
-						for(int l=0; l<other_domains.get(j).size(); l++) {
-								
-								
-							score = aligner.getSMBasedSimilarity  (new StringTokenizer(domains.get(k)).nextToken(), new StringTokenizer(other_domains.get(j).get(l)).nextToken());
-								
-								
-							if(score > maxScore)  {
-									
-								maxScore = score;
-									
-								maxPair[0] = k;
-								maxPair[1] = l;
-								
-							}
-								
-						}
-						
-					}
+					int[] maxPair = getBestDomainPair(String.valueOf(j), domains, other_domains.get(j), aligner);
 					
 					
 				// get the SM-Score-maximizing domains	
@@ -620,9 +740,9 @@ public class SequenceFeatureCalculator {
 						
 						
 						
-					// print score to output file
+					// store score of this tf pair
 						
-						bw.write(tfname + " vs. " + other_names.get(j) + " :\t" + avg_score + "\n");
+						scores[j] = avg_score;
 					
 					}
 					
@@ -700,9 +820,9 @@ public class SequenceFeatureCalculator {
 					double ss_score = aligner_dna.getSMBasedSecondaryStructureSimilarity(ss1, ss2);
 							
 							
-				// print score to output file
+				// store score of this tf pair
 							
-					bw.write(tfname + " vs. " + other_names.get(j) + " :\t" + ss_score + "\n");
+					scores[j] = ss_score;
 							
 						
 						
@@ -711,10 +831,6 @@ public class SequenceFeatureCalculator {
 			
 			}
 			
-			bw.flush();
-			bw.close();
-
-			
 		}
 		catch(IOException ioe) {
 			System.out.println(ioe.getMessage());
@@ -725,11 +841,13 @@ public class SequenceFeatureCalculator {
 			System.out.println("BioException occurred while comparing sequences.");
 		}
 		
+		return scores;
+		
 		
 	}
 	
 	
-	public void calculateAllSequenceFeatures(String featuretype, String[] params, String matrix, String outfile, ArrayList<String> relevant_pairs) {
+	public void calculateAllSequenceFeatures(final String featuretype, final String[] params, final String matrix, String outfile, PairSet relevant_pairs) {
 		
 		
 		if(other_names == null) {	
@@ -774,254 +892,60 @@ public class SequenceFeatureCalculator {
 			}
 			
 			
-			double maxScore = 0.0;
-			double score = 0.0;	
-
-			
-			int[] maxPair = new int[] {0,0} ;
-			
-			StringTokenizer strtok = null;
+			// the best domain pairs are shared by all features, which are based on this matrix
 			
+			if(best_pairs == null || ! best_pairs.matches(matrix, null, other_names)) {
+				
+				best_pairs = new BestDomainPairs(matrix, null, other_names);
+				
+			}
 			
 			/*
 			 * 
-			 * compare domains of all pairs of TFs in training set
+			 * compare domains of all pairs of TFs in training set (each thread uses its own aligners)
 			 * 
 			 */ 
 			
-	
+		
 			if(!silent) System.out.println("Comparing query");
 				
-			for(int i=0; i<other_domains.size()-1; i++) {
+			PairwiseFeatureEngine engine = new PairwiseFeatureEngine(num_threads);
+			
+			final BufferedWriter out = bw;
+			
+			engine.calculateScores(relevant_pairs, new PairwiseFeatureEngine.PairScorerFactory() {
 				
-				for(int j=i+1; j<other_domains.size(); j++) {
-					
+				public PairwiseFeatureEngine.PairScorer createScorer() throws IOException, BioException {
 					
-					if (! relevant_pairs.contains(i + "_" + j)) continue;
+					final SequenceAligner curr_aligner = (matrix != null) ? new SequenceAligner(matrix, "NW") : aligner;
 					
-					if(!silent) System.out.println("  with " + other_names.get(j) + ".");
-						
-					maxScore = Double.NEGATIVE_INFINITY; 
-						
-						
-					// determine score-maximizing domain pair	
-						
-					for(int k=0; k<other_domains.get(i).size(); k++) {
-							
-						for(int l=0; l<other_domains.get(j).size(); l++) {
-								
-								
-							score = aligner.getSMBasedSimilarity  (new StringTokenizer(other_domains.get(i).get(k)).nextToken(), new StringTokenizer(other_domains.get(j).get(l)).nextToken());
-								
-								
-							if(score > maxScore)  {
-									
-								maxScore = score;
-									
-								maxPair[0] = k;
-								maxPair[1] = l;
-								
-								}
-								
-							}
-						
-						}
-					
-					
-					// get the SM-Score-maximizing domains	
-					
-						String dom1 = other_domains.get(i).get(maxPair[0]);
-						String dom2 = other_domains.get(j).get(maxPair[1]);
-					
-						String seq1 = null;
-						String seq2 = null;
-					
-					// store the respective protein sequences in seq1 & seq2
-					
-						strtok = new StringTokenizer(dom1);
-						strtok.nextToken();
-					
-						if(strtok.nextToken().equals("1")) {
-							seq1 = other_sequences1.get(i);
-						}
-						else {
-							seq1 = other_sequences2.get(i);
-						}
-					
-						strtok = new StringTokenizer(dom2);
-						strtok.nextToken();
-					
-						if(strtok.nextToken().equals("1")) {
-							seq2 = other_sequences1.get(j);
-						}
-						else {
-							seq2 = other_sequences2.get(j);
-						}
-					
-						
-					/*
-			 	* 
-			 	* calculate environment similarity
-			 	* 
-			 	*/ 
-						
-						if(featuretype.equals("Environments")) {
-						
-						
-						// get the left and right environments of the SM-Score-maximizing binding domains
-						
-							strtok = new StringTokenizer(other_domains.get(i).get(maxPair[0]));
-							strtok.nextToken();
-							strtok.nextToken();
-						
-						
-						// start and end indices of domain 1	
-						
-							int start1 = Integer.parseInt(strtok.nextToken());
-							int end1   = Integer.parseInt(strtok.nextToken());
-						
-						
-							strtok = new StringTokenizer(other_domains.get(j).get(maxPair[1]));
-							strtok.nextToken();
-							strtok.nextToken();
+					final SequenceAligner curr_aligner_dna = featuretype.equals("SecondaryStructure") ? new SequenceAligner("DNA", FBPPredictor.matrix_dir + "SS-matrix.dat", "NW") : aligner_dna;
 					
-						
-						// start and end indices of domain 2	
-						
-							int start2 = Integer.parseInt(strtok.nextToken());
-							int end2   = Integer.parseInt(strtok.nextToken());
-						
-							int left_range  = Math.min(Integer.parseInt(params[0]), Math.min(start1, start2));
-						
-							int right_range = Math.min(Integer.parseInt(params[0]), Math.min(seq1.length() - end1 , seq2.length() - end2));
-						
-						
-						// left environment of domain 1	
-						
-							int envstart = start1 - left_range;
-							int envend   = start1;
-						
-							String lenv1 = seq1.substring(envstart, envend);
-						
-						
-						// right environment of domain 1	
-						
-							envstart = end1;
-							envend   = end1 + right_range;
-						
-							String renv1 = seq1.substring(envstart, envend);
-						
-						
-						// left environment of domain 2	
-						
-							envstart = start2 - left_range;
-							envend   = start2;
-						
-							String lenv2 = seq2.substring(envstart, envend);
-						
-						
-						// right environment of domain 2	
-						
-							envstart = end2;
-							envend   = end2 + right_range;
-						
-							String renv2 = seq2.substring(envstart, envend);
-						
-						
-						// calculate the left / right environment based similarity scores	
-						
-							double left_score  = aligner.getSMBasedSimilarity(lenv1, lenv2);
-							double right_score = aligner.getSMBasedSimilarity(renv1, renv2);
-						
-						
-						// calculate the average environment score
-						
-							double avg_score = 0.5 * (left_score + right_score);
-						
-							if(lenv1.length() == 0 || lenv2.length() == 0) {
+					return new PairwiseFeatureEngine.PairScorer() {
+						public double[] getScores(int i, int j) {
 							
-								avg_score = right_score;
+							// determine score-maximizing domain pair	
 							
-							}
-						
-							if(renv1.length() == 0 || renv2.length() == 0) {
-							
-								avg_score = left_score;
+							int[] maxPair = getBestDomainPair(i + "_" + j, other_domains.get(i), other_domains.get(j), curr_aligner);
 							
-							}
+							Double score = calculateSequenceScore(i, j, maxPair, featuretype, params, curr_aligner, curr_aligner_dna);
 							
-						
-							if(lenv1.length() == 0 && renv1.length() == 0 || lenv2.length() == 0 && renv2.length() == 0) {
-							
-								avg_score = 0.0;
-							
-							}
-						
-						
-						
-						// print score to output file
-						
-							bw.write(other_names.get(i) + " vs. " + other_names.get(j) + " :\t" + avg_score + "\n");
-					
+							return (score == null) ? new double[0] : new double[] {score};
 						}
-					
-					
-				   /*
-				 	* 
-				 	* calculate secondary structure similarity
-				 	* 
-				 	*/ 	
-					
-					
-					if(featuretype.equals("SecondaryStructure")) {
-							
-		
-					// look-up the secondary structures
-						
-						String ss1 = null;
-						String ss2 = null;
-					
+					};
+				}
+			}, new PairwiseFeatureEngine.PairScoreWriter() {
 				
-					// store the respective protein sequences in seq1 & seq2
+				public void write(int i, int j, double[] scores) throws IOException {
 					
-						strtok = new StringTokenizer(dom1);
-						strtok.nextToken();
-					
-						if(strtok.nextToken().equals("1")) {
-							ss1 = other_secstructs1.get(i).replace("E", "A").replace("H", "T");
-						}
-						else {
-							ss1 = other_secstructs2.get(i).replace("E", "A").replace("H", "T");
-						}
-					
-					
-						strtok = new StringTokenizer(dom2);
-						strtok.nextToken();
-					
-						if(strtok.nextToken().equals("1")) {
-							ss2 = other_secstructs1.get(j).replace("E", "A").replace("H", "T");
-						}
-						else {
-							ss2 = other_secstructs2.get(j).replace("E", "A").replace("H", "T");
-						}
+					if(!silent) System.out.println("  with " + other_names.get(j) + ".");
 					
-	
-					// calculate the secondary structure similarity score	
-							
-						double ss_score = aligner_dna.getSMBasedSecondaryStructureSimilarity(ss1, ss2);
-							
-							
 					// print score to output file
-							
-						bw.write(other_names.get(i) + " vs. " + other_names.get(j) + " :\t" + ss_score + "\n");
-							
-						
-						
-					}
 					
-			
+					if(scores.length > 0) out.write(other_names.get(i) + " vs. " + other_names.get(j) + " :\t" + scores[0] + "\n");
 				}
-			}
+			});
+			
 			bw.flush();
 			bw.close();
 
@@ -1037,5 +961,209 @@ public class SequenceFeatureCalculator {
 		}
 
 	}
+	
+	
+	/*
+	 *
+	 * environment or secondary structure similarity of the training tfs i and j (null for unknown feature types)
+	 *
+	 */
+	
+	private Double calculateSequenceScore(int i, int j, int[] maxPair, String featuretype, String[] params, SequenceAligner aligner, SequenceAligner aligner_dna) {
+		
+		StringTokenizer strtok = null;
+		
+		// get the SM-Score-maximizing domains
+		
+		String dom1 = other_domains.get(i).get(maxPair[0]);
+		String dom2 = other_domains.get(j).get(maxPair[1]);
+		
+		String seq1 = null;
+		String seq2 = null;
+		
+		// store the respective protein sequences in seq1 & seq2
+		
+		strtok = new StringTokenizer(dom1);
+		strtok.nextToken();
+		
+		if(strtok.nextToken().equals("1")) {
+			seq1 = other_sequences1.get(i);
+		}
+		else {
+			seq1 = other_sequences2.get(i);
+		}
+		
+		strtok = new StringTokenizer(dom2);
+		strtok.nextToken();
+		
+		if(strtok.nextToken().equals("1")) {
+			seq2 = other_sequences1.get(j);
+		}
+		else {
+			seq2 = other_sequences2.get(j);
+		}
+		
+		
+		/*
+		 *
+		 * calculate environment similarity
+		 *
+		 */
+		
+		if(featuretype.equals("Environments")) {
+			
+			
+			// get the left and right environments of the SM-Score-maximizing binding domains
+			
+			strtok = new StringTokenizer(other_domains.get(i).get(maxPair[0]));
+			strtok.nextToken();
+			strtok.nextToken();
+			
+			
+			// start and end indices of domain 1
+			
+			int start1 = Integer.parseInt(strtok.nextToken());
+			int end1   = Integer.parseInt(strtok.nextToken());
+			
+			
+			strtok = new StringTokenizer(other_domains.get(j).get(maxPair[1]));
+			strtok.nextToken();
+			strtok.nextToken();
+			
+			
+			// start and end indices of domain 2
+			
+			int start2 = Integer.parseInt(strtok.nextToken());
+			int end2   = Integer.parseInt(strtok.nextToken());
+			
+			int left_range  = Math.min(Integer.parseInt(params[0]), Math.min(start1, start2));
+			
+			int right_range = Math.min(Integer.parseInt(params[0]), Math.min(seq1.length() - end1 , seq2.length() - end2));
+			
+			
+			// left environment of domain 1
+			
+			int envstart = start1 - left_range;
+			int envend   = start1;
+			
+			String lenv1 = seq1.substring(envstart, envend);
+			
+			
+			// right environment of domain 1
+			
+			envstart = end1;
+			envend   = end1 + right_range;
+			
+			String renv1 = seq1.substring(envstart, envend);
+			
+			
+			// left environment of domain 2
+			
+			envstart = start2 - left_range;
+			envend   = start2;
+			
+			String lenv2 = seq2.substring(envstart, envend);
+			
+			
+			// right environment of domain 2
+			
+			envstart = end2;
+			envend   = end2 + right_range;
+			
+			String renv2 = seq2.substring(envstart, envend);
+			
+			
+			// calculate the left / right environment based similarity scores
+			
+			double left_score  = aligner.getSMBasedSimilarity(lenv1, lenv2);
+			double right_score = aligner.getSMBasedSimilarity(renv1, renv2);
+			
+			
+			// calculate the average environment score
+			
+			double avg_score = 0.5 * (left_score + right_score);
+			
+			if(lenv1.length() == 0 || lenv2.length() == 0) {
+				
+				avg_score = right_score;
+				
+			}
+			
+			if(renv1.length() == 0 || renv2.length() == 0) {
+				
+				avg_score = left_score;
+				
+			}
+			
+			
+			if(lenv1.length() == 0 && renv1.length() == 0 || lenv2.length() == 0 && renv2.length() == 0) {
+				
+				avg_score = 0.0;
+				
+			}
+			
+			
+			
+			// return the score
+			
+			return avg_score;
+			
+		}
+		
+		
+		/*
+		 *
+		 * calculate secondary structure similarity
+		 *
+		 */
+		
+		
+		if(featuretype.equals("SecondaryStructure")) {
+			
+			
+			// look-up the secondary structures
+			
+			String ss1 = null;
+			String ss2 = null;
+			
+			
+			// store the respective protein sequences in seq1 & seq2
+			
+			strtok = new StringTokenizer(dom1);
+			strtok.nextToken();
+			
+			if(strtok.nextToken().equals("1")) {
+				ss1 = other_secstructs1.get(i).replace("E", "A").replace("H", "T");
+			}
+			else {
+				ss1 = other_secstructs2.get(i).replace("E", "A").replace("H", "T");
+			}
+			
+			
+			strtok = new StringTokenizer(dom2);
+			strtok.nextToken();
+			
+			if(strtok.nextToken().equals("1")) {
+				ss2 = other_secstructs1.get(j).replace("E", "A").replace("H", "T");
+			}
+			else {
+				ss2 = other_secstructs2.get(j).replace("E", "A").replace("H", "T");
+			}
+			
+			
+			// calculate the secondary structure similarity score
+			
+			double ss_score = aligner_dna.getSMBasedSecondaryStructureSimilarity(ss1, ss2);
+			
+			
+			// return the score
+			
+			return ss_score;
+			
+			
+			
+		}
+		
+		return null;
+	}
 }
-
@@ -34,15 +34,51 @@ public class SpeciesFeatureCalculator {
 	
 	double[][] distances = null;
 	
+	ArrayList<String> other_names = null;
+	
 	
 	public void calculatePhylogeneticDistances(String tfname, String inputspecies, String class_id,  boolean[] irrelevantPairs, String lookupfile, String outfile, String train_dir) {
 		
+		double[] scores = calculatePhylogeneticDistances(inputspecies, class_id, irrelevantPairs, lookupfile, train_dir);
+		
+		try {
+			
+			BufferedWriter bw = new BufferedWriter(new FileWriter(new File(outfile)));
+			
+			for(int i=0; i<scores.length; i++) {
+				
+				bw.write(tfname + " vs. " + other_names.get(i) + " : " + scores[i] + "\n");
+				
+			}
+			
+			bw.flush();
+			bw.close();
+			 
+		}
+		catch(IOException ioe) {
+			System.out.println(ioe.getMessage());
+			System.out.println("IOException occurred while looking up phylogenetic distances.");
+		}
+		
+	}
+	
+	
+	/*
+	 * 
+	 * returns the phylogenetic distance of the input species to the species of each relevant tf 
+	 * of the training set (in the order of "other_names")
+	 * 
+	 */
+	public double[] calculatePhylogeneticDistances(String inputspecies, String class_id,  boolean[] irrelevantPairs, String lookupfile, String train_dir) {
+		
 		BufferedReader br = null;
 		
 		ArrayList<String> ordered_species = new ArrayList<String>();
 		 
 		ArrayList<String> ordered_names = new ArrayList<String>();
 		
+		double[] scores = null;
+		
 		
 		try {
 			 
@@ -136,16 +172,13 @@ public class SpeciesFeatureCalculator {
 			br.close();
 			
 			
-			BufferedWriter bw = new BufferedWriter(new FileWriter(new File(outfile)));
+			scores = new double[ordered_names.size()];
 			
 			for(int i=0; i<ordered_names.size(); i++) {
 				
-				bw.write(tfname + " vs. " + ordered_names.get(i) + " : " + getDistance(inputspecies, ordered_species.get(i)) + "\n");
+				scores[i] = getDistance(inputspecies, ordered_species.get(i));
 				
 			}
-			
-			bw.flush();
-			bw.close();
 			 
 		}
 		catch(IOException ioe) {
@@ -153,10 +186,16 @@ public class SpeciesFeatureCalculator {
 			System.out.println("IOException occurred while looking up phylogenetic distances.");
 		}
 		
+		other_names = ordered_names;
+		
+		if(scores == null) scores = new double[0];
+		
+		return scores;
+		
 	}
 	
 	
-public void calculateAllPhylogeneticDistances(String class_id,  boolean[] irrelevantPairs, String lookupfile, String outfile, ArrayList<String> relevant_pairs, String train_dir) {
+public void calculateAllPhylogeneticDistances(String class_id,  boolean[] irrelevantPairs, String lookupfile, String outfile, PairSet relevant_pairs, String train_dir) {
 		
 		BufferedReader br = null;
 		
@@ -262,7 +301,7 @@ public void calculateAllPhylogeneticDistances(String class_id,  boolean[] irrele
 				
 				for(int j=i+1; j<ordered_names.size(); j++) {
 					
-					if (! relevant_pairs.contains(i + "_" + j)) continue;
+					if (! relevant_pairs.contains(i, j)) continue;
 					
 					bw.write(ordered_names.get(i) + " vs. " + ordered_names.get(j) + " : " + getDistance(ordered_species.get(i), ordered_species.get(j)) + "\n");
 				
@@ -280,6 +319,108 @@ public void calculateAllPhylogeneticDistances(String class_id,  boolean[] irrele
 		
 	}
 	
+	/*
+	 * 
+	 * in-memory variant of calculatePhylogeneticDistances() for an already parsed training set, 
+	 * the distance matrix has to be initialized before (see parseDistanceMatrix())
+	 * 
+	 */
+	public double[] calculatePhylogeneticDistances(String inputspecies, boolean[] irrelevantPairs, TrainingSet trainingset) {
+		
+		other_names = new ArrayList<String>();
+		
+		ArrayList<Double> scores = new ArrayList<Double>();
+		
+		for(int i=0; i<trainingset.size(); i++) {
+			
+			if(irrelevantPairs[i]) continue;
+			
+			other_names.add(trainingset.getNames().get(i));
+			
+			scores.add(getDistance(inputspecies, trainingset.getSpecies().get(i)));
+			
+		}
+		
+		double[] res = new double[scores.size()];
+		
+		for(int i=0; i<res.length; i++) {
+			res[i] = scores.get(i);
+		}
+		
+		return res;
+		
+	}
+	
+	
+	/*
+	 * 
+	 * initializes the phylogenetic distance matrix for look-up
+	 * 
+	 */
+	public void parseDistanceMatrix(String lookupfile) {
+		
+		try {
+			
+			BufferedReader br = new BufferedReader(new FileReader(new File(lookupfile)));
+			
+			String line = br.readLine();
+		
+			StringTokenizer strtok = new StringTokenizer(line, ",");
+			
+			species = new ArrayList<String>();
+			
+			while(strtok.hasMoreTokens()) {
+				
+				species.add(strtok.nextToken().trim());
+				
+			}
+			
+			distances = new double[species.size()][species.size()];
+			
+			for(int i=0; i<distances.length; i++) {
+				
+				strtok = new StringTokenizer(br.readLine());
+				
+				for(int j=0; j<distances.length; j++) {
+					
+					distances[i][j] = Double.parseDouble(strtok.nextToken());
+					
+				}
+				
+			}
+			
+			br.close();
+			
+		}
+		catch(IOException ioe) {
+			System.out.println(ioe.getMessage());
+			System.out.println("IOException occurred while parsing phylogenetic distances.");
+		}
+		
+	}
+	
+	
+	/*
+	 * 
+	 * shares an already parsed distance matrix (the matrix is not modified)
+	 * 
+	 */
+	public void setDistanceMatrix(ArrayList<String> species, double[][] distances) {
+		
+		this.species = species;
+		this.distances = distances;
+		
+	}
+	
+	public ArrayList<String> getSpecies() {
+		return species;
+	}
+	
+	public double[][] getDistances() {
+		return distances;
+	}
+	
+	
 	/*
 	 * 
 	 * returns the distance for a given pair of species
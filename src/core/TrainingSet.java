@@ -0,0 +1,413 @@
+/*
+    SABINE predicts binding specificities of transcription factors.
+    Copyright (C) 2009 ZBIT, University of Tübingen, Johannes Eichner
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package core;
+
+import help.LibSVMFeatureScaler;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.StringTokenizer;
+
+import main.FBPPredictor;
+import main.PredictionException;
+import optimization.MoStaScoreCache;
+
+
+/*
+ *
+ * parsed training set of one superclass, which is read once and can then be
+ * shared by all predictions for this class (all lists are in the order of
+ * "trainingset_<class>.rawdata" and must not be modified)
+ *
+ */
+public class TrainingSet {
+
+	String class_id = null;
+
+	String train_dir = null;
+
+	ArrayList<String> names = null;
+
+	ArrayList<ArrayList<String>> domains = null;		// complete DO-lines (domain, sequence index, start, end)
+
+	ArrayList<String> sequences1 = null;
+	ArrayList<String> sequences2 = null;
+
+	ArrayList<String> secstructs1 = null;
+	ArrayList<String> secstructs2 = null;
+
+	ArrayList<String> species = null;
+
+	/*
+	 * initialized on demand (not available for all superclasses)
+	 */
+	ArrayList<String> feature_names = null;
+
+	double[][] scaling_params = null;
+
+	ArrayList<String> fast_feature_names = null;
+
+	double[][] fast_scaling_params = null;
+
+	double[] feature_means = null;
+
+	PairwiseScoreMatrix blosum_scores = null;
+	PairwiseScoreMatrix pam_scores = null;
+
+	KmerIndex sequence_index = null;
+	KmerIndex domain_index = null;
+
+
+	public TrainingSet(String class_id, String train_dir) {
+
+		this.class_id = class_id;
+		this.train_dir = train_dir;
+
+		int num_entries = new DomainFeatureCalculator().getTrainingSetSize(class_id, train_dir);
+
+
+	// parse domains, sequences and secondary structures of all tfs
+
+		SequenceFeatureCalculator parser = new SequenceFeatureCalculator();
+		parser.silent = true;
+
+		parser.parseRelevantDomainsAndSequences(new boolean[num_entries], class_id, train_dir);
+
+		names 		= parser.other_names;
+		domains 	= parser.other_domains;
+		sequences1 	= parser.other_sequences1;
+		sequences2 	= parser.other_sequences2;
+
+		if (new File(train_dir + "trainingset_" + class_id + ".secstruct").exists()) {
+
+			parser.parseRelevantSecondaryStructures(new boolean[num_entries], class_id, train_dir);
+
+			secstructs1 = parser.other_secstructs1;
+			secstructs2 = parser.other_secstructs2;
+		}
+
+
+	// parse species of all tfs
+
+		species = readLines(train_dir + "trainingset_" + class_id + ".species");
+
+
+	// self-alignment scores of all domains (persisted at training time, otherwise computed on first use)
+
+		SelfScoreCache.registerDomains(domains);
+		SelfScoreCache.load(train_dir + "trainingset_" + class_id + SelfScoreCache.fileSuffix);
+
+
+	// MoSta scores of the PFMs (used by the outlier filter of the PFM transfer)
+
+		MoStaScoreCache.load(train_dir + "trainingset_" + class_id + MoStaScoreCache.fileSuffix);
+	}
+
+
+	public String getClassID() {
+		return class_id;
+	}
+
+	public int size() {
+		return names.size();
+	}
+
+	public ArrayList<String> getNames() {
+		return names;
+	}
+
+	public ArrayList<ArrayList<String>> getDomains() {
+		return domains;
+	}
+
+	/*
+	 * sequences of all domains (without sequence index and positions)
+	 */
+	public ArrayList<String> getDomainSequences() {
+
+		ArrayList<String> res = new ArrayList<String>();
+
+		for (ArrayList<String> curr_domains: domains) {
+			for (String domain: curr_domains) {
+				res.add(new StringTokenizer(domain).nextToken());
+			}
+		}
+		return res;
+	}
+
+	public ArrayList<String> getSequences1() {
+		return sequences1;
+	}
+
+	public ArrayList<String> getSequences2() {
+		return sequences2;
+	}
+
+	public ArrayList<String> getSecondaryStructures1() {
+		return secstructs1;
+	}
+
+	public ArrayList<String> getSecondaryStructures2() {
+		return secstructs2;
+	}
+
+	public ArrayList<String> getSpecies() {
+		return species;
+	}
+
+
+	/*
+	 * names of the features used by the model of this class
+	 */
+	public synchronized ArrayList<String> getFeatureNames() {
+
+		if (feature_names == null) {
+			feature_names = readLines(train_dir + class_id + FBPPredictor.featureNamesFileSuffix);
+		}
+		return feature_names;
+	}
+
+
+	/*
+	 * true, if a subset of the features was selected for the fast model of this class
+	 */
+	public boolean hasFastFeatureNames() {
+		return new File(train_dir + class_id + FBPPredictor.fastFeatureNamesFileSuffix).exists();
+	}
+
+
+	/*
+	 * features of the fast model of this class in the order of the training set, read from "<class>.fastfeaturenames"
+	 */
+	public synchronized ArrayList<String> getFastFeatureNames() {
+
+		if (fast_feature_names == null) {
+			fast_feature_names = readLines(train_dir + class_id + FBPPredictor.fastFeatureNamesFileSuffix);
+		}
+		return fast_feature_names;
+	}
+
+
+	/*
+	 * scaling parameters { add, multiply } of the features of the fast model (the fast model is trained on the
+	 * columns of the scaled training set, which correspond to these features)
+	 */
+	public synchronized double[][] getFastScalingParameters() {
+
+		if (fast_scaling_params == null) {
+
+			ArrayList<String> all_features = getFeatureNames();
+			ArrayList<String> fast_features = getFastFeatureNames();
+			double[][] all_params = getScalingParameters();
+
+			fast_scaling_params = new double[2][fast_features.size()];
+
+			for (int j=0; j<fast_features.size(); j++) {
+
+				int index = all_features.indexOf(fast_features.get(j));
+
+				if (index < 0) {
+					throw new PredictionException("Error. Feature " + fast_features.get(j) + " of the fast model is unknown in " + class_id + ". Aborting.");
+				}
+				fast_scaling_params[0][j] = all_params[0][index];
+				fast_scaling_params[1][j] = all_params[1][index];
+			}
+		}
+		return fast_scaling_params;
+	}
+
+
+	/*
+	 * scaling parameters { add, multiply } of this class, read from "feature_scaling_parameters_<class>.out",
+	 * which is written by the ModelGenerator (derived from the orientation file, if the parameter file is
+	 * missing or outdated)
+	 */
+	public synchronized double[][] getScalingParameters() {
+
+		if (scaling_params == null) {
+
+			LibSVMFeatureScaler scaler = new LibSVMFeatureScaler();
+
+			File orientationfile = new File(train_dir + "feature_scaling_orientation_" + class_id + ".out");
+			File paramfile = new File(train_dir + "feature_scaling_parameters_" + class_id + ".out");
+
+			try {
+				if (paramfile.exists() && (!orientationfile.exists() || paramfile.lastModified() >= orientationfile.lastModified())) {
+					scaling_params = scaler.readScalingParameters(paramfile.getPath());
+				}
+				else {
+					scaling_params = scaler.getScalingParameters(orientationfile.getPath());
+				}
+			}
+			catch(IOException ioe) {
+				System.out.println(ioe.getMessage());
+				System.out.println("IOException occurred while reading scaling parameters of " + class_id + ".");
+			}
+		}
+		return scaling_params;
+	}
+
+
+	/*
+	 * mean values of the (unscaled) features of this class in "feature_scaling_orientation_<class>.out"
+	 * in the order of the feature names
+	 */
+	public synchronized double[] getFeatureMeans() {
+
+		if (feature_means == null) {
+
+			String orientationfile = train_dir + "feature_scaling_orientation_" + class_id + ".out";
+
+			feature_means = new double[getScalingParameters()[0].length];
+			int num_vectors = 0;
+
+			try {
+				BufferedReader br = new BufferedReader(new FileReader(new File(orientationfile)));
+
+				String line;
+				while ((line = br.readLine()) != null) {
+
+					StringTokenizer strtok = new StringTokenizer(line);
+					if (! strtok.hasMoreTokens()) continue;
+
+					strtok.nextToken();		// label
+
+					while (strtok.hasMoreTokens()) {
+
+						String[] split = strtok.nextToken().split(":");
+						int index = Integer.parseInt(split[0]) - 1;
+
+						if (index < feature_means.length) feature_means[index] += Double.parseDouble(split[1]);
+					}
+					num_vectors++;
+				}
+				br.close();
+			}
+			catch(IOException ioe) {
+				System.out.println(ioe.getMessage());
+				System.out.println("IOException occurred while reading feature values of " + class_id + ".");
+			}
+
+			for (int i=0; i<feature_means.length; i++) {
+				feature_means[i] /= Math.max(1, num_vectors);
+			}
+		}
+		return feature_means;
+	}
+
+
+	/*
+	 * n x n matrix of precalculated BLOSUM-scores of all pairs of tfs (memory-mapped)
+	 */
+	public synchronized PairwiseScoreMatrix getBlosumScores() {
+
+		if (blosum_scores == null) {
+			blosum_scores = readPairwiseScores(train_dir + "trainingset_" + class_id + ".blo62");
+		}
+		return blosum_scores;
+	}
+
+
+	/*
+	 * n x n matrix of precalculated PAM-scores of all pairs of tfs (memory-mapped)
+	 */
+	public synchronized PairwiseScoreMatrix getPamScores() {
+
+		if (pam_scores == null) {
+			pam_scores = readPairwiseScores(train_dir + "trainingset_" + class_id + ".pam80");
+		}
+		return pam_scores;
+	}
+
+
+	/*
+	 * k-mer index of the distinct protein sequences of all tfs (used to predict the superclass)
+	 */
+	public synchronized KmerIndex getSequenceIndex() {
+
+		if (sequence_index == null) {
+
+			HashSet<String> all_seqs = new HashSet<String>();
+			all_seqs.addAll(sequences1);
+			all_seqs.addAll(sequences2);
+			all_seqs.remove("NO SEQUENCE.");
+
+			sequence_index = new KmerIndex(all_seqs.toArray(new String[]{}), KmerIndex.defaultK);
+		}
+		return sequence_index;
+	}
+
+
+	/*
+	 * k-mer index of the distinct domain sequences of all tfs (used to localize the domain of a query)
+	 */
+	public synchronized KmerIndex getDomainIndex() {
+
+		if (domain_index == null) {
+
+			HashSet<String> all_domains = new HashSet<String>(getDomainSequences());
+
+			domain_index = new KmerIndex(all_domains.toArray(new String[]{}), KmerIndex.defaultK);
+		}
+		return domain_index;
+	}
+
+
+	private PairwiseScoreMatrix readPairwiseScores(String infile) {
+
+		PairwiseScoreMatrix scores = null;
+
+		try {
+			scores = PairwiseScoreMatrix.load(infile);
+		}
+		catch(IOException ioe) {
+			throw new PredictionException("Error. Pairwise scores of " + class_id + " could not be read from " + infile + ". Aborting.\n" + ioe.getMessage());
+		}
+
+		if (scores.size() != size()) {
+			throw new PredictionException("Error. Invalid number of training TFs in " + infile + ": " + scores.size() + " instead of " + size() + ". Aborting.");
+		}
+		return scores;
+	}
+
+
+	private static ArrayList<String> readLines(String infile) {
+
+		ArrayList<String> lines = new ArrayList<String>();
+
+		try {
+			BufferedReader br = new BufferedReader(new FileReader(new File(infile)));
+
+			String line;
+			while ((line = br.readLine()) != null) {
+				lines.add(line.trim());
+			}
+			br.close();
+		}
+		catch(IOException ioe) {
+			System.out.println(ioe.getMessage());
+			System.out.println("IOException occurred while reading " + infile + ".");
+		}
+		return lines;
+	}
+}
@@ -25,6 +25,23 @@ public class CVGlobalSettings {
 
 	public static int svm_cache = 500;
 
+	/**
+	 * number of threads for the grid search (grid points and runs are
+	 * evaluated concurrently, each task may use up to svm_cache MByte, so
+	 * the number of threads is limited by the maximum heap size)
+	 */
+	public static int threads = 1;
+
+	/**
+	 * number of threads, whose kernel caches fit into the maximum heap size
+	 * (at least one)
+	 */
+	public static int getEffectiveThreads() {
+		long cache_bytes = Math.max(1, svm_cache) * 1024L * 1024L;
+		long fitting = Runtime.getRuntime().maxMemory() / cache_bytes;
+		return (int) Math.max(1, Math.min(threads, fitting));
+	}
+
 	/**
 	 * set the grid for log2c (all kernels, classification and regression)
 	 */
@@ -32,6 +32,17 @@ public class CVRegressionContainer {
 	public void addToAAE(Double[] d){
 		this.aae.add(d);
 	}
+
+	/**
+	 * appends the fold results of another container (e.g. of another run)
+	 * 
+	 * @param cvrc
+	 */
+	public void addAll(CVRegressionContainer cvrc) {
+		this.q2.addAll(cvrc.q2);
+		this.mse.addAll(cvrc.mse);
+		this.aae.addAll(cvrc.aae);
+	}
 	
 	public CVRegressionContainer() {
 		init();
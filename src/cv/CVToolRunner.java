@@ -102,6 +102,8 @@ public class CVToolRunner {
 				.withDescription("maximum number of labels for classification")
 				.isRequired(false).hasArg(true).create("th");
 
+		Option optThreads = new Option("n", "threads", true, "number of threads for the grid search");
+
 		Option optGridInfo = OptionBuilder.withLongOpt("grid").withDescription(
 				"displays infos of grid sizes").isRequired(false).create("g");
 
@@ -120,6 +122,7 @@ public class CVToolRunner {
 		options.addOption(optFolds);
 		options.addOption(optSVMCache);
 		options.addOption(optGridInfo);
+		options.addOption(optThreads);
 		options.addOption(optRegressionThreshold);
 
 		/**
@@ -214,6 +217,10 @@ public class CVToolRunner {
 		if (lvCmd.hasOption("r")) {
 			CVGlobalSettings.runs = new Integer(lvCmd.getOptionValue("r"));
 		}
+		// -n,--threads <arg> number of threads for the grid search
+		if (lvCmd.hasOption("n")) {
+			CVGlobalSettings.threads = new Integer(lvCmd.getOptionValue("n"));
+		}
 		// classification threshold
 		if (lvCmd.hasOption("th")) {
 			CVGlobalSettings.regression_threshold = new Integer(lvCmd
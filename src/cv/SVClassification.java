@@ -50,17 +50,18 @@ public class SVClassification {
 				/**
 				 * evaluate over 10 randomly permutated cross-validation runs
 				 */
+				libsvm.svm_train trainer = new libsvm.svm_train();
 				for (int runs = 0; runs < CVGlobalSettings.runs; runs++) {
 					SeedFactory.setSeed(runs);
-					libsvm.svm_train.train(args2);
+					trainer.run(args2);
 				}
-				ArrayList<Double> result = libsvm.svm_train.getAccuracy();
+				ArrayList<Double> result = trainer.getAccuracy();
 
 				double[] accuracies = new double[result.size()];
 				for (int r = 0; r < result.size(); r++) {
 					accuracies[r] = result.get(r);
 				}
-				libsvm.svm_train.clearAccuracies();
+				trainer.clearAccuracies();
 				System.out.println("");
 
 				/**
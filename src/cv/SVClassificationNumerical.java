@@ -58,17 +58,18 @@ public class SVClassificationNumerical {
 					 * evaluate over 10 randomly permutated cross-validation
 					 * runs
 					 */
+					svm_train trainer = new svm_train();
 					for (int runs = 0; runs < CVGlobalSettings.runs; runs++) {
 						SeedFactory.setSeed(runs);
-						svm_train.train(args2);
+						trainer.run(args2);
 					}
-					ArrayList<Double> result = svm_train.getAccuracy();
+					ArrayList<Double> result = trainer.getAccuracy();
 
 					double[] accuracies = new double[result.size()];
 					for (int r = 0; r < result.size(); r++) {
 						accuracies[r] = result.get(r);
 					}
-					svm_train.clearAccuracies();
+					trainer.clearAccuracies();
 					System.out.println("");
 
 					/**
@@ -0,0 +1,160 @@
+package cv;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import libsvm.svm_train;
+import libsvmcore.svm_problem;
+
+/**
+ *
+ * Grid search for epsilon regression, which evaluates all grid points and all
+ * cross-validation runs concurrently. The problem is read only once and shared
+ * by all tasks, each task collects its results in its own container and
+ * permutes the folds with its own random generator (seed = number of the run),
+ * so that the results do not depend on the number of threads.
+ *
+ */
+public class SVRGridSearch {
+
+	/**
+	 * results of one point of the parameter grid
+	 */
+	public static class GridPoint {
+
+		public int log2c;
+		public int log2eps;
+		public int log2g;
+
+		String[] args;
+		CVRegressionContainer cvrc = new CVRegressionContainer();
+
+		public CVRegressionContainer getResults() {
+			return cvrc;
+		}
+	}
+
+	private svm_problem prob;
+	private String str_path;
+
+	public SVRGridSearch(String str_file, String str_dir) throws IOException {
+		str_path = new File(str_dir.trim() + "/" + str_file.trim()).getCanonicalPath();
+		prob = svm_train.read_problem(str_path);
+	}
+
+	/**
+	 *
+	 * grid of CVGlobalSettings (log2c, log2eps and log2g for the RBF kernel)
+	 * in the order of the nested loops of the former serial grid search
+	 *
+	 * @param rbf
+	 *            true: RBF kernel, false: precomputed kernel
+	 * @return
+	 */
+	public ArrayList<GridPoint> getGrid(boolean rbf) {
+		ArrayList<GridPoint> grid = new ArrayList<GridPoint>();
+
+		for (int log2c = CVGlobalSettings.log2c_start; log2c <= CVGlobalSettings.log2c_end; log2c = log2c + CVGlobalSettings.log2c_incr) {
+			for (int log2eps = CVGlobalSettings.log2e_start; log2eps <= CVGlobalSettings.log2e_end; log2eps = log2eps + CVGlobalSettings.log2e_incr) {
+
+				if (!rbf) {
+					grid.add(createGridPoint(log2c, log2eps, 0, rbf));
+					continue;
+				}
+				for (int log2g = CVGlobalSettings.log2g_start; log2g <= CVGlobalSettings.log2g_end; log2g = log2g + CVGlobalSettings.log2g_incr) {
+					grid.add(createGridPoint(log2c, log2eps, log2g, rbf));
+				}
+			}
+		}
+		return grid;
+	}
+
+	private GridPoint createGridPoint(int log2c, int log2eps, int log2g, boolean rbf) {
+		GridPoint point = new GridPoint();
+		point.log2c = log2c;
+		point.log2eps = log2eps;
+		point.log2g = log2g;
+
+		ArrayList<String> args = new ArrayList<String>();
+		args.add("-v");
+		args.add("" + CVGlobalSettings.folds);
+		args.add("-c");
+		args.add("" + Math.pow(2, log2c));
+		args.add("-s");
+		args.add("3");
+		args.add("-e");
+		args.add("" + Math.pow(2, log2eps));
+		args.add("-t");
+		if (rbf) {
+			args.add("2");
+			args.add("-g");
+			args.add("" + Math.pow(2, log2g));
+		} else {
+			args.add("4");
+		}
+		args.add("-m");
+		args.add(CVGlobalSettings.svm_cache + "");
+		args.add(str_path);
+
+		point.args = args.toArray(new String[args.size()]);
+
+		return point;
+	}
+
+	/**
+	 *
+	 * performs CVGlobalSettings.runs cross-validation runs for each grid point
+	 * using CVGlobalSettings.getEffectiveThreads() threads. The results of the runs are
+	 * added to the containers of the grid points in the order of the runs.
+	 *
+	 * @param grid
+	 */
+	public void evaluate(ArrayList<GridPoint> grid) {
+		ExecutorService pool = Executors.newFixedThreadPool(CVGlobalSettings.getEffectiveThreads());
+		ArrayList<Future<CVRegressionContainer>> results = new ArrayList<Future<CVRegressionContainer>>();
+
+		for (GridPoint point : grid) {
+			for (int runs = 0; runs < CVGlobalSettings.runs; runs++) {
+
+				final String[] args = point.args;
+				final int seed = runs;
+
+				results.add(pool.submit(new Callable<CVRegressionContainer>() {
+					public CVRegressionContainer call() {
+						return svm_train.crossValidation(prob, args, new Random(seed));
+					}
+				}));
+			}
+		}
+
+		try {
+			int task = 0;
+			for (GridPoint point : grid) {
+				for (int runs = 0; runs < CVGlobalSettings.runs; runs++) {
+					CVRegressionContainer run = results.get(task++).get();
+
+					point.cvrc.addAll(run);
+					point.cvrc.setC(run.getC());
+					point.cvrc.setEpsilon(run.getEpsilon());
+					point.cvrc.setFolds(run.getFolds());
+					point.cvrc.setMatrix(run.getMatrix());
+				}
+			}
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+			System.exit(1);
+		} catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+			System.exit(1);
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
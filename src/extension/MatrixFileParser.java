@@ -21,23 +21,19 @@ package extension;
 import java.util.ArrayList;
 
 
-import model.LabelFileGenerator;
+import core.PFMLibrary;
 
 public class MatrixFileParser {
 
-	ArrayList<String> matrix_names;
-	ArrayList<ArrayList<String>> matrices;
+	PFMLibrary library;
 	
 	public void readMatrices(String infile) {
 		
-		LabelFileGenerator matrix_parser = new LabelFileGenerator();
-		matrix_names = matrix_parser.getFactorNames(infile);
-		matrices = matrix_parser.getAllFBPs(infile);
+		library = PFMLibrary.getLibrary(infile);
 	}
 	
 	public ArrayList<String> obtainMatrix(String factor_name) {
-		int idx = matrix_names.indexOf(factor_name);
-		return matrices.get(idx);
+		return library.getRows(factor_name);
 	}
 	
 	
@@ -29,6 +29,7 @@ import java.util.ArrayList;
 import java.util.StringTokenizer;
 
 import main.FBPPredictor;
+import main.PredictionException;
 
 import org.biojava.bio.BioException;
 
@@ -508,9 +509,8 @@ public class FormatConverter {
 			StringTokenizer strtok = new StringTokenizer(br.readLine());
 			
 			if (!strtok.nextToken().equals("NA")) {
-				System.out.println("Parse Error. Invalid format. \"NA\" expected at the beginning of the line. Aborting.");
-				System.out.println("Please specify the name of the transcription factor in the given input file.");
-				System.exit(0);
+				throw new PredictionException("Parse Error. Invalid format. \"NA\" expected at the beginning of the line. Aborting.\n" +
+											  "Please specify the name of the transcription factor in the given input file.");
 			}	
 			
 			String name = strtok.nextToken().trim();
@@ -521,9 +521,8 @@ public class FormatConverter {
 			
 			String spec = br.readLine();	
 			if (!spec.startsWith("SP")) {	
-				System.out.println("Parse Error. Invalid format. \"SP\" expected at the beginning of the line. Aborting.");
-				System.out.println("Please specify the species in the given input file.");
-				System.exit(0);
+				throw new PredictionException("Parse Error. Invalid format. \"SP\" expected at the beginning of the line. Aborting.\n" +
+											  "Please specify the species in the given input file.");
 			}	
 			
 			spec = spec.substring(2, spec.length()).trim();
@@ -560,8 +559,7 @@ public class FormatConverter {
 			}
 				
 			if(spec == null || !known_species.contains(spec.toUpperCase())) {
-				System.out.println("Parse Error. Unknown species: \"" + spec + "\".\nList of possible species can be found in \"" + species_file + "\". Aborting.");
-				System.exit(0);
+				throw new PredictionException("Parse Error. Unknown species: \"" + spec + "\".\nList of possible species can be found in \"" + species_file + "\". Aborting.");
 			}
 			
 			
@@ -721,14 +719,9 @@ public class FormatConverter {
 			
 		}
 		catch(IOException ioe) {
-			System.out.println(ioe.getMessage());
-			System.out.println("IOException occurred while parsing input file.");
+			throw new PredictionException(ioe.getMessage() + "\nIOException occurred while parsing input file.");
 		}
 		
-		
-		
-		return res;
-		
 	}
 	 
 	
@@ -804,8 +797,7 @@ public class FormatConverter {
 		}
 		
 		if(!found) {
-			System.out.println("No classification found for \"" + class_id + "\". Aborting.");
-			System.exit(0);
+			throw new PredictionException("No classification found for \"" + class_id + "\". Aborting.");
 		}
 		
 		return res;
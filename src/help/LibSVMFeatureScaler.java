@@ -85,159 +85,205 @@ public class LibSVMFeatureScaler {
 
 	
 	
-	public void scaleFeatureFile(String orientationfile, String infile, String outfile) {
+	/*
+	 * 
+	 * derives the scaling parameters from a given training set, 
+	 * returns { add, multiply } (scaled value = (value + add) * multiply - 1)
+	 * 
+	 */
+	public double[][] getScalingParameters(String orientationfile) throws IOException {
 		
 		BufferedReader br = null;
-		BufferedWriter bw = null;
 		
 		String line = null;
 		
 		StringTokenizer strtok = null;
 		
-		try {
-			
-			br = new BufferedReader(new FileReader(new File(orientationfile)));
-			
-			ArrayList<ArrayList<String>> orientation_features = new ArrayList<ArrayList<String>>();
-			
-			boolean first = true;
+		
+		br = new BufferedReader(new FileReader(new File(orientationfile)));
+		
+		ArrayList<ArrayList<String>> orientation_features = new ArrayList<ArrayList<String>>();
+		
+		boolean first = true;
+		
+		int num_features = 0;
+		
+		String[] split = null;
+		
+		
+		
+		while((line = br.readLine()) != null) {
 			
-			int num_features = 0;
+			strtok = new StringTokenizer(line);
 			
-			String[] split = null;
+			ArrayList<String> a_line = new ArrayList<String>();
 			
 			
+		// count and parse features of first data point
 			
-			while((line = br.readLine()) != null) {
-				
-				strtok = new StringTokenizer(line);
-				
-				ArrayList<String> a_line = new ArrayList<String>();
+			if(first) {
 				
+				a_line.add(strtok.nextToken());		// label
 				
-			// count and parse features of first data point
-				
-				if(first) {
+				while(strtok.hasMoreTokens()) {
 					
-					a_line.add(strtok.nextToken());		// label
+					num_features++;
 					
-					while(strtok.hasMoreTokens()) {
-						
-						num_features++;
-						
-						split = strtok.nextToken().split(":");
-						
-						if(!split[0].equals(num_features + "")) {
-							
-							System.out.println("Error while parsing features of orientationfile. " + (num_features) + " expected. Aborting.");
-							System.out.println("Line: " + line);
-							System.exit(0);
-							
-						}
-						
-						a_line.add(split[1]);			// feature
+					split = strtok.nextToken().split(":");
+					
+					if(!split[0].equals(num_features + "")) {
 						
+						System.out.println("Error while parsing features of orientationfile. " + (num_features) + " expected. Aborting.");
+						System.out.println("Line: " + line);
+						System.exit(0);
 						
 					}
 					
-					first = false;
+					a_line.add(split[1]);			// feature
+					
 					
 				}
 				
+				first = false;
 				
-			// parse features of another data point
+			}
+			
+			
+		// parse features of another data point
+			
+			else {
 				
-				else {
+				a_line.add(strtok.nextToken());		// label
+				
+				for(int i=0; i<num_features; i++) {
 					
-					a_line.add(strtok.nextToken());		// label
+					split = strtok.nextToken().split(":");
 					
-					for(int i=0; i<num_features; i++) {
-						
-						split = strtok.nextToken().split(":");
+					if(!split[0].equals((i+1) + "")) {
 						
-						if(!split[0].equals((i+1) + "")) {
-							
-							System.out.println("Error while parsing features of orientationfile. " + (i+1) + " expected. Aborting.");
-							System.out.println("Line: " + line);
-							System.exit(0);
-							
-						}
-						a_line.add(split[1]);			// feature
+						System.out.println("Error while parsing features of orientationfile. " + (i+1) + " expected. Aborting.");
+						System.out.println("Line: " + line);
+						System.exit(0);
 						
 					}
+					a_line.add(split[1]);			// feature
 					
 				}
 				
-				orientation_features.add(a_line);
-				
 			}
 			
-			br.close();
-			
+			orientation_features.add(a_line);
 			
-			/*
-			 * 
-			 * fill double matrix with feature values + calculate min & max values
-			 * 
-			 */
-			
-			
-			double[] max = new double[num_features];
-			double[] min = new double[num_features];
+		}
+		
+		br.close();
+		
+		
+		/*
+		 * 
+		 * fill double matrix with feature values + calculate min & max values
+		 * 
+		 */
+		
+		
+		double[] max = new double[num_features];
+		double[] min = new double[num_features];
+		
+		
+		double[][] feature_matrix = new double[orientation_features.size()][num_features];
+		
+		for(int j=0; j<num_features; j++) {
 			
+			max[j] = Double.NEGATIVE_INFINITY;
+			min[j] = Double.POSITIVE_INFINITY;
 			
-			double[][] feature_matrix = new double[orientation_features.size()][num_features];
+			for(int i=0; i<feature_matrix.length; i++) {
 			
-			for(int j=0; j<num_features; j++) {
+				// multiple points (1.200.23) --> remove thousand separator point
+				String currScore = orientation_features.get(i).get(j+1);
+				if (currScore.matches("[0-9]+\\.[0-9]+\\.[0-9]+")) {
+					if (! silent) System.out.println("Corrected invalid score: " + currScore + " --> " + currScore.replaceFirst("\\.", ""));
+					currScore = currScore.replaceFirst("\\.", "");
+				}
+				feature_matrix[i][j] = Double.parseDouble(currScore);
 				
-				max[j] = Double.NEGATIVE_INFINITY;
-				min[j] = Double.POSITIVE_INFINITY;
+				if(feature_matrix[i][j] < min[j]) min[j] = feature_matrix[i][j];
+				if(feature_matrix[i][j] > max[j]) max[j] = feature_matrix[i][j];
 				
-				for(int i=0; i<feature_matrix.length; i++) {
 				
-					// multiple points (1.200.23) --> remove thousand separator point
-					String currScore = orientation_features.get(i).get(j+1);
-					if (currScore.matches("[0-9]+\\.[0-9]+\\.[0-9]+")) {
-						if (! silent) System.out.println("Corrected invalid score: " + currScore + " --> " + currScore.replaceFirst("\\.", ""));
-						currScore = currScore.replaceFirst("\\.", "");
-					}
-					feature_matrix[i][j] = Double.parseDouble(currScore);
-					
-					if(feature_matrix[i][j] < min[j]) min[j] = feature_matrix[i][j];
-					if(feature_matrix[i][j] > max[j]) max[j] = feature_matrix[i][j];
-					
-					
-				}
 			}
+		}
+		
+		
+		/*
+		 * 
+		 * calculate scaling parameters
+		 * 
+		 */
+		
+		double[] multiply 	= new double[num_features];
+		double[] add		= new double[num_features];
+		
+		for(int j=0; j<num_features; j++) {
 			
+			add[j] = 0.0 - min[j];
 			
-			/*
-			 * 
-			 * calculate scaling parameters
-			 * 
-			 */
-			
-			double[] multiply 	= new double[num_features];
-			double[] add		= new double[num_features];
+			multiply[j] = 2.0 / ( max[j] - min[j] ); 
 			
-			for(int j=0; j<num_features; j++) {
-				
-				add[j] = 0.0 - min[j];
+			if(max[j] == min[j]) {
 				
-				multiply[j] = 2.0 / ( max[j] - min[j] ); 
+				multiply[j] = 1.0 / max[j];
 				
-				if(max[j] == min[j]) {
+				if(max[j] == 0.0) {
 					
-					multiply[j] = 1.0 / max[j];
-					
-					if(max[j] == 0.0) {
-						
-						multiply[j] = 1.0;
-						
-					}
+					multiply[j] = 1.0;
 					
 				}
+				
 			}
+		}
+		
+		return new double[][] {add, multiply};
+			
+	}
+	
+	
+	public void scaleFeatureFile(String orientationfile, String infile, String outfile) {
+		
+		try {
+			
+			double[][] scaling_params = getScalingParameters(orientationfile);
+			
+			scaleFeatureFile(scaling_params[0], scaling_params[1], infile, outfile);
+			
+		}
+		catch(IOException ioe) {
+			System.out.println(ioe.getMessage());
+			System.out.println("IOException occurred while scaling feature file.");
+		}
+		
+	}
+	
+	
+	/*
+	 * 
+	 * scales a LibSVM-formatted file with precomputed scaling parameters
+	 * 
+	 */
+	public void scaleFeatureFile(double[] add, double[] multiply, String infile, String outfile) {
+		
+		BufferedReader br = null;
+		BufferedWriter bw = null;
+		
+		String line = null;
+		
+		StringTokenizer strtok = null;
+		
+		String[] split = null;
+		
+		try {
+			
+			int num_features = add.length;
 			
 			
 			/*
@@ -301,5 +347,136 @@ public class LibSVMFeatureScaler {
 		}
 		
 	}
+	
+	/*
+	 * 
+	 * writes scaling parameters { add, multiply } (one line per feature: index, add, multiply), 
+	 * so that the orientation file does not have to be parsed for each prediction
+	 * 
+	 */
+	public void writeScalingParameters(double[][] scaling_params, String outfile) throws IOException {
+		
+		// write to a temporary file first, so that concurrent readers never see a partial file
+		File tmpfile = new File(outfile + ".tmp" + System.nanoTime());
+		
+		BufferedWriter bw = new BufferedWriter(new FileWriter(tmpfile));
+		
+		try {
+			for(int j=0; j<scaling_params[0].length; j++) {
+				
+				bw.write((j+1) + "\t" + scaling_params[0][j] + "\t" + scaling_params[1][j] + "\n");
+				
+			}
+			
+			bw.flush();
+		}
+		finally {
+			bw.close();
+		}
+		
+		if (! tmpfile.renameTo(new File(outfile))) {
+			tmpfile.delete();
+			throw new IOException("Could not create " + outfile + ".");
+		}
+		
+	}
+	
+	
+	/*
+	 * 
+	 * reads scaling parameters written by writeScalingParameters(), returns { add, multiply }
+	 * 
+	 */
+	public double[][] readScalingParameters(String paramfile) throws IOException {
+		
+		ArrayList<Double> add = new ArrayList<Double>();
+		ArrayList<Double> multiply = new ArrayList<Double>();
+		
+		BufferedReader br = new BufferedReader(new FileReader(new File(paramfile)));
+		
+		String line = null;
+		
+		StringTokenizer strtok = null;
+		
+		while((line = br.readLine()) != null) {
+			
+			strtok = new StringTokenizer(line);
+			
+			if (! strtok.hasMoreTokens()) continue;
+			
+			if (! strtok.nextToken().equals((add.size()+1) + "")) {
+				br.close();
+				throw new IOException("Invalid scaling parameter file: " + paramfile);
+			}
+			
+			add.add(Double.parseDouble(strtok.nextToken()));
+			multiply.add(Double.parseDouble(strtok.nextToken()));
+			
+		}
+		
+		br.close();
+		
+		double[][] scaling_params = new double[2][add.size()];
+		
+		for(int j=0; j<add.size(); j++) {
+			scaling_params[0][j] = add.get(j);
+			scaling_params[1][j] = multiply.get(j);
+		}
+		
+		return scaling_params;
+		
+	}
+	
+	
+	/*
+	 * 
+	 * scales a feature matrix (rows = tf pairs, columns = features) with respect to a given training set
+	 * 
+	 */
+	public double[][] scaleFeatureMatrix(String orientationfile, double[][] features) {
+		
+		double[][] scaled_features = new double[features.length][];
+		
+		try {
+			
+			double[][] scaling_params = getScalingParameters(orientationfile);
+			
+			scaled_features = scaleFeatureMatrix(scaling_params[0], scaling_params[1], features);
+			
+		}
+		catch(IOException ioe) {
+			System.out.println(ioe.getMessage());
+			System.out.println("IOException occurred while scaling feature matrix.");
+		}
+		
+		return scaled_features;
+		
+	}
+	
+	
+	public double[][] scaleFeatureMatrix(double[] add, double[] multiply, double[][] features) {
+		
+		double[][] scaled_features = new double[features.length][];
+		
+		for(int i=0; i<features.length; i++) {
+			
+			if(features[i].length != add.length) {
+				
+				System.out.println("Error while scaling feature matrix. " + add.length + " features expected. Aborting.");
+				System.exit(0);
+				
+			}
+			
+			scaled_features[i] = new double[add.length];
+			
+			for(int j=0; j<add.length; j++) {
+				
+				scaled_features[i][j] = ( features[i][j] + add[j] ) * multiply[j]  - 1.0;
+				
+			}
+		}
+		
+		return scaled_features;
+		
+	}
 }
-
@@ -53,5 +53,25 @@ public class ModelFileObtainer {
 		
 		return model_dir + class_id + "/" + files[0];
 	}
+	
+	/*
+	 * returns the fast model of the class (directory "fast" in the model directory of the class) 
+	 * or null, if no fast model was trained for this class
+	 */
+	public String obtainFastModelFile(String model_dir, String class_id) {
+		
+		if (!model_dir.endsWith(File.separator)) {
+			model_dir += File.separator;
+		}
+		
+		String[] files = new File(model_dir + class_id + File.separator + FBPPredictor.fastModelDir).list();
+		
+		if (files != null) {
+			for (String file: files) {
+				if (file.endsWith(".model")) return obtainModelFile(model_dir + class_id, FBPPredictor.fastModelDir);
+			}
+		}
+		return null;
+	}
 }
 
@@ -25,12 +25,22 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.PriorityQueue;
 import java.util.StringTokenizer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 import main.FBPPredictor;
+import main.PredictionProfile;
 
 import core.DomainFeatureCalculator;
+import core.PairSet;
 import extension.PFMFormatConverter;
 import extension.TransfacParser;
 
@@ -51,6 +61,11 @@ public class RawDataPreprocessor {
 	
 	public String basedir = "./lib/PSIPRED/";
 	
+	// maximum number of concurrent PSIPRED processes (shared by all instances)
+	public static final int maxPSIPREDProcesses = Runtime.getRuntime().availableProcessors();
+	
+	private static Semaphore psipred_slots = new Semaphore(maxPSIPREDProcesses);
+	
 
 	public void filterAndSortDataset(String infile, String trainingsetfactorfile, String outfile) {
 		
@@ -443,6 +458,9 @@ public void sortFBPs(String infile, String namesfile, String outfile) {
 		
 		try {
 			
+			// predict all secondary structures in parallel (the results are cached)
+			getSecondaryStructures(parseSequences(infile));
+			
 			br = new BufferedReader(new FileReader(new File(infile)));
 			bw = new BufferedWriter(new FileWriter(new File(outfile)));
 		
@@ -608,16 +626,141 @@ public void sortFBPs(String infile, String namesfile, String outfile) {
 	}
 	
 	
+	/*
+	 * 
+	 *	returns all protein sequences (S1, S2) of the given file
+	 * 
+	 */
+	
+	private ArrayList<String> parseSequences(String infile) throws IOException {
+		
+		ArrayList<String> res = new ArrayList<String>();
+		
+		BufferedReader br = new BufferedReader(new FileReader(new File(infile)));
+		
+		String line = null;
+		String seq = "";
+		String prefix = null;
+		
+		while((line = br.readLine()) != null) {
+			
+			if(line.startsWith("S1  ") || line.startsWith("S2  ")) {
+				
+				if(prefix != null && ! line.startsWith(prefix)) {
+					res.add(seq);
+					seq = "";
+				}
+				prefix = line.substring(0, 2);
+				seq += line.substring(4);
+			}
+			else if(prefix != null) {
+				res.add(seq);
+				seq = "";
+				prefix = null;
+			}
+		}
+		br.close();
+		
+		if(prefix != null) {
+			res.add(seq);
+		}
+		
+		return res;
+	}
+	
+	
 	/*
 	 * 
 	 *	predicts the secondary structure of a given sequence
 	 *
 	 *	sequence-string should contain ~60 chars per line
+	 *
+	 *	predictions are looked up in the secondary structure cache first
 	 * 
 	 */
 	
 	public String getSecondaryStructure(String seq) {
 		
+		String res = SecondaryStructureCache.get(seq);
+		
+		if (res != null) {
+			return res;
+		}
+		
+		// limit the number of concurrent PSIPRED processes
+		psipred_slots.acquireUninterruptibly();
+		
+		try {
+			res = runPSIPRED(seq);
+		}
+		finally {
+			psipred_slots.release();
+		}
+		
+		if (res.length() > 0) {
+			SecondaryStructureCache.put(seq, res);
+		}
+		
+		return res;
+	}
+	
+	
+	/*
+	 * 
+	 *	predicts the secondary structures of the given sequences with (at most) maxPSIPREDProcesses 
+	 *	parallel PSIPRED processes
+	 * 
+	 */
+	
+	public HashMap<String, String> getSecondaryStructures(Collection<String> seqs) {
+		
+		final HashMap<String, String> res = new HashMap<String, String>();
+		
+		ExecutorService pool = Executors.newFixedThreadPool(maxPSIPREDProcesses);
+		
+		ArrayList<Future<?>> tasks = new ArrayList<Future<?>>();
+		
+		for (final String seq: new LinkedHashSet<String>(seqs)) {
+			
+			tasks.add(pool.submit(new Runnable() {
+				public void run() {
+					String secstr = getSecondaryStructure(seq);
+					synchronized (res) {
+						res.put(seq, secstr);
+					}
+				}
+			}));
+		}
+		
+		try {
+			for (Future<?> task: tasks) {
+				task.get();
+			}
+		}
+		catch (InterruptedException e) {
+			System.out.println(e.getMessage());
+			System.out.println("InterruptedException while executing PSIPRED!");
+		}
+		catch (ExecutionException e) {
+			System.out.println(e.getMessage());
+			System.out.println("ExecutionException while executing PSIPRED!");
+		}
+		finally {
+			pool.shutdown();
+		}
+		
+		return res;
+	}
+	
+	
+	/*
+	 * 
+	 *	runs PSIPRED in a private working directory, so that concurrent predictions do not share any files
+	 * 
+	 */
+	
+	private String runPSIPRED(String seq) {
+		
 		BufferedReader br = null;
 		BufferedWriter bw = null;
 		
@@ -625,21 +768,36 @@ public void sortFBPs(String infile, String namesfile, String outfile) {
 		String line = null;
 		String infile = "seq.fasta";
 		
-		// set temporary base directory and input file name
-		String psidir = basedir;
-		if (! basedir.equals("./" + FBPPredictor.PsiPredDir)) {
-			psidir += "psipred/";
-			infile = RandomStringGenerator.randomString(10) + ".fasta";
+		// set temporary base directory
+		String tmpdir = basedir;
+		if (basedir.equals("./" + FBPPredictor.PsiPredDir)) {
+			tmpdir = System.getProperty("java.io.tmpdir") + "/";
+		}
+		else {
+			tmpdir += "psipred/";
+		}
+		
+		File workdir = null;
+		
+		do {
+			workdir = new File(tmpdir + "psipred_" + RandomStringGenerator.randomString(10));
 		}
+		while (workdir.exists());
+		
+		String psidir = new File(FBPPredictor.PsiPredDir).getAbsolutePath() + "/";
 		
 		try {
 			
+			if (! workdir.mkdirs()) {
+				throw new IOException("Unable to create directory " + workdir.getPath() + ".");
+			}
+			
 			/*
 			 * 
 			 * generate input file
 			 * 
 			 */
-			File input_file = new File(psidir + infile);
+			File input_file = new File(workdir, infile);
 			bw = new BufferedWriter(new FileWriter(input_file));
 			
 			bw.write(">seq\n");
@@ -650,33 +808,35 @@ public void sortFBPs(String infile, String namesfile, String outfile) {
 			
 			/*
 			 * 
-			 * generate shell script
+			 * generate shell script, which links the PSIPRED binaries and weights into the working directory
 			 * 
 			 */
 			
-			File exec_file = new File(psidir + "launchPSIPRED");
+			File exec_file = new File(workdir, "launchPSIPRED");
 			bw = new BufferedWriter(new FileWriter(exec_file));
 			
-			bw.write("cd ./" + FBPPredictor.PsiPredDir + "\n");
-			if (psidir.startsWith("/") || psidir.startsWith("~")) {
-				bw.write("./runpsipred_single " + psidir + infile + "\n");
-			}
-			else {
-				bw.write("./runpsipred_single ../../" + psidir + infile + "\n");
-			}
+			bw.write("#!/bin/sh\n");
+			bw.write("cd " + workdir.getAbsolutePath() + "\n");
+			bw.write("ln -s " + psidir + "bin bin\n");
+			bw.write("ln -s " + psidir + "data data\n");
+			bw.write(psidir + "runpsipred_single " + infile + "\n");
 			bw.flush();
 			bw.close();
 			exec_file.setExecutable(true);
 			
+			PredictionProfile.countTempFile(input_file.getPath());
+			PredictionProfile.countTempFile(exec_file.getPath());
+			
 			/*
 			 * 
 			 * run external SS-prediction program (PSIPRED)
 			 * 
 			 */
 			
-			String cmdString = psidir + "launchPSIPRED";
+			String cmdString = exec_file.getAbsolutePath();
 		
 			Process proc = Runtime.getRuntime().exec(cmdString);
+			PredictionProfile.count(PredictionProfile.processLaunches, 1);
 	
 			proc.waitFor();
 			
@@ -688,13 +848,9 @@ public void sortFBPs(String infile, String namesfile, String outfile) {
 			 * 
 			 */
 			
-			String outfilename = infile.substring(0, infile.indexOf(".")) + ".horiz";
-			String outfilename_ss = infile.substring(0, infile.indexOf(".")) + ".ss";
-			String outfilename_ss2 = infile.substring(0, infile.indexOf(".")) + ".ss2";
+			File outfile = new File(workdir, infile.substring(0, infile.indexOf(".")) + ".horiz");
 			
-			File outfile = new File("./" + FBPPredictor.PsiPredDir + outfilename);
-			File outfile_ss = new File("./" + FBPPredictor.PsiPredDir + outfilename_ss);
-			File outfile_ss2 = new File("./" + FBPPredictor.PsiPredDir + outfilename_ss2);
+			PredictionProfile.countTempFile(outfile.getPath());
 			
 			br = new BufferedReader(new FileReader(outfile));
 			
@@ -714,14 +870,7 @@ public void sortFBPs(String infile, String namesfile, String outfile) {
 				
 			}
 			
-			
 			br.close();
-			input_file.delete();
-			exec_file.delete();
-			outfile.delete();
-			outfile_ss.delete();
-			outfile_ss2.delete();
-		
 		}
 		catch(IOException ioe) {
 			System.out.println(ioe.getMessage());
@@ -731,11 +880,27 @@ public void sortFBPs(String infile, String namesfile, String outfile) {
 			System.out.println(e.getMessage());
 			System.out.println("InterruptedException while executing PSIPRED!");
 		}
+		finally {
+			deleteDirectory(workdir);
+		}
 		
 		return res;
 	}
 	
 	
+	private static void deleteDirectory(File dir) {
+		
+		File[] files = dir.listFiles();
+		
+		if (files != null) {
+			for (File file: files) {
+				file.delete();			// symbolic links are deleted, not followed
+			}
+		}
+		dir.delete();
+	}
+	
+	
 	public void lookUpAllSpecies(String infile, String lookupfile, String outfile) {
 		
 		BufferedReader br = null;
@@ -992,15 +1157,7 @@ public void sortFBPs(String infile, String namesfile, String outfile) {
 		  
 	    domaincalculator.parseRelevantDomains(irrelevantPairs, class_id, train_dir);
 	    
-	    ArrayList<String> relevant_pairs = new ArrayList<String>();
-	    for (int i=0; i<num_entries-1; i++) {
-	    	for (int j=i+1; j<num_entries; j++) { 
-	    		
-	    		relevant_pairs.add(i + "_" + j);
-	    	}
-	    }
-	    
-	    domaincalculator.calculateAllDomainFeatures("SMBasedSimilarity", null, matrix , outfile, relevant_pairs);
+	    domaincalculator.calculateAllDomainFeatures("SMBasedSimilarity", null, matrix , outfile, PairSet.allPairs(num_entries));
 	}
 	
 	public void extractFBPs(String class_id, String infile, String outfile) {
@@ -0,0 +1,152 @@
+/*
+    SABINE predicts binding specificities of transcription factors.
+    Copyright (C) 2009 ZBIT, University of Tübingen, Johannes Eichner
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package help;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import main.FBPPredictor;
+
+
+/*
+ *
+ * persistent cache of PSIPRED predictions, which is addressed by the SHA-1 hash of
+ * the protein sequence (one file "<hash>.ss" per sequence, which contains the raw
+ * PSIPRED prediction)
+ *
+ * entries are written to a temporary file first and renamed afterwards, so that
+ * concurrent SABINE processes can share one cache directory
+ *
+ */
+public class SecondaryStructureCache {
+
+	public static String cacheDir = FBPPredictor.PsiPredDir + "cache/";
+
+	public static final String fileSuffix = ".ss";
+
+	// maximum number of predictions kept in memory (least recently used predictions are removed first, they remain on disk)
+	public static int maxEntries = 10000;
+
+	private static LinkedHashMap<String, String> secstructs = new LinkedHashMap<String, String>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+			return size() > maxEntries;
+		}
+	};
+
+
+	/*
+	 * returns the cached secondary structure of the given sequence (or null)
+	 */
+	public static synchronized String get(String seq) {
+
+		String key = getKey(seq);
+
+		String res = secstructs.get(key);
+
+		if (res != null) {
+			return res;
+		}
+
+		File infile = new File(cacheDir + key + fileSuffix);
+
+		if (! infile.exists()) {
+			return null;
+		}
+
+		try {
+			BufferedReader br = new BufferedReader(new FileReader(infile));
+			res = br.readLine();
+			br.close();
+		}
+		catch(IOException ioe) {
+			System.out.println(ioe.getMessage());
+			System.out.println("IOException occurred while reading cached secondary structure.");
+			return null;
+		}
+
+		if (res == null || res.length() == 0) {
+			return null;
+		}
+		secstructs.put(key, res);
+
+		return res;
+	}
+
+
+	public static synchronized void put(String seq, String secstruct) {
+
+		String key = getKey(seq);
+
+		secstructs.put(key, secstruct);
+
+		File dir = new File(cacheDir);
+		File tmpfile = new File(cacheDir + key + fileSuffix + ".tmp" + System.nanoTime());
+
+		try {
+			if (! dir.exists()) {
+				dir.mkdirs();
+			}
+
+			BufferedWriter bw = new BufferedWriter(new FileWriter(tmpfile));
+			bw.write(secstruct + "\n");
+			bw.flush();
+			bw.close();
+
+			if (! tmpfile.renameTo(new File(cacheDir + key + fileSuffix))) {
+				tmpfile.delete();
+			}
+		}
+		catch(IOException ioe) {
+			// cache directory is not writable, keep the prediction in memory only
+			tmpfile.delete();
+		}
+	}
+
+
+	public static String getKey(String seq) {
+
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+
+			StringBuffer res = new StringBuffer();
+
+			for (byte b: digest.digest(seq.getBytes("UTF-8"))) {
+				res.append(String.format("%02x", b));
+			}
+			return res.toString();
+		}
+		catch(NoSuchAlgorithmException nsae) {
+			throw new RuntimeException(nsae);
+		}
+		catch(IOException ioe) {
+			throw new RuntimeException(ioe);
+		}
+	}
+}
@@ -13,6 +13,7 @@ import java.util.ArrayList;
 import java.util.StringTokenizer;
 
 import main.FBPPredictor;
+import main.PredictionProfile;
 
 
 
@@ -78,6 +79,9 @@ public class STAMPRunner {
 			bw.close();
 			exec_file.setExecutable(true);
 			
+			PredictionProfile.countTempFile(basedir + "stamp/input.motifs");
+			PredictionProfile.countTempFile(exec_file.getPath());
+			
 			
 			
 
@@ -85,6 +89,8 @@ public class STAMPRunner {
 		// run STAMP 
 					
 			run();
+			
+			PredictionProfile.countTempFile(basedir + "stamp/outputFBP.txt");
 	
 			
 		// extract FBP and return it as ArrayList	
@@ -218,6 +224,7 @@ public class STAMPRunner {
 		try {
 			
 			Process proc = Runtime.getRuntime().exec(basedir + "stamp/launchSTAMP");
+			PredictionProfile.count(PredictionProfile.processLaunches, 1);
 			
 			BufferedReader input = new BufferedReader(new InputStreamReader(proc.getErrorStream()));
 		     
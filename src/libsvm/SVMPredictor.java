@@ -11,9 +11,17 @@ import java.util.PriorityQueue;
 import java.util.StringTokenizer;
 
 import main.FBPPredictor;
+import main.PredictionProfile;
+
+import libsvmcore.svm;
+import libsvmcore.svm_dense_model;
+import libsvmcore.svm_model;
+import libsvmcore.svm_node;
 
 import extension.PFMFormatConverter;
 
+import core.PFMLibrary;
+
 
 import optimization.MatlignOptimizer;
 import optimization.MoStaOptimizer;
@@ -56,7 +64,14 @@ public class SVMPredictor {
 				System.out.println("  Predicted Labels : " + outfile.substring(outfile.lastIndexOf("/") + 1) + "\n");
 			}
 				
-			svm_predict.main( new String[] { testset, modelfile, outfile } );
+			svm_model model = svm.svm_load_model(modelfile);
+			
+			if (svm_dense_model.isSupported(model)) {
+				writeLabels(new svm_dense_model(model).predict(readTestSet(testset)), outfile);
+			}
+			else {
+				svm_predict.main( new String[] { testset, modelfile, outfile } );
+			}
 			
 			
 
@@ -69,17 +84,168 @@ public class SVMPredictor {
 	
 	
 	
-	public ArrayList<LabeledTF> extractBestHits(String tfnamepairsfile, String predictedlabels, double threshold, int maxNumPairs) {
+	/*
+	 * 
+	 * in-memory variant of predictLabels(): predicts the labels of all rows of a (scaled) feature matrix
+	 * 
+	 */
+	public double[] predictLabels(String modelfile, double[][] testset) {
 		
-		ArrayList<LabeledTF> best_matches = new ArrayList<LabeledTF>();		
+		svm_model model = null;
+		
+		try {
+			
+			model = svm.svm_load_model(modelfile);
+			
+		}
+		catch(IOException ioe) {
+			System.out.println(ioe.getMessage());
+			System.out.println("IOException occurred while loading model file.");
+			return new double[testset.length];
+		}
+		
+		if (! silent) System.out.println("\n\n  Model File       : " + modelfile.substring(modelfile.lastIndexOf("/") + 1));
+		
+		return predictLabels(model, testset);
+		
+	}
+	
+	
+	/*
+	 * 
+	 * predicts the labels of all rows of a (scaled) feature matrix with an already loaded model
+	 * 
+	 */
+	public double[] predictLabels(svm_model model, double[][] testset) {
+		
+		printPredictionInfo(testset.length);
+		
+		if (svm_dense_model.isSupported(model)) {
+			return new svm_dense_model(model).predict(testset);
+		}
+		
+		double[] labels = new double[testset.length];
+		
+		for(int i=0; i<testset.length; i++) {
+			
+			svm_node[] x = new svm_node[testset[i].length];
+			
+			for(int j=0; j<testset[i].length; j++) {
+				
+				x[j] = new svm_node();
+				x[j].index = j+1;
+				x[j].value = testset[i][j];
+				
+			}
+			
+			labels[i] = svm.svm_predict(model, x);
+			
+		}
+		
+		return labels;
+		
+	}
+	
+	
+	/*
+	 * 
+	 * predicts the labels of all rows of a (scaled) feature matrix with a dense RBF regression model
+	 * 
+	 */
+	public double[] predictLabels(svm_dense_model model, double[][] testset) {
+		
+		printPredictionInfo(testset.length);
+		
+		return model.predict(testset);
+		
+	}
+	
+	
+	private void printPredictionInfo(int num_pairs) {
+		
+		if (gui_output_mode) {
+			System.out.print("done.\nPredicting PFM similarities for candidate factors...");
+		}
+		
+		if (! silent) { 
+			System.out.println("\n\nPredicting PFM similarities for all relevant TF pairs.\n");
+			System.out.println("  Input            : " + num_pairs + " TF pairs\n");
+		}
+		
+	}
+	
+	
+	/*
+	 * 
+	 * reads a test set in LibSVM format (feature j is stored at position j-1 of the returned rows)
+	 * 
+	 */
+	private double[][] readTestSet(String testset) throws IOException {
+		
+		ArrayList<double[]> rows = new ArrayList<double[]>();
+		
+		BufferedReader br = new BufferedReader(new FileReader(new File(testset)));
+		
+		String line = null;
+		
+		while((line = br.readLine()) != null) {
+			
+			StringTokenizer strtok = new StringTokenizer(line, " \t\n\r\f:");
+			
+			if (! strtok.hasMoreTokens()) continue;
+			
+			strtok.nextToken();						// label
+			
+			int num_features = strtok.countTokens() / 2;
+			
+			int[] indices = new int[num_features];
+			double[] values = new double[num_features];
+			int max_index = 0;
+			
+			for(int j=0; j<num_features; j++) {
+				indices[j] = Integer.parseInt(strtok.nextToken());
+				values[j] = Double.parseDouble(strtok.nextToken());
+				max_index = Math.max(max_index, indices[j]);
+			}
+			
+			double[] row = new double[max_index];
+			
+			for(int j=0; j<num_features; j++) {
+				row[indices[j]-1] = values[j];
+			}
+			rows.add(row);
+			
+		}
+		
+		br.close();
+		
+		return rows.toArray(new double[rows.size()][]);
+		
+	}
+	
+	
+	private void writeLabels(double[] labels, String outfile) throws IOException {
 		
+		BufferedWriter bw = new BufferedWriter(new FileWriter(new File(outfile)));
+		
+		for(int i=0; i<labels.length; i++) {
+			bw.write(labels[i] + "\n");
+		}
+		
+		bw.flush();
+		bw.close();
+		
+	}
+	
+	
+	public ArrayList<LabeledTF> extractBestHits(String tfnamepairsfile, String predictedlabels, double threshold, int maxNumPairs) {
+		
+		ArrayList<String> train_tfs = new ArrayList<String>();
+		ArrayList<Double> predicted_labels = new ArrayList<Double>();
 		
 		BufferedReader br1 = null;
 		BufferedReader br2 = null;
 		
-		if (! silent) System.out.println("\nExtracting best matches.");
-		if (gui_output_mode) System.out.print("done.\n\nExtracting best matches:");
-		
 		try {
 			
 			br1 = new BufferedReader(new FileReader(new File(tfnamepairsfile)));
@@ -90,13 +256,6 @@ public class SVMPredictor {
 			String line1 = null;
 			String line2 = null;
 			
-			String train_tf = null;
-			
-			double predicted_label = 0.0;
-			
-	
-			PriorityQueue<LabeledTF> matches = new PriorityQueue<LabeledTF>();
-			
 			while((line1 = br1.readLine()) != null) {
 				
 				line2 = br2.readLine();
@@ -108,58 +267,86 @@ public class SVMPredictor {
 				
 				strtok.nextToken(); 			// vs.
 				
-				train_tf = strtok.nextToken();
+				train_tfs.add(strtok.nextToken());
 				
-				
-				predicted_label = Math.min(Double.parseDouble(line2), FBPPredictor.maxPFMsimilarity);
-				
-				
-				
-				matches.add(new LabeledTF(train_tf, predicted_label));
+				predicted_labels.add(Double.parseDouble(line2));
 			
 			}
 			
+			br1.close();
+			br2.close();
 			
-			if (! silent) System.out.println("\n  Number of candidate TFs : " + matches.size());
-			
-			if (gui_output_mode) System.out.println("\n  Number of candidate TFs : " + matches.size());
+		}
+		catch(IOException ioe) {
+			System.out.println(ioe.getMessage());
+			System.out.println("IOException occurred while calculating best matches.");
+		}
+		
+		double[] labels = new double[predicted_labels.size()];
+		
+		for(int i=0; i<labels.length; i++) {
+			labels[i] = predicted_labels.get(i);
+		}
+		
+		return extractBestHits(train_tfs, labels, threshold, maxNumPairs);
+		
+	}
+	
+	
+	/*
+	 * 
+	 * in-memory variant of extractBestHits(): "train_tfs" contains the names of the candidate tfs, 
+	 * "labels" the respective predicted PFM similarities
+	 * 
+	 */
+	public ArrayList<LabeledTF> extractBestHits(ArrayList<String> train_tfs, double[] labels, double threshold, int maxNumPairs) {
+		
+		ArrayList<LabeledTF> best_matches = new ArrayList<LabeledTF>();		
+		
+		if (! silent) System.out.println("\nExtracting best matches.");
+		if (gui_output_mode) System.out.print("done.\n\nExtracting best matches:");
+		
+		PriorityQueue<LabeledTF> matches = new PriorityQueue<LabeledTF>();
+		
+		for(int i=0; i<train_tfs.size(); i++) {
 			
-			int size = matches.size();
+			double predicted_label = Math.min(labels[i], FBPPredictor.maxPFMsimilarity);
 			
-			boolean first = true;
+			matches.add(new LabeledTF(train_tfs.get(i), predicted_label));
+		
+		}
+		
+		
+		if (! silent) System.out.println("\n  Number of candidate TFs : " + matches.size());
+		
+		if (gui_output_mode) System.out.println("\n  Number of candidate TFs : " + matches.size());
+		
+		int size = matches.size();
+		
+		boolean first = true;
+		
+		for(int i=0; i<Math.min(size, maxNumPairs); i++) {
+						
+			LabeledTF tf = matches.poll();
 			
-			for(int i=0; i<Math.min(size, maxNumPairs); i++) {
-							
-				LabeledTF tf = matches.poll();
+			if (first && dynamic_threshold) {
 				
-				if (first && dynamic_threshold) {
-					
-					if (tf.label > high_conf_bmt)
-						threshold = high_conf_bmt;
-					else if (tf.label > medium_conf_bmt)
-						threshold = medium_conf_bmt;
-					else 
-						threshold = low_conf_bmt;
-					
-					first = false;
-				}
+				if (tf.label > high_conf_bmt)
+					threshold = high_conf_bmt;
+				else if (tf.label > medium_conf_bmt)
+					threshold = medium_conf_bmt;
+				else 
+					threshold = low_conf_bmt;
 				
-				if(tf.label > threshold) {
-									
-					best_matches.add(tf);
-												
-				}		
+				first = false;
 			}
-							
-			br1.close();
-			br2.close();
 			
+			if(tf.label > threshold) {
+								
+				best_matches.add(tf);
+											
+			}		
 		}
-		catch(IOException ioe) {
-			System.out.println(ioe.getMessage());
-			System.out.println("IOException occurred while calculating best matches.");
-		}
-
 		
 		if (! silent) System.out.println("  Number of best matches  : " + best_matches.size());
 		if (gui_output_mode) System.out.println("  Number of best matches  : " + best_matches.size());
@@ -188,6 +375,7 @@ public class SVMPredictor {
 		}
 		if (! silent) System.out.println("");
 		
+		PredictionProfile.lap("pfm_lookup");
 		
 		
 	// filter outlier fbps	
@@ -200,6 +388,8 @@ public class SVMPredictor {
 		filter.silent = silent;
 		
 		fbps = filter.filterOutliers(fbps, optimizer);
+		
+		PredictionProfile.lap("outlier_filter");
 
 		
 		if (! silent) System.out.println("  " + fbps.size() + " FBP(s) remaining.\n");
@@ -212,6 +402,7 @@ public class SVMPredictor {
 			runner.basedir = basedir;
 			res = runner.runSTAMP(fbps);
 			
+			PredictionProfile.lap("stamp_merge");
 		}
 		
 		else {
@@ -229,37 +420,13 @@ public class SVMPredictor {
 	
 	public ArrayList<String> getFBP(LabeledTF tfid, String fbplookupfile) {
 		
-		ArrayList<String> res = new ArrayList<String>();
-		
-		BufferedReader br = null;
 		if (! silent) System.out.println("SC  FBPs " + tfid.name + " (score = " + tfid.label + ")");
 		
-		try {
-			
-			br = new BufferedReader(new FileReader(new File(fbplookupfile)));
-			
-			String line = null;
-			
-			
-		// goto respective factor	
-			
-			while((line = br.readLine()) != null && !line.startsWith("DE\t" + tfid.name)) ;
-			
-			
-		// parse its FBP	
-			
-			while(!(line = br.readLine()).startsWith("XX")) {
-				
-				res.add(line);
-				
-			}
-			
-			br.close();
-			
-		}
-		catch(IOException ioe) {
-			System.out.println(ioe.getMessage());
-			System.out.println("IOException occurred while looking up FBP for " + tfid.name + ".");
+		ArrayList<String> res = PFMLibrary.getLibrary(fbplookupfile).getRows(tfid.name);
+		
+		if (res == null) {
+			System.out.println("No FBP found for " + tfid.name + " in " + fbplookupfile + ".");
+			res = new ArrayList<String>();
 		}
 		return res;
 		
@@ -4,6 +4,7 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Random;
 import java.util.StringTokenizer;
 import java.util.Vector;
 
@@ -32,8 +33,9 @@ public class svm_train {
 	private String error_msg;
 	private int cross_validation;
 	private int nr_fold;
-	private static CVRegressionContainer cvregcontainer = new CVRegressionContainer();
-	private static ArrayList<Double> accuracy = new ArrayList<Double>();
+	private CVRegressionContainer cvresults = new CVRegressionContainer(); // results of the runs of this instance (regression)
+	private Random rand = null; // permutation of the folds (null: Math.random())
+	private ArrayList<Double> accuracy = new ArrayList<Double>(); // results of the runs of this instance (classification)
 
 	private static void exit_with_help() {
 		System.out
@@ -73,7 +75,7 @@ public class svm_train {
 		double sumv = 0, sumy = 0, sumvv = 0, sumyy = 0, sumvy = 0;
 		double[] target = new double[prob.l];
 
-		ArrayList<Double[]> folds = svm.svm_cross_validation(prob, param, nr_fold, target);
+		ArrayList<Double[]> folds = svm.svm_cross_validation(prob, param, nr_fold, target, rand);
 
 		if (param.svm_type == svm_parameter.EPSILON_SVR
 				|| param.svm_type == svm_parameter.NU_SVR) {
@@ -137,13 +139,13 @@ public class svm_train {
 
 			}
 
-			cvregcontainer.addToMSE(MothersLittleHelper.doubleArray2DoubleArray(foldwise_mse));
-			cvregcontainer.addToQ2(MothersLittleHelper.doubleArray2DoubleArray(foldwise_r2));
-			cvregcontainer.addToAAE(MothersLittleHelper.doubleArray2DoubleArray(foldwise_aae));
-			cvregcontainer.setC(param.C);
-			cvregcontainer.setEpsilon(param.eps);
-			cvregcontainer.setFolds(nr_fold);
-			cvregcontainer.setMatrix(input_file_name);
+			cvresults.addToMSE(MothersLittleHelper.doubleArray2DoubleArray(foldwise_mse));
+			cvresults.addToQ2(MothersLittleHelper.doubleArray2DoubleArray(foldwise_r2));
+			cvresults.addToAAE(MothersLittleHelper.doubleArray2DoubleArray(foldwise_aae));
+			cvresults.setC(param.C);
+			cvresults.setEpsilon(param.eps);
+			cvresults.setFolds(nr_fold);
+			cvresults.setMatrix(input_file_name);
 
 		} else {
 			for (int i = 0; i < prob.l; i++)
@@ -158,14 +160,14 @@ public class svm_train {
 			/**
 			 * TODO SENSITIVITY, SPECIFITY
 			 */
-			svm_train.accuracy.add(acc);
+			accuracy.add(acc);
 		}
 	}
 
 	/**
 	 * clears the accuracy
 	 */
-	public static void clearAccuracies() {
+	public void clearAccuracies() {
 		accuracy = new ArrayList<Double>();
 	}
 
@@ -234,7 +236,16 @@ public class svm_train {
 		return result / targ.size();
 	}
 
-	private void run(String argv[]) throws IOException {
+	/**
+	 * 
+	 * trains a model or performs a cross-validation, the results of the
+	 * cross-validations are collected by this instance
+	 * 
+	 * @param argv
+	 *            options of svm_train (including the file name)
+	 * @throws IOException
+	 */
+	public void run(String argv[]) throws IOException {
 		parse_command_line(argv);
 		read_problem();
 		error_msg = svm.svm_check_parameter(prob, param);
@@ -262,7 +273,45 @@ public class svm_train {
 	public static CVRegressionContainer train(String argv[]) throws IOException {
 		svm_train t = new svm_train();
 		t.run(argv);
-		return cvregcontainer;
+		return t.cvresults;
+	}
+
+	/**
+	 * 
+	 * cross-validation of an epsilon-SVR on a problem, which has been read
+	 * before (see read_problem(String)). The results are returned in a new
+	 * container, the folds are permuted by the given random generator, so that
+	 * several runs can be performed concurrently.
+	 * 
+	 * @param prob
+	 *            problem (not modified)
+	 * @param argv
+	 *            options of svm_train (including "-v" and the file name)
+	 * @param rand
+	 * @return
+	 */
+	public static CVRegressionContainer crossValidation(svm_problem prob, String argv[], Random rand) {
+		svm_train t = new svm_train();
+		t.parse_command_line(argv);
+		t.prob = prob;
+		t.rand = rand;
+
+		int max_index = get_max_index(prob);
+
+		if (t.param.gamma == 0)
+			t.param.gamma = 1.0 / max_index;
+
+		check_precomputed_kernel(prob, t.param, max_index);
+
+		t.error_msg = svm.svm_check_parameter(prob, t.param);
+
+		if (t.error_msg != null) {
+			System.err.print("Error: " + t.error_msg + "\n");
+			System.exit(1);
+		}
+		t.do_cross_validation();
+
+		return t.cvresults;
 	}
 
 	private static double atof(String s) {
@@ -273,7 +322,7 @@ public class svm_train {
 		return Integer.parseInt(s);
 	}
 
-	public static ArrayList<Double> getAccuracy() {
+	public ArrayList<Double> getAccuracy() {
 		return accuracy;
 	}
 
@@ -396,10 +445,40 @@ public class svm_train {
 
 	private void read_problem() throws IOException {
 
+		prob = read_problem(input_file_name);
+		int max_index = get_max_index(prob);
+
+		if (param.gamma == 0)
+			param.gamma = 1.0 / max_index;
+
+		check_precomputed_kernel(prob, param, max_index);
+	}
+
+	// the first column of a precomputed kernel matrix has to contain the sample serial numbers
+
+	private static void check_precomputed_kernel(svm_problem prob, svm_parameter param, int max_index) {
+
+		if (param.kernel_type == svm_parameter.PRECOMPUTED)
+			for (int i = 0; i < prob.l; i++) {
+				if (prob.x[i][0].index != 0) {
+					System.err
+							.print("Wrong kernel matrix: first column must be 0:sample_serial_number\n");
+					System.exit(1);
+				}
+				if ((int) prob.x[i][0].value <= 0
+						|| (int) prob.x[i][0].value > max_index) {
+					System.err
+							.print("Wrong input format: sample_serial_number out of range\n");
+					System.exit(1);
+				}
+			}
+	}
+
+	public static svm_problem read_problem(String input_file_name) throws IOException {
+
 		BufferedReader fp = new BufferedReader(new FileReader(input_file_name));
 		Vector<String> vy = new Vector<String>();
 		Vector<svm_node[]> vx = new Vector<svm_node[]>();
-		int max_index = 0;
 
 		while (true) {
 			String line = fp.readLine();
@@ -416,12 +495,10 @@ public class svm_train {
 				x[j].index = atoi(st.nextToken());
 				x[j].value = atof(st.nextToken());
 			}
-			if (m > 0)
-				max_index = Math.max(max_index, x[m - 1].index);
 			vx.addElement(x);
 		}
 
-		prob = new svm_problem();
+		svm_problem prob = new svm_problem();
 		prob.l = vy.size();
 		prob.x = new svm_node[prob.l][];
 		for (int i = 0; i < prob.l; i++)
@@ -430,32 +507,25 @@ public class svm_train {
 		for (int i = 0; i < prob.l; i++)
 			prob.y[i] = atof(vy.elementAt(i));
 
-		if (param.gamma == 0)
-			param.gamma = 1.0 / max_index;
+		fp.close();
 
-		if (param.kernel_type == svm_parameter.PRECOMPUTED)
-			for (int i = 0; i < prob.l; i++) {
-				if (prob.x[i][0].index != 0) {
-					System.err
-							.print("Wrong kernel matrix: first column must be 0:sample_serial_number\n");
-					System.exit(1);
-				}
-				if ((int) prob.x[i][0].value <= 0
-						|| (int) prob.x[i][0].value > max_index) {
-					System.err
-							.print("Wrong input format: sample_serial_number out of range\n");
-					System.exit(1);
-				}
-			}
+		return prob;
+	}
 
-		fp.close();
+	// largest feature index of the last nodes of all instances
+	private static int get_max_index(svm_problem prob) {
+		int max_index = 0;
+		for (int i = 0; i < prob.l; i++)
+			if (prob.x[i].length > 0)
+				max_index = Math.max(max_index, prob.x[i][prob.x[i].length - 1].index);
+		return max_index;
 	}
 
-	public static CVRegressionContainer getCvregcontainer() {
-		return cvregcontainer;
+	public CVRegressionContainer getCvregcontainer() {
+		return cvresults;
 	}
 
-	public static void clearCVResults() {
-		cvregcontainer = new CVRegressionContainer();
+	public void clearCVResults() {
+		cvresults = new CVRegressionContainer();
 	}
 }
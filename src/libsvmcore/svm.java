@@ -2047,6 +2047,13 @@ public class svm {
 	// Stratified cross validation
 	public static ArrayList<Double[]> svm_cross_validation(svm_problem prob, svm_parameter param, int nr_fold,
 			double[] target) {
+		return svm_cross_validation(prob, param, nr_fold, target, null);
+	}
+
+	// cross validation with a private random generator for the permutation of the
+	// regression folds (rand == null: Math.random()), so that concurrent runs are reproducible
+	public static ArrayList<Double[]> svm_cross_validation(svm_problem prob, svm_parameter param, int nr_fold,
+			double[] target, Random rand) {
 		int i;
 		int[] fold_start = new int[nr_fold + 1];
 		int l = prob.l;
@@ -2110,7 +2117,7 @@ public class svm {
 			for (i = 0; i < l; i++)
 				perm[i] = i;
 			for (i = 0; i < l; i++) {
-				int j = i + (int) (Math.random() * (l - i));
+				int j = i + (int) ((rand == null ? Math.random() : rand.nextDouble()) * (l - i));
 				do {
 					int _ = perm[i];
 					perm[i] = perm[j];
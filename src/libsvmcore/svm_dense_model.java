@@ -0,0 +1,95 @@
+//
+// svm_dense_model
+//
+// dense copy of an RBF regression model (epsilon-SVR, nu-SVR) for fast batch prediction:
+// all SVs are stored row-major in one contiguous array, the test rows are processed in
+// blocks, so that each SV is read once per block instead of once per test row
+//
+// the predictions are identical to svm.svm_predict() (same order of all floating point operations)
+//
+package libsvmcore;
+public class svm_dense_model
+{
+	// number of test rows, which are processed together for each SV
+	private static final int BLOCK_SIZE = 64;
+
+	int l;			// total #SV
+	int dim;		// largest feature index of all SVs
+	double[] SV;		// SVs (SV[i*dim + index-1])
+	double[] sv_coef;	// coefficients of the SVs
+	double rho;
+	double gamma;
+
+	public static boolean isSupported(svm_model model) {
+		return (model.param.svm_type == svm_parameter.EPSILON_SVR || model.param.svm_type == svm_parameter.NU_SVR)
+				&& model.param.kernel_type == svm_parameter.RBF;
+	}
+
+	public svm_dense_model(svm_model model) {
+		if (!isSupported(model))
+			throw new IllegalArgumentException("only RBF regression models can be converted into dense models");
+
+		l = model.l;
+		rho = model.rho[0];
+		gamma = model.param.gamma;
+
+		dim = 0;
+		for (int i = 0; i < l; i++)
+			for (svm_node node : model.SV[i])
+				dim = Math.max(dim, node.index);
+
+		SV = new double[l * dim];
+		sv_coef = new double[l];
+
+		for (int i = 0; i < l; i++) {
+			for (svm_node node : model.SV[i])
+				SV[i * dim + node.index - 1] = node.value;
+			sv_coef[i] = model.sv_coef[0][i];
+		}
+	}
+
+	// predicts the values of all rows (feature j of a row has the index j+1)
+	public double[] predict(double[][] x) {
+		double[] res = new double[x.length];
+
+		int width = dim;
+		for (int r = 0; r < x.length; r++)
+			width = Math.max(width, x[r].length);
+
+		double[] block = new double[BLOCK_SIZE * width];
+		double[] sums = new double[BLOCK_SIZE];
+
+		for (int start = 0; start < x.length; start += BLOCK_SIZE) {
+			int rows = Math.min(BLOCK_SIZE, x.length - start);
+
+			// copy the rows of this block into a contiguous array (padded with zeros)
+			java.util.Arrays.fill(block, 0);
+			for (int r = 0; r < rows; r++) {
+				System.arraycopy(x[start + r], 0, block, r * width, x[start + r].length);
+				sums[r] = 0;
+			}
+
+			for (int i = 0; i < l; i++) {
+				int offset = i * dim;
+				double coef = sv_coef[i];
+
+				for (int r = 0; r < rows; r++) {
+					int row = r * width;
+					double sum = 0;
+					for (int j = 0; j < dim; j++) {
+						double d = block[row + j] - SV[offset + j];
+						sum += d * d;
+					}
+					for (int j = dim; j < width; j++)
+						sum += block[row + j] * block[row + j];
+
+					sums[r] += coef * Math.exp(-gamma * sum);
+				}
+			}
+
+			for (int r = 0; r < rows; r++)
+				res[start + r] = sums[r] - rho;
+		}
+		return res;
+	}
+}
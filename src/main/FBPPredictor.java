@@ -24,30 +24,34 @@ import help.LibSVMFeatureScaler;
 import help.ModelFileObtainer;
 import help.TFNamePairsFileGenerator;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 
 import libsvm.LabeledTF;
 import libsvm.SVMPredictor;
+import libsvmcore.svm_dense_model;
+import libsvmcore.svm_model;
 
 import optimization.MoStaOptimizer;
 
 import org.biojava.bio.BioException;
 
 import core.DomainFeatureCalculator;
+import core.DomainLocator;
 import core.FeatureRepairer;
 import core.IrrelevantPairIdentifier;
+import core.KmerIndex;
 import core.SVMPairwiseFeatureCalculator;
 import core.SequenceAligner;
 import core.SequenceFeatureCalculator;
 import core.SpeciesFeatureCalculator;
+import core.TrainingSet;
 import de.zbit.util.progressbar.AbstractProgressBar;
 
 
@@ -56,13 +60,20 @@ public class FBPPredictor {
 	public static final String public_trainingset = "data/trainingsets_public/";
 	public static final String private_trainingset = "data/trainingsets_private/";
 	public static final String defaultModelDir = "data/models/";
+	public static final String fastModelDir = "fast";
 	public static final String classMappingFile = "txt/Classes";
 	public static final String phyloDistFile = "txt/new_phylogenetic_distances.out";
 	public static final String featureNamesFileSuffix = ".30featurenames";
+	public static final String fastFeatureNamesFileSuffix = ".fastfeaturenames";
 	
 	public static final String[] matrixAlignmentScores = new String[] {"BLOSUM_62", "PAM_080", "PAM_010", "WEIL970101", "MEHP950101", "MEHP950102", "MEHP950103", "LUTR910102", "NIEK910102", "RISJ880101", "MIYS930101", "MIYT790101"};
 	public static final String[] seqIdAlignmentScores = new String[] {"BLOSUM_62_si"};
 	public static final String[] seqSimAlignmentScores = new String[] {"BLOSUM_62_t=1.0", "BLOSUM_62_t=3.0", "BLOSUM_62_t=5.0"};
+	
+	// features, which are derived from one BLOSUM_62 alignment of each pair of domains
+	public static final String[] blosumAlignmentScores = new String[] {"BLOSUM_62", "BLOSUM_62_si", "BLOSUM_62_t=1.0", "BLOSUM_62_t=3.0", "BLOSUM_62_t=5.0"};
+	public static final String[] blosumFeatureTypes = new String[] {"SMBasedSimilarity", "SequenceIdentity", "SMBasedIdentity", "SMBasedIdentity", "SMBasedIdentity"};
+	public static final String[][] blosumFeatureParams = new String[][] {null, null, {"1.0"}, {"3.0"}, {"5.0"}};
 	public static final String[] LAKernelScores = new String[] {"lak_GCBopt", "lak_JTTopt", "lak_BLOSUM_62opt", "lak_PAM_250opt", "lak_blosum62"};
 	public static final String[] MMKernelScores = new String[] {"mmk_4_1", "mmk_5_1", "mmk_6_1"};
 	public static final String[] secStructScores = new String[] {"secstr_blo62"};
@@ -70,6 +81,9 @@ public class FBPPredictor {
 	public static final String[] phylScores = new String[] {"phyl_dist"};
 	public static final String[] svmPairScores = new String[] {"svm_pairwise_BLOSUM_62", "svm_pairwise_PAM_080"};
 	
+	// features, which are skipped by the cheap model of the cascade and by the fast model
+	public static final String[][] expensiveScores = new String[][] {LAKernelScores, MMKernelScores, secStructScores, envirScores};
+	
 	public static final String matrix_dir = "data/substitutionMatrices/";
 	public static final String MMkernelDir = "lib/MismatchKernel/";
 	public static final String LAkernelDir = "lib/LAKernel/";
@@ -94,6 +108,63 @@ public class FBPPredictor {
 	
 	boolean dynamic_threshold = true;
 	
+	/*
+	 * keeps all feature values in memory instead of writing them to temporary feature files
+	 */
+	boolean in_memory = false;
+	
+	/*
+	 * cascade mode (cascade_size > 0): the candidates are ranked by the fast model of the superclass (stage
+	 * one) and only the cascade_size best candidates get the expensive features and the full model (the
+	 * prediction is performed in memory)
+	 */
+	int cascade_size = 0;
+	
+	/*
+	 * smaller cascades are rejected, since they drop best matches (0: no minimum); default: smallest size,
+	 * which recalled all best matches of 90 left-out TFs of the public training sets (CascadeCalibration:
+	 * 86.0% for 5 candidates, 96.2% for 8, 99.5% for 10, 100% for 11)
+	 */
+	public static final int default_min_cascade_size = 11;
+	
+	int min_cascade_size = default_min_cascade_size;
+	
+	/*
+	 * cascade_check_size > 0: the full prediction is performed and compared with a cascade of this size
+	 * (recall: fraction of the best matches, which are ranked among the cascade_check_size best candidates
+	 * by stage one)
+	 */
+	int cascade_check_size = 0;
+	
+	/*
+	 * leave-one-out mode: the training TF with the name of the input TF is not a candidate (used to predict
+	 * the TFs of the training set for validation)
+	 */
+	boolean leave_one_out = false;
+	
+	/*
+	 * fast mode: only the features of the fast model of the superclass are calculated (no kernel, secondary
+	 * structure and environment features), the prediction is performed in memory with the fast model
+	 */
+	boolean fast = false;
+	
+	// ranks of the best matches of the checked predictions among the candidates of stage one (since the last call of getCascadeRanks())
+	private static ArrayList<Integer> cascade_ranks = new ArrayList<Integer>();
+	
+	/*
+	 * resident training sets and models (read once and shared by several predictions)
+	 */
+	PredictionEngine engine = null;
+	
+	/*
+	 * true: the query is aligned to all training sequences to predict the superclass and to all training
+	 * domains to predict its domain, false: only to the superclass_candidates sequences of each class
+	 * sharing the most k-mers with it and to the domains sharing k-mers with it (see DomainLocator)
+	 */
+	public static boolean exact_homology_search = false;
+	
+	public static int superclass_candidates = 20;
+	
 	public int num_candidates;
 	
 	public static final double high_conf_bmt = 0.95;
@@ -170,43 +241,27 @@ public class FBPPredictor {
   public void setProgressBar(AbstractProgressBar progress) {
     this.progress = progress;
   }
+  
+	public void setPredictionEngine(PredictionEngine engine) {
+		this.engine = engine;
+	}
 	
 	public static double[] getThresholdValues() {
 		return new double[] {high_conf_bmt , medium_conf_bmt , low_conf_bmt};
 	}
 	
 	
-	private static int getTrainingSetSize(String class_id, String train_dir) {
-		
-		String line = null;
+	public void calculateFBP(String name, String class_id, String species, String sequence1, String sequence2, ArrayList<String> domains, String base_dir, String train_dir, String model_dir) {
+
+		// training data is read only once if a resident engine was provided
+		PredictionEngine engine = this.engine;
 		
-		int entry_counter = 0;
-		 
-		BufferedReader br = null;
-			 
-		try {
-			br = new BufferedReader(new FileReader(new File(train_dir + "trainingset_" + class_id + ".rawdata")));
-		} catch (FileNotFoundException e) {
-			System.out.println(e.getMessage());
-			System.out.println("Error occured before counting entries in training set");
-		}
-					
-		try {
-			while((line = br.readLine()) != null) {
-							
-				if(line.startsWith("NA  ")) {
-						entry_counter++;
-				} 
-			}
-		} catch (IOException e) {
-			System.out.println(e.getMessage());
-			System.out.println("Error occured while counting entries in training set");
+		if (engine == null) {
+			engine = new PredictionEngine(train_dir, model_dir);
 		}
-		return entry_counter;
-	}	
-	
-	
-	public void calculateFBP(String name, String class_id, String species, String sequence1, String sequence2, ArrayList<String> domains, String base_dir, String train_dir, String model_dir) {
+		PredictionProfile.setFactor(name, class_id);
+		PredictionProfile.lap("load_training_data");
+		
 
 		/*
 		 *  predict superclass if necessary
@@ -226,19 +281,16 @@ public class FBPPredictor {
 				double max_score = Double.NEGATIVE_INFINITY;
 				for (int c=0; c<all_class_ids.length; c++) {
 					
-					SequenceFeatureCalculator seqCalc = new SequenceFeatureCalculator();
-					seqCalc.silent = true;
-					boolean [] irrelPairs = new boolean[getTrainingSetSize(all_class_ids[c], train_dir)];
-					seqCalc.parseRelevantDomainsAndSequences(irrelPairs, all_class_ids[c], train_dir);
+					TrainingSet class_set = engine.getTrainingSet(all_class_ids[c]);
 					SequenceAligner class_predictor = new SequenceAligner(matrix_dir + "BLOSUM_62.dat", "NW");
 					
-					HashSet<String> all_seqs = new HashSet<String>();
-					all_seqs.addAll(seqCalc.get_other_sequences1());
-					all_seqs.addAll(seqCalc.get_other_sequences2());
-					all_seqs.remove("NO SEQUENCE.");
-					String[] class_seqs = all_seqs.toArray(new String[]{});
+					// only the sequences sharing the most k-mers with the query are aligned
+					KmerIndex class_index = class_set.getSequenceIndex();
+					String[] class_seqs = class_index.getSequences();
+					
+					int num_class_candidates = exact_homology_search ? class_seqs.length : superclass_candidates;
 	
-					for(int i=0; i<class_seqs.length; i++) {	
+					for(int i: class_index.getCandidates(sequence1, num_class_candidates)) {	
 						
 						double blosum_score = class_predictor.getSMBasedSimilarity(sequence1, class_seqs[i]);
 						
@@ -259,6 +311,9 @@ public class FBPPredictor {
 			
 			int class_num = Integer.parseInt(class_id.substring(5));
 			System.out.println("\n  Predicted class: " + class_num + " (" + all_class_names[class_num] + ")");
+			
+			PredictionProfile.setFactor(name, class_id);
+			PredictionProfile.lap("superclass_prediction");
 		}
 
 		/*
@@ -267,7 +322,9 @@ public class FBPPredictor {
 		 * 
 		 */
 		
-		int num_entries = getTrainingSetSize(class_id, train_dir);
+		TrainingSet trainingset = engine.getTrainingSet(class_id);
+		
+		int num_entries = trainingset.size();
 		boolean[] irrelevantPairs = new boolean[num_entries];
 
 		domaincalculator.silent = true;
@@ -279,7 +336,7 @@ public class FBPPredictor {
 		
 		if (! silent) System.out.println("\n  Calculating features for all tf pairs.");
 		
-		domaincalculator.parseRelevantDomains(irrelevantPairs, class_id, train_dir);
+		domaincalculator.parseRelevantDomains(irrelevantPairs, trainingset);
 
 		
 		/*
@@ -287,7 +344,7 @@ public class FBPPredictor {
 		 */
 		
 		double max_blosum_score = Double.NEGATIVE_INFINITY;
-		String[] res, res1, res2;
+		int[] region, region1, region2;
 		double score, score1, score2;
 		int start_pos, end_pos, seq_idx;
 		start_pos = end_pos = seq_idx = 1;
@@ -300,34 +357,40 @@ public class FBPPredictor {
 				sequencecalculator.predicted_domains = true;
 				
 				dom_predictor = new SequenceAligner(matrix_dir + "BLOSUM_62.dat", "SW");
+				
+				// the domains are only aligned around the k-mers they share with the sequences
+				KmerIndex domain_index = trainingset.getDomainIndex();
+				DomainLocator locator1 = (sequence1 != null) ? new DomainLocator(sequence1, domain_index, dom_predictor) : null;
+				DomainLocator locator2 = (sequence2 != null) ? new DomainLocator(sequence2, domain_index, dom_predictor) : null;
 
 				for(int i=0; i<domaincalculator.get_other_domains().size(); i++) {	
 					for(int j=0; j<domaincalculator.get_other_domains().get(i).size(); j++) {
 						
-						res1 = new String[3];
-						res2 = new String[3];
+						region1 = new int[2];
+						region2 = new int[2];
 						score1 = score2 = Double.NEGATIVE_INFINITY;
 						
 						String curr_domain_seq = domaincalculator.get_other_domains().get(i).get(j); 
 						
+						// domains without seeds are aligned completely until a matching region was found
+						boolean exhaustive = exact_homology_search || max_blosum_score == Double.NEGATIVE_INFINITY;
+						
 						if (sequence1 != null) {
-							res1 = dom_predictor.getMatchingRegionAndScore(sequence1, curr_domain_seq);
-							score1 = Double.parseDouble(res1[0]);
+							score1 = locator1.getMatchingRegionAndScore(curr_domain_seq, region1, exhaustive);
 							seq_idx = 1;
 						}
 						if (sequence2 != null) {
-							res2 = dom_predictor.getMatchingRegionAndScore(sequence2, curr_domain_seq);
-							score2 = Double.parseDouble(res2[0]);
+							score2 = locator2.getMatchingRegionAndScore(curr_domain_seq, region2, exhaustive);
 							seq_idx = 2;
 						}
 						
-						if (score1 >= score2) res = res1;
-						else 				  res = res2; 
+						if (score1 >= score2) { score = score1; region = region1; }
+						else 				  { score = score2; region = region2; }
 						
-						if ((score = Double.parseDouble(res[0])) > max_blosum_score) {
+						if (score > max_blosum_score) {
 							max_blosum_score = score;
-							start_pos = Integer.parseInt(res[1]);
-							end_pos = Integer.parseInt(res[2]);
+							start_pos = region[0];
+							end_pos = region[1];
 						}
 					}
 					if (seq_idx == 1) {
@@ -347,13 +410,26 @@ public class FBPPredictor {
 			System.out.println(bioe.getMessage());
 			System.out.println("BioException occurred while predicting domains.");
 		}
+		PredictionProfile.lap("domain_prediction");
 		
-		domaincalculator.calculateDomainFeatureFile(name, domains, "SMBasedSimilarity", null, matrix_dir + "BLOSUM_62.dat", base_dir + "allpairs/domain_scores_BLOSUM_62.out");
-		domaincalculator.calculateDomainFeatureFile(name, domains, "SMBasedSimilarity", null, matrix_dir + "PAM_080.dat"  , base_dir + "allpairs/domain_scores_PAM_080.out");
+		double[] allpairs_blosum = domaincalculator.calculateDomainFeatures(domains, "SMBasedSimilarity", null, matrix_dir + "BLOSUM_62.dat");
+		double[] allpairs_pam    = domaincalculator.calculateDomainFeatures(domains, "SMBasedSimilarity", null, matrix_dir + "PAM_080.dat");
+		
+		if (! in_memory) {
+			writeFeatureFile(name, domaincalculator.get_other_names(), allpairs_blosum, base_dir + "allpairs/domain_scores_BLOSUM_62.out");
+			writeFeatureFile(name, domaincalculator.get_other_names(), allpairs_pam   , base_dir + "allpairs/domain_scores_PAM_080.out");
+		}
+		PredictionProfile.lap("allpairs_features");
 		
 		IrrelevantPairIdentifier identifier = new IrrelevantPairIdentifier();
 		
-		irrelevantPairs = identifier.identifyIrrelevantPairs(base_dir + "allpairs/domain_scores_BLOSUM_62.out", 0.3, irrelevantPairs.length);
+		irrelevantPairs = identifier.identifyIrrelevantPairs(allpairs_blosum, 0.3);
+		
+		if (leave_one_out) {
+			for (int i=0; i<num_entries; i++) {
+				if (trainingset.getNames().get(i).equals(name)) irrelevantPairs[i] = true;
+			}
+		}
 		
 		// count number of candidate TFs for PFM transfer
 		int numRelevantPairs = 0;
@@ -364,6 +440,9 @@ public class FBPPredictor {
 		}
 		num_candidates = numRelevantPairs;
 		
+		PredictionProfile.count("candidates", num_candidates);
+		PredictionProfile.lap("relevance_filter");
+		
 		/*
 		 * 
 		 * calculate 30 feature values for all relevant tf pairs
@@ -373,10 +452,11 @@ public class FBPPredictor {
 		if (gui_output_mode) System.out.println("Calculating features:");
 		if (! silent) System.out.println("\n  Calculating features for relevant tf pairs.");
 		
-		domaincalculator.parseRelevantDomains(irrelevantPairs, class_id, train_dir);
+		domaincalculator.parseRelevantDomains(irrelevantPairs, trainingset);
 		
-		sequencecalculator.parseRelevantDomainsAndSequences(irrelevantPairs, class_id, train_dir);
-		sequencecalculator.parseRelevantSecondaryStructures(irrelevantPairs, class_id, train_dir);
+		sequencecalculator.parseRelevantDomainsAndSequences(irrelevantPairs, trainingset);
+		sequencecalculator.parseRelevantSecondaryStructures(irrelevantPairs, trainingset);
+		PredictionProfile.lap("candidate_parsing");
 		
 		// Configure the progress bar
 	    if (progress!=null) {
@@ -385,134 +465,81 @@ public class FBPPredictor {
 	      domaincalculator.setProgressBar(progress);
 	    }
 		
+	    // fast mode requires a fast model of the superclass
+	    boolean use_fast_model = fast && engine.hasFastModel(class_id);
+	    
+	    if (fast && ! use_fast_model && ! silent) System.out.println("\n  No fast model available for " + class_id + ". Using the full model.");
+	    
 	    // read feature names from training set
-	    ArrayList<String> feature_names = new ArrayList<String>();
-		try {
-			BufferedReader br = new BufferedReader(new FileReader(new File(train_dir + class_id + featureNamesFileSuffix)));
-
-			String line;
-			while ((line = br.readLine()) != null) {
-				feature_names.add(line);
-			}
-		}
-		catch(IOException ioe) {
-			ioe.printStackTrace();
-		}
+	    ArrayList<String> feature_names = use_fast_model ? trainingset.getFastFeatureNames() : trainingset.getFeatureNames();
 	    
-		if (useFeature(feature_names, matrixAlignmentScores)) {
-			if (! silent) System.out.println("\n    Calculating substitution matrix based alignment scores.");
-			if (gui_output_mode) System.out.print("  Calculating substitution matrix based alignment scores...");
-		}
-		
-		if (feature_names.contains("BLOSUM_62")) domaincalculator.calculateDomainFeatureFile(name, domains, "SMBasedSimilarity", null, matrix_dir + "BLOSUM_62.dat"   , base_dir + "relevantpairs/domain_scores_BLOSUM_62.out");
-		if (feature_names.contains("PAM_080")) domaincalculator.calculateDomainFeatureFile(name, domains, "SMBasedSimilarity", null, matrix_dir + "PAM_080.dat"     , base_dir + "relevantpairs/domain_scores_PAM_080.out");
-
-		if (feature_names.contains("PAM_010")) domaincalculator.calculateDomainFeatureFile(name, domains, "SMBasedSimilarity", null, matrix_dir + "PAM_010.dat"     , base_dir + "relevantpairs/domain_scores_PAM_010.out");
-		if (feature_names.contains("WEIL970101")) domaincalculator.calculateDomainFeatureFile(name, domains, "SMBasedSimilarity", null, matrix_dir + "WEIL970101.dat"  , base_dir + "relevantpairs/domain_scores_WEIL970101.out");
-		if (feature_names.contains("MEHP950101")) domaincalculator.calculateDomainFeatureFile(name, domains, "SMBasedSimilarity", null, matrix_dir + "MEHP950101.dat"  , base_dir + "relevantpairs/domain_scores_MEHP950101.out");
-		if (feature_names.contains("MEHP950102")) domaincalculator.calculateDomainFeatureFile(name, domains, "SMBasedSimilarity", null, matrix_dir + "MEHP950102.dat"  , base_dir + "relevantpairs/domain_scores_MEHP950102.out");
-		if (feature_names.contains("MEHP950103")) domaincalculator.calculateDomainFeatureFile(name, domains, "SMBasedSimilarity", null, matrix_dir + "MEHP950103.dat"  , base_dir + "relevantpairs/domain_scores_MEHP950103.out");
-		if (feature_names.contains("LUTR910102")) domaincalculator.calculateDomainFeatureFile(name, domains, "SMBasedSimilarity", null, matrix_dir + "LUTR910102.dat"  , base_dir + "relevantpairs/domain_scores_LUTR910102.out");
-		if (feature_names.contains("NIEK910102")) domaincalculator.calculateDomainFeatureFile(name, domains, "SMBasedSimilarity", null, matrix_dir + "NIEK910102.dat"  , base_dir + "relevantpairs/domain_scores_NIEK910102.out");
-		if (feature_names.contains("RISJ880101")) domaincalculator.calculateDomainFeatureFile(name, domains, "SMBasedSimilarity", null, matrix_dir + "RISJ880101.dat"  , base_dir + "relevantpairs/domain_scores_RISJ880101.out");
-		if (feature_names.contains("MIYS930101")) domaincalculator.calculateDomainFeatureFile(name, domains, "SMBasedSimilarity", null, matrix_dir + "MIYS930101.dat"  , base_dir + "relevantpairs/domain_scores_MIYS930101.out");
-		if (feature_names.contains("MIYT790101")) domaincalculator.calculateDomainFeatureFile(name, domains, "SMBasedSimilarity", null, matrix_dir + "MIYT790101.dat"  , base_dir + "relevantpairs/domain_scores_MIYT790101.out");
-
-		if (useFeature(feature_names, seqIdAlignmentScores)) {
-			if (! silent) System.out.println("    Calculating sequence identity based alignment scores.");
-			if (gui_output_mode) System.out.print("done.\n  Calculating sequence identity based alignment scores...");
-		}
-		
-		if (feature_names.contains("BLOSUM_62_si")) domaincalculator.calculateDomainFeatureFile(name, domains, "SequenceIdentity" , null, matrix_dir + "BLOSUM_62.dat"   , base_dir + "relevantpairs/domain_scores_BLOSUM_62_si.out");
-		
-		if (useFeature(feature_names, seqSimAlignmentScores)) {
-			if (! silent) System.out.println("    Calculating sequence similarity based alignment scores.");
-			if (gui_output_mode) System.out.print("done.\n  Calculating sequence similarity based alignment scores...");
-		}
-		
-		if (feature_names.contains("BLOSUM_62_t=1.0")) domaincalculator.calculateDomainFeatureFile(name, domains, "SMBasedIdentity" , new String[] {"1.0"} , matrix_dir + "BLOSUM_62.dat"   , base_dir + "relevantpairs/domain_scores_BLOSUM_62_t=1.0.out");
-		if (feature_names.contains("BLOSUM_62_t=3.0")) domaincalculator.calculateDomainFeatureFile(name, domains, "SMBasedIdentity" , new String[] {"3.0"} , matrix_dir + "BLOSUM_62.dat"   , base_dir + "relevantpairs/domain_scores_BLOSUM_62_t=3.0.out");
-		if (feature_names.contains("BLOSUM_62_t=5.0")) domaincalculator.calculateDomainFeatureFile(name, domains, "SMBasedIdentity" , new String[] {"5.0"} , matrix_dir + "BLOSUM_62.dat"   , base_dir + "relevantpairs/domain_scores_BLOSUM_62_t=5.0.out");
+		HashMap<String, double[]> features = new HashMap<String, double[]>();
 		
-		if (useFeature(feature_names, LAKernelScores)) {
-			if (! silent) System.out.println("    Calculating local alignment kernel scores.");
-			if (gui_output_mode) System.out.print("done.\n  Calculating local alignment kernel scores...");
-		}
+		calculateFastFeatures(features, feature_names, domains, species, irrelevantPairs, trainingset, engine, allpairs_blosum, allpairs_pam);
 		
-		if (feature_names.contains("lak_GCBopt")) domaincalculator.calculateDomainFeatureFile(name, domains, "LocalAlignmentKernel", new String[] {"GCBopt.dat"} 		, null, base_dir + "relevantpairs/domain_scores_lak_GCBopt.out");
-		if (feature_names.contains("lak_JTTopt")) domaincalculator.calculateDomainFeatureFile(name, domains, "LocalAlignmentKernel", new String[] {"JTTopt.dat"} 		, null, base_dir + "relevantpairs/domain_scores_lak_JTTopt.out");
-		if (feature_names.contains("lak_BLOSUM_62opt")) domaincalculator.calculateDomainFeatureFile(name, domains, "LocalAlignmentKernel", new String[] {"BLOSUM_62opt.dat"} 	, null, base_dir + "relevantpairs/domain_scores_lak_BLOSUM_62opt.out");
-		if (feature_names.contains("lak_PAM_250opt")) domaincalculator.calculateDomainFeatureFile(name, domains, "LocalAlignmentKernel", new String[] {"PAM_250opt.dat"} 	, null, base_dir + "relevantpairs/domain_scores_lak_PAM_250opt.out");
-		if (feature_names.contains("lak_blosum62")) domaincalculator.calculateDomainFeatureFile(name, domains, "LocalAlignmentKernel", new String[] {"blosum62.dat"} 		, null, base_dir + "relevantpairs/domain_scores_lak_blosum62.out");
-		
-		if (useFeature(feature_names, MMKernelScores)) {
-			if (! silent) System.out.println("    Calculating mismatch kernel scores.");
-			if (gui_output_mode) System.out.print("done.\n  Calculating mismatch kernel scores...");
-		}
 		
-		if (feature_names.contains("mmk_4_1")) domaincalculator.calculateDomainFeatureFile(name, domains, "MismatchKernel", new String[] {"4", "1"}, null, base_dir + "relevantpairs/domain_scores_mmk_4_1.out");
-		if (feature_names.contains("mmk_5_1")) domaincalculator.calculateDomainFeatureFile(name, domains, "MismatchKernel", new String[] {"5", "1"}, null, base_dir + "relevantpairs/domain_scores_mmk_5_1.out");
-		if (feature_names.contains("mmk_6_1")) domaincalculator.calculateDomainFeatureFile(name, domains, "MismatchKernel", new String[] {"6", "1"}, null, base_dir + "relevantpairs/domain_scores_mmk_6_1.out");
-		
-		if (useFeature(feature_names, secStructScores)) {
-			if (! silent) System.out.println("    Calculating secondary structure scores.");
-			if (gui_output_mode) System.out.print("done.\n  Calculating secondary structure scores...");
-		}
-		
-		if (feature_names.contains("secstr_blo62")) sequencecalculator.calculateSequenceFeatureFile(name, domains, sequence1, sequence2, "SecondaryStructure", null, matrix_dir + "BLOSUM_62.dat", base_dir + "relevantpairs/domain_scores_secstr_blo62.out");
-		if (progress!=null) progress.DisplayBar(); // 25.
-		
-		if (useFeature(feature_names, envirScores)) {
-			if (! silent) System.out.println("    Calculating DNA-binding domain environment scores.");
-			if (gui_output_mode) System.out.print("done.\n  Calculating DNA-binding domain environment scores...");
-		}
-		
-		if (feature_names.contains("env_25_BLOSUM_62")) sequencecalculator.calculateSequenceFeatureFile(name, domains, sequence1, sequence2, "Environments", new String[] {"25"}, matrix_dir + "BLOSUM_62.dat", base_dir + "relevantpairs/domain_scores_env_25_BLOSUM_62.out");
-		if (progress!=null) progress.DisplayBar();  // 26.
-		if (feature_names.contains("env_50_BLOSUM_62")) sequencecalculator.calculateSequenceFeatureFile(name, domains, sequence1, sequence2, "Environments", new String[] {"50"}, matrix_dir + "BLOSUM_62.dat", base_dir + "relevantpairs/domain_scores_env_50_BLOSUM_62.out");
-		if (progress!=null) progress.DisplayBar();  // 27.
+		/*
+		 * cascade: only the best candidates of the cheap model get the expensive features and the full model
+		 */
 		
-		if (useFeature(feature_names, phylScores)) {
-			if (! silent) System.out.println("    Calculating phylogenetic distance based scores.");
-			if (gui_output_mode) System.out.print("done.\n  Calculating phylogenetic distance based scores...");
+		if (! use_fast_model && cascade_size > 0 && num_candidates > cascade_size) {
+			
+			int[] top_candidates = rankCandidates(features, feature_names, trainingset, engine, class_id, cascade_size);
+			
+			if (! silent) System.out.println("\n  Cascade: " + top_candidates.length + " of " + num_candidates + " candidate TFs selected by stage one.");
+			
+			boolean[] candidatePairs = new boolean[num_entries];
+			int candidate = 0;
+			int next = 0;
+			
+			for (int i=0; i<num_entries; i++) {
+				
+				if (irrelevantPairs[i]) {
+					candidatePairs[i] = true;
+					continue;
+				}
+				if (next < top_candidates.length && top_candidates[next] == candidate) {
+					next++;
+				}
+				else {
+					candidatePairs[i] = true;
+				}
+				candidate++;
+			}
+			irrelevantPairs = candidatePairs;
+			
+			for (String feature: features.keySet()) {
+				
+				double[] scores = features.get(feature);
+				double[] top_scores = new double[top_candidates.length];
+				
+				for (int i=0; i<top_candidates.length; i++) {
+					top_scores[i] = scores[top_candidates[i]];
+				}
+				features.put(feature, top_scores);
+			}
+			num_candidates = top_candidates.length;
+			
+			domaincalculator.parseRelevantDomains(irrelevantPairs, trainingset);
+			
+			sequencecalculator.parseRelevantDomainsAndSequences(irrelevantPairs, trainingset);
+			sequencecalculator.parseRelevantSecondaryStructures(irrelevantPairs, trainingset);
+			
+			PredictionProfile.lap("cascade_ranking");
 		}
 		
-		if (feature_names.contains("phyl_dist")) speciescalculator.calculatePhylogeneticDistances(name, species, class_id, irrelevantPairs, train_dir + "new_phylogenetic_distances.out", base_dir + "relevantpairs/domain_scores_phyl_dist.out", train_dir);
-		if (progress!=null) progress.DisplayBar();  // 28.
-		
-		if (useFeature(feature_names, svmPairScores)) {
-			if (! silent) System.out.println("    Calculating SVM pairwise scores.");
-			if (gui_output_mode) System.out.print("done.\n  Calculating SVM pairwise scores...");
+		if (! use_fast_model) {
+			calculateExpensiveFeatures(features, feature_names, domains, sequence1, sequence2);
 		}
 		
-		if (feature_names.contains("svm_pairwise_BLOSUM_62")) svmpairwisecalculator.calculateSVMPairwiseScores(name, base_dir + "relevantpairs/domain_scores_BLOSUM_62.out", base_dir + "allpairs/domain_scores_BLOSUM_62.out", train_dir + "trainingset_" + class_id + ".blo62", base_dir + "relevantpairs/domain_scores_svm_pairwise_BLOSUM_62.out");
-		if (progress!=null) progress.DisplayBar();  // 29.
-		if (feature_names.contains("svm_pairwise_PAM_080")) svmpairwisecalculator.calculateSVMPairwiseScores(name, base_dir + "relevantpairs/domain_scores_PAM_080.out", base_dir + "allpairs/domain_scores_PAM_080.out", train_dir + "trainingset_" + class_id + ".pam80", base_dir + "relevantpairs/domain_scores_svm_pairwise_PAM_080.out");
 		if (progress!=null) {
-		  progress.DisplayBar();  // 30.
 		  progress.finished();
 		}
 		
 		if (! silent) System.out.println("\nScreening features for numerical instabilities.");
 		
-	// repair feature files	
 		repairer.silent = silent;
-		repairer.repairAllFeatureFiles(base_dir + "relevantpairs");
-		
-		
-		if (! silent) System.out.println("\nGenerating input file in LIBSVM format.\n");
-		if (gui_output_mode) System.out.print("done.\n\nGenerating input file in LIBSVM format...");
 		
-	// generate libsvm-file with all features	
-		libsvmfilegenerator.silent = silent;
-		libsvmfilegenerator.generateOverallFeatureFile(base_dir + "relevantpairs", train_dir + class_id + FBPPredictor.featureNamesFileSuffix, base_dir + "libsvmfiles/unlabeled_testset.out");
-		
-	// scale features in this file	
-		
-		featurescaler.scaleFeatureFile(train_dir + "feature_scaling_orientation_" + class_id + ".out", base_dir + "libsvmfiles/unlabeled_testset.out", base_dir + "libsvmfiles/scaled_unlabeled_testset.out");
-	
-		
-	// predict PFM-similarities for all relevant TF-pairs	
 		predictor.silent = silent;
 		predictor.gui_output_mode = gui_output_mode;
 		predictor.basedir = base_dir;
@@ -523,25 +550,114 @@ public class FBPPredictor {
 		predictor.medium_conf_bmt = medium_conf_bmt;
 		predictor.low_conf_bmt = low_conf_bmt;
 
-		String model_file = obtainer.obtainModelFile(model_dir, class_id);
-		
-		
-		predictor.predictLabels(model_file, base_dir + "libsvmfiles/scaled_unlabeled_testset.out", base_dir + "libsvmfiles/predicted_labels.out");
+		String model_file = use_fast_model ? engine.getFastModelFile(class_id) : engine.getModelFile(class_id);
 		
+		ArrayList<LabeledTF> best_matches = null;
 		
-	// generate list of all relevant pairs of tfnames 	
-		
-		namepairsfilegenerator.generateTFNamePairsFile(base_dir + "relevantpairs/domain_scores_BLOSUM_62.out", base_dir + "libsvmfiles/tfnamepairs.out");
+		if (in_memory || use_fast_model || cascade_size > 0 || cascade_check_size > 0) {
+			
+		// assemble feature matrix (rows = relevant TF-pairs, columns = features in the order of the training set)	
+			
+			double[][] feature_matrix = new double[num_candidates][feature_names.size()];
+			
+			for(int j=0; j<feature_names.size(); j++) {
+				
+				double[] scores = features.get(feature_names.get(j).trim());
+				
+				if (scores == null || scores.length != num_candidates) {
+					throw new PredictionException("Error. Feature " + feature_names.get(j) + " was not calculated for all candidate TFs. Aborting.");
+				}
+				
+				for(int i=0; i<num_candidates; i++) {
+					feature_matrix[i][j] = scores[i];
+				}
+			}
+			
+		// repair and scale feature matrix	
+			
+			repairer.repairFeatureMatrix(feature_matrix);
+			
+			double[][] scaling_params = use_fast_model ? trainingset.getFastScalingParameters() : trainingset.getScalingParameters();
+			
+			double[][] scaled_feature_matrix = featurescaler.scaleFeatureMatrix(scaling_params[0], scaling_params[1], feature_matrix);
+			PredictionProfile.lap("repair_scale");
+			
+			
+		// predict PFM-similarities for all relevant TF-pairs	
+			
+			if (! silent) System.out.println("\n\n  Model File       : " + model_file.substring(model_file.lastIndexOf("/") + 1));
+			
+			svm_dense_model dense_model = use_fast_model ? engine.getFastDenseModel(class_id) : engine.getDenseModel(class_id);
+			svm_model model = (dense_model != null) ? null : use_fast_model ? engine.getFastModel(class_id) : engine.getModel(class_id);
+			
+			double[] predicted_labels = (dense_model != null) ? predictor.predictLabels(dense_model, scaled_feature_matrix)
+			                                                  : predictor.predictLabels(model, scaled_feature_matrix);
+			
+			
+		// identify best matching TFs
+			best_matches = predictor.extractBestHits(domaincalculator.get_other_names(), predicted_labels, best_match_threshold, max_number_of_best_matches);
+			PredictionProfile.lap("svr_prediction");
+			
+			if (! use_fast_model && cascade_check_size > 0) {
+				checkCascade(features, feature_names, trainingset, engine, class_id, best_matches);
+			}
+		}
 		
+		else {
+			
+		// write feature files	
+			for (String feature: features.keySet()) {
+				writeFeatureFile(name, domaincalculator.get_other_names(), features.get(feature), base_dir + "relevantpairs/domain_scores_" + feature + ".out");
+			}
+			PredictionProfile.lap("write_features");
+			
+		// repair feature files	
+			repairer.repairAllFeatureFiles(base_dir + "relevantpairs");
+			
+			
+			if (! silent) System.out.println("\nGenerating input file in LIBSVM format.\n");
+			if (gui_output_mode) System.out.print("done.\n\nGenerating input file in LIBSVM format...");
+			
+		// generate libsvm-file with all features	
+			libsvmfilegenerator.silent = silent;
+			libsvmfilegenerator.generateOverallFeatureFile(base_dir + "relevantpairs", train_dir + class_id + FBPPredictor.featureNamesFileSuffix, base_dir + "libsvmfiles/unlabeled_testset.out");
+			
+		// scale features in this file	
+			
+			double[][] scaling_params = trainingset.getScalingParameters();
+			
+			featurescaler.scaleFeatureFile(scaling_params[0], scaling_params[1], base_dir + "libsvmfiles/unlabeled_testset.out", base_dir + "libsvmfiles/scaled_unlabeled_testset.out");
+			
+			PredictionProfile.countTempFile(base_dir + "libsvmfiles/unlabeled_testset.out");
+			PredictionProfile.countTempFile(base_dir + "libsvmfiles/scaled_unlabeled_testset.out");
+			PredictionProfile.lap("repair_scale");
 		
-	// identify best matching TFs
-		ArrayList<LabeledTF> best_matches = predictor.extractBestHits(base_dir + "libsvmfiles/tfnamepairs.out", base_dir + "libsvmfiles/predicted_labels.out", best_match_threshold, max_number_of_best_matches);
+			
+		// predict PFM-similarities for all relevant TF-pairs	
+			
+			predictor.predictLabels(model_file, base_dir + "libsvmfiles/scaled_unlabeled_testset.out", base_dir + "libsvmfiles/predicted_labels.out");
+			
+			
+		// generate list of all relevant pairs of tfnames 	
+			
+			namepairsfilegenerator.generateTFNamePairsFile(base_dir + "relevantpairs/domain_scores_BLOSUM_62.out", base_dir + "libsvmfiles/tfnamepairs.out");
+			
+			
+		// identify best matching TFs
+			best_matches = predictor.extractBestHits(base_dir + "libsvmfiles/tfnamepairs.out", base_dir + "libsvmfiles/predicted_labels.out", best_match_threshold, max_number_of_best_matches);
+			
+			PredictionProfile.countTempFile(base_dir + "libsvmfiles/predicted_labels.out");
+			PredictionProfile.countTempFile(base_dir + "libsvmfiles/tfnamepairs.out");
+			PredictionProfile.lap("svr_prediction");
+		}
 		
 		
 	// construct and transfer FBP to input tf
 		
 		predictor.performPFMTransfer(best_matches, train_dir + "FBPs_" + class_id + ".out", new MoStaOptimizer(), outlier_filter_threshold, base_dir + "prediction.out");
 		
+		PredictionProfile.countTempFile(base_dir + "prediction.out");
+		PredictionProfile.lap("write_prediction");
 		
 	}
 	
@@ -570,6 +686,8 @@ public class FBPPredictor {
 		
 		String species = data[2].trim();
 		
+		PredictionProfile.setFactor(name, class_id);
+		
 		
 		if (class_id != null && class_id.equals(FormatConverter.NonTFclassID)) {
 			if (! silent) {
@@ -626,6 +744,8 @@ public class FBPPredictor {
 		 * 
 		 */
 		
+		PredictionProfile.lap("parse_input");
+		
 		calculateFBP(name, class_id, species, sequence1, sequence2, domains, base_dir, train_dir, model_dir);
 		
 		
@@ -634,7 +754,25 @@ public class FBPPredictor {
 	
 	public static void main(String[] args) {
 		
+		try {
+			main(args, null);
+		}
+		catch(PredictionException pe) {
+			System.out.println(pe.getMessage());
+			System.exit(0);
+		}
+	}
+	
+	
+	/*
+	 * runs a prediction with the given (resident) training sets and models, 
+	 * if no engine is provided, the training data is read from disk
+	 * (throws a PredictionException on invalid input or training data)
+	 */
+	public static void main(String[] args, PredictionEngine engine) {
+		
 		FBPPredictor predictor = new FBPPredictor();
+		predictor.setPredictionEngine(engine);
 
 		if(args.length == 0) {
 			
@@ -662,13 +800,25 @@ public class FBPPredictor {
 			if(args[i].equals("-t")) { train_dir		 						= args[i+1]; 						continue; }
 			if(args[i].equals("-c")) { model_dir		 						= args[i+1]; 						continue; }
 			if(args[i].equals("-d")) { predictor.dynamic_threshold				= Boolean.parseBoolean(args[i+1]); 	continue; }
+			if(args[i].equals("-i")) { predictor.in_memory						= Boolean.parseBoolean(args[i+1]); 	continue; }
+			if(args[i].equals("-cascade")) { predictor.cascade_size				= Integer.parseInt   (args[i+1]); 	continue; }
+			if(args[i].equals("-cascade_check")) { predictor.cascade_check_size	= Integer.parseInt   (args[i+1]); 	continue; }
+			if(args[i].equals("-fast")) { predictor.fast							= Boolean.parseBoolean(args[i+1]); 	continue; }
+			if(args[i].equals("-cascade_min")) { predictor.min_cascade_size		= Integer.parseInt   (args[i+1]); 	continue; }
+			if(args[i].equals("-loo")) { predictor.leave_one_out					= Boolean.parseBoolean(args[i+1]); 	continue; }
 			
-			if( !args[i].equals("-s") && !args[i].equals("-m") && !args[i].equals("-o") && !args[i].equals("-v") && !args[i].equals("-c") && !args[i].equals("-t") && !args[i].equals("-b") && !args[i].equals("-d")) {	
+			if( !args[i].equals("-s") && !args[i].equals("-m") && !args[i].equals("-o") && !args[i].equals("-v") && !args[i].equals("-c") && !args[i].equals("-t") && !args[i].equals("-b") && !args[i].equals("-d") && !args[i].equals("-i") &&
+				!args[i].equals("-cascade") && !args[i].equals("-cascade_check") && !args[i].equals("-cascade_min") && !args[i].equals("-fast") && !args[i].equals("-loo")) {	
 				System.out.println("  Illegal argument: " + args[i] + "\n");
 				SABINE_Main.usage();
 			}
 		}
 		
+		if (predictor.cascade_size > 0 && predictor.cascade_size < predictor.min_cascade_size) {
+			System.out.println("  Invalid cascade size: " + predictor.cascade_size + " (min. " + predictor.min_cascade_size + " candidates)\n");
+			SABINE_Main.usage();
+		}
+		
 		if (verbose_option.equals("n") || verbose_option.equals("no") || verbose_option.equals("h")) 
 			predictor.silent = true; 
 		if (verbose_option.equals("h"))
@@ -685,6 +835,297 @@ public class FBPPredictor {
 		predictor.predictFBP(args[0], base_dir, train_dir, model_dir);
 	}
 	
+	/*
+	 * returns the positions of the (at most) size best candidates of stage one in ascending order
+	 */
+	private int[] rankCandidates(HashMap<String, double[]> features, ArrayList<String> feature_names, TrainingSet trainingset, PredictionEngine engine, String class_id, int size) {
+		
+		Integer[] order = getStageOneOrder(features, feature_names, trainingset, engine, class_id);
+		
+		int[] res = new int[Math.min(size, num_candidates)];
+		
+		for (int i=0; i<res.length; i++) {
+			res[i] = order[i];
+		}
+		Arrays.sort(res);
+		
+		return res;
+	}
+	
+	
+	/*
+	 * orders the candidates by the labels of stage one (descending): the fast model of the superclass, which
+	 * is trained on the cheap features only, or, if the superclass has no fast model, the full model, in which
+	 * the expensive features are replaced by their mean values in the training set
+	 */
+	private Integer[] getStageOneOrder(HashMap<String, double[]> features, ArrayList<String> feature_names, TrainingSet trainingset, PredictionEngine engine, String class_id) {
+		
+		boolean use_fast_model = engine.hasFastModel(class_id);
+		
+		ArrayList<String> model_features = use_fast_model ? trainingset.getFastFeatureNames() : feature_names;
+		double[] means = use_fast_model ? null : trainingset.getFeatureMeans();
+		
+		double[][] feature_matrix = new double[num_candidates][model_features.size()];
+		
+		for(int j=0; j<model_features.size(); j++) {
+			
+			double[] scores = isExpensiveFeature(model_features.get(j).trim()) ? null : features.get(model_features.get(j).trim());
+			
+			if (scores == null && use_fast_model) {
+				throw new PredictionException("Error. Feature " + model_features.get(j) + " of the fast model was not calculated. Aborting.");
+			}
+			
+			for(int i=0; i<num_candidates; i++) {
+				feature_matrix[i][j] = (scores != null) ? scores[i] : means[j];
+			}
+		}
+		
+		repairer.repairFeatureMatrix(feature_matrix);
+		
+		double[][] scaling_params = use_fast_model ? trainingset.getFastScalingParameters() : trainingset.getScalingParameters();
+		double[][] scaled_feature_matrix = featurescaler.scaleFeatureMatrix(scaling_params[0], scaling_params[1], feature_matrix);
+		
+		svm_dense_model dense_model = use_fast_model ? engine.getFastDenseModel(class_id) : engine.getDenseModel(class_id);
+		svm_model model = (dense_model != null) ? null : use_fast_model ? engine.getFastModel(class_id) : engine.getModel(class_id);
+		
+		boolean predictor_silent = predictor.silent;
+		predictor.silent = true;
+		
+		final double[] labels = (dense_model != null) ? dense_model.predict(scaled_feature_matrix)
+		                                              : predictor.predictLabels(model, scaled_feature_matrix);
+		predictor.silent = predictor_silent;
+		
+		Integer[] order = new Integer[num_candidates];
+		
+		for (int i=0; i<order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return (labels[a] != labels[b]) ? Double.compare(labels[b], labels[a]) : a - b;
+			}
+		});
+		return order;
+	}
+	
+	
+	/*
+	 * records the ranks of the best matches of the full prediction among the candidates of stage one (the
+	 * features of a candidate do not depend on the other candidates, so a cascade of size k recalls the best
+	 * matches of rank <= k)
+	 */
+	private void checkCascade(HashMap<String, double[]> features, ArrayList<String> feature_names, TrainingSet trainingset, PredictionEngine engine, 
+							  String class_id, ArrayList<LabeledTF> best_matches) {
+		
+		Integer[] order = getStageOneOrder(features, feature_names, trainingset, engine, class_id);
+		
+		HashMap<String, Integer> ranks = new HashMap<String, Integer>();
+		
+		for (int r=0; r<order.length; r++) {
+			ranks.put(domaincalculator.get_other_names().get(order[r]), r+1);
+		}
+		
+		int recalled = 0;
+		
+		synchronized (FBPPredictor.class) {
+			for (LabeledTF match: best_matches) {
+				
+				int rank = ranks.get(match.getName());
+				
+				cascade_ranks.add(rank);
+				if (rank <= cascade_check_size) recalled++;
+			}
+		}
+		
+		if (! silent) System.out.println("\n  Cascade check (" + Math.min(cascade_check_size, num_candidates) + " of " + num_candidates + " candidates): " 
+										 + recalled + " of " + best_matches.size() + " best matches recalled.");
+	}
+	
+	
+	/*
+	 * returns the ranks of the best matches of all predictions checked since the last call among the candidates
+	 * of stage one, and starts a new series of checks
+	 */
+	public static synchronized ArrayList<Integer> getCascadeRanks() {
+		
+		ArrayList<Integer> res = cascade_ranks;
+		cascade_ranks = new ArrayList<Integer>();
+		
+		return res;
+	}
+	
+	
+	/*
+	 * true for the kernel, secondary structure and environment features
+	 */
+	public static boolean isExpensiveFeature(String feature) {
+		
+		for (String[] scores: expensiveScores) {
+			for (String score: scores) {
+				if (score.equals(feature)) return true;
+			}
+		}
+		return false;
+	}
+	
+	
+	/*
+	 * features, which are computed in-process from substitution matrix based alignments, the 
+	 * phylogenetic distances and the precomputed pairwise scores of the training set
+	 */
+	private void calculateFastFeatures(HashMap<String, double[]> features, ArrayList<String> feature_names, ArrayList<String> domains, String species, 
+									   boolean[] irrelevantPairs, TrainingSet trainingset, PredictionEngine engine, double[] allpairs_blosum, double[] allpairs_pam) {
+		
+		if (useFeature(feature_names, matrixAlignmentScores)) {
+			if (! silent) System.out.println("\n    Calculating substitution matrix based alignment scores.");
+			if (gui_output_mode) System.out.print("  Calculating substitution matrix based alignment scores...");
+		}
+		
+		// BLOSUM_62, BLOSUM_62_si and BLOSUM_62_t=* are derived from a single alignment of each pair of domains
+		ArrayList<Integer> blosum_features = new ArrayList<Integer>();
+		for (int i=0; i<blosumAlignmentScores.length; i++) {
+			if (feature_names.contains(blosumAlignmentScores[i])) blosum_features.add(i);
+		}
+		if (blosum_features.size() > 0) {
+			String[] featuretypes = new String[blosum_features.size()];
+			String[][] params = new String[blosum_features.size()][];
+			for (int i=0; i<blosum_features.size(); i++) {
+				featuretypes[i] = blosumFeatureTypes[blosum_features.get(i)];
+				params[i] = blosumFeatureParams[blosum_features.get(i)];
+			}
+			double[][] blosum_scores = domaincalculator.calculateDomainFeatures(domains, featuretypes, params, matrix_dir + "BLOSUM_62.dat");
+			for (int i=0; i<blosum_features.size(); i++) {
+				features.put(blosumAlignmentScores[blosum_features.get(i)], blosum_scores[i]);
+			}
+			PredictionProfile.lap("feature_BLOSUM_62_family");
+		}
+		if (feature_names.contains("PAM_080")) putFeature(features, "PAM_080", domaincalculator.calculateDomainFeatures(domains, "SMBasedSimilarity", null, matrix_dir + "PAM_080.dat"));
+
+		if (feature_names.contains("PAM_010")) putFeature(features, "PAM_010", domaincalculator.calculateDomainFeatures(domains, "SMBasedSimilarity", null, matrix_dir + "PAM_010.dat"));
+		if (feature_names.contains("WEIL970101")) putFeature(features, "WEIL970101", domaincalculator.calculateDomainFeatures(domains, "SMBasedSimilarity", null, matrix_dir + "WEIL970101.dat"));
+		if (feature_names.contains("MEHP950101")) putFeature(features, "MEHP950101", domaincalculator.calculateDomainFeatures(domains, "SMBasedSimilarity", null, matrix_dir + "MEHP950101.dat"));
+		if (feature_names.contains("MEHP950102")) putFeature(features, "MEHP950102", domaincalculator.calculateDomainFeatures(domains, "SMBasedSimilarity", null, matrix_dir + "MEHP950102.dat"));
+		if (feature_names.contains("MEHP950103")) putFeature(features, "MEHP950103", domaincalculator.calculateDomainFeatures(domains, "SMBasedSimilarity", null, matrix_dir + "MEHP950103.dat"));
+		if (feature_names.contains("LUTR910102")) putFeature(features, "LUTR910102", domaincalculator.calculateDomainFeatures(domains, "SMBasedSimilarity", null, matrix_dir + "LUTR910102.dat"));
+		if (feature_names.contains("NIEK910102")) putFeature(features, "NIEK910102", domaincalculator.calculateDomainFeatures(domains, "SMBasedSimilarity", null, matrix_dir + "NIEK910102.dat"));
+		if (feature_names.contains("RISJ880101")) putFeature(features, "RISJ880101", domaincalculator.calculateDomainFeatures(domains, "SMBasedSimilarity", null, matrix_dir + "RISJ880101.dat"));
+		if (feature_names.contains("MIYS930101")) putFeature(features, "MIYS930101", domaincalculator.calculateDomainFeatures(domains, "SMBasedSimilarity", null, matrix_dir + "MIYS930101.dat"));
+		if (feature_names.contains("MIYT790101")) putFeature(features, "MIYT790101", domaincalculator.calculateDomainFeatures(domains, "SMBasedSimilarity", null, matrix_dir + "MIYT790101.dat"));
+
+		if (useFeature(feature_names, seqIdAlignmentScores)) {
+			if (! silent) System.out.println("    Calculating sequence identity based alignment scores.");
+			if (gui_output_mode) System.out.print("done.\n  Calculating sequence identity based alignment scores...");
+		}
+		
+		if (useFeature(feature_names, seqSimAlignmentScores)) {
+			if (! silent) System.out.println("    Calculating sequence similarity based alignment scores.");
+			if (gui_output_mode) System.out.print("done.\n  Calculating sequence similarity based alignment scores...");
+		}
+		
+		if (useFeature(feature_names, phylScores)) {
+			if (! silent) System.out.println("    Calculating phylogenetic distance based scores.");
+			if (gui_output_mode) System.out.print("done.\n  Calculating phylogenetic distance based scores...");
+		}
+		
+		if (feature_names.contains("phyl_dist")) {
+			engine.initDistanceMatrix(speciescalculator);
+			putFeature(features, "phyl_dist", speciescalculator.calculatePhylogeneticDistances(species, irrelevantPairs, trainingset));
+		}
+		if (progress!=null) progress.DisplayBar();  // 25.
+		
+		if (useFeature(feature_names, svmPairScores)) {
+			if (! silent) System.out.println("    Calculating SVM pairwise scores.");
+			if (gui_output_mode) System.out.print("done.\n  Calculating SVM pairwise scores...");
+		}
+		
+		if (feature_names.contains("svm_pairwise_BLOSUM_62")) putFeature(features, "svm_pairwise_BLOSUM_62", svmpairwisecalculator.calculateSVMPairwiseScores(allpairs_blosum, irrelevantPairs, trainingset.getBlosumScores()));
+		if (progress!=null) progress.DisplayBar();  // 26.
+		if (feature_names.contains("svm_pairwise_PAM_080")) putFeature(features, "svm_pairwise_PAM_080", svmpairwisecalculator.calculateSVMPairwiseScores(allpairs_pam, irrelevantPairs, trainingset.getPamScores()));
+		if (progress!=null) progress.DisplayBar();  // 27.
+	}
+	
+	
+	/*
+	 * features based on local alignment and mismatch kernels (external programs), secondary structures 
+	 * (PSIPRED) and alignments of the environments of the domains
+	 */
+	private void calculateExpensiveFeatures(HashMap<String, double[]> features, ArrayList<String> feature_names, ArrayList<String> domains, String sequence1, String sequence2) {
+		
+		if (useFeature(feature_names, LAKernelScores)) {
+			if (! silent) System.out.println("    Calculating local alignment kernel scores.");
+			if (gui_output_mode) System.out.print("done.\n  Calculating local alignment kernel scores...");
+		}
+		
+		if (feature_names.contains("lak_GCBopt")) putFeature(features, "lak_GCBopt", domaincalculator.calculateDomainFeatures(domains, "LocalAlignmentKernel", new String[] {"GCBopt.dat"}, null));
+		if (feature_names.contains("lak_JTTopt")) putFeature(features, "lak_JTTopt", domaincalculator.calculateDomainFeatures(domains, "LocalAlignmentKernel", new String[] {"JTTopt.dat"}, null));
+		if (feature_names.contains("lak_BLOSUM_62opt")) putFeature(features, "lak_BLOSUM_62opt", domaincalculator.calculateDomainFeatures(domains, "LocalAlignmentKernel", new String[] {"BLOSUM_62opt.dat"}, null));
+		if (feature_names.contains("lak_PAM_250opt")) putFeature(features, "lak_PAM_250opt", domaincalculator.calculateDomainFeatures(domains, "LocalAlignmentKernel", new String[] {"PAM_250opt.dat"}, null));
+		if (feature_names.contains("lak_blosum62")) putFeature(features, "lak_blosum62", domaincalculator.calculateDomainFeatures(domains, "LocalAlignmentKernel", new String[] {"blosum62.dat"}, null));
+		
+		if (useFeature(feature_names, MMKernelScores)) {
+			if (! silent) System.out.println("    Calculating mismatch kernel scores.");
+			if (gui_output_mode) System.out.print("done.\n  Calculating mismatch kernel scores...");
+		}
+		
+		if (feature_names.contains("mmk_4_1")) putFeature(features, "mmk_4_1", domaincalculator.calculateDomainFeatures(domains, "MismatchKernel", new String[] {"4", "1"}, null));
+		if (feature_names.contains("mmk_5_1")) putFeature(features, "mmk_5_1", domaincalculator.calculateDomainFeatures(domains, "MismatchKernel", new String[] {"5", "1"}, null));
+		if (feature_names.contains("mmk_6_1")) putFeature(features, "mmk_6_1", domaincalculator.calculateDomainFeatures(domains, "MismatchKernel", new String[] {"6", "1"}, null));
+		
+		if (useFeature(feature_names, secStructScores)) {
+			if (! silent) System.out.println("    Calculating secondary structure scores.");
+			if (gui_output_mode) System.out.print("done.\n  Calculating secondary structure scores...");
+		}
+		
+		// reuse the best domain pairs of the BLOSUM_62 feature
+		sequencecalculator.setBestDomainPairs(domaincalculator.getBestDomainPairs());
+		
+		if (feature_names.contains("secstr_blo62")) putFeature(features, "secstr_blo62", sequencecalculator.calculateSequenceFeatures(domains, sequence1, sequence2, "SecondaryStructure", null, matrix_dir + "BLOSUM_62.dat"));
+		if (progress!=null) progress.DisplayBar();  // 28.
+		
+		if (useFeature(feature_names, envirScores)) {
+			if (! silent) System.out.println("    Calculating DNA-binding domain environment scores.");
+			if (gui_output_mode) System.out.print("done.\n  Calculating DNA-binding domain environment scores...");
+		}
+		
+		if (feature_names.contains("env_25_BLOSUM_62")) putFeature(features, "env_25_BLOSUM_62", sequencecalculator.calculateSequenceFeatures(domains, sequence1, sequence2, "Environments", new String[] {"25"}, matrix_dir + "BLOSUM_62.dat"));
+		if (progress!=null) progress.DisplayBar();  // 29.
+		if (feature_names.contains("env_50_BLOSUM_62")) putFeature(features, "env_50_BLOSUM_62", sequencecalculator.calculateSequenceFeatures(domains, sequence1, sequence2, "Environments", new String[] {"50"}, matrix_dir + "BLOSUM_62.dat"));
+		if (progress!=null) progress.DisplayBar();  // 30.
+	}
+
+
+	/*
+	 * writes the scores of the input TF vs. the given TFs of the training set to a feature file
+	 */
+	private static void writeFeatureFile(String tfname, ArrayList<String> other_names, double[] scores, String outfile) {
+		
+		try {
+			BufferedWriter bw = new BufferedWriter(new FileWriter(new File(outfile)));
+			
+			for(int i=0; i<scores.length; i++) {
+				bw.write(tfname + " vs. " + other_names.get(i) + " :\t" + scores[i] + "\n");
+			}
+			bw.flush();
+			bw.close();
+			
+			PredictionProfile.countTempFile(outfile);
+		}
+		catch(IOException ioe) {
+			System.out.println(ioe.getMessage());
+			System.out.println("IOException occurred while writing feature file.");
+		}
+	}
+	
+	
+	/*
+	 * stores the scores of a feature and records the time of its calculation in the profile
+	 */
+	private static void putFeature(HashMap<String, double[]> features, String feature, double[] scores) {
+		
+		features.put(feature, scores);
+		PredictionProfile.lap("feature_" + feature);
+	}
+	
 	private static boolean useFeature(ArrayList<String> featureNames, String[] featureType) {
 		
 		boolean featureIsUsed = false; 
@@ -0,0 +1,260 @@
+/*
+    SABINE predicts binding specificities of transcription factors.
+    Copyright (C) 2009 ZBIT, University of Tübingen, Johannes Eichner
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package main;
+
+import help.ModelFileObtainer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import libsvmcore.svm;
+import libsvmcore.svm_dense_model;
+import libsvmcore.svm_model;
+
+import core.MismatchKernel;
+import core.SpeciesFeatureCalculator;
+import core.TrainingSet;
+
+
+/*
+ *
+ * keeps parsed training sets, phylogenetic distances and libsvm-models resident,
+ * so that they are read only once and can be shared by all subsequent predictions
+ * (e.g. in batch mode or by SABINE_Server)
+ *
+ */
+public class PredictionEngine {
+
+	String train_dir = null;
+
+	String model_dir = null;
+
+	HashMap<String, TrainingSet> trainingsets = new HashMap<String, TrainingSet>();
+
+	HashMap<String, String> model_files = new HashMap<String, String>();
+
+	HashMap<String, svm_model> models = new HashMap<String, svm_model>();
+
+	HashMap<String, svm_dense_model> dense_models = new HashMap<String, svm_dense_model>();
+
+	// fast models (null, if no fast model was trained for a superclass)
+	HashMap<String, String> fast_model_files = new HashMap<String, String>();
+
+	HashMap<String, svm_model> fast_models = new HashMap<String, svm_model>();
+
+	HashMap<String, svm_dense_model> fast_dense_models = new HashMap<String, svm_dense_model>();
+
+	ArrayList<String> phylo_species = null;
+
+	double[][] phylo_distances = null;
+
+
+	public PredictionEngine(String train_dir, String model_dir) {
+
+		this.train_dir = train_dir;
+		this.model_dir = model_dir;
+	}
+
+
+	public String getTrainDir() {
+		return train_dir;
+	}
+
+	public String getModelDir() {
+		return model_dir;
+	}
+
+
+	/*
+	 * returns the training set of the given superclass (parsed on first access)
+	 */
+	public synchronized TrainingSet getTrainingSet(String class_id) {
+
+		TrainingSet trainingset = trainingsets.get(class_id);
+
+		if (trainingset == null) {
+			trainingset = new TrainingSet(class_id, train_dir);
+			trainingsets.put(class_id, trainingset);
+		}
+		return trainingset;
+	}
+
+
+	/*
+	 * returns the path of the libsvm-model of the given superclass
+	 */
+	public synchronized String getModelFile(String class_id) {
+
+		String model_file = model_files.get(class_id);
+
+		if (model_file == null) {
+			model_file = new ModelFileObtainer().obtainModelFile(model_dir, class_id);
+			model_files.put(class_id, model_file);
+		}
+		return model_file;
+	}
+
+
+	/*
+	 * returns the libsvm-model of the given superclass (loaded on first access)
+	 */
+	public synchronized svm_model getModel(String class_id) {
+
+		svm_model model = models.get(class_id);
+
+		if (model == null) {
+			try {
+				model = svm.svm_load_model(getModelFile(class_id));
+				models.put(class_id, model);
+			}
+			catch(IOException ioe) {
+				System.out.println(ioe.getMessage());
+				System.out.println("IOException occurred while loading model of " + class_id + ".");
+			}
+		}
+		return model;
+	}
+
+
+	/*
+	 * returns a dense copy of the libsvm-model of the given superclass (null, if the model is no RBF regression model)
+	 */
+	public synchronized svm_dense_model getDenseModel(String class_id) {
+
+		svm_dense_model dense_model = dense_models.get(class_id);
+
+		if (dense_model == null) {
+			svm_model model = getModel(class_id);
+
+			if (model != null && svm_dense_model.isSupported(model)) {
+				dense_model = new svm_dense_model(model);
+				dense_models.put(class_id, dense_model);
+			}
+		}
+		return dense_model;
+	}
+
+
+	/*
+	 * true, if a fast model and its feature names are available for the given superclass
+	 */
+	public boolean hasFastModel(String class_id) {
+		return getFastModelFile(class_id) != null && getTrainingSet(class_id).hasFastFeatureNames();
+	}
+
+
+	/*
+	 * returns the path of the fast libsvm-model of the given superclass (null, if not available)
+	 */
+	public synchronized String getFastModelFile(String class_id) {
+
+		if (! fast_model_files.containsKey(class_id)) {
+			fast_model_files.put(class_id, new ModelFileObtainer().obtainFastModelFile(model_dir, class_id));
+		}
+		return fast_model_files.get(class_id);
+	}
+
+
+	/*
+	 * returns the fast libsvm-model of the given superclass (loaded on first access)
+	 */
+	public synchronized svm_model getFastModel(String class_id) {
+
+		svm_model model = fast_models.get(class_id);
+
+		if (model == null && getFastModelFile(class_id) != null) {
+			try {
+				model = svm.svm_load_model(getFastModelFile(class_id));
+				fast_models.put(class_id, model);
+			}
+			catch(IOException ioe) {
+				System.out.println(ioe.getMessage());
+				System.out.println("IOException occurred while loading fast model of " + class_id + ".");
+			}
+		}
+		return model;
+	}
+
+
+	/*
+	 * returns a dense copy of the fast libsvm-model of the given superclass (null, if the model is no RBF regression model)
+	 */
+	public synchronized svm_dense_model getFastDenseModel(String class_id) {
+
+		svm_dense_model dense_model = fast_dense_models.get(class_id);
+
+		if (dense_model == null) {
+			svm_model model = getFastModel(class_id);
+
+			if (model != null && svm_dense_model.isSupported(model)) {
+				dense_model = new svm_dense_model(model);
+				fast_dense_models.put(class_id, dense_model);
+			}
+		}
+		return dense_model;
+	}
+
+
+	/*
+	 * hands the (once parsed) phylogenetic distance matrix to the given calculator
+	 */
+	public synchronized void initDistanceMatrix(SpeciesFeatureCalculator calculator) {
+
+		if (phylo_species == null) {
+
+			SpeciesFeatureCalculator parser = new SpeciesFeatureCalculator();
+			parser.parseDistanceMatrix(train_dir + "new_phylogenetic_distances.out");
+
+			phylo_species = parser.getSpecies();
+			phylo_distances = parser.getDistances();
+		}
+		calculator.setDistanceMatrix(phylo_species, phylo_distances);
+	}
+
+
+	/*
+	 * reads training sets, scaling parameters, pairwise scores and models of the given superclasses in advance
+	 */
+	public void preload(String[] class_ids) {
+
+		for (String class_id: class_ids) {
+
+			TrainingSet trainingset = getTrainingSet(class_id);
+
+			if (new File(model_dir + File.separator + class_id).isDirectory()) {
+				ArrayList<String> feature_names = trainingset.getFeatureNames();
+				trainingset.getScalingParameters();
+				trainingset.getBlosumScores();
+				trainingset.getPamScores();
+				getDenseModel(class_id);
+
+				// k-mer vectors of the training domains for the mismatch kernel features (e.g. "mmk_4_1")
+				for (String feature: FBPPredictor.MMKernelScores) {
+					if (feature_names.contains(feature)) {
+						String[] params = feature.split("_");
+						MismatchKernel.getKernel(Integer.parseInt(params[1]), Integer.parseInt(params[2])).precompute(trainingset.getDomainSequences());
+					}
+				}
+			}
+		}
+		initDistanceMatrix(new SpeciesFeatureCalculator());
+	}
+}
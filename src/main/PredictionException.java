@@ -0,0 +1,36 @@
+/*
+    SABINE predicts binding specificities of transcription factors.
+    Copyright (C) 2009 ZBIT, University of Tübingen, Johannes Eichner
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package main;
+
+
+/*
+ *
+ * thrown by the prediction pipeline on invalid input or missing/inconsistent training data
+ * instead of terminating the JVM, so that a long-lived caller (e.g. SABINE_Server) can report
+ * the error and continue with the next request; the message is the error message for the user
+ *
+ */
+public class PredictionException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public PredictionException(String message) {
+		super(message);
+	}
+}
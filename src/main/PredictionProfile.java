@@ -0,0 +1,449 @@
+/*
+    SABINE predicts binding specificities of transcription factors.
+    Copyright (C) 2009 ZBIT, University of Tübingen, Johannes Eichner
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package main;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+
+
+/*
+ *
+ * per-stage timers and counters of the prediction of one TF
+ *
+ * the profile of a prediction is attached to the thread, which performs it, so that the stages
+ * can be recorded by static calls in all classes of the pipeline (without profile, these calls
+ * are ignored); lap(stage) adds the time since the previous lap (or the start) to the stage
+ *
+ * the profiles of all TFs and their aggregates (count, sum, p50, p95 and max of each stage and
+ * counter for all TFs and for each superclass) are written as JSON or in the text format of
+ * Prometheus (file name ending with ".prom")
+ *
+ */
+public class PredictionProfile {
+
+	public static final String processLaunches = "process_launches";
+	public static final String tempBytesWritten = "temp_bytes_written";
+
+	public static final String prometheusSuffix = ".prom";
+
+	private static ThreadLocal<PredictionProfile> current = new ThreadLocal<PredictionProfile>();
+
+	String name = "unknown";
+	String class_id = "unknown";
+
+	long start_time = 0;
+	long last_lap = 0;
+	long total_time = 0;
+
+	// stage -> nanoseconds (in the order of the first lap)
+	LinkedHashMap<String, Long> stage_times = new LinkedHashMap<String, Long>();
+
+	LinkedHashMap<String, Long> counters = new LinkedHashMap<String, Long>();
+
+
+	/*
+	 * starts a new profile for the current thread
+	 */
+	public static PredictionProfile start() {
+
+		PredictionProfile res = new PredictionProfile();
+		res.start_time = res.last_lap = System.nanoTime();
+		res.counters.put(processLaunches, 0L);
+		res.counters.put(tempBytesWritten, 0L);
+
+		current.set(res);
+
+		return res;
+	}
+
+
+	/*
+	 * finishes and returns the profile of the current thread (null: no profile)
+	 */
+	public static PredictionProfile stop() {
+
+		PredictionProfile res = current.get();
+
+		if (res != null) {
+			res.total_time = System.nanoTime() - res.start_time;
+			current.remove();
+		}
+		return res;
+	}
+
+
+	public static void setFactor(String name, String class_id) {
+
+		PredictionProfile profile = current.get();
+
+		if (profile != null) {
+			if (name != null) profile.name = name;
+			if (class_id != null) profile.class_id = class_id;
+		}
+	}
+
+
+	/*
+	 * adds the time since the previous lap to the given stage
+	 */
+	public static void lap(String stage) {
+
+		PredictionProfile profile = current.get();
+
+		if (profile == null) {
+			return;
+		}
+		long now = System.nanoTime();
+		Long time = profile.stage_times.get(stage);
+
+		profile.stage_times.put(stage, (time == null ? 0 : time) + now - profile.last_lap);
+		profile.last_lap = now;
+	}
+
+
+	public static void count(String counter, long value) {
+
+		PredictionProfile profile = current.get();
+
+		if (profile != null) {
+			Long count = profile.counters.get(counter);
+			profile.counters.put(counter, (count == null ? 0 : count) + value);
+		}
+	}
+
+
+	/*
+	 * counts the size of a temporary file, which has been written
+	 */
+	public static void countTempFile(String path) {
+
+		if (current.get() != null) {
+			count(tempBytesWritten, new File(path).length());
+		}
+	}
+
+
+	public String getName() {
+		return name;
+	}
+
+	public String getClassID() {
+		return class_id;
+	}
+
+	public double getTotalSeconds() {
+		return total_time / 1e9;
+	}
+
+	public double getStageSeconds(String stage) {
+
+		Long time = stage_times.get(stage);
+
+		return (time == null) ? 0 : time / 1e9;
+	}
+
+
+	/*
+	 *
+	 * report
+	 *
+	 */
+
+	public static void writeReport(ArrayList<PredictionProfile> profiles, String outfile) {
+
+		try {
+			BufferedWriter bw = new BufferedWriter(new FileWriter(new File(outfile)));
+
+			if (outfile.endsWith(prometheusSuffix)) {
+				writePrometheus(profiles, bw);
+			}
+			else {
+				writeJSON(profiles, bw);
+			}
+			bw.flush();
+			bw.close();
+		}
+		catch(IOException ioe) {
+			System.out.println(ioe.getMessage());
+			System.out.println("IOException occurred while writing profile to " + outfile + ".");
+		}
+	}
+
+
+	private static void writeJSON(ArrayList<PredictionProfile> profiles, BufferedWriter bw) throws IOException {
+
+		bw.write("{\n  \"factors\": [");
+
+		for (int i=0; i<profiles.size(); i++) {
+
+			PredictionProfile profile = profiles.get(i);
+
+			bw.write((i == 0 ? "" : ",") + "\n    {\"name\": " + quote(profile.name) + ", \"class\": " + quote(profile.class_id)
+					 + ", \"total_seconds\": " + format(profile.getTotalSeconds()) + ",\n     \"stages\": {");
+
+			int s = 0;
+			for (String stage: profile.stage_times.keySet()) {
+				bw.write((s++ == 0 ? "" : ", ") + quote(stage) + ": " + format(profile.getStageSeconds(stage)));
+			}
+			bw.write("},\n     \"counters\": {");
+
+			s = 0;
+			for (String counter: profile.counters.keySet()) {
+				bw.write((s++ == 0 ? "" : ", ") + quote(counter) + ": " + profile.counters.get(counter));
+			}
+			bw.write("}}");
+		}
+		bw.write("\n  ],\n  \"aggregates\": {");
+
+		ArrayList<String> groups = getGroups(profiles);
+
+		for (int g=0; g<groups.size(); g++) {
+
+			ArrayList<PredictionProfile> members = getMembers(profiles, groups.get(g));
+
+			bw.write((g == 0 ? "" : ",") + "\n    " + quote(groups.get(g)) + ": {\"factors\": " + members.size()
+					 + ",\n      \"total_seconds\": " + getStatisticsJSON(getTotalSeconds(members)) + ",\n      \"stages\": {");
+
+			ArrayList<String> stages = getStages(members);
+
+			for (int s=0; s<stages.size(); s++) {
+				bw.write((s == 0 ? "" : ",") + "\n        " + quote(stages.get(s)) + ": " + getStatisticsJSON(getStageSeconds(members, stages.get(s))));
+			}
+			bw.write("},\n      \"counters\": {");
+
+			ArrayList<String> counters = getCounters(members);
+
+			for (int c=0; c<counters.size(); c++) {
+				bw.write((c == 0 ? "" : ",") + "\n        " + quote(counters.get(c)) + ": " + getStatisticsJSON(getCounterValues(members, counters.get(c))));
+			}
+			bw.write("}}");
+		}
+		bw.write("\n  }\n}\n");
+	}
+
+
+	private static void writePrometheus(ArrayList<PredictionProfile> profiles, BufferedWriter bw) throws IOException {
+
+		bw.write("# HELP sabine_factor_stage_seconds Time of each stage of the prediction of a factor.\n");
+		bw.write("# TYPE sabine_factor_stage_seconds gauge\n");
+
+		for (PredictionProfile profile: profiles) {
+
+			String labels = "factor=" + quote(profile.name) + ",class=" + quote(profile.class_id);
+
+			bw.write("sabine_factor_stage_seconds{" + labels + ",stage=\"total\"} " + format(profile.getTotalSeconds()) + "\n");
+
+			for (String stage: profile.stage_times.keySet()) {
+				bw.write("sabine_factor_stage_seconds{" + labels + ",stage=" + quote(stage) + "} " + format(profile.getStageSeconds(stage)) + "\n");
+			}
+		}
+
+		bw.write("# HELP sabine_factor_counter Counters of the prediction of a factor.\n");
+		bw.write("# TYPE sabine_factor_counter gauge\n");
+
+		for (PredictionProfile profile: profiles) {
+
+			String labels = "factor=" + quote(profile.name) + ",class=" + quote(profile.class_id);
+
+			for (String counter: profile.counters.keySet()) {
+				bw.write("sabine_factor_counter{" + labels + ",counter=" + quote(counter) + "} " + profile.counters.get(counter) + "\n");
+			}
+		}
+
+		bw.write("# HELP sabine_stage_seconds Time of each stage over all factors (group all) and the factors of each superclass.\n");
+		bw.write("# TYPE sabine_stage_seconds summary\n");
+
+		for (String group: getGroups(profiles)) {
+
+			ArrayList<PredictionProfile> members = getMembers(profiles, group);
+
+			writePrometheusSummary(bw, "sabine_stage_seconds", "group=" + quote(group) + ",stage=\"total\"", getTotalSeconds(members));
+
+			for (String stage: getStages(members)) {
+				writePrometheusSummary(bw, "sabine_stage_seconds", "group=" + quote(group) + ",stage=" + quote(stage), getStageSeconds(members, stage));
+			}
+		}
+
+		bw.write("# HELP sabine_counter Counters over all factors (group all) and the factors of each superclass.\n");
+		bw.write("# TYPE sabine_counter summary\n");
+
+		for (String group: getGroups(profiles)) {
+
+			ArrayList<PredictionProfile> members = getMembers(profiles, group);
+
+			for (String counter: getCounters(members)) {
+				writePrometheusSummary(bw, "sabine_counter", "group=" + quote(group) + ",counter=" + quote(counter), getCounterValues(members, counter));
+			}
+		}
+	}
+
+
+	private static void writePrometheusSummary(BufferedWriter bw, String metric, String labels, ArrayList<Double> values) throws IOException {
+
+		double[] stats = getStatistics(values);
+
+		bw.write(metric + "{" + labels + ",quantile=\"0.5\"} " + format(stats[2]) + "\n");
+		bw.write(metric + "{" + labels + ",quantile=\"0.95\"} " + format(stats[3]) + "\n");
+		bw.write(metric + "{" + labels + ",quantile=\"1\"} " + format(stats[4]) + "\n");
+		bw.write(metric + "_sum{" + labels + "} " + format(stats[1]) + "\n");
+		bw.write(metric + "_count{" + labels + "} " + (int) stats[0] + "\n");
+	}
+
+
+	/*
+	 * groups of the aggregates: "all" and the superclasses in the order of their first occurrence
+	 */
+	private static ArrayList<String> getGroups(ArrayList<PredictionProfile> profiles) {
+
+		ArrayList<String> res = new ArrayList<String>();
+		res.add("all");
+
+		for (PredictionProfile profile: profiles) {
+			if (! res.contains(profile.class_id)) res.add(profile.class_id);
+		}
+		return res;
+	}
+
+
+	private static ArrayList<PredictionProfile> getMembers(ArrayList<PredictionProfile> profiles, String group) {
+
+		ArrayList<PredictionProfile> res = new ArrayList<PredictionProfile>();
+
+		for (PredictionProfile profile: profiles) {
+			if (group.equals("all") || group.equals(profile.class_id)) res.add(profile);
+		}
+		return res;
+	}
+
+
+	private static ArrayList<String> getStages(ArrayList<PredictionProfile> profiles) {
+
+		ArrayList<String> res = new ArrayList<String>();
+
+		for (PredictionProfile profile: profiles) {
+			for (String stage: profile.stage_times.keySet()) {
+				if (! res.contains(stage)) res.add(stage);
+			}
+		}
+		return res;
+	}
+
+
+	private static ArrayList<String> getCounters(ArrayList<PredictionProfile> profiles) {
+
+		ArrayList<String> res = new ArrayList<String>();
+
+		for (PredictionProfile profile: profiles) {
+			for (String counter: profile.counters.keySet()) {
+				if (! res.contains(counter)) res.add(counter);
+			}
+		}
+		return res;
+	}
+
+
+	private static ArrayList<Double> getTotalSeconds(ArrayList<PredictionProfile> profiles) {
+
+		ArrayList<Double> res = new ArrayList<Double>();
+
+		for (PredictionProfile profile: profiles) {
+			res.add(profile.getTotalSeconds());
+		}
+		return res;
+	}
+
+
+	/*
+	 * times of the given stage (only factors, whose prediction contained the stage)
+	 */
+	private static ArrayList<Double> getStageSeconds(ArrayList<PredictionProfile> profiles, String stage) {
+
+		ArrayList<Double> res = new ArrayList<Double>();
+
+		for (PredictionProfile profile: profiles) {
+			if (profile.stage_times.containsKey(stage)) res.add(profile.getStageSeconds(stage));
+		}
+		return res;
+	}
+
+
+	private static ArrayList<Double> getCounterValues(ArrayList<PredictionProfile> profiles, String counter) {
+
+		ArrayList<Double> res = new ArrayList<Double>();
+
+		for (PredictionProfile profile: profiles) {
+			Long count = profile.counters.get(counter);
+			res.add(count == null ? 0.0 : count);
+		}
+		return res;
+	}
+
+
+	/*
+	 * returns { count, sum, p50, p95, max } (nearest-rank percentiles)
+	 */
+	private static double[] getStatistics(ArrayList<Double> values) {
+
+		ArrayList<Double> sorted = new ArrayList<Double>(values);
+		Collections.sort(sorted);
+
+		double sum = 0;
+		for (double value: sorted) {
+			sum += value;
+		}
+
+		if (sorted.isEmpty()) {
+			return new double[] {0, 0, 0, 0, 0};
+		}
+		return new double[] {sorted.size(), sum, getPercentile(sorted, 0.5), getPercentile(sorted, 0.95), sorted.get(sorted.size()-1)};
+	}
+
+
+	private static double getPercentile(ArrayList<Double> sorted, double p) {
+
+		int rank = (int) Math.ceil(p * sorted.size());
+
+		return sorted.get(Math.max(0, rank - 1));
+	}
+
+
+	private static String getStatisticsJSON(ArrayList<Double> values) {
+
+		double[] stats = getStatistics(values);
+
+		return "{\"count\": " + (int) stats[0] + ", \"sum\": " + format(stats[1]) + ", \"p50\": " + format(stats[2])
+			   + ", \"p95\": " + format(stats[3]) + ", \"max\": " + format(stats[4]) + "}";
+	}
+
+
+	private static String format(double value) {
+		return String.format(Locale.US, "%.6f", value);
+	}
+
+
+	private static String quote(String value) {
+		return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+}
@@ -25,11 +25,25 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Locale;
 import java.util.StringTokenizer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.lang3.time.StopWatch;
+import org.biojava.bio.BioException;
+import org.biojava.bio.seq.ProteinTools;
 
+import benchmark.SABINEBenchmarks;
+import benchmark.CascadeCalibration;
+import benchmark.SABINEValidation;
 import extension.PredictionEvaluator;
 import model.ModelGenerator;
 
@@ -50,6 +64,38 @@ public class SABINE_Main {
 
   boolean dynamic_threshold = true;
 
+  boolean in_memory = false;
+
+  /*
+   *  cascade mode: only the cascade_size best candidates of the fast model get the expensive features
+   *  (0: all candidates), cascade_check_size > 0: full predictions, which are compared with a cascade
+   */
+  int cascade_size = 0;
+  int cascade_check_size = 0;
+  int min_cascade_size = FBPPredictor.default_min_cascade_size;
+
+  /*
+   *  fast mode: predictions with the fast models (no kernel, secondary structure and environment features)
+   */
+  boolean fast = false;
+
+  /*
+   *  resident training sets and models (only used in in-memory mode)
+   */
+  PredictionEngine engine = null;
+
+  /*
+   *  number of TFs which are predicted in parallel (each worker uses its own base directory)
+   */
+  int num_threads = 1;
+
+  /*
+   *  file for the per-stage timers and counters of all predictions (null: no profiling),
+   *  the profiles are collected in the order in which the predictions finish
+   */
+  String profile_file = null;
+  ArrayList<PredictionProfile> profiles = new ArrayList<PredictionProfile>();
+
   public final static String version = "1.2";
   public final static String appName = "SABINE " + version;
 
@@ -157,71 +203,115 @@ public class SABINE_Main {
 
     createTempDirectories(base_dir);
 
+    if (num_threads > 1) {
+      launch_SABINE_parallel(infile, outfile, verbose_option, base_dir, train_dir, model_dir);
+      return;
+    }
+
     try{
 
       BufferedReader br = new BufferedReader(new FileReader(new File(infile)));
       BufferedWriter bw = new BufferedWriter(new FileWriter(new File(outfile)));
 
-      BufferedReader br_tmp;
-      BufferedWriter bw_tmp;
+      ArrayList<String> tf_lines;
 
-      String line;
-      String curr_name;
-      StringTokenizer strtok;
+      while ((tf_lines = readNextTF(br)) != null) {
 
-      while ((line = br.readLine()) != null) {
+        // write current input file
+        writeInputFile(tf_lines, base_dir);
 
+        // run SABINE on current input file and write output file
+        bw.write("NA  " + getTFName(tf_lines) + "\nXX\n");
+        bw.write(predictSingleTF(verbose_option, base_dir, train_dir, model_dir));
+        bw.write("//\nXX\n");
 
-        // write current input file
-        bw_tmp = new BufferedWriter(new FileWriter(new File(base_dir + "infile.tmp")));
+      }
+      br.close();
+      bw.flush();
+      bw.close();
 
-        if (!line.startsWith("NA")) {
-          System.out.println("Parse Error. Line is expected to start with \"NA\".");
-          System.exit(0);
-        }
+    }
+    catch(IOException ioe) {
+      System.out.println(ioe.getMessage());
+      System.out.println("IOException occurred while calling SABINE.");
+    }
+    catch(PredictionException pe) {
+      System.out.println(pe.getMessage());
+      System.exit(0);
+    }
+  }
 
-        strtok = new StringTokenizer(line);
-        strtok.nextToken();					// NA
-        curr_name = strtok.nextToken();		// name of current TF
 
+  /*
+   *  predicts the TFs of the input file concurrently with num_threads workers,
+   *  the results are written in the order of the input file
+   */
 
+  public void launch_SABINE_parallel(String infile, String outfile, final String verbose_option, String base_dir, final String train_dir, final String model_dir) {
 
-        while ((line != null) && !line.startsWith("//")) {    // write current input file and go to next TF
+    // read training sets and models only once for all workers
+    getPredictionEngine(train_dir, model_dir);
 
-          bw_tmp.write(line + "\n");
-          line = br.readLine();
-        }
-        br.readLine(); 						// XX
-
-        bw_tmp.flush();
-        bw_tmp.close();
-
-        // run SABINE on current input file
-        String[] arguments = {base_dir + "infile.tmp",
-          "-s", "" + best_match_threshold,
-          "-m", "" + max_number_of_best_matches,
-          "-o", "" + outlier_filter_threshold,
-          "-v", verbose_option,
-          "-b", base_dir,
-          "-t", train_dir,
-          "-c", model_dir,
-          "-d", "" + dynamic_threshold};
-
-        FBPPredictor.main(arguments);
-
-        // write output file
-        bw.write("NA  " + curr_name + "\nXX\n");
-        br_tmp = new BufferedReader(new FileReader(new File(base_dir + "prediction.out")));
-
-        while ((line = br_tmp.readLine()) != null) {
-          bw.write(line + "\n");
-        }
-        br_tmp.close();
-        bw.write("//\nXX\n");
+    // BioJava initializes alphabets and token tables lazily (not thread-safe)
+    try {
+      ProteinTools.createProteinSequence("ACDEFGHIKLMNPQRSTVWY", "init");
+    }
+    catch(BioException bioe) {
+      System.out.println(bioe.getMessage());
+      System.out.println("BioException occurred while initializing protein alphabet.");
+    }
+
+    // create a separate base directory for each worker
+    final BlockingQueue<String> worker_dirs = new ArrayBlockingQueue<String>(num_threads);
+
+    for (int w=1; w<=num_threads; w++) {
+      String worker_dir = base_dir + "worker" + w + "/";
+      createTempDirectories(worker_dir);
+      worker_dirs.add(worker_dir);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(num_threads);
 
+    try{
+
+      BufferedReader br = new BufferedReader(new FileReader(new File(infile)));
+
+      ArrayList<String> tf_names = new ArrayList<String>();
+      ArrayList<Future<String>> predictions = new ArrayList<Future<String>>();
+
+      ArrayList<String> tf_lines;
+
+      while ((tf_lines = readNextTF(br)) != null) {
+
+        final ArrayList<String> curr_tf = tf_lines;
+
+        tf_names.add(getTFName(curr_tf));
+        predictions.add(executor.submit(new Callable<String>() {
+
+          public String call() throws Exception {
+
+            String worker_dir = worker_dirs.take();
+            try {
+              writeInputFile(curr_tf, worker_dir);
+              return predictSingleTF(verbose_option, worker_dir, train_dir, model_dir);
+            }
+            finally {
+              worker_dirs.put(worker_dir);
+            }
+          }
+        }));
       }
       br.close();
-      bw.flush();
+
+      // write output file in input order
+      BufferedWriter bw = new BufferedWriter(new FileWriter(new File(outfile)));
+
+      for (int i=0; i<predictions.size(); i++) {
+        bw.write("NA  " + tf_names.get(i) + "\nXX\n");
+        bw.write(predictions.get(i).get());
+        bw.write("//\nXX\n");
+        bw.flush();
+      }
       bw.close();
 
     }
@@ -229,6 +319,134 @@ public class SABINE_Main {
       System.out.println(ioe.getMessage());
       System.out.println("IOException occurred while calling SABINE.");
     }
+    catch(InterruptedException ie) {
+      System.out.println(ie.getMessage());
+      System.out.println("InterruptedException occurred while calling SABINE.");
+    }
+    catch(ExecutionException ee) {
+      System.out.println(ee.getCause().getMessage());
+
+      if (ee.getCause() instanceof PredictionException) {
+        System.exit(0);
+      }
+      System.out.println("ExecutionException occurred while calling SABINE.");
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+
+  /*
+   *  reads the next TF (terminated by "//") from the input file, returns null at the end of the file
+   */
+
+  private static ArrayList<String> readNextTF(BufferedReader br) throws IOException {
+
+    String line = br.readLine();
+
+    if (line == null) {
+      return null;
+    }
+    if (!line.startsWith("NA")) {
+      System.out.println("Parse Error. Line is expected to start with \"NA\".");
+      System.exit(0);
+    }
+
+    ArrayList<String> tf_lines = new ArrayList<String>();
+
+    while ((line != null) && !line.startsWith("//")) {    // go to next TF
+
+      tf_lines.add(line);
+      line = br.readLine();
+    }
+    br.readLine(); 						// XX
+
+    return tf_lines;
+  }
+
+
+  private static String getTFName(ArrayList<String> tf_lines) {
+
+    StringTokenizer strtok = new StringTokenizer(tf_lines.get(0));
+    strtok.nextToken();					// NA
+
+    return strtok.nextToken();			// name of current TF
+  }
+
+
+  private static void writeInputFile(ArrayList<String> tf_lines, String base_dir) throws IOException {
+
+    BufferedWriter bw = new BufferedWriter(new FileWriter(new File(base_dir + "infile.tmp")));
+
+    for (String line: tf_lines) {
+      bw.write(line + "\n");
+    }
+    bw.flush();
+    bw.close();
+  }
+
+
+  /*
+   *  returns the shared engine in in-memory mode (created on first access), otherwise null
+   */
+
+  synchronized PredictionEngine getPredictionEngine(String train_dir, String model_dir) {
+
+    if (in_memory && engine == null) {
+      engine = new PredictionEngine(train_dir, model_dir);
+    }
+    return engine;
+  }
+
+
+  /*
+   *  runs SABINE on the input file <base_dir>/infile.tmp and returns the content of the prediction file
+   */
+
+  public String predictSingleTF(String verbose_option, String base_dir, String train_dir, String model_dir) throws IOException {
+
+    PredictionEngine engine = getPredictionEngine(train_dir, model_dir);
+
+    String[] arguments = {base_dir + "infile.tmp",
+      "-s", "" + best_match_threshold,
+      "-m", "" + max_number_of_best_matches,
+      "-o", "" + outlier_filter_threshold,
+      "-v", verbose_option,
+      "-b", base_dir,
+      "-t", train_dir,
+      "-c", model_dir,
+      "-d", "" + dynamic_threshold,
+      "-i", "" + in_memory,
+      "-cascade", "" + cascade_size,
+      "-cascade_check", "" + cascade_check_size,
+      "-cascade_min", "" + min_cascade_size,
+      "-fast", "" + fast};
+
+    if (profile_file != null) {
+      PredictionProfile.start();
+    }
+
+    FBPPredictor.main(arguments, engine);
+
+    PredictionProfile profile = PredictionProfile.stop();
+
+    if (profile != null) {
+      synchronized (profiles) {
+        profiles.add(profile);
+      }
+    }
+
+    StringBuffer prediction = new StringBuffer();
+    BufferedReader br = new BufferedReader(new FileReader(new File(base_dir + "prediction.out")));
+
+    String line;
+    while ((line = br.readLine()) != null) {
+      prediction.append(line + "\n");
+    }
+    br.close();
+
+    return prediction.toString();
   }
 
 
@@ -264,6 +482,38 @@ public class SABINE_Main {
       }
       PredictionEvaluator.main(newArgs);
 
+      // run Server Mode
+    } else if ((args.length >= 1) && args[0].equals("--server")) {
+      String[] newArgs = new String[args.length-1];
+      for (int i=1; i<args.length; i++) {
+        newArgs[i-1] = args[i];
+      }
+      SABINE_Server.main(newArgs);
+
+      // run Benchmark Mode
+    } else if ((args.length >= 1) && args[0].equals("--benchmark")) {
+      String[] newArgs = new String[args.length-1];
+      for (int i=1; i<args.length; i++) {
+        newArgs[i-1] = args[i];
+      }
+      SABINEBenchmarks.main(newArgs);
+
+      // run Validation Mode (equivalence checks of the optimized kernels)
+    } else if ((args.length >= 1) && args[0].equals("--validate")) {
+      String[] newArgs = new String[args.length-1];
+      for (int i=1; i<args.length; i++) {
+        newArgs[i-1] = args[i];
+      }
+      SABINEValidation.main(newArgs);
+
+      // run Cascade Calibration Mode (recall of the cascade sizes on the training sets)
+    } else if ((args.length >= 1) && args[0].equals("--calibrate-cascade")) {
+      String[] newArgs = new String[args.length-1];
+      for (int i=1; i<args.length; i++) {
+        newArgs[i-1] = args[i];
+      }
+      CascadeCalibration.main(newArgs);
+
       // run Installation Validation Mode
     } else if ((args.length == 1) && (args[0].equals("-check-install") || args[0].equals("--check-install"))) {
       SABINE_Main.printCopyright();
@@ -287,6 +537,9 @@ public class SABINE_Main {
       String outfile = infile + ".out";
       String verbose_option = "y";
       String stopwatch_option = "n";
+      String in_memory_option = "n";
+      String exact_search_option = "n";
+      String fast_option = "n";
       String base_dir = null;
       String train_dir = FBPPredictor.public_trainingset;
       String model_dir = FBPPredictor.defaultModelDir;
@@ -308,16 +561,32 @@ public class SABINE_Main {
         if(args[i].equals("-c")) { model_dir							= args[i+1]; 						continue; }
         if(args[i].equals("-v")) { verbose_option	   					= args[i+1]; 						continue; }
         if(args[i].equals("-w")) { stopwatch_option						= args[i+1]; 						continue; }
+        if(args[i].equals("-i")) { in_memory_option						= args[i+1]; 						continue; }
+        if(args[i].equals("-e")) { exact_search_option					= args[i+1]; 						continue; }
+        if(args[i].equals("-threads")) { caller.num_threads			= Integer.parseInt   (args[i+1]); 	continue; }
+        if(args[i].equals("-profile")) { caller.profile_file			= args[i+1]; 						continue; }
+        if(args[i].equals("-cascade")) { caller.cascade_size			= Integer.parseInt   (args[i+1]); 	continue; }
+        if(args[i].equals("-cascade_check")) { caller.cascade_check_size	= Integer.parseInt   (args[i+1]); 	continue; }
+        if(args[i].equals("-cascade_min")) { caller.min_cascade_size		= Integer.parseInt   (args[i+1]); 	continue; }
+        if(args[i].equals("-fast")) { fast_option						= args[i+1]; 						continue; }
 
 
         if( !args[i].equals("-s") && !args[i].equals("-m") && !args[i].equals("-t") && !args[i].equals("-b") &&
-            !args[i].equals("-o") && !args[i].equals("-f") && !args[i].equals("-c") && !args[i].equals("-v") && !args[i].equals("-w")) {
+            !args[i].equals("-o") && !args[i].equals("-f") && !args[i].equals("-c") && !args[i].equals("-v") && !args[i].equals("-w") &&
+            !args[i].equals("-i") && !args[i].equals("-e") && !args[i].equals("-threads") &&
+            !args[i].equals("-profile") && !args[i].equals("-cascade") && !args[i].equals("-cascade_check") && !args[i].equals("-cascade_min") &&
+            !args[i].equals("-fast")) {
 
           System.out.println("\n  Invalid argument: " + args[i]);
           usage();
         }
       }
 
+      if (caller.cascade_size > 0 && caller.cascade_size < caller.min_cascade_size) {
+        System.out.println("\n  Invalid cascade size: " + caller.cascade_size + " (min. " + caller.min_cascade_size + " candidates, smaller cascades miss best matches)");
+        usage();
+      }
+
       if (verbose_option.equals("n") || verbose_option.equals("no") || verbose_option.equals("h")) {
         caller.silent = true;
       }
@@ -325,6 +594,15 @@ public class SABINE_Main {
         caller.stopTime = true;
         caller.stopwatch.start();
       }
+      if (in_memory_option.equals("y") || in_memory_option.equals("yes")) {
+        caller.in_memory = true;
+      }
+      if (exact_search_option.equals("y") || exact_search_option.equals("yes")) {
+        FBPPredictor.exact_homology_search = true;
+      }
+      if (fast_option.equals("y") || fast_option.equals("yes")) {
+        caller.fast = true;
+      }
 
       if (! train_dir.endsWith("/")) {
         train_dir += "/";
@@ -336,6 +614,10 @@ public class SABINE_Main {
 
       caller.launch_SABINE(infile, outfile, verbose_option, base_dir, train_dir, model_dir);
 
+      if (caller.profile_file != null) {
+        PredictionProfile.writeReport(caller.profiles, caller.profile_file);
+      }
+
       String curr_dir = System.getProperty("user.dir") + "/";
 
       if (! outfile.startsWith("/")) {
@@ -349,6 +631,20 @@ public class SABINE_Main {
       if (caller.stopTime) {
         System.out.println("Time elapsed: " + caller.stopwatch.toString());
       }
+
+      if (caller.cascade_check_size > 0) {
+        ArrayList<Integer> ranks = FBPPredictor.getCascadeRanks();
+        int recalled = 0;
+        for (int rank: ranks) {
+          if (rank <= caller.cascade_check_size) recalled++;
+        }
+        System.out.println("Cascade recall (" + caller.cascade_check_size + " candidates): " + recalled + " of " + ranks.size() + " best matches" +
+            ((ranks.size() > 0) ? String.format(Locale.US, " (%.1f%%)", 100.0 * recalled / ranks.size()) : "") + "\n");
+      }
+
+      if (caller.profile_file != null && ! caller.silent) {
+        System.out.println("Profile file: " + caller.profile_file + "\n");
+      }
     }
   }
 
@@ -363,7 +659,20 @@ public class SABINE_Main {
     //System.out.println("            -t <training_set_dir>  	(directory that contains training sets)        default = data/trainingsets");
     //System.out.println("            -c <model_dir>  	        (directory that contains custom-built models)  default = data/models");
     System.out.println("            -f <output_filename>      (file to save the results)                default = <input_filename>.out");
-    System.out.println("            -v <verbose_mode>         (write status to standard output)         default = y (yes)\n\n");
+    System.out.println("            -v <verbose_mode>         (write status to standard output)         default = y (yes)");
+    System.out.println("            -i <in_memory_mode>       (keep features in memory, no temp files)  default = n (no)");
+    System.out.println("            -e <exact_search_mode>    (align to all TFs, no k-mer shortcuts)    default = n (no)");
+    System.out.println("            -threads <num_threads>    (number of TFs predicted in parallel)     default = 1");
+    System.out.println("            -profile <profile_file>   (stage timings as JSON or Prometheus text (*.prom))");
+    System.out.println("            -cascade <num_candidates> (expensive features only for the best candidates)  default = 0 (all)");
+    System.out.println("            -cascade_min <num_candidates> (min. cascade size, 0: no minimum)  default = " + FBPPredictor.default_min_cascade_size);
+    System.out.println("                                      (smallest size which recalled all best matches of the training sets,");
+    System.out.println("                                       see sabine --calibrate-cascade)");
+    System.out.println("            -cascade_check <num_candidates> (full mode, reports recall of a cascade)");
+    System.out.println("            -fast <fast_mode>         (fast models, only the cheap features)    default = n (no)\n");
+    System.out.println("  Server  : sabine --server [-p <port>] [-b <base_dir>] [-t <training_set_dir>] [-c <model_dir>]");
+    System.out.println("                           [-s <similarity_threshold>] [-m <max_num_best_matches>] [-o <outlier_filter_param>] [-v <verbose_mode>]");
+    System.out.println("            (keeps training sets and models resident and answers requests on localhost)\n\n");
     System.exit(0);
 
   }
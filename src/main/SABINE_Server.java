@@ -0,0 +1,208 @@
+/*
+    SABINE predicts binding specificities of transcription factors.
+    Copyright (C) 2009 ZBIT, University of Tübingen, Johannes Eichner
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package main;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.StringTokenizer;
+
+
+/*
+ *
+ * long-lived prediction service, which reads training sets and models only once
+ * and answers prediction requests on a local TCP port
+ *
+ * protocol: the client sends TFs in the SABINE input format (each TF terminated by "//"),
+ * the server answers each TF with the corresponding block of the SABINE output format
+ * (or with "ER" lines, which contain the error message, if the TF could not be predicted),
+ * the connection is closed by the client or by sending "QUIT"
+ *
+ */
+public class SABINE_Server {
+
+  public static final int defaultPort = 7070;
+
+  public static final String[] class_ids = new String[] {"class0", "class1", "class2", "class3", "class4"};
+
+  int port = defaultPort;
+
+  String verbose_option = "n";
+
+  String base_dir = null;
+
+  String train_dir = FBPPredictor.public_trainingset;
+
+  String model_dir = FBPPredictor.defaultModelDir;
+
+  SABINE_Main caller = new SABINE_Main();
+
+
+  public void startServer() {
+
+    if (base_dir == null) {
+      base_dir = SABINE_Main.createBaseDir();
+    }
+    if (! base_dir.endsWith("/")) {
+      base_dir += "/";
+    }
+    if (! train_dir.endsWith("/")) {
+      train_dir += "/";
+    }
+    SABINE_Main.createTempDirectories(base_dir);
+
+    // read training sets and models once
+    caller.in_memory = true;
+    caller.engine = new PredictionEngine(train_dir, model_dir);
+    caller.engine.preload(class_ids);
+
+    try {
+      ServerSocket server = new ServerSocket(port, 50, InetAddress.getByName("localhost"));
+
+      System.out.println("SABINE server is listening on port " + port + ".");
+
+      while (true) {
+        Socket client = server.accept();
+        handleClient(client);
+      }
+    }
+    catch(IOException ioe) {
+      System.out.println(ioe.getMessage());
+      System.out.println("IOException occurred while running SABINE server.");
+    }
+  }
+
+
+  /*
+   *  answers all requests of a single client, errors of a request are reported to the client
+   *  (lines "ER  <message>") and do not affect other requests
+   */
+  private void handleClient(Socket client) {
+
+    try {
+      BufferedReader br = new BufferedReader(new InputStreamReader(client.getInputStream()));
+      BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(client.getOutputStream()));
+
+      String line;
+      while ((line = br.readLine()) != null) {
+
+        if (line.trim().equals("QUIT")) {
+          break;
+        }
+
+        // skip separators between TFs
+        if (! line.startsWith("NA")) {
+          continue;
+        }
+
+        StringTokenizer strtok = new StringTokenizer(line);
+        strtok.nextToken();                   // NA
+        String curr_name = strtok.hasMoreTokens() ? strtok.nextToken() : null;  // name of current TF
+
+        BufferedWriter bw_tmp = new BufferedWriter(new FileWriter(new File(base_dir + "infile.tmp")));
+
+        while ((line != null) && !line.startsWith("//")) {
+          bw_tmp.write(line + "\n");
+          line = br.readLine();
+        }
+        bw_tmp.flush();
+        bw_tmp.close();
+
+        if (curr_name == null) {
+          bw.write("NA  \nXX\n");
+          writeError(bw, "Parse Error. Invalid format. Name of the transcription factor expected after \"NA\".");
+        }
+        else {
+          bw.write("NA  " + curr_name + "\nXX\n");
+          try {
+            bw.write(caller.predictSingleTF(verbose_option, base_dir, train_dir, model_dir));
+          }
+          catch(PredictionException pe) {
+            System.out.println(pe.getMessage());
+            writeError(bw, pe.getMessage());
+          }
+          catch(RuntimeException re) {
+            re.printStackTrace();
+            System.out.println("RuntimeException occurred while predicting " + curr_name + ".");
+            writeError(bw, "Internal error while predicting " + curr_name + ": " + re);
+          }
+        }
+        bw.write("//\nXX\n");
+        bw.flush();
+      }
+    }
+    catch(IOException ioe) {
+      System.out.println(ioe.getMessage());
+      System.out.println("IOException occurred while answering request.");
+    }
+    catch(RuntimeException re) {
+      re.printStackTrace();
+      System.out.println("RuntimeException occurred while answering request.");
+    }
+    finally {
+      try {
+        client.close();
+      }
+      catch(IOException ioe) {
+        System.out.println(ioe.getMessage());
+        System.out.println("IOException occurred while closing connection.");
+      }
+    }
+  }
+
+
+  private static void writeError(BufferedWriter bw, String message) throws IOException {
+
+    bw.write("ER  " + String.valueOf(message).replace("\n", "\nER  ") + "\nXX\n");
+  }
+
+
+  public static void main(String[] args) {
+
+    SABINE_Server server = new SABINE_Server();
+
+    for(int i=0; i<(args.length-1); i+=2) {
+
+      if(args[i].equals("-p")) { server.port                       = Integer.parseInt   (args[i+1]);  continue; }
+      if(args[i].equals("-b")) { server.base_dir                   = args[i+1];                       continue; }
+      if(args[i].equals("-t")) { server.train_dir                  = args[i+1];                       continue; }
+      if(args[i].equals("-c")) { server.model_dir                  = args[i+1];                       continue; }
+      if(args[i].equals("-v")) { server.verbose_option             = args[i+1];                       continue; }
+      if(args[i].equals("-s")) { server.caller.best_match_threshold = Double.parseDouble (args[i+1]);
+                                 server.caller.dynamic_threshold   = false;                           continue; }
+      if(args[i].equals("-m")) { server.caller.max_number_of_best_matches = Integer.parseInt (args[i+1]); continue; }
+      if(args[i].equals("-o")) { server.caller.outlier_filter_threshold = Double.parseDouble (args[i+1]); continue; }
+
+      System.out.println("\n  Invalid argument: " + args[i]);
+      SABINE_Main.usage();
+    }
+    if (args.length % 2 != 0) {
+      System.out.println("\n  Invalid argument: " + args[args.length-1]);
+      SABINE_Main.usage();
+    }
+    server.startServer();
+  }
+}
@@ -19,16 +19,15 @@
 package model;
 
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.StringTokenizer;
 
 import optimization.MoStaOptimizer;
+import core.PFMLibrary;
+import core.PairSet;
 
 public class LabelFileGenerator {
 
@@ -37,43 +36,10 @@ public class LabelFileGenerator {
 	public ArrayList<ArrayList<String>> getAllFBPs(String infile) { 
 
 		ArrayList<ArrayList<String>> fbps = new ArrayList<ArrayList<String>>();
-		ArrayList<String> curr_fbp;
 		
-		BufferedReader br = null;
-		String line = null;
-		
-		try {
-			
-			br = new BufferedReader(new FileReader(new File(infile)));
-			
-			while((line = br.readLine()) != null) {
-				
-				if (! line.startsWith("DE\t")) {
-					System.out.println("Parse Error. Error occured while parsing FBPs. \nLine: " + line 
-										+ "\nexpected to start with DE.");
-					System.exit(0);
-				}
-				
-				curr_fbp = new ArrayList<String>();
-				
-				while(! (line = br.readLine()).startsWith("XX")) {
-					
-					curr_fbp.add(line);
-				
-				}
-				
-				fbps.add(curr_fbp);
-				
-			}
-			
-			br.close();
-				
-			
-		} catch (IOException e) {
-			System.out.println(e.getMessage());
-			System.out.println("Exception occured while parsing FBPs.");
+		for (ArrayList<String> curr_fbp: PFMLibrary.getLibrary(infile).getAllRows()) {
+			fbps.add(new ArrayList<String>(curr_fbp));
 		}
-	
 		return fbps;
 	}
 	
@@ -81,55 +47,21 @@ public class LabelFileGenerator {
 	
 	public ArrayList<String> getFactorNames(String infile) {
 	
-		ArrayList<String> tfnames = new ArrayList<String>();
-		
-		BufferedReader br = null;
-		String line = null;
-		StringTokenizer strtok = null;
-		
-		try {
-			
-			br = new BufferedReader(new FileReader(new File(infile)));
-			
-			while((line = br.readLine()) != null) {
-				
-				if (! line.startsWith("DE\t")) {
-					System.out.println("Parse Error. Error occured while parsing FBPs. \nLine: " + line 
-										+ "\nexpected to start with DE.");
-					System.exit(0);
-				}
-				
-				strtok = new StringTokenizer(line);
-				
-				strtok.nextToken();                   // DE	
-				
-				tfnames.add(strtok.nextToken());	  // name
-				
-				while(! (line = br.readLine()).startsWith("XX"));    // go to next TF  
-				
-			}
-			
-			br.close();
-				
-			
-		} catch (IOException e) {
-			System.out.println(e.getMessage());
-			System.out.println("Exception occured while parsing TF names.");
-		}
-	
-		return tfnames;
+		return new ArrayList<String>(PFMLibrary.getLibrary(infile).getNames());
 		
 	}
 	
-	public void calculateLabelFile(String fbpfile, String outfile, ArrayList<String> relevant_pairs) {
+	public void calculateLabelFile(String fbpfile, String outfile, PairSet relevant_pairs) {
 	
 		BufferedWriter bw = null;
 		MoStaOptimizer optimizer = new MoStaOptimizer();
 		optimizer.basedir = basedir;
 		double curr_score, curr_score_ii, curr_score_jj, curr_score_ij;
 		
-		ArrayList<ArrayList<String>> fbps = getAllFBPs(fbpfile);
-		ArrayList<String> tfnames = getFactorNames(fbpfile);
+		PFMLibrary library = PFMLibrary.getLibrary(fbpfile);
+		
+		ArrayList<double[][]> fbps = library.getAllMatrices();
+		ArrayList<String> tfnames = library.getNames();
 		
 		try {
 			bw = new BufferedWriter(new FileWriter(new File(outfile)));
@@ -138,7 +70,7 @@ public class LabelFileGenerator {
 			
 				for(int j=i+1; j<fbps.size(); j++) {
 				
-					if (! relevant_pairs.contains(i + "_" + j)) continue;
+					if (! relevant_pairs.contains(i, j)) continue;
 					
 					curr_score_ij = optimizer.compareMatrices(fbps.get(i), fbps.get(j), null);
 					curr_score_ii = optimizer.compareMatrices(fbps.get(i), fbps.get(i), null);
@@ -28,12 +28,18 @@ import java.io.IOException;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.StringTokenizer;
 
 import core.DomainFeatureCalculator;
 import core.FeatureRepairer;
+import core.PFMLibrary;
+import core.PairSet;
 import core.SVMPairwiseFeatureCalculator;
+import core.SelfScoreCache;
 import core.SequenceFeatureCalculator;
 import core.SpeciesFeatureCalculator;
 import cv.CVToolRunner;
@@ -43,6 +49,8 @@ import help.LibSVMFeatureScaler;
 import help.RawDataPreprocessor;
 import libsvm.svm_train;
 import main.FBPPredictor;
+import optimization.MoStaOptimizer;
+import optimization.MoStaScoreCache;
 
 public class ModelGenerator {
 
@@ -53,12 +61,20 @@ public class ModelGenerator {
   boolean includeMMK = true;
   boolean includeLAK = true;
   boolean includePhylo = true;
+  int num_threads = Runtime.getRuntime().availableProcessors();
+
+  /*
+   *  fast model: second model without the kernel, secondary structure and environment features (see FBPPredictor.isExpensiveFeature),
+   *  fast_features > 0: only the fast_features of them with the best single-feature models are selected
+   */
+  boolean fastModel = false;
+  int fast_features = 0;
 
   public ModelGenerator(String id) {
     class_id = id;
   }
 
-  public ArrayList<String> computeFeatures(String feature_dir, String temp_dir) {
+  public PairSet computeFeatures(String feature_dir, String temp_dir) {
 
     /*
      *  read TFs in training set
@@ -73,6 +89,8 @@ public class ModelGenerator {
     domaincalculator.basedir = temp_dir;
     sequencecalculator.silent = true;
     sequencecalculator.basedir = temp_dir;
+    domaincalculator.num_threads = num_threads;
+    sequencecalculator.num_threads = num_threads;
 
     int num_entries = domaincalculator.getTrainingSetSize(class_id, train_dir);
     boolean[] irrelevantPairs = new boolean[num_entries];
@@ -81,19 +99,16 @@ public class ModelGenerator {
     sequencecalculator.parseRelevantDomainsAndSequences(irrelevantPairs, class_id, train_dir);
     sequencecalculator.parseRelevantSecondaryStructures(irrelevantPairs, class_id, train_dir);
 
+    // self scores of the training domains are memoized for all substitution matrices
+    SelfScoreCache.registerDomains(domaincalculator.get_other_domains());
+
     /*
      *  find relevant pairs of TFs
      */
 
 
     // initialize relevant pairs
-    ArrayList<String> relevant_pairs = new ArrayList<String>();
-    for (int i=0; i<(num_entries-1); i++) {
-      for (int j=i+1; j<num_entries; j++) {
-
-        relevant_pairs.add(i + "_" + j);
-      }
-    }
+    PairSet relevant_pairs = PairSet.allPairs(num_entries);
     System.out.println("  Filtering transcription factor pairs.");
     int num_TFpairs = relevant_pairs.size();
 
@@ -111,9 +126,14 @@ public class ModelGenerator {
      */
 
 
+    // MoSta scores are memoized and persisted next to the training set (reused by computeLabels and predictions)
+    MoStaScoreCache.load(train_dir + "trainingset_" + class_id + MoStaScoreCache.fileSuffix);
+
     LabelFileGenerator labelgenerator = new LabelFileGenerator();
     labelgenerator.basedir = temp_dir;
     labelgenerator.calculateLabelFile(train_dir + "trainingset_" + class_id + ".fbps", feature_dir + "similar_pairs_MoSta_score.out", relevant_pairs);
+    MoStaScoreCache.save(train_dir + "trainingset_" + class_id + MoStaScoreCache.fileSuffix, MoStaOptimizer.defaultParams,
+                         PFMLibrary.getLibrary(train_dir + "trainingset_" + class_id + ".fbps").getAllMatrices());
     relevant_pairs = findRelevantPairs(relevant_pairs, feature_dir + "similar_pairs_MoSta_score.out", true);
     System.out.println("    " + relevant_pairs.size() + " / " + num_TFpairs + " factor pairs with different matrices found (MoSta score < 1).\n");
 
@@ -124,7 +144,13 @@ public class ModelGenerator {
     System.out.println("  Computing features.\n" +
         "     (directory: " + feature_dir + ")\n");
 
-    domaincalculator.calculateAllDomainFeatures("SMBasedSimilarity", null, FBPPredictor.matrix_dir + "BLOSUM_62.dat"   , feature_dir + "domain_scores_BLOSUM_62.out", relevant_pairs);
+    // BLOSUM_62, BLOSUM_62_si and BLOSUM_62_t=* are derived from one alignment of each pair of domains
+    String[] blosum_outfiles = new String[FBPPredictor.blosumAlignmentScores.length];
+    for (int i=0; i<blosum_outfiles.length; i++) {
+      blosum_outfiles[i] = feature_dir + "domain_scores_" + FBPPredictor.blosumAlignmentScores[i] + ".out";
+    }
+    domaincalculator.calculateAllDomainFeatures(FBPPredictor.blosumFeatureTypes, FBPPredictor.blosumFeatureParams, FBPPredictor.matrix_dir + "BLOSUM_62.dat", blosum_outfiles, relevant_pairs);
+
     domaincalculator.calculateAllDomainFeatures("SMBasedSimilarity", null, FBPPredictor.matrix_dir + "PAM_080.dat"     , feature_dir + "domain_scores_PAM_080.out", relevant_pairs);
 
     domaincalculator.calculateAllDomainFeatures("SMBasedSimilarity", null, FBPPredictor.matrix_dir + "PAM_010.dat"     , feature_dir + "domain_scores_PAM_010.out", relevant_pairs);
@@ -138,11 +164,6 @@ public class ModelGenerator {
     domaincalculator.calculateAllDomainFeatures("SMBasedSimilarity", null, FBPPredictor.matrix_dir + "MIYS930101.dat"  , feature_dir + "domain_scores_MIYS930101.out", relevant_pairs);
     domaincalculator.calculateAllDomainFeatures("SMBasedSimilarity", null, FBPPredictor.matrix_dir + "MIYT790101.dat"  , feature_dir + "domain_scores_MIYT790101.out", relevant_pairs);
 
-    domaincalculator.calculateAllDomainFeatures("SequenceIdentity" , null, FBPPredictor.matrix_dir + "BLOSUM_62.dat"   , feature_dir + "domain_scores_BLOSUM_62_si.out", relevant_pairs);
-
-    domaincalculator.calculateAllDomainFeatures("SMBasedIdentity" , new String[] {"1.0"} , FBPPredictor.matrix_dir + "BLOSUM_62.dat"   , feature_dir + "domain_scores_BLOSUM_62_t=1.0.out", relevant_pairs);
-    domaincalculator.calculateAllDomainFeatures("SMBasedIdentity" , new String[] {"3.0"} , FBPPredictor.matrix_dir + "BLOSUM_62.dat"   , feature_dir + "domain_scores_BLOSUM_62_t=3.0.out", relevant_pairs);
-    domaincalculator.calculateAllDomainFeatures("SMBasedIdentity" , new String[] {"5.0"} , FBPPredictor.matrix_dir + "BLOSUM_62.dat"   , feature_dir + "domain_scores_BLOSUM_62_t=5.0.out", relevant_pairs);
 
     if (includeLAK) {
       domaincalculator.calculateAllDomainFeatures("LocalAlignmentKernel", new String[] {"GCBopt.dat"} 		, null, feature_dir + "domain_scores_lak_GCBopt.out", relevant_pairs);
@@ -158,6 +179,8 @@ public class ModelGenerator {
       domaincalculator.calculateAllDomainFeatures("MismatchKernel", new String[] {"6", "1"}, null, feature_dir + "domain_scores_mmk_6_1.out", relevant_pairs);
     }
 
+    // reuse the best domain pairs of the BLOSUM_62 feature
+    sequencecalculator.setBestDomainPairs(domaincalculator.getBestDomainPairs());
     sequencecalculator.calculateAllSequenceFeatures("SecondaryStructure", null, FBPPredictor.matrix_dir + "BLOSUM_62.dat", feature_dir + "domain_scores_secstr_blo62.out", relevant_pairs);
 
     sequencecalculator.calculateAllSequenceFeatures("Environments", new String[] {"25"}, FBPPredictor.matrix_dir + "BLOSUM_62.dat", feature_dir + "domain_scores_env_25_BLOSUM_62.out", relevant_pairs);
@@ -170,6 +193,9 @@ public class ModelGenerator {
     svmpairwisecalculator.calculateAllSVMPairwiseScores(train_dir + "trainingset_" + class_id + ".blo62", feature_dir + "domain_scores_svm_pairwise_BLOSUM_62.out", relevant_pairs);
     svmpairwisecalculator.calculateAllSVMPairwiseScores(train_dir + "trainingset_" + class_id + ".pam80", feature_dir + "domain_scores_svm_pairwise_PAM_080.out", relevant_pairs);
 
+    // persist self scores next to the training set (used by predictions)
+    SelfScoreCache.save(train_dir + "trainingset_" + class_id + SelfScoreCache.fileSuffix, domaincalculator.get_other_domains());
+
     return relevant_pairs;
   }
 
@@ -179,10 +205,14 @@ public class ModelGenerator {
     repairer.repairAllFeatureFiles(feature_dir.substring(0,feature_dir.length()-1));
   }
 
-  public void computeLabels(String label_dir, String temp_dir, ArrayList<String> relevant_pairs) {
+  public void computeLabels(String label_dir, String temp_dir, PairSet relevant_pairs) {
+    MoStaScoreCache.load(train_dir + "trainingset_" + class_id + MoStaScoreCache.fileSuffix);
+
     LabelFileGenerator labelfilegenerator = new LabelFileGenerator();
     labelfilegenerator.basedir = temp_dir;
     labelfilegenerator.calculateLabelFile(train_dir + "trainingset_" + class_id + ".fbps", label_dir + "mosta_labels_" + class_id + ".out", relevant_pairs);
+    MoStaScoreCache.save(train_dir + "trainingset_" + class_id + MoStaScoreCache.fileSuffix, MoStaOptimizer.defaultParams,
+                         PFMLibrary.getLibrary(train_dir + "trainingset_" + class_id + ".fbps").getAllMatrices());
   }
 
   public void generateSVMinput(String feature_dir, String label_dir, String libsvm_dir) {
@@ -197,11 +227,20 @@ public class ModelGenerator {
     // copy unscaled libsvm file to training directory
     FileCopier.copy(libsvm_dir + "trainingset_unscaled.lp." + class_id + ".att", train_dir + "feature_scaling_orientation_" + class_id + ".out");
 
-    // scale libsvm file
+    // scale libsvm file and save scaling parameters for predictions
     LibSVMFeatureScaler scaler = new LibSVMFeatureScaler();
-    scaler.scaleFeatureFile(libsvm_dir + "trainingset_unscaled.lp." + class_id + ".att",
-      libsvm_dir + "trainingset_unscaled.lp." + class_id + ".att",
-      libsvm_dir + "trainingset.lp." + class_id + ".att");
+    try {
+      double[][] scaling_params = scaler.getScalingParameters(libsvm_dir + "trainingset_unscaled.lp." + class_id + ".att");
+      scaler.writeScalingParameters(scaling_params, train_dir + "feature_scaling_parameters_" + class_id + ".out");
+
+      scaler.scaleFeatureFile(scaling_params[0], scaling_params[1],
+        libsvm_dir + "trainingset_unscaled.lp." + class_id + ".att",
+        libsvm_dir + "trainingset.lp." + class_id + ".att");
+    }
+    catch(IOException ioe) {
+      System.out.println(ioe.getMessage());
+      System.out.println("IOException occurred while scaling feature file.");
+    }
   }
 
   public void runCrossvalidation(String infile) {
@@ -244,7 +283,8 @@ public class ModelGenerator {
       "-ee", e_stop + "",
       "-ei", e_incr + "",
       "-k", folds + "",
-      "-r", runs + ""};
+      "-r", runs + "",
+      "-n", num_threads + ""};
 
     CVToolRunner.main(cvArgs);
     String resultFile = new File(infile).getName() + ".dat";
@@ -464,13 +504,14 @@ public class ModelGenerator {
   }
 
 
-  public ArrayList<String> findRelevantPairs(ArrayList<String> relevant_pairs, String infile, boolean filterLabels) {
+  public PairSet findRelevantPairs(PairSet relevant_pairs, String infile, boolean filterLabels) {
 
     String line;
     StringTokenizer strtok;
     double curr_score;
-    boolean[] rel_positions = new boolean[relevant_pairs.size()];
-    int entry_counter = 0;
+
+    // the lines of the feature file correspond to the relevant pairs (in ascending order)
+    Iterator<int[]> pairs = relevant_pairs.copy().iterator();
 
     try {
 
@@ -483,19 +524,20 @@ public class ModelGenerator {
 
         curr_score = Double.parseDouble(strtok.nextToken().trim());
 
-        if      (!filterLabels && (curr_score > 0.3)) {
-          rel_positions[entry_counter] = true;
-        } else if ( filterLabels && (curr_score < 1.0)) {
-          rel_positions[entry_counter] = true;
+        int[] pair = pairs.next();
+
+        if      (!filterLabels && !(curr_score > 0.3)) {
+          relevant_pairs.remove(pair[0], pair[1]);
+        } else if ( filterLabels && !(curr_score < 1.0)) {
+          relevant_pairs.remove(pair[0], pair[1]);
         }
-        entry_counter++;
       }
       br.close();
 
-      for (int i=rel_positions.length-1; i>=0; i--) {
-        if (! rel_positions[i]) {
-          relevant_pairs.remove(i);
-        }
+      // pairs without score are irrelevant
+      while (pairs.hasNext()) {
+        int[] pair = pairs.next();
+        relevant_pairs.remove(pair[0], pair[1]);
       }
     }
 
@@ -510,29 +552,15 @@ public class ModelGenerator {
    * removes factor pairs with identical matrices
    */
 
-  public ArrayList<String> removeRedundantFactors(ArrayList<String> relevant_pairs, String infile) {
+  public PairSet removeRedundantFactors(PairSet relevant_pairs, String infile) {
 
     LabelFileGenerator labelgenerator = new LabelFileGenerator();
     ArrayList<ArrayList<String>> all_matrices = labelgenerator.getAllFBPs(infile);
-    boolean[] rel_positions = new boolean[relevant_pairs.size()];
-    int entry_counter = 0;
 
-    for (int i=0; i<(all_matrices.size()-1); i++) {
-      for (int j=i+1; j<all_matrices.size(); j++) {
+    for (int[] pair: relevant_pairs.copy()) {
 
-        if (! relevant_pairs.contains(i + "_" + j)) {
-          continue;
-        }
-        if (! all_matrices.get(i).equals(all_matrices.get(j))) {
-          rel_positions[entry_counter] = true;
-        }
-        entry_counter++;
-      }
-    }
-
-    for (int i=rel_positions.length-1; i>=0; i--) {
-      if (! rel_positions[i]) {
-        relevant_pairs.remove(i);
+      if (all_matrices.get(pair[0]).equals(all_matrices.get(pair[1]))) {
+        relevant_pairs.remove(pair[0], pair[1]);
       }
     }
 
@@ -613,7 +641,7 @@ public class ModelGenerator {
      */
 
 
-    // ArrayList<String> relevant_pairs = computeFeatures(feature_dir, temp_dir);
+    // PairSet relevant_pairs = computeFeatures(feature_dir, temp_dir);
     // repairFeatures(feature_dir);
 
 
@@ -652,9 +680,159 @@ public class ModelGenerator {
     trainSVM(libsvm_dir + "trainingset.lp." + class_id + ".att",
       base_dir + "mosta.lp." + class_id + ".model", params);
 
+    if (fastModel) {
+      generateFastModelFile(libsvm_dir, params);
+    }
+
     System.out.print("\r");
   }
 
+
+  /*
+   *  trains the fast model on a subset of the scaled training set "trainingset.lp.<class>.att" and
+   *  reports the difference of its cross-validation results to those of the full model (full_params)
+   *
+   *  features are ranked by cost (kernel, secondary structure and environment features are excluded) and by the
+   *  AAE of their single-feature models (only, if fast_features limits the number of features)
+   */
+
+  public void generateFastModelFile(String libsvm_dir, double[] full_params) {
+
+    ArrayList<String> feature_names = new ArrayList<String>();
+
+    try {
+      BufferedReader br = new BufferedReader(new FileReader(new File(train_dir + class_id + FBPPredictor.featureNamesFileSuffix)));
+
+      String line;
+      while ((line = br.readLine()) != null) {
+        feature_names.add(line.trim());
+      }
+      br.close();
+    }
+    catch(IOException ioe) {
+      System.out.println(ioe.getMessage());
+      System.out.println("IOException occurred while reading feature names.");
+      return;
+    }
+
+    /*
+     *  select features, which are computed in-process
+     */
+
+    ArrayList<Integer> candidates = new ArrayList<Integer>();
+
+    for (int i=0; i<feature_names.size(); i++) {
+      if (! FBPPredictor.isExpensiveFeature(feature_names.get(i))) {
+        candidates.add(i+1);
+      }
+    }
+
+    int[] indices = new int[candidates.size()];
+    for (int i=0; i<indices.length; i++) {
+      indices[i] = candidates.get(i);
+    }
+
+    if (fast_features > 0 && fast_features < indices.length) {
+
+      System.out.println("  Ranking " + indices.length + " fast features by single-feature cross-validation.\n");
+
+      String single_dir = libsvm_dir + "single_features/";
+      new File(single_dir).mkdirs();
+
+      SingleFeatureEvaluator evaluator = new SingleFeatureEvaluator();
+      evaluator.base_dir = base_dir;
+      evaluator.train_dir = train_dir;
+      evaluator.class_id = Integer.parseInt(class_id.substring("class".length()));
+
+      final double[] aae = evaluator.evaluateSingleFeatures(feature_names, indices, libsvm_dir + "trainingset.lp." + class_id + ".att", single_dir)[1];
+
+      Integer[] order = new Integer[indices.length];
+      for (int i=0; i<order.length; i++) {
+        order[i] = i;
+      }
+      Arrays.sort(order, new Comparator<Integer>() {
+        public int compare(Integer a, Integer b) {
+          return Double.compare(aae[a], aae[b]);
+        }
+      });
+
+      int[] selected = new int[fast_features];
+      for (int i=0; i<selected.length; i++) {
+        selected[i] = indices[order[i]];
+      }
+      Arrays.sort(selected);     // FeatureSelector requires ascending indices
+      indices = selected;
+    }
+
+    /*
+     *  write subset of the training set and feature names of the fast model
+     */
+
+    String fast_trainingset = libsvm_dir + "trainingset_fast.lp." + class_id + ".att";
+
+    System.out.println("  Writing LibSVM input file of the fast model (" + indices.length + " of " + feature_names.size() + " features).\n" +
+        "     (file: " + fast_trainingset + ")\n");
+
+    new FeatureSelector().selectFeatures(indices, libsvm_dir + "trainingset.lp." + class_id + ".att", fast_trainingset);
+
+    try {
+      BufferedWriter bw = new BufferedWriter(new FileWriter(new File(train_dir + class_id + FBPPredictor.fastFeatureNamesFileSuffix)));
+
+      for (int index: indices) {
+        bw.write(feature_names.get(index-1) + "\n");
+      }
+      bw.flush();
+      bw.close();
+    }
+    catch(IOException ioe) {
+      System.out.println(ioe.getMessage());
+      System.out.println("IOException occurred while writing feature names of the fast model.");
+      return;
+    }
+
+    System.out.println("  Performing cross-validation of the fast model.\n");
+
+    runCrossvalidation(fast_trainingset);
+
+    double[] fast_params = parseCVResults(fast_trainingset + ".dat", libsvm_dir + "trainingset_fast.lp." + class_id + ".par");
+
+    /*
+     *  train fast model (predictions expect it in the subdirectory "fast" of the model directory of the class)
+     */
+
+    String fast_model_dir = base_dir + FBPPredictor.fastModelDir + "/";
+    new File(fast_model_dir).mkdirs();
+
+    System.out.println("  Training fast SVR model.\n" +
+        "     (file: " + fast_model_dir + "mosta.lp." + class_id + ".fast.model" + ")\n");
+
+    trainSVM(fast_trainingset, fast_model_dir + "mosta.lp." + class_id + ".fast.model", fast_params);
+
+    /*
+     *  accuracy of the fast model relative to the full model
+     */
+
+    DecimalFormat fmt = new DecimalFormat();
+    DecimalFormatSymbols symbs = fmt.getDecimalFormatSymbols();
+    symbs.setDecimalSeparator('.');
+    fmt.setDecimalFormatSymbols(symbs);
+    fmt.setMaximumFractionDigits(4);
+    fmt.setMinimumFractionDigits(4);
+    fmt.setPositivePrefix("+");
+
+    DecimalFormat val = new DecimalFormat();
+    val.setDecimalFormatSymbols(symbs);
+    val.setMaximumFractionDigits(4);
+    val.setMinimumFractionDigits(4);
+
+    System.out.println("  Fast model vs. full model (cross-validation):\n");
+    System.out.println("                full      fast      delta");
+    System.out.println("    AAE       = " + val.format(full_params[3]) + "    " + val.format(fast_params[3]) + "    " + fmt.format(fast_params[3] - full_params[3]));
+    System.out.println("    MSE       = " + val.format(full_params[5]) + "    " + val.format(fast_params[5]) + "    " + fmt.format(fast_params[5] - full_params[5]));
+    System.out.println("    Q^2       = " + val.format(full_params[4]) + "    " + val.format(fast_params[4]) + "    " + fmt.format(fast_params[4] - full_params[4]));
+    System.out.println();
+  }
+
   public static void main(String[] args) {
 
     ModelGenerator svr_model = new ModelGenerator("class0");
@@ -675,6 +853,7 @@ public class ModelGenerator {
       if(args[i].equals("-s")) { superclass		   	= Integer.parseInt(args[i+1]); 	continue; }
       if(args[i].equals("-m")) { svr_model.base_dir	= args[i+1]; 					continue; }
       if(args[i].equals("-t")) { svr_model.train_dir 	= args[i+1]; 					continue; }
+      if(args[i].equals("-threads")) { svr_model.num_threads = Integer.parseInt(args[i+1]); continue; }
       if(args[i].equals("--includeMMK")) { if (args[i+1].toLowerCase().equals("no")) {
         svr_model.includeMMK = false;
       } }
@@ -684,10 +863,15 @@ public class ModelGenerator {
       if(args[i].equals("--includePhylo")) { if (args[i+1].toLowerCase().equals("no")) {
         svr_model.includePhylo = false;
       } }
+      if(args[i].equals("--fastModel")) { if (args[i+1].toLowerCase().equals("yes")) {
+        svr_model.fastModel = true;
+      } }
+      if(args[i].equals("-fastFeatures")) { svr_model.fast_features = Integer.parseInt(args[i+1]); continue; }
 
 
-      if(!args[i].equals("-s") && !args[i].equals("-t") && !args[i].equals("-m")
-          && !args[i].equals("--includePhylo") && !args[i].equals("--includeLAK") && !args[i].equals("--includeMMK")) {
+      if(!args[i].equals("-s") && !args[i].equals("-t") && !args[i].equals("-m") && !args[i].equals("-threads")
+          && !args[i].equals("--includePhylo") && !args[i].equals("--includeLAK") && !args[i].equals("--includeMMK")
+          && !args[i].equals("--fastModel") && !args[i].equals("-fastFeatures")) {
         System.out.println("\n  Invalid argument: " + args[i]);
         svr_model.usage();
       }
@@ -724,8 +908,11 @@ public class ModelGenerator {
     System.out.println("            --includePhylo <yes|no>");
     System.out.println("            --includeMMK <yes|no> ");
     System.out.println("            --includeLAK <yes|no>");
+    System.out.println("            --fastModel <yes|no>  (second model without LAK, MMK, PSIPRED and environment features)");
+    System.out.println("            -fastFeatures <number> (features of the fast model, ranked by CV)  default = all");
     System.out.println("            -t <train_directory>  (directory to save the training set)");
-    System.out.println("            -m <model_directory>  (directory to save the model file) \n\n");
+    System.out.println("            -m <model_directory>  (directory to save the model file)");
+    System.out.println("            -threads <number>     (threads for the pairwise features)      default = #processors \n\n");
 
     System.exit(0);
 
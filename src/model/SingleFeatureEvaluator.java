@@ -56,64 +56,17 @@ public class SingleFeatureEvaluator {
 				features.add(line.trim());
 			}
 			
-			/*
-			 *  generate single feature model files
-			 */
-			
-			FeatureSelector feat_sel = new FeatureSelector();
-			String outfile;
+			int[] indices = new int[features.size()];
 			
 			for (int i=0; i<features.size(); i++) {
-				
-				outfile = "trainingset_" + features.get(i) + ".lp.class" + class_id + ".att";	
-				feat_sel.selectFeatures(new int[] {i+1}, infile, outdir + outfile);
-			}
-			
-			
-			/*
-			 *  perform cross-validation for each single-feature model
-			 */
-
-			
-			ModelGenerator model_gen = new ModelGenerator("class" + class_id);
-			model_gen.base_dir = base_dir;
-			model_gen.train_dir = train_dir;
-			model_gen.silent = true;
-			
-			String pwd = System.getProperty("user.dir");
-			String rel_libsvm_dir = outdir;
-			if (outdir.startsWith("/") && outdir.startsWith(pwd)) {
-				rel_libsvm_dir = outdir.substring(pwd.length());
-				//System.out.println(libsvm_dir);
+				indices[i] = i+1;
 			}
 			
-			double[] MSE = new double[features.size()];
-			double[] AAE = new double[features.size()];
+			double[][] results = evaluateSingleFeatures(features, indices, infile, outdir);
 			
-			DecimalFormat fmt = new DecimalFormat();
-			DecimalFormatSymbols symbs = fmt.getDecimalFormatSymbols();
-	        symbs.setDecimalSeparator('.');
-	        fmt.setDecimalFormatSymbols(symbs);
-	        fmt.setMaximumFractionDigits(2);
-	        fmt.setMinimumFractionDigits(2);
+			double[] MSE = results[0];
+			double[] AAE = results[1];
 			
-			for (int i=0; i<features.size(); i++) {
-				
-				
-				System.out.println("Performing CV on training set: trainingset_" + features.get(i) + ".lp.class" + class_id + ".att");
-				model_gen.runCrossvalidation(rel_libsvm_dir + "trainingset_" + features.get(i) + ".lp.class" + class_id + ".att");
-				
-				
-				double[] params = model_gen.parseCVResults(outdir + "trainingset_" + features.get(i) + ".lp.class" + class_id + ".att.dat",
-												 		   outdir + "trainingset_" + features.get(i) + ".lp.class" + class_id + ".par");
-				
-				MSE[i] = params[5];
-				AAE[i] = params[3];
-				
-				System.out.println("  MSE: " + fmt.format(MSE[i]));
-				System.out.println("  AAE: " + fmt.format(AAE[i]) + "\n");
-			}
-
 			/*
 			 *  write MSE and AAE for all single feature models to text file
 			 */
@@ -134,6 +87,76 @@ public class SingleFeatureEvaluator {
 		}
 	}
 	
+	/*
+	 * generates a training set for each of the given features (indices of the features in the libsvm file
+	 * "infile") and performs a cross-validation for each single-feature model
+	 * 
+	 * returns { MSE , AAE } of the single-feature models
+	 */
+	public double[][] evaluateSingleFeatures(ArrayList<String> features, int[] indices, String infile, String outdir) {
+		
+		/*
+		 *  generate single feature model files
+		 */
+		
+		FeatureSelector feat_sel = new FeatureSelector();
+		String outfile;
+		
+		for (int i=0; i<indices.length; i++) {
+			
+			outfile = "trainingset_" + features.get(indices[i]-1) + ".lp.class" + class_id + ".att";	
+			feat_sel.selectFeatures(new int[] {indices[i]}, infile, outdir + outfile);
+		}
+		
+		
+		/*
+		 *  perform cross-validation for each single-feature model
+		 */
+
+		
+		ModelGenerator model_gen = new ModelGenerator("class" + class_id);
+		model_gen.base_dir = base_dir;
+		model_gen.train_dir = train_dir;
+		model_gen.silent = true;
+		
+		String pwd = System.getProperty("user.dir");
+		String rel_libsvm_dir = outdir;
+		if (outdir.startsWith("/") && outdir.startsWith(pwd)) {
+			rel_libsvm_dir = outdir.substring(pwd.length());
+			//System.out.println(libsvm_dir);
+		}
+		
+		double[] MSE = new double[indices.length];
+		double[] AAE = new double[indices.length];
+		
+		DecimalFormat fmt = new DecimalFormat();
+		DecimalFormatSymbols symbs = fmt.getDecimalFormatSymbols();
+        symbs.setDecimalSeparator('.');
+        fmt.setDecimalFormatSymbols(symbs);
+        fmt.setMaximumFractionDigits(2);
+        fmt.setMinimumFractionDigits(2);
+		
+		for (int i=0; i<indices.length; i++) {
+			
+			String feature = features.get(indices[i]-1);
+			
+			System.out.println("Performing CV on training set: trainingset_" + feature + ".lp.class" + class_id + ".att");
+			model_gen.runCrossvalidation(rel_libsvm_dir + "trainingset_" + feature + ".lp.class" + class_id + ".att");
+			
+			
+			double[] params = model_gen.parseCVResults(outdir + "trainingset_" + feature + ".lp.class" + class_id + ".att.dat",
+											 		   outdir + "trainingset_" + feature + ".lp.class" + class_id + ".par");
+			
+			MSE[i] = params[5];
+			AAE[i] = params[3];
+			
+			System.out.println("  MSE: " + fmt.format(MSE[i]));
+			System.out.println("  AAE: " + fmt.format(AAE[i]) + "\n");
+		}
+		
+		return new double[][] {MSE, AAE};
+	}
+	
 	public static void main(String args[]) {
 		
 		SingleFeatureEvaluator evaluator = new SingleFeatureEvaluator();
@@ -28,6 +28,7 @@ import java.util.ArrayList;
 import java.util.StringTokenizer;
 
 import main.FBPPredictor;
+import main.PredictionProfile;
 
 
 
@@ -304,6 +305,8 @@ public class MatlignOptimizer implements Optimizer {
 					;
 
 			Process proc = Runtime.getRuntime().exec(cmdString);
+			PredictionProfile.count(PredictionProfile.processLaunches, 1);
+			PredictionProfile.countTempFile(basedir + "matlign/matrices.raw");
 			
 			proc.getOutputStream().flush();
 			proc.getOutputStream().close();
@@ -25,10 +25,14 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.StringTokenizer;
 
 import main.FBPPredictor;
+import main.PredictionProfile;
 
 
 
@@ -43,6 +47,12 @@ public class MoStaOptimizer implements Optimizer {
 	boolean silent = false;
 	public String basedir = "";
 	
+	// true: compare the matrices with the external program sstat instead of MoStaSimilarity
+	public boolean externalMoSta = false;
+	
+	// G/C content, threshold method, threshold param, output score (used if no params are given)
+	public static final String[] defaultParams = new String[] {".4","balanced",".1","0"};
+	
 	public void calculateFBPScores(String fbpfile, String[] params, String outfile) {
 		
 		BufferedReader br = null;
@@ -153,6 +163,64 @@ public class MoStaOptimizer implements Optimizer {
 	 */
 	public double compareMatrices(ArrayList<String> matrix1, ArrayList<String> matrix2, String[] params) {
 		
+		return compareMatrices(MoStaSimilarity.parseMatrix(matrix1), MoStaSimilarity.parseMatrix(matrix2), params, matrix1, matrix2);
+		
+	}
+	
+	
+	/*
+	 *  compares two fbp matrices (rows: A, C, G, T) with MoSta
+	 */
+	public double compareMatrices(double[][] matrix1, double[][] matrix2, String[] params) {
+		
+		return compareMatrices(matrix1, matrix2, params, null, null);
+		
+	}
+	
+	
+	/*
+	 *  looks up the score of the matrices in the MoStaScoreCache, the score is computed only once
+	 */
+	private double compareMatrices(double[][] matrix1, double[][] matrix2, String[] params, ArrayList<String> stamp1, ArrayList<String> stamp2) {
+		
+		if(params == null) {
+			
+			params = defaultParams;
+			
+		}
+		
+		String params_key = MoStaScoreCache.getParamsKey(params);
+		String matrix_key1 = MoStaScoreCache.getMatrixKey(matrix1);
+		String matrix_key2 = MoStaScoreCache.getMatrixKey(matrix2);
+		
+		Double score = MoStaScoreCache.get(params_key, matrix_key1, matrix_key2);
+		
+		if(score != null) {
+			return score;
+		}
+		
+		if(externalMoSta) {
+			
+			score = compareMatricesExternal((stamp1 == null) ? toSTAMP(matrix1) : stamp1, (stamp2 == null) ? toSTAMP(matrix2) : stamp2, params);
+			
+		}
+		else {
+			
+			score = compareMatricesInProcess(matrix1, matrix2, params);
+			
+		}
+		
+		MoStaScoreCache.put(params_key, matrix_key1, matrix_key2, score);
+		
+		return score;
+		
+	}
+	
+	
+	/*
+	 *  compares two fbp matrices in STAMP format with the external program sstat
+	 */
+	private double compareMatricesExternal(ArrayList<String> matrix1, ArrayList<String> matrix2, String[] params) {
 		
 		StringTokenizer strtok = null;
 		String a,c,g,t;
@@ -246,13 +314,52 @@ public class MoStaOptimizer implements Optimizer {
 	
 	
 	
+	/*
+	 *  compares two fbp matrices (rows: A, C, G, T) in-process with MoStaSimilarity
+	 */
+	private double compareMatricesInProcess(double[][] matrix1, double[][] matrix2, String[] params) {
+		
+		MoStaSimilarity mosta = new MoStaSimilarity(Double.parseDouble(params[0]), params[1], Double.parseDouble(params[2]));
+		
+		double[] scores = mosta.compare(mosta.getScoredPFM(matrix1), mosta.getScoredPFM(matrix2));
+		
+		double score = params[3].equals("1") ? scores[1] : scores[0];	// S_sum or S_max
+		
+		if(score == Double.NEGATIVE_INFINITY) {
+			return -1.0;
+		}
+		if(Double.isNaN(score) || Double.isInfinite(score)) {
+			return score;
+		}
+		
+	// sstat prints 6 significant digits, round to the same precision to keep all scores and thresholds unchanged
+		
+		return new BigDecimal(score).round(new MathContext(6, RoundingMode.HALF_EVEN)).doubleValue();
+		
+	}
+	
+	
+	
+	private static ArrayList<String> toSTAMP(double[][] matrix) {
+		
+		ArrayList<String> res = new ArrayList<String>();
+		
+		for(int i=0; i<matrix.length; i++) {
+			res.add(i + "\t" + matrix[i][0] + "\t" + matrix[i][1] + "\t" + matrix[i][2] + "\t" + matrix[i][3]);
+		}
+		return res;
+		
+	}
+	
+	
+	
 	public double compareMatricesMoSta(String[] params) {
 		
 		double minScore = Double.POSITIVE_INFINITY;
 		
 		if(params == null) {
 			
-			params = new String[] {".4","balanced",".1","0"};
+			params = defaultParams;
 			
 		}
 		
@@ -269,6 +376,8 @@ public class MoStaOptimizer implements Optimizer {
 					params[2];
 
 			Process proc = Runtime.getRuntime().exec(cmdString);
+			PredictionProfile.count(PredictionProfile.processLaunches, 1);
+			PredictionProfile.countTempFile(basedir + "mosta/matrices.raw");
 			
 			proc.getOutputStream().flush();
 			proc.getOutputStream().close();
@@ -0,0 +1,220 @@
+/*
+    SABINE predicts binding specificities of transcription factors.
+    Copyright (C) 2009 ZBIT, University of Tübingen, Johannes Eichner
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package optimization;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+
+/*
+ *
+ * memoized MoSta scores of pairs of PFMs (self scores are pairs of identical PFMs), which
+ * are shared by all MoStaOptimizers, i.e. by the outlier filter, the label files and the
+ * evaluation of predictions
+ *
+ * the PFMs are addressed by the SHA-1 hash of their numeric content, so the scores do not
+ * depend on the names or the formatting of the matrices; the MoSta score is symmetric, so
+ * each pair is stored once; the scores of a training set are persisted in
+ * "trainingset_<class>.mosta" (lines: <params> <hash 1> <hash 2> <score>)
+ *
+ */
+public class MoStaScoreCache {
+
+	public static final String fileSuffix = ".mosta";
+
+	// maximum number of scores kept in memory (least recently used scores are removed first)
+	public static int maxEntries = 100000;
+
+	private static LinkedHashMap<String, Double> scores = new LinkedHashMap<String, Double>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<String, Double> eldest) {
+			return size() > maxEntries;
+		}
+	};
+
+
+	public static synchronized Double get(String params, String matrix_key1, String matrix_key2) {
+		return scores.get(getPairKey(params, matrix_key1, matrix_key2));
+	}
+
+
+	/*
+	 * non-finite scores (e.g. of a failed sstat run) are not memoized
+	 */
+	public static synchronized void put(String params, String matrix_key1, String matrix_key2, double score) {
+
+		if (Double.isNaN(score) || Double.isInfinite(score)) {
+			return;
+		}
+		scores.put(getPairKey(params, matrix_key1, matrix_key2), score);
+	}
+
+
+	public static synchronized int size() {
+		return scores.size();
+	}
+
+
+	public static synchronized void clear() {
+		scores.clear();
+	}
+
+
+	/*
+	 * reads persisted scores (missing files are ignored)
+	 */
+	public static synchronized void load(String infile) {
+
+		if (! new File(infile).exists()) {
+			return;
+		}
+
+		try {
+			BufferedReader br = new BufferedReader(new FileReader(new File(infile)));
+
+			String line;
+			while ((line = br.readLine()) != null) {
+
+				StringTokenizer strtok = new StringTokenizer(line);
+				if (strtok.countTokens() != 4) continue;
+
+				String params = strtok.nextToken();
+				String matrix_key1 = strtok.nextToken();
+				String matrix_key2 = strtok.nextToken();
+
+				put(params, matrix_key1, matrix_key2, Double.parseDouble(strtok.nextToken()));
+			}
+			br.close();
+		}
+		catch(IOException ioe) {
+			System.out.println(ioe.getMessage());
+			System.out.println("IOException occurred while reading MoSta scores from " + infile + ".");
+		}
+	}
+
+
+	/*
+	 * writes the scores of the given parameters, which are kept in memory for pairs of the given PFMs
+	 * (e.g. the FBPs of one training set)
+	 */
+	public static synchronized void save(String outfile, String[] params, Collection<double[][]> pfms) {
+
+		String params_key = getParamsKey(params);
+
+		HashSet<String> matrix_keys = new HashSet<String>();
+		for (double[][] pfm: pfms) {
+			matrix_keys.add(getMatrixKey(pfm));
+		}
+
+		// write to a temporary file first, so that concurrent readers never see a partial file
+		File tmpfile = new File(outfile + ".tmp" + System.nanoTime());
+
+		try {
+			BufferedWriter bw = new BufferedWriter(new FileWriter(tmpfile));
+
+			for (Map.Entry<String, Double> entry: scores.entrySet()) {
+
+				String[] tokens = entry.getKey().split("\t");
+
+				if (! tokens[0].equals(params_key) || ! matrix_keys.contains(tokens[1]) || ! matrix_keys.contains(tokens[2])) continue;
+				if (Double.isNaN(entry.getValue()) || Double.isInfinite(entry.getValue())) continue;
+
+				bw.write(entry.getKey() + "\t" + entry.getValue() + "\n");
+			}
+			bw.flush();
+			bw.close();
+
+			if (! tmpfile.renameTo(new File(outfile))) {
+				tmpfile.delete();
+				throw new IOException("Could not create " + outfile + ".");
+			}
+		}
+		catch(IOException ioe) {
+			tmpfile.delete();
+			System.out.println(ioe.getMessage());
+			System.out.println("IOException occurred while writing MoSta scores to " + outfile + ".");
+		}
+	}
+
+
+	/*
+	 * parameters of MoSta (G/C content, threshold method, threshold param, output score) as one token
+	 */
+	public static String getParamsKey(String[] params) {
+
+		StringBuffer res = new StringBuffer();
+
+		for (int i=0; i<params.length; i++) {
+			res.append((i == 0) ? "" : ",").append(params[i]);
+		}
+		return res.toString();
+	}
+
+
+	/*
+	 * SHA-1 hash of the counts or frequencies of a PFM (rows: A, C, G, T)
+	 */
+	public static String getMatrixKey(double[][] pfm) {
+
+		StringBuffer content = new StringBuffer();
+
+		for (double[] row: pfm) {
+			content.append(row[0]).append(' ').append(row[1]).append(' ').append(row[2]).append(' ').append(row[3]).append('\n');
+		}
+
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+
+			StringBuffer res = new StringBuffer();
+
+			for (byte b: digest.digest(content.toString().getBytes("UTF-8"))) {
+				res.append(String.format("%02x", b));
+			}
+			return res.toString();
+		}
+		catch(NoSuchAlgorithmException nsae) {
+			throw new RuntimeException(nsae);
+		}
+		catch(IOException ioe) {
+			throw new RuntimeException(ioe);
+		}
+	}
+
+
+	private static String getPairKey(String params, String matrix_key1, String matrix_key2) {
+
+		if (matrix_key1.compareTo(matrix_key2) > 0) {
+			return params + "\t" + matrix_key2 + "\t" + matrix_key1;
+		}
+		return params + "\t" + matrix_key1 + "\t" + matrix_key2;
+	}
+}
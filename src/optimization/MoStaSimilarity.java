@@ -0,0 +1,640 @@
+/*
+    SABINE predicts binding specificities of transcription factors.
+    Copyright (C) 2009 ZBIT, University of Tübingen, Johannes Eichner
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package optimization;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.StringTokenizer;
+
+
+
+/*
+ *
+ * in-process implementation of the MoSta similarity of two PFMs (program "sstat" of
+ * the MoSta package, Pape et al. 2008), which replaces the external sstat process
+ *
+ * each PFM is regularized and converted into an integer scoring matrix, its threshold
+ * is adjusted by the given method, and the similarity is derived from the probability
+ * of joint hits of both PFMs for all shifts and both strands
+ *
+ * the computation follows the C++ implementation step by step (sstat uses long double
+ * for the regularization, so that scores can differ in the last digits)
+ *
+ */
+public class MoStaSimilarity {
+
+
+	// length of the region, which is used to adjust the thresholds (fixed in MoSta)
+	private static final int regionLength = 500;
+
+	// scaling factor of the scoring matrices
+	private static final double epsilon = 0.05;
+
+	double gc;
+	String method;
+	double t_param;
+
+	double[] bg;
+
+
+	/*
+	 *  default parameters of SABINE: G/C content .4, balanced threshold (parameter .1)
+	 */
+	public MoStaSimilarity() {
+		this(0.4, "balanced", 0.1);
+	}
+
+
+	/*
+	 *  method: threshold method (typeI, typeII, balanced, typeIext)
+	 */
+	public MoStaSimilarity(double gc, String method, double t_param) {
+
+		if (gc <= 0 || gc >= 1) {
+			throw new IllegalArgumentException("G/C content " + gc + " is not between 0 and 1.");
+		}
+		if (!(method.equals("typeI") || method.equals("typeII") || method.equals("balanced") || method.equals("typeIext"))) {
+			throw new IllegalArgumentException("Unsupported threshold method: " + method);
+		}
+
+		this.gc = gc;
+		this.method = method;
+		this.t_param = t_param;
+
+		bg = new double[] {(1-gc)/2, gc/2, gc/2, (1-gc)/2};
+	}
+
+
+	/*
+	 *
+	 * scoring matrix of a PFM with its threshold and the p-value of the threshold
+	 *
+	 */
+	public static class ScoredPFM {
+
+		int nlen;
+		int[] pssm;
+		int t;
+		double alpha;
+
+		public int getLength() {
+			return nlen;
+		}
+	}
+
+
+	/*
+	 *  returns MoSta's maximum similarity score (S_max) of two PFMs (rows: A, C, G, T)
+	 */
+	public double compare(double[][] pfm1, double[][] pfm2) {
+		return compare(getScoredPFM(pfm1), getScoredPFM(pfm2))[0];
+	}
+
+
+	/*
+	 *  returns {S_max, S_sum} of two scored PFMs
+	 */
+	public double[] compare(ScoredPFM pfmA, ScoredPFM pfmB) {
+
+		int[] mA = pfmA.pssm;
+		int[] mB = pfmB.pssm;
+
+		int nlen = mA.length + mB.length - 4;
+		int nB = pfmB.nlen;
+
+
+		// align A to the right end and B to the left end of matrices of equal length
+
+		int[] mAl = new int[nlen];
+		System.arraycopy(mA, 0, mAl, nlen - mA.length, mA.length);
+
+		int[] mBr = Arrays.copyOf(mB, nlen);
+		int[] mBcr = Arrays.copyOf(reverseComplement(mB), nlen);
+
+		double[] gammaAB  = getGamma(mAl, pfmA.t, mBr, pfmB.t);
+		double[] gammaABp = getGamma(mAl, pfmA.t, mBcr, pfmB.t);
+
+		double gAB = 0;
+		double gABp = 0;
+		double gmax = 0;
+
+		for (int i=0; i<nlen/4; i++) {
+
+			gAB += gammaAB[i];
+			gABp += gammaABp[i];
+
+			if (gammaAB[i] > gmax) 	gmax = gammaAB[i];
+			if (gammaABp[i] > gmax) gmax = gammaABp[i];
+		}
+
+		double alpha = pfmA.alpha;
+		double beta = pfmB.alpha;
+
+		double smax = Math.log(gmax / (alpha * beta));
+
+		double ssum = 2 * (gAB + gABp);
+		ssum -= 4 * (pfmA.nlen + nB) * alpha * beta;
+		ssum += 4 * alpha * beta;
+
+		return new double[] {smax, ssum};
+	}
+
+
+	/*
+	 *
+	 * regularizes the PFM (counts or frequencies), computes the scoring matrix and adjusts the threshold
+	 *
+	 */
+	public ScoredPFM getScoredPFM(double[][] pfm) {
+
+		ScoredPFM res = new ScoredPFM();
+
+		int nlen = pfm.length;
+
+		double[] pcm = new double[nlen*4];
+
+		for (int i=0; i<nlen; i++) {
+			for (int j=0; j<4; j++) {
+				pcm[i*4+j] = pfm[i][j];
+			}
+		}
+
+		double[] pwm = regularize(pcm, nlen);
+
+
+		// calculate scoring matrix
+
+		int[] pssm = new int[nlen*4];
+
+		for (int i=0; i<nlen*4; i++) {
+
+			double x = Math.log(pwm[i] / bg[i%4]) / epsilon;
+
+			pssm[i] = (int) (x + ((x < 0) ? -0.5 : 0.5));
+		}
+
+		res.nlen = nlen;
+		res.pssm = pssm;
+
+
+		// adjust threshold
+
+		Convolution conv_rnd = new Convolution();
+		Convolution conv_sgn = new Convolution();
+
+		for (int i=0; i<nlen; i++) {
+			conv_rnd.convolute(pssm, bg, i);
+			conv_sgn.convolute(pssm, new double[] {pwm[i*4], pwm[i*4+1], pwm[i*4+2], pwm[i*4+3]}, i);
+		}
+
+		if (method.equals("typeI")) {
+			res.t = conv_rnd.threshold(-Math.log(1 - t_param) / regionLength);
+		}
+		else if (method.equals("typeII")) {
+			res.t = conv_sgn.threshold(1 - t_param);
+		}
+		else {
+			res.t = conv_rnd.balanced(conv_sgn, regionLength);
+
+			if (method.equals("typeIext") && conv_rnd.pvalueRegion(res.t, regionLength) > t_param) {
+				res.t = conv_rnd.threshold(-Math.log(1 - t_param) / regionLength);
+			}
+		}
+		res.alpha = conv_rnd.pvalue(res.t);
+
+		return res;
+	}
+
+
+	/*
+	 *
+	 * parses a PFM in STAMP format (lines "<pos> <A> <C> <G> <T>")
+	 *
+	 */
+	public static double[][] parseMatrix(ArrayList<String> matrix) {
+
+		double[][] res = new double[matrix.size()][4];
+
+		for (int i=0; i<matrix.size(); i++) {
+
+			StringTokenizer strtok = new StringTokenizer(matrix.get(i));
+			strtok.nextToken();
+
+			for (int j=0; j<4; j++) {
+				res[i][j] = Double.parseDouble(strtok.nextToken());
+			}
+		}
+		return res;
+	}
+
+
+	/*
+	 *
+	 * regularization of the counts (Rahmann et al. 2003), returns the weight matrix
+	 *
+	 */
+	private static double[] regularize(double[] pcm, int nlen) {
+
+		double prec = 0.0001;
+		double cutoff = 1.5;
+
+		double[] pfm = new double[nlen*4];
+		double[] pwm = new double[nlen*4];
+
+
+		// overall distribution of the counts
+
+		double[] vc = new double[4];
+		double[] vp = new double[4];
+		double add = 0;
+
+		for (int i=0; i<nlen; i++) {
+			for (int j=0; j<4; j++) {
+				vc[j] += pcm[i*4+j];
+			}
+		}
+		double ncount = vc[0] + vc[1] + vc[2] + vc[3];
+
+		if (vc[0] == 0 || vc[1] == 0 || vc[2] == 0 || vc[3] == 0) {
+			add = 1;
+		}
+
+		for (int j=0; j<4; j++) {
+			vp[j] = (vc[j] + add/4.0) / (ncount + add);
+		}
+
+		for (int i=0; i<nlen; i++) {
+
+			double nc = pcm[i*4] + pcm[i*4+1] + pcm[i*4+2] + pcm[i*4+3];
+
+			for (int j=0; j<4; j++) {
+				pfm[i*4+j] = (nc == 0) ? vp[j] : pcm[i*4+j] / nc;
+			}
+		}
+
+
+		// shrink each column towards the overall distribution
+
+		for (int i=0; i<nlen; i++) {
+
+			double delta = 0;
+			double nc = 0;
+
+			for (int j=0; j<4; j++) {
+
+				if (pcm[i*4+j] > 0) {
+					delta += pfm[i*4+j] * Math.log(pfm[i*4+j] / vp[j]);
+				}
+				nc += pcm[i*4+j];
+			}
+			delta *= 2 * nc;
+
+			if (delta <= cutoff) {
+
+				for (int j=0; j<4; j++) {
+					pwm[i*4+j] = vp[j];
+				}
+			}
+			else {
+
+				double deltaw = delta;
+				double w = 0.5;
+				double v = 0.25;
+
+				while (Math.abs(delta - cutoff - deltaw) > prec) {
+
+					deltaw = 0;
+
+					for (int j=0; j<4; j++) {
+						deltaw += ((1 - w) * pfm[i*4+j] + w * vp[j]) * Math.log(((1 - w) * pfm[i*4+j] + w * vp[j]) / vp[j]);
+					}
+					deltaw *= 2 * nc;
+
+					if (deltaw >= delta - 1.5) 	w += v;
+					else 						w -= v;
+
+					v *= 0.5;
+				}
+
+				for (int j=0; j<4; j++) {
+					pwm[i*4+j] = (1 - w) * pfm[i*4+j] + w * vp[j];
+				}
+			}
+		}
+		return pwm;
+	}
+
+
+	private static int[] reverseComplement(int[] m) {
+
+		int n = m.length / 4;
+		int[] res = new int[m.length];
+
+		for (int i=0; i<n; i++) {
+			for (int j=0; j<4; j++) {
+				res[i*4+j] = m[(n-i-1)*4 + (3-j)];
+			}
+		}
+		return res;
+	}
+
+
+	/*
+	 *
+	 * probabilities of joint hits of A and B for each shift of B against A (both matrices have the same length),
+	 * computed on the joint score distributions, which are restricted to the scores that may still lead to a hit
+	 *
+	 */
+	private double[] getGamma(int[] mA, int tA, int[] mB, int tB) {
+
+		final int nlen = mA.length / 4;
+
+		int[] vminA = new int[nlen];
+		int[] vmaxA = new int[nlen];
+		int[] vminB = new int[nlen];
+		int[] vmaxB = new int[nlen];
+
+		minmax(mA, vminA, vmaxA);
+		minmax(mB, vminB, vmaxB);
+
+
+		// traverse positions of A in the order of decreasing score range
+
+		final int[] vdiff = new int[nlen];
+		Integer[] vi = new Integer[nlen];
+
+		for (int i=0; i<nlen; i++) {
+			vdiff[i] = vminA[i] - vmaxA[i];
+			vi[i] = i;
+		}
+		Arrays.sort(vi, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return vdiff[a] - vdiff[b];
+			}
+		});
+
+		int xvminiA = 0;
+		int xvmaxiA = 0;
+		int tvminiB = 0;
+		int tvmaxiB = 0;
+
+		for (int i=0; i<nlen; i++) {
+			xvminiA += vminA[vi[i]];
+			xvmaxiA += vmaxA[vi[i]];
+			tvminiB += vminB[vi[i]];
+			tvmaxiB += vmaxB[vi[i]];
+		}
+
+		int[] xvminiB = new int[nlen];
+		int[] xvmaxiB = new int[nlen];
+
+		Arrays.fill(xvminiB, tvminiB);
+		Arrays.fill(xvmaxiB, tvmaxiB);
+
+		int noldloA = 0;
+		int noldupA = 0;
+
+		int[] voldloB = new int[nlen];
+		int[] voldupB = new int[nlen];
+
+
+		// joint score distributions (index: (score A - lower bound A) * range B + score B - lower bound B,
+		// the last index of each range collects the scores, which are certain hits)
+
+		double[][] Q = new double[nlen][];
+
+		for (int ishift=0; ishift<nlen; ishift++) {
+			Q[ishift] = new double[4];
+			Q[ishift][0] = 1;
+		}
+
+		for (int i=0; i<nlen; i++) {
+
+			int noldrangeA = noldupA - noldloA + 2;
+
+			xvmaxiA -= vmaxA[vi[i]];
+			xvminiA -= vminA[vi[i]];
+
+			int nupA = Math.min(noldupA + vmaxA[vi[i]], tA - xvminiA);
+			int nloA = Math.max(noldloA + vminA[vi[i]], tA - xvmaxiA);
+			int nrangeA = nupA - nloA + 2;
+
+			for (int ishift=0; ishift<nlen; ishift++) {
+
+				// position on B
+				int ipos = vi[i] - ishift;
+
+				int noldrangeB = voldupB[ishift] - voldloB[ishift] + 2;
+				int nupB, nloB, nrangeB;
+
+				if (ipos >= 0) {
+
+					xvmaxiB[ishift] -= vmaxB[ipos];
+					xvminiB[ishift] -= vminB[ipos];
+
+					nupB = Math.min(voldupB[ishift] + vmaxB[ipos], tB - xvminiB[ishift]);
+					nloB = Math.max(voldloB[ishift] + vminB[ipos], tB - xvmaxiB[ishift]);
+					nrangeB = nupB - nloB + 2;
+				}
+				else {
+					nupB = voldupB[ishift];
+					nloB = voldloB[ishift];
+					nrangeB = noldrangeB;
+				}
+
+				double[] Qold = Q[ishift];
+				double[] Qnew = new double[Math.max(0, nrangeA * nrangeB)];
+
+				for (int j=0; j<4; j++) {
+
+					int snewA = mA[vi[i]*4+j];
+					int snewB = (ipos >= 0) ? mB[ipos*4+j] : 0;
+
+					double p = bg[j];
+
+					for (int ioldA=0; ioldA<noldrangeA; ioldA++) {
+
+						int sA = ioldA + noldloA + snewA;
+
+						if (ioldA == noldrangeA-1) sA = nupA + 1;
+
+						if (sA < nloA) continue;
+
+						if (sA > nupA) sA = nupA + 1;
+
+						// scores of B below the lower bound are dropped, scores above the upper bound
+						// (and the certain hits of the last index) are collected in the last index
+
+						int iold = ioldA*noldrangeB;
+						int inew = (sA-nloA)*nrangeB;
+						int offset = voldloB[ishift] + snewB - nloB;
+
+						int ilast = noldrangeB-1;
+						int ilo = Math.min(ilast, Math.max(0, -offset));
+						int iup = Math.max(ilo, Math.min(ilast, nupB - nloB - offset + 1));
+
+						for (int ioldB=ilo; ioldB<iup; ioldB++) {
+							Qnew[inew + ioldB + offset] += Qold[iold + ioldB] * p;
+						}
+						for (int ioldB=iup; ioldB<=ilast; ioldB++) {
+							Qnew[inew + nrangeB-1] += Qold[iold + ioldB] * p;
+						}
+					}
+				}
+
+				Q[ishift] = Qnew;
+
+				voldupB[ishift] = nupB;
+				voldloB[ishift] = nloB;
+			}
+
+			noldupA = nupA;
+			noldloA = nloA;
+		}
+
+
+		// the remaining scores of B (positions behind the end of A) are taken from the score distribution of B
+
+		Convolution conv = new Convolution();
+
+		double[] gamma = new double[nlen];
+
+		for (int ishift=0; ishift<nlen; ishift++) {
+
+			int nrangeB = voldupB[ishift] - voldloB[ishift] + 2;
+
+			if (ishift > 0) {
+				conv.convolute(mB, bg, nlen - ishift);
+			}
+
+			for (int iB=0; iB<nrangeB; iB++) {
+
+				// hits of A (score = threshold or certain hit)
+				double pold = get(Q[ishift], iB) + get(Q[ishift], nrangeB + iB);
+				double p = (iB < nrangeB-1) ? conv.pvalue(tB - (iB + voldloB[ishift])) : 1;
+
+				gamma[ishift] += pold * p;
+			}
+		}
+		return gamma;
+	}
+
+
+	private static double get(double[] v, int i) {
+		return (i < v.length) ? v[i] : 0;
+	}
+
+
+	private static void minmax(int[] m, int[] vmin, int[] vmax) {
+
+		for (int i=0; i<m.length/4; i++) {
+
+			vmin[i] = vmax[i] = m[i*4];
+
+			for (int j=1; j<4; j++) {
+				vmin[i] = Math.min(vmin[i], m[i*4+j]);
+				vmax[i] = Math.max(vmax[i], m[i*4+j]);
+			}
+		}
+	}
+
+
+	/*
+	 *
+	 * score distribution of a scoring matrix (convolution of its columns)
+	 *
+	 */
+	static class Convolution {
+
+		double[] distr = new double[] {1};
+		double[] distr_cum = new double[] {1};
+		int nlo = 0;
+
+
+		void convolute(int[] m, double[] vbg, int ipos) {
+
+			int nmin = m[ipos*4];
+			int nmax = nmin;
+
+			for (int j=1; j<4; j++) {
+				nmin = Math.min(m[ipos*4+j], nmin);
+				nmax = Math.max(m[ipos*4+j], nmax);
+			}
+
+			int nnewlo = nlo + nmin;
+			int nnewup = distr.length - 1 + nlo + nmax;
+
+			double[] distrnew = new double[nnewup - nnewlo + 1];
+
+			for (int iold=0; iold<distr.length; iold++) {
+				for (int j=0; j<4; j++) {
+					distrnew[nlo + iold + m[ipos*4+j] - nnewlo] += distr[iold] * vbg[j];
+				}
+			}
+			nlo = nnewlo;
+			distr = distrnew;
+
+			distr_cum = new double[distr.length];
+			distr_cum[distr.length-1] = distr[distr.length-1];
+
+			for (int i=distr.length-2; i>=0; i--) {
+				distr_cum[i] = distr[i] + distr_cum[i+1];
+			}
+		}
+
+
+		// probability of a score >= t
+		double pvalue(int t) {
+
+			if (t - nlo < 0) 					return 1.0;
+			if (t - nlo >= distr_cum.length) 	return 0.0;
+
+			return distr_cum[t - nlo];
+		}
+
+
+		// probability of at least one score >= t in a region of length n
+		double pvalueRegion(int t, int n) {
+			return 1 - Math.exp(-pvalue(t) * n);
+		}
+
+
+		// largest threshold with p-value >= p
+		int threshold(double p) {
+
+			for (int i=distr_cum.length-1; i>=0; i--) {
+				if (distr_cum[i] >= p) return i + nlo;
+			}
+			return nlo;
+		}
+
+
+		// threshold, which balances the error of the first type (in a region of length n) and the error of the second type
+		int balanced(Convolution conv_sgn, int n) {
+
+			int i = distr_cum.length - 1;
+
+			while ((1 - Math.exp(-distr_cum[i] * n)) < 1 - conv_sgn.pvalue(i + nlo)) {
+				i--;
+			}
+			return i + nlo;
+		}
+	}
+}